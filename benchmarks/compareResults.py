@@ -0,0 +1,46 @@
+#!/usr/bin/env python
+#
+# Compares two JMH result files written with '-rf json', printing the score
+# of each benchmark in both files along with the relative change. Benchmarks
+# are matched by name and parameter values.
+#
+# usage: compareResults.py OLD.json NEW.json
+#
+import json
+import sys
+
+def loadScores (fileName):
+    scores = {}
+    with open (fileName) as fp:
+        for res in json.load (fp):
+            params = res.get ('params', {})
+            key = res['benchmark'].replace ('artisynth.benchmarks.', '')
+            if params:
+                key += ' ' + ','.join (
+                    '%s=%s' % (k, params[k]) for k in sorted (params))
+            metric = res['primaryMetric']
+            scores[key] = (metric['score'], metric['scoreError'],
+                           metric['scoreUnit'])
+    return scores
+
+def main (args):
+    if len(args) != 2:
+        print ('usage: compareResults.py OLD.json NEW.json')
+        return 1
+    old = loadScores (args[0])
+    new = loadScores (args[1])
+    width = max ([len(k) for k in new] + [10])
+    for key in sorted (new):
+        score, err, unit = new[key]
+        if key in old:
+            oscore = old[key][0]
+            change = 100.0*(score-oscore)/oscore if oscore != 0 else 0.0
+            print ('%-*s %12.3f %12.3f %+8.1f%% %s' %
+                   (width, key, oscore, score, change, unit))
+        else:
+            print ('%-*s %12s %12.3f %9s %s' %
+                   (width, key, '-', score, '', unit))
+    return 0
+
+if __name__ == '__main__':
+    sys.exit (main (sys.argv[1:]))
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import artisynth.benchmarks.FemProblem.Shape;
+import maspack.matrix.CholeskyDecomposition;
+import maspack.matrix.Matrix3d;
+import maspack.matrix.Matrix6d;
+import maspack.matrix.MatrixMulAdd;
+import maspack.matrix.MatrixNd;
+import maspack.matrix.VectorNd;
+
+/**
+ * Benchmarks dense matrix kernels. The Cholesky benchmarks factor and solve
+ * the dense form of the active integration matrix of a small FEM model,
+ * while the multiply-add benchmarks exercise the fixed-size kernels of
+ * {@link MatrixMulAdd} used when assembling element stiffness blocks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DenseMatrixBenchmark {
+
+   /**
+    * Dense integration matrix and its Cholesky factorization.
+    */
+   @State(Scope.Thread)
+   public static class CholeskyState {
+
+      @Param({"BEAM", "BLOCK"})
+      public Shape shape;
+
+      @Param({"1", "2", "3"})
+      public int res;
+
+      MatrixNd myS;
+      CholeskyDecomposition myChol;
+      VectorNd myX;
+      VectorNd myB;
+
+      @Setup
+      public void setup() {
+         FemProblem prob = new FemProblem (shape, res, false);
+         int size = prob.getSize();
+         myS = new MatrixNd (size, size);
+         prob.getSolveMatrix().getSubMatrix (0, 0, myS);
+         myChol = new CholeskyDecomposition (myS);
+         myB = new VectorNd (size);
+         myB.set (prob.getRhs());
+         myX = new VectorNd (size);
+      }
+   }
+
+   /**
+    * Operands for the multiply-add kernels.
+    */
+   @State(Scope.Thread)
+   public static class MulAddState {
+
+      /**
+       * Inner dimension of the matrices being multiplied.
+       */
+      @Param({"3", "8"})
+      public int inner;
+
+      MatrixNd myM3k;
+      MatrixNd myMk3;
+      MatrixNd myM6k;
+      MatrixNd myMk6;
+      Matrix3d myR3;
+      Matrix6d myR6;
+
+      @Setup
+      public void setup() {
+         myM3k = new MatrixNd (3, inner);
+         myMk3 = new MatrixNd (inner, 3);
+         myM6k = new MatrixNd (6, inner);
+         myMk6 = new MatrixNd (inner, 6);
+         myM3k.setRandom();
+         myMk3.setRandom();
+         myM6k.setRandom();
+         myMk6.setRandom();
+         myR3 = new Matrix3d();
+         myR6 = new Matrix6d();
+      }
+   }
+
+   /**
+    * Cholesky factorization of the dense integration matrix.
+    */
+   @Benchmark
+   public CholeskyDecomposition choleskyFactor (CholeskyState st) {
+      st.myChol.factor (st.myS);
+      return st.myChol;
+   }
+
+   /**
+    * Solve using a previously computed Cholesky factorization.
+    */
+   @Benchmark
+   public VectorNd choleskySolve (CholeskyState st) {
+      st.myChol.solve (st.myX, st.myB);
+      return st.myX;
+   }
+
+   /**
+    * Accumulates the product of a 3 x inner and an inner x 3 matrix.
+    */
+   @Benchmark
+   public Matrix3d mulAdd3x3 (MulAddState st) {
+      st.myR3.setZero();
+      MatrixMulAdd.mulAdd3x3 (st.myR3, st.myM3k, st.myMk3);
+      return st.myR3;
+   }
+
+   /**
+    * Accumulates the product of a 6 x inner and an inner x 6 matrix.
+    */
+   @Benchmark
+   public Matrix6d mulAdd6x6 (MulAddState st) {
+      st.myR6.setZero();
+      MatrixMulAdd.mulAdd6x6 (st.myR6, st.myM6k, st.myMk6);
+      return st.myR6;
+   }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.benchmarks;
+
+import artisynth.core.femmodels.FemFactory;
+import artisynth.core.femmodels.FemModel.IncompMethod;
+import artisynth.core.femmodels.FemModel3d;
+import artisynth.core.femmodels.FemNode;
+import artisynth.core.materials.NeoHookeanMaterial;
+import artisynth.core.mechmodels.MechModel;
+import maspack.matrix.Matrix;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.SparseNumberedBlockMatrix;
+import maspack.matrix.VectorNd;
+
+/**
+ * Creates the linear systems used by the benchmarks, by assembling the
+ * implicit integration matrix of a hexahedral FEM model created with {@link
+ * FemFactory}. The model is either a beam, clamped at one end, or a cube,
+ * clamped at its base, with a resolution that controls the number of
+ * elements and hence the problem size.
+ *
+ * <p>The assembled system has the form used by the backward Euler
+ * integrator,
+ * <pre>
+ *   S = M - h D - h^2 K
+ * </pre>
+ * together with the transposed constraint matrix GT, which is non-empty
+ * only if the model is made incompressible.
+ */
+public class FemProblem {
+
+   /**
+    * Shape of the FEM model used to create the problem.
+    */
+   public enum Shape {
+      /**
+       * Beam of size 1 x 0.2 x 0.2 with 5 res x res x res elements,
+       * clamped at one end.
+       */
+      BEAM,
+
+      /**
+       * Unit cube with res x res x res elements, clamped at its base.
+       */
+      BLOCK
+   }
+
+   private static double EPS = 1e-10;
+
+   MechModel myMech;
+   FemModel3d myFem;
+   SparseNumberedBlockMatrix myS;
+   SparseNumberedBlockMatrix myGT;
+   VectorNd myB;
+   int mySize;
+
+   /**
+    * Creates a problem for a specified shape and resolution.
+    *
+    * @param shape shape of the FEM model
+    * @param res resolution of the FEM model
+    * @param incompressible if <code>true</code>, hard incompressibility
+    * constraints are added to the model
+    */
+   public FemProblem (Shape shape, int res, boolean incompressible) {
+      this (shape, res, incompressible, 0.01);
+   }
+
+   /**
+    * Creates a problem for a specified shape, resolution and time step.
+    *
+    * @param shape shape of the FEM model
+    * @param res resolution of the FEM model
+    * @param incompressible if <code>true</code>, hard incompressibility
+    * constraints are added to the model
+    * @param h time step used to form the integration matrix
+    */
+   public FemProblem (
+      Shape shape, int res, boolean incompressible, double h) {
+
+      myFem = new FemModel3d ("fem");
+      myFem.setDensity (1000);
+      myFem.setMaterial (new NeoHookeanMaterial (50000, 0.33));
+      if (shape == Shape.BEAM) {
+         FemFactory.createHexGrid (myFem, 1.0, 0.2, 0.2, 5*res, res, res);
+         for (FemNode n : myFem.getNodes()) {
+            if (n.getPosition().x <= -0.5+EPS) {
+               n.setDynamic (false);
+            }
+         }
+      }
+      else {
+         FemFactory.createHexGrid (myFem, 1.0, 1.0, 1.0, res, res, res);
+         for (FemNode n : myFem.getNodes()) {
+            if (n.getPosition().z <= -0.5+EPS) {
+               n.setDynamic (false);
+            }
+         }
+      }
+      if (incompressible) {
+         myFem.setIncompressible (IncompMethod.ON);
+      }
+      myMech = new MechModel ("mech");
+      myMech.addModel (myFem);
+      // perturb the model slightly so that the stiffness is not that of the
+      // rest configuration
+      for (FemNode n : myFem.getNodes()) {
+         if (n.isDynamic()) {
+            double z = n.getPosition().z;
+            n.getPosition().z += 0.01*(n.getPosition().x+0.5)*(1+z);
+         }
+      }
+      assemble (h);
+   }
+
+   private void assemble (double h) {
+      mySize = myMech.getActiveVelStateSize();
+
+      myS = new SparseNumberedBlockMatrix();
+      myMech.buildSolveMatrix (myS);
+      myMech.updateForces (0);
+      myMech.addVelJacobian (myS, null, -h);
+      myMech.addPosJacobian (myS, null, -h*h);
+
+      SparseNumberedBlockMatrix M = new SparseNumberedBlockMatrix();
+      myMech.buildMassMatrix (M);
+      myMech.getMassMatrix (M, null, 0);
+      myS.add (M, mySize, mySize);
+
+      myGT = new SparseNumberedBlockMatrix();
+      myMech.getBilateralConstraints (myGT, new VectorNd());
+
+      myB = new VectorNd (mySize);
+      myMech.getActiveForces (myB);
+      myB.scale (h);
+   }
+
+   /**
+    * Returns the FEM model used to create this problem.
+    *
+    * @return FEM model
+    */
+   public FemModel3d getFem() {
+      return myFem;
+   }
+
+   /**
+    * Returns the assembled integration matrix S. Only the leading
+    * {@link #getSize} rows and columns are active.
+    *
+    * @return integration matrix
+    */
+   public SparseNumberedBlockMatrix getSolveMatrix() {
+      return myS;
+   }
+
+   /**
+    * Returns the transpose of the bilateral constraint matrix. This has zero
+    * columns unless the model is incompressible.
+    *
+    * @return transposed constraint matrix
+    */
+   public SparseNumberedBlockMatrix getConstraintMatrix() {
+      return myGT;
+   }
+
+   /**
+    * Returns the right hand side formed from the model forces.
+    *
+    * @return right hand side
+    */
+   public VectorNd getRhs() {
+      return myB;
+   }
+
+   /**
+    * Returns the number of active velocity variables, which is the size of
+    * the active part of the integration matrix.
+    *
+    * @return active problem size
+    */
+   public int getSize() {
+      return mySize;
+   }
+
+   /**
+    * Returns the matrix type of the integration matrix.
+    *
+    * @return matrix type
+    */
+   public int getMatrixType() {
+      return myMech.getSolveMatrixType();
+   }
+
+   /**
+    * Returns the active part of the integration matrix as a matrix of its
+    * own, for use with solvers that require square matrices.
+    *
+    * @return active integration matrix
+    */
+   public SparseBlockMatrix createActiveSolveMatrix() {
+      int nblks = myS.getAlignedBlockRow (mySize);
+      return myS.createSubMatrix (nblks, nblks);
+   }
+
+   public String toString() {
+      return ("size=" + mySize + " numElements=" + myFem.numElements() +
+              " numConstraints=" + myGT.colSize() +
+              " symmetric=" + ((getMatrixType() & Matrix.SYMMETRIC) != 0));
+   }
+
+   public static void main (String[] args) {
+      for (Shape shape : Shape.values()) {
+         for (int res=2; res<=8; res*=2) {
+            FemProblem prob = new FemProblem (shape, res, false);
+            System.out.println (shape + " res=" + res + ": " + prob);
+         }
+      }
+   }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import maspack.geometry.Face;
+import maspack.geometry.MeshFactory;
+import maspack.geometry.PolygonalMesh;
+import maspack.geometry.Vertex3d;
+import maspack.matrix.Point3d;
+import maspack.matrix.Vector3d;
+import maspack.render.RenderObject;
+import maspack.util.BufferUtilities;
+
+/**
+ * Benchmarks the CPU side of building and updating a {@link RenderObject}
+ * for a deforming triangle mesh, with and without packed attribute storage.
+ * The upload benchmark copies the vertex attributes into a native byte
+ * buffer in the same way the GL3 renderer fills its dynamic vertex buffer,
+ * so that no GPU or GL context is required.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderObjectBenchmark {
+
+   public enum Storage {
+      LIST,
+      PACKED
+   };
+
+   @State(Scope.Thread)
+   public static class MeshState {
+
+      @Param({"LIST", "PACKED"})
+      public Storage storage;
+
+      /**
+       * Number of slices used to create the sphere mesh.
+       */
+      @Param({"64", "256"})
+      public int slices;
+
+      PolygonalMesh myMesh;
+      RenderObject myRob;
+      ByteBuffer myBuf;
+      float[] myPositions;
+      float[] myNormals;
+      double myTime;
+
+      @Setup
+      public void setup() {
+         myMesh = MeshFactory.createSphere (1.0, slices);
+         myRob = buildRenderObject (myMesh, storage == Storage.PACKED);
+         myBuf = BufferUtilities.newNativeByteBuffer (
+            myRob.numVertices()*6*4);
+         myPositions = new float[3*myMesh.numVertices()];
+         myNormals = new float[3*myMesh.numVertices()];
+      }
+
+      @TearDown
+      public void tearDown() {
+         BufferUtilities.freeDirectBuffer (myBuf);
+      }
+
+      void deform() {
+         // radial wave, to give the mesh new positions and normals
+         myTime += 0.01;
+         ArrayList<Vertex3d> verts = myMesh.getVertices();
+         for (int i=0; i<verts.size(); i++) {
+            Point3d pnt = verts.get(i).pnt;
+            double s = 1 + 0.01*Math.sin (10*pnt.z + myTime);
+            pnt.scale (s/pnt.norm());
+         }
+         myMesh.notifyVertexPositionsModified();
+      }
+   }
+
+   static RenderObject buildRenderObject (PolygonalMesh mesh, boolean packed) {
+      RenderObject r = new RenderObject();
+      r.setPackedStorage (packed);
+      Vector3d nrm = new Vector3d();
+      for (int i=0; i<mesh.numVertices(); i++) {
+         Point3d pnt = mesh.getVertex(i).pnt;
+         nrm.normalize (pnt); // vertex normal of the sphere
+         r.addPosition ((float)pnt.x, (float)pnt.y, (float)pnt.z);
+         r.addNormal ((float)nrm.x, (float)nrm.y, (float)nrm.z);
+      }
+      r.ensureVertexCapacity (3*mesh.numFaces());
+      for (Face f : mesh.getFaces()) {
+         int[] idxs = f.getVertexIndices();
+         for (int j=1; j<idxs.length-1; j++) {
+            int v0 = r.addVertex (idxs[0], idxs[0]);
+            int v1 = r.addVertex (idxs[j], idxs[j]);
+            int v2 = r.addVertex (idxs[j+1], idxs[j+1]);
+            r.addTriangle (v0, v1, v2);
+         }
+      }
+      return r;
+   }
+
+   /**
+    * Builds the render object from scratch.
+    */
+   @Benchmark
+   public RenderObject build (MeshState s) {
+      return buildRenderObject (s.myMesh, s.storage == Storage.PACKED);
+   }
+
+   /**
+    * Updates the positions and normals of the render object after the mesh
+    * has deformed. With list storage, this uses one call per attribute;
+    * with packed storage, the attributes are packed into arrays and set in
+    * bulk.
+    */
+   @Benchmark
+   public void update (MeshState s) {
+      s.deform();
+      PolygonalMesh mesh = s.myMesh;
+      RenderObject r = s.myRob;
+      Vector3d nrm = new Vector3d();
+      int numv = mesh.numVertices();
+      if (s.storage == Storage.PACKED) {
+         float[] pbuf = s.myPositions;
+         float[] nbuf = s.myNormals;
+         for (int i=0, k=0; i<numv; i++, k+=3) {
+            Point3d pnt = mesh.getVertex(i).pnt;
+            nrm.normalize (pnt);
+            pbuf[k] = (float)pnt.x;
+            pbuf[k+1] = (float)pnt.y;
+            pbuf[k+2] = (float)pnt.z;
+            nbuf[k] = (float)nrm.x;
+            nbuf[k+1] = (float)nrm.y;
+            nbuf[k+2] = (float)nrm.z;
+         }
+         r.setPositions (0, pbuf, 0, numv);
+         r.setNormals (0, nbuf, 0, numv);
+      }
+      else {
+         for (int i=0; i<numv; i++) {
+            Point3d pnt = mesh.getVertex(i).pnt;
+            nrm.normalize (pnt);
+            r.setPosition (i, (float)pnt.x, (float)pnt.y, (float)pnt.z);
+            r.setNormal (i, (float)nrm.x, (float)nrm.y, (float)nrm.z);
+         }
+      }
+   }
+
+   /**
+    * Copies the interleaved vertex positions and normals into a native
+    * buffer, as done when the renderer refreshes its dynamic vertex buffer.
+    */
+   @Benchmark
+   public ByteBuffer upload (MeshState s) {
+      RenderObject r = s.myRob;
+      ByteBuffer buf = s.myBuf;
+      buf.clear();
+      r.readLock();
+      int[] verts = r.getVertexBuffer();
+      int stride = r.getVertexStride();
+      int poff = r.getVertexPositionOffset();
+      int noff = r.getVertexNormalOffset();
+      float[] pdata = r.getPositionData();
+      float[] ndata = r.getNormalData();
+      for (int i=0; i<r.numVertices(); i++) {
+         int base = i*stride;
+         if (pdata != null) {
+            int k = 3*verts[base+poff];
+            buf.putFloat (pdata[k]).putFloat (pdata[k+1]).putFloat (pdata[k+2]);
+            k = 3*verts[base+noff];
+            buf.putFloat (ndata[k]).putFloat (ndata[k+1]).putFloat (ndata[k+2]);
+         }
+         else {
+            float[] pos = r.getPosition (verts[base+poff]);
+            buf.putFloat (pos[0]).putFloat (pos[1]).putFloat (pos[2]);
+            float[] nrm = r.getNormal (verts[base+noff]);
+            buf.putFloat (nrm[0]).putFloat (nrm[1]).putFloat (nrm[2]);
+         }
+      }
+      r.readUnlock();
+      return buf;
+   }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import artisynth.benchmarks.FemProblem.Shape;
+import maspack.matrix.Matrix;
+import maspack.matrix.MatrixNd;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.SparseMatrixNd;
+import maspack.matrix.VectorNd;
+import maspack.solvers.CGSolver;
+import maspack.solvers.IncompleteCholeskyDecomposition;
+import maspack.solvers.KKTSolver;
+import maspack.solvers.KKTSolver.SolverType;
+import maspack.solvers.PardisoSolver;
+
+/**
+ * Benchmarks the sparse linear solvers on the integration matrices of FEM
+ * models. KKT benchmarks optionally include the incompressibility
+ * constraints of the model, so that the solvers are exercised on indefinite
+ * saddle point systems as well as SPD ones.
+ *
+ * <p>The Pardiso benchmarks require the native Pardiso library. If it is not
+ * available, their setup fails and JMH reports an error for them while
+ * continuing with the other benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+   /**
+    * Integration system shared by the solver states.
+    */
+   @State(Scope.Thread)
+   public static class ProblemState {
+
+      @Param({"BEAM", "BLOCK"})
+      public Shape shape;
+
+      @Param({"2", "4", "6"})
+      public int res;
+
+      FemProblem myProb;
+      VectorNd myX;
+
+      void setupProblem (boolean incompressible) {
+         myProb = new FemProblem (shape, res, incompressible);
+         myX = new VectorNd (myProb.getSize());
+      }
+   }
+
+   /**
+    * KKT system and solver.
+    */
+   @State(Scope.Thread)
+   public static class KKTState extends ProblemState {
+
+      @Param({"PARDISO", "SPARSE_LDLT"})
+      public SolverType solverType;
+
+      @Param({"false", "true"})
+      public boolean incompressible;
+
+      KKTSolver mySolver;
+      SparseBlockMatrix myS;
+      SparseBlockMatrix myGT;
+      VectorNd myLam;
+      VectorNd myBg;
+      int mySize;
+
+      @Setup
+      public void setup() {
+         if (solverType == SolverType.PARDISO && !PardisoSolver.isAvailable()) {
+            throw new UnsupportedOperationException (
+               "Pardiso solver is not available");
+         }
+         setupProblem (incompressible);
+         myS = myProb.getSolveMatrix();
+         myGT = myProb.getConstraintMatrix();
+         mySize = myProb.getSize();
+         myLam = new VectorNd (myGT.colSize());
+         myBg = new VectorNd (myGT.colSize());
+         mySolver = new KKTSolver (solverType);
+         mySolver.analyze (myS, mySize, myGT, null, myProb.getMatrixType());
+         mySolver.factor (myS, mySize, myGT, null);
+      }
+   }
+
+   /**
+    * KKT system and sparse LDLT solver, together with a set of right-hand
+    * sides, for comparing blocked and column by column solves.
+    */
+   @State(Scope.Thread)
+   public static class KKTMultiState extends ProblemState {
+
+      /**
+       * Number of right-hand sides.
+       */
+      @Param({"16", "64"})
+      public int nrhs;
+
+      KKTSolver mySolver;
+      SparseBlockMatrix myS;
+      SparseBlockMatrix myGT;
+      MatrixNd myBm;
+      MatrixNd myVel;
+      MatrixNd myLam;
+      VectorNd myBg;
+      VectorNd myBmj;
+      VectorNd myLamj;
+
+      @Setup
+      public void setup() {
+         setupProblem (false);
+         myS = myProb.getSolveMatrix();
+         myGT = myProb.getConstraintMatrix();
+         int size = myProb.getSize();
+         myBm = new MatrixNd (size, nrhs);
+         myBm.setRandom();
+         myVel = new MatrixNd();
+         myLam = new MatrixNd();
+         myBg = new VectorNd (myGT.colSize());
+         myBmj = new VectorNd (size);
+         myLamj = new VectorNd (myGT.colSize());
+         mySolver = new KKTSolver (SolverType.SPARSE_LDLT);
+         mySolver.analyze (myS, size, myGT, null, myProb.getMatrixType());
+         mySolver.factor (myS, size, myGT, null);
+      }
+   }
+
+   /**
+    * Conjugate gradient solver and incomplete Cholesky preconditioner.
+    */
+   @State(Scope.Thread)
+   public static class CGState extends ProblemState {
+
+      CGSolver mySolver;
+      SparseBlockMatrix myS;
+      IncompleteCholeskyDecomposition myPrecond;
+
+      @Setup
+      public void setup() {
+         setupProblem (false);
+         myS = myProb.createActiveSolveMatrix();
+         mySolver = new CGSolver();
+         myPrecond = new IncompleteCholeskyDecomposition();
+         myPrecond.factor (new SparseMatrixNd (myS));
+      }
+   }
+
+   /**
+    * Pardiso solver used directly.
+    */
+   @State(Scope.Thread)
+   public static class PardisoState extends ProblemState {
+
+      PardisoSolver mySolver;
+      SparseBlockMatrix myS;
+
+      @Setup
+      public void setup() {
+         if (!PardisoSolver.isAvailable()) {
+            throw new UnsupportedOperationException (
+               "Pardiso solver is not available");
+         }
+         setupProblem (false);
+         myS = myProb.createActiveSolveMatrix();
+         mySolver = new PardisoSolver();
+         mySolver.analyze (myS, myS.rowSize(), Matrix.SPD);
+         mySolver.factor();
+      }
+   }
+
+   /**
+    * Symbolic analysis of the KKT system.
+    */
+   @Benchmark
+   public KKTSolver kktAnalyze (KKTState st) {
+      st.mySolver.analyze (
+         st.myS, st.mySize, st.myGT, null, st.myProb.getMatrixType());
+      return st.mySolver;
+   }
+
+   /**
+    * Numeric factorization of the KKT system.
+    */
+   @Benchmark
+   public KKTSolver kktFactor (KKTState st) {
+      st.mySolver.factor (st.myS, st.mySize, st.myGT, null);
+      return st.mySolver;
+   }
+
+   /**
+    * Solve using a previously computed KKT factorization.
+    */
+   @Benchmark
+   public VectorNd kktSolve (KKTState st) {
+      st.mySolver.solve (st.myX, st.myLam, st.myProb.getRhs(), st.myBg);
+      return st.myX;
+   }
+
+   /**
+    * Solve for multiple right-hand sides at once, using blocked
+    * substitutions.
+    */
+   @Benchmark
+   public MatrixNd kktSolveMultiple (KKTMultiState st) {
+      st.mySolver.solve (st.myVel, st.myLam, null, st.myBm, st.myBg, null);
+      return st.myVel;
+   }
+
+   /**
+    * Solve for multiple right-hand sides one column at a time, for
+    * comparison with {@link #kktSolveMultiple}.
+    */
+   @Benchmark
+   public VectorNd kktSolveColumns (KKTMultiState st) {
+      for (int j=0; j<st.nrhs; j++) {
+         st.myBm.getColumn (j, st.myBmj);
+         st.mySolver.solve (st.myX, st.myLamj, st.myBmj, st.myBg);
+      }
+      return st.myX;
+   }
+
+   /**
+    * Unpreconditioned conjugate gradient solve from a zero initial guess.
+    */
+   @Benchmark
+   public VectorNd cgSolve (CGState st) {
+      st.myX.setZero();
+      st.mySolver.solve (st.myX, st.myS, st.myProb.getRhs(), 1e-8, 10000);
+      return st.myX;
+   }
+
+   /**
+    * Conjugate gradient solve preconditioned by an incomplete Cholesky
+    * factorization.
+    */
+   @Benchmark
+   public VectorNd cgSolvePreconditioned (CGState st) {
+      st.myX.setZero();
+      st.mySolver.solve (
+         st.myX, st.myS, st.myProb.getRhs(), 1e-8, 10000, st.myPrecond);
+      return st.myX;
+   }
+
+   /**
+    * Numeric factorization using Pardiso.
+    */
+   @Benchmark
+   public PardisoSolver pardisoFactor (PardisoState st) {
+      st.mySolver.factor();
+      return st.mySolver;
+   }
+
+   /**
+    * Solve using a previously computed Pardiso factorization.
+    */
+   @Benchmark
+   public VectorNd pardisoSolve (PardisoState st) {
+      st.mySolver.solve (st.myX, st.myProb.getRhs());
+      return st.myX;
+   }
+}
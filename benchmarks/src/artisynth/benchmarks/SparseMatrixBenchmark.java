@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import artisynth.benchmarks.FemProblem.Shape;
+import maspack.matrix.PackedBlockCRS;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.SparseNumberedBlockMatrix;
+import maspack.matrix.VectorNd;
+
+/**
+ * Benchmarks the sparse block matrix kernels used by the integrators, using
+ * integration matrices assembled from FEM models.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SparseMatrixBenchmark {
+
+   @Param({"BEAM", "BLOCK"})
+   public Shape shape;
+
+   @Param({"2", "4", "8"})
+   public int res;
+
+   SparseNumberedBlockMatrix myS;
+   PackedBlockCRS myPacked;
+   VectorNd myX;
+   VectorNd myXa;
+   VectorNd myYa;
+   VectorNd myY;
+   int mySize;
+
+   @Setup
+   public void setup() {
+      FemProblem prob = new FemProblem (shape, res, false);
+      myS = prob.getSolveMatrix();
+      mySize = prob.getSize();
+      myX = new VectorNd (myS.colSize());
+      myX.setRandom();
+      myY = new VectorNd (myS.rowSize());
+      SparseBlockMatrix Sa = prob.createActiveSolveMatrix();
+      myPacked = new PackedBlockCRS (Sa);
+      myXa = new VectorNd (mySize);
+      myXa.setRandom();
+      myYa = new VectorNd (mySize);
+   }
+
+   /**
+    * Multiplies the active part of the integration matrix by a vector.
+    */
+   @Benchmark
+   public VectorNd mul() {
+      myS.mul (myY, myX, mySize, mySize);
+      return myY;
+   }
+
+   /**
+    * Multiplies the active part of the transposed integration matrix by a
+    * vector.
+    */
+   @Benchmark
+   public VectorNd mulTranspose() {
+      myS.mulTranspose (myY, myX, mySize, mySize);
+      return myY;
+   }
+
+   /**
+    * Multiplies the active integration matrix by a vector, using packed
+    * block CRS storage.
+    */
+   @Benchmark
+   public VectorNd mulPacked() {
+      myPacked.mul (myYa, myXa);
+      return myYa;
+   }
+
+   /**
+    * Refreshes the values of packed block CRS storage from its matrix.
+    */
+   @Benchmark
+   public PackedBlockCRS updatePacked() {
+      myPacked.updateValues();
+      return myPacked;
+   }
+
+   /**
+    * Sets all blocks of the integration matrix to zero, as done at the
+    * start of every solve matrix assembly.
+    */
+   @Benchmark
+   public void setZero (Blackhole bh) {
+      myS.setZero();
+      bh.consume (myS);
+   }
+}
@@ -113,6 +113,20 @@ def getsel (idx=None) :
 def quit () :
     getMain().quit()
 
+def startProfiling (reset=True) :
+    if reset:
+        StepProfiler.reset()
+    StepProfiler.setEnabled (True)
+
+def stopProfiling () :
+    StepProfiler.setEnabled (False)
+
+def printProfile (max=20) :
+    StepProfiler.printSummary (max)
+
+def writeProfile (fileName) :
+    StepProfiler.writeCsv (fileName)
+
 def objectToMatlab (obj, matlabName) :
     mi = getMain().getMatlabConnection()
     if mi != None:
@@ -233,6 +233,7 @@ public class Main implements DriverInterface, ComponentChangeListener {
    private SelectionMode mySelectionMode;
    private boolean myArticulatedTransformsP = true;
    private boolean myInitDraggersInWorldCoordsP = false;
+   private boolean myBinaryModelCachingP = false;
 
    private Translator3d translator3d = new Translator3d();
    private Transrotator3d transrotator3d = new Transrotator3d();
@@ -1818,6 +1819,7 @@ public class Main implements DriverInterface, ComponentChangeListener {
    protected static BooleanHolder useArticulatedTransforms =
       new BooleanHolder (false);
    protected static BooleanHolder noGui = new BooleanHolder (false);
+   protected static BooleanHolder binaryModelCache = new BooleanHolder (false);
    protected static IntHolder glVersion = new IntHolder (3);
    protected static BooleanHolder useGLJPanel = new BooleanHolder (true);
    protected static StringHolder logLevel = 
@@ -2051,6 +2053,9 @@ public class Main implements DriverInterface, ComponentChangeListener {
          "-updateLibs %v #update libraries from ArtiSynth server", updateLibs);
       parser.addOption ("-flags %x #flag bits passed to the application", flags);
       parser.addOption ("-noGui %v #run ArtiSynth without the GUI", noGui);
+      parser.addOption (
+         "-binaryModelCache %v " +
+         "#cache loaded .art model files in binary form", binaryModelCache);
       parser.addOption (
          "-openMatlabConnection %v " +
          "#open a MATLAB connection if possible", openMatlab);
@@ -2287,6 +2292,7 @@ public class Main implements DriverInterface, ComponentChangeListener {
          m.setMouseBindings (mousePrefs.value);
       }
       m.setFlags (flags.value);
+      m.setBinaryModelCaching (binaryModelCache.value);
       if (useBodyVelsInSolve.value) {
          Frame.dynamicVelInWorldCoords = false;
       }
@@ -2546,7 +2552,8 @@ public class Main implements DriverInterface, ComponentChangeListener {
 
       RootModel newRoot = null;
       clearRootModel();
-      ReaderTokenizer rtok = ArtisynthIO.newReaderTokenizer (file);
+      ReaderTokenizer rtok =
+         ArtisynthIO.newModelTokenizer (file, myBinaryModelCachingP);
       if (rtok.nextToken() == ReaderTokenizer.TT_WORD) {
          try {
             newRoot = (RootModel)ClassAliases.newInstance ( 
@@ -2572,6 +2579,16 @@ public class Main implements DriverInterface, ComponentChangeListener {
       System.out.println ("File size: " + file.length());
       //System.out.println ("queue size=" + ModelComponentBase.scanQueueSize());
       rtok.close();
+      try {
+         if (ArtisynthIO.writeBinaryCache (rtok, file)) {
+            System.out.println (
+               "Wrote binary cache " + ArtisynthIO.getBinaryCacheFile (file));
+         }
+      }
+      catch (IOException e) {
+         System.out.println (
+            "Warning: can't write binary cache for " + file + ": " + e);
+      }
 
       String modelName = newRoot.getName();
       if (modelName == null) { // use file name with extension stripped off
@@ -2585,6 +2602,30 @@ public class Main implements DriverInterface, ComponentChangeListener {
       return true;
    }
    
+   /**
+    * Enables or disables binary caching of model files. When enabled, the
+    * tokens read while loading a text model file <code>foo.art</code> are
+    * saved in the binary file <code>foo.artb</code>, and subsequent loads of
+    * <code>foo.art</code> read from <code>foo.artb</code> instead, for as
+    * long as <code>foo.art</code> remains unchanged. Binary files can also
+    * be loaded directly, whether or not caching is enabled.
+    *
+    * @param enable if <code>true</code>, enables binary model caching
+    */
+   public void setBinaryModelCaching (boolean enable) {
+      myBinaryModelCachingP = enable;
+   }
+
+   /**
+    * Queries whether binary caching of model files is enabled.
+    *
+    * @return <code>true</code> if binary model caching is enabled
+    * @see #setBinaryModelCaching
+    */
+   public boolean getBinaryModelCaching() {
+      return myBinaryModelCachingP;
+   }
+
    public void reloadModel() throws IOException {
       if (myModelFile != null) {
          loadModelFile (myModelFile);
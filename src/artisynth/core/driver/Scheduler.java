@@ -157,7 +157,9 @@ public class Scheduler {
       private void applyOutputProbes (double t, ArrayList<Probe> eventProbes) {
          for (Probe p : eventProbes) {
             if (!p.isInput() && p.isActive()) {
+               long t0 = StepProfiler.start();
                p.apply (t);
+               StepProfiler.stop (StepProfiler.Phase.PROBES, p, t0);
             }
          }
       }
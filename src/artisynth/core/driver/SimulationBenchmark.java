@@ -0,0 +1,397 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.driver;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import argparser.ArgParser;
+import argparser.BooleanHolder;
+import argparser.IntHolder;
+import argparser.StringHolder;
+import artisynth.core.modelbase.StepProfiler;
+import artisynth.core.modelbase.StepProfiler.Phase;
+import artisynth.core.util.ArtisynthIO;
+import artisynth.core.util.ArtisynthPath;
+import artisynth.core.workspace.RootModel;
+
+/**
+ * Task manager that measures simulation throughput on a set of
+ * representative models. It is intended to be run without the GUI, as in
+ * <pre>
+ * artisynth -noGui -taskManager artisynth.core.driver.SimulationBenchmark \
+ *    [ -steps 500 -out results.json ]
+ * </pre>
+ * Each model is loaded, advanced for a number of warm-up steps, and then
+ * advanced for a fixed number of timed steps, by calling {@link
+ * RootModel#advance} directly at the model's maximum step size, so that the
+ * results do not depend on the scheduler's real-time pacing. During the timed
+ * steps, {@link StepProfiler} is enabled so that the time spent in each step
+ * phase (force computation, assembly, factor and solve, collision, probes
+ * and controllers) is reported along with the overall step timings. Phase
+ * times are summed over all components, and since phases may nest, they
+ * should not be added together.
+ *
+ * <p>Results are written in JSON (the default) or CSV format, to standard
+ * output or to a file, so that runs on different versions or machines can be
+ * compared. The benchmark exits ArtiSynth when it is done.
+ */
+public class SimulationBenchmark extends TaskManager {
+
+   /**
+    * Models run by default, given as pairs of class and model names. These
+    * cover FEM beams, FEM muscles, collisions, wrapped multi-point springs
+    * and inverse tracking control.
+    */
+   public static final String[] DEFAULT_MODELS = new String[] {
+      "artisynth.demos.fem.FemBeam3d", "FemBeam3d",
+      "artisynth.demos.fem.HexBeam3d", "HexBeam3d",
+      "artisynth.demos.fem.FemMuscleDemo", "FemMuscleDemo",
+      "artisynth.demos.fem.FemCollision", "FemCollision",
+      "artisynth.demos.mech.RigidBodyCollision", "RigidBodyCollision",
+      "artisynth.demos.mech.WrappedMuscleArm", "WrappedMuscleArm",
+      "artisynth.demos.inverse.PointModel2d", "PointModel2d",
+   };
+
+   /**
+    * Results for a single model.
+    */
+   public static class Result {
+      String myClassName;
+      String myModelName;
+      String myError;
+      int myNumSteps;
+      int myNumWarmupSteps;
+      double myStepSize;
+      double myTotalTime;
+      double[] myStepTimes;
+      double[] myPhaseTimes = new double[Phase.values().length];
+      long[] myPhaseCounts = new long[Phase.values().length];
+
+      Result (String className, String modelName) {
+         myClassName = className;
+         myModelName = modelName;
+      }
+
+      /**
+       * Returns the name of the model.
+       */
+      public String getModelName() {
+         return myModelName;
+      }
+
+      /**
+       * Returns an error message if the model could not be loaded or
+       * advanced, or <code>null</code> if it ran successfully.
+       */
+      public String getError() {
+         return myError;
+      }
+
+      /**
+       * Returns the total wall-clock time for the timed steps, in seconds.
+       */
+      public double getTotalTime() {
+         return myTotalTime;
+      }
+
+      /**
+       * Returns the number of timed steps executed per second.
+       */
+      public double getStepsPerSecond() {
+         return myTotalTime > 0 ? myNumSteps/myTotalTime : 0;
+      }
+
+      /**
+       * Returns the time accumulated for a particular phase during the
+       * timed steps, in seconds.
+       */
+      public double getPhaseTime (Phase phase) {
+         return myPhaseTimes[phase.ordinal()];
+      }
+
+      /**
+       * Returns the <code>q</code>-th quantile (0 to 1) of the individual
+       * step times, in seconds.
+       */
+      public double getStepTimeQuantile (double q) {
+         if (myStepTimes == null || myStepTimes.length == 0) {
+            return 0;
+         }
+         double[] sorted = Arrays.copyOf (myStepTimes, myStepTimes.length);
+         Arrays.sort (sorted);
+         int k = (int)Math.round (q*(sorted.length-1));
+         return sorted[Math.max (0, Math.min (k, sorted.length-1))];
+      }
+   }
+
+   StringHolder myModels = new StringHolder (null);
+   IntHolder myNumSteps = new IntHolder (200);
+   IntHolder myNumWarmupSteps = new IntHolder (20);
+   StringHolder myOutFile = new StringHolder (null);
+   StringHolder myFormat = new StringHolder ("json");
+   BooleanHolder myNoExit = new BooleanHolder (false);
+
+   ArrayList<Result> myResults = new ArrayList<Result>();
+
+   /**
+    * Loads and benchmarks a single model.
+    *
+    * @param className name of the RootModel class
+    * @param modelName name to give the model
+    * @param nsteps number of timed steps
+    * @param nwarmup number of warm-up steps
+    * @return benchmark results
+    */
+   public Result runModel (
+      String className, String modelName, int nsteps, int nwarmup) {
+
+      Main main = getMain();
+      Result res = new Result (className, modelName);
+      res.myNumSteps = nsteps;
+      res.myNumWarmupSteps = nwarmup;
+      if (!main.loadModel (className, modelName, null)) {
+         res.myError = "cannot load model: " + main.getErrorMessage();
+         return res;
+      }
+      RootModel root = main.getRootModel();
+      double h = root.getMaxStepSize();
+      res.myStepSize = h;
+      double t = 0;
+      try {
+         for (int i=0; i<nwarmup; i++) {
+            root.advance (t, t+h, 0);
+            t += h;
+         }
+         res.myStepTimes = new double[nsteps];
+         StepProfiler.reset();
+         StepProfiler.setEnabled (true);
+         long tstart = System.nanoTime();
+         for (int i=0; i<nsteps; i++) {
+            long t0 = System.nanoTime();
+            root.advance (t, t+h, 0);
+            t += h;
+            res.myStepTimes[i] = (System.nanoTime()-t0)/1e9;
+         }
+         res.myTotalTime = (System.nanoTime()-tstart)/1e9;
+      }
+      catch (Exception e) {
+         res.myError = "advance failed at time " + t + ": " + e;
+      }
+      finally {
+         StepProfiler.setEnabled (false);
+      }
+      for (Phase phase : Phase.values()) {
+         res.myPhaseTimes[phase.ordinal()] = StepProfiler.getTime (phase);
+         res.myPhaseCounts[phase.ordinal()] = StepProfiler.getCount (phase);
+      }
+      return res;
+   }
+
+   /**
+    * Returns the results accumulated so far.
+    *
+    * @return list of results
+    */
+   public ArrayList<Result> getResults() {
+      return myResults;
+   }
+
+   private static String quote (String str) {
+      if (str == null) {
+         return "null";
+      }
+      StringBuilder sb = new StringBuilder();
+      sb.append ('"');
+      for (int i=0; i<str.length(); i++) {
+         char c = str.charAt(i);
+         if (c == '"' || c == '\\') {
+            sb.append ('\\');
+            sb.append (c);
+         }
+         else if (c < ' ') {
+            sb.append (String.format ("\\u%04x", (int)c));
+         }
+         else {
+            sb.append (c);
+         }
+      }
+      sb.append ('"');
+      return sb.toString();
+   }
+
+   private static String getArtiSynthVersion() {
+      try {
+         BufferedReader reader =
+            new BufferedReader (new FileReader (
+               ArtisynthPath.getHomeRelativeFile ("VERSION", ".")));
+         String version = reader.readLine();
+         reader.close();
+         return version;
+      }
+      catch (IOException e) {
+         return "unknown";
+      }
+   }
+
+   /**
+    * Writes results in JSON format.
+    *
+    * @param pw writer to write to
+    * @param results results to write
+    */
+   public void writeJson (PrintWriter pw, ArrayList<Result> results) {
+      pw.println ("{");
+      pw.println ("  \"artisynthVersion\": "+quote(getArtiSynthVersion())+",");
+      pw.println (
+         "  \"javaVersion\": "+quote(System.getProperty("java.version"))+",");
+      pw.println (
+         "  \"os\": "+quote(System.getProperty("os.name")+" "+
+                            System.getProperty("os.arch"))+",");
+      pw.println (
+         "  \"numProcessors\": "+Runtime.getRuntime().availableProcessors()+",");
+      pw.println ("  \"models\": [");
+      for (int k=0; k<results.size(); k++) {
+         Result res = results.get(k);
+         pw.println ("    {");
+         pw.println ("      \"name\": "+quote(res.myModelName)+",");
+         pw.println ("      \"class\": "+quote(res.myClassName)+",");
+         pw.println ("      \"error\": "+quote(res.myError)+",");
+         pw.println ("      \"steps\": "+res.myNumSteps+",");
+         pw.println ("      \"warmupSteps\": "+res.myNumWarmupSteps+",");
+         pw.println ("      \"stepSize\": "+res.myStepSize+",");
+         pw.println ("      \"totalTime\": "+res.myTotalTime+",");
+         pw.println ("      \"stepsPerSecond\": "+res.getStepsPerSecond()+",");
+         pw.println ("      \"stepTime\": {");
+         pw.println ("        \"min\": "+res.getStepTimeQuantile(0)+",");
+         pw.println ("        \"median\": "+res.getStepTimeQuantile(0.5)+",");
+         pw.println ("        \"p90\": "+res.getStepTimeQuantile(0.9)+",");
+         pw.println ("        \"max\": "+res.getStepTimeQuantile(1));
+         pw.println ("      },");
+         pw.println ("      \"phases\": {");
+         Phase[] phases = Phase.values();
+         for (int i=0; i<phases.length; i++) {
+            pw.println (
+               "        "+quote(phases[i].toString())+
+               ": { \"time\": "+res.myPhaseTimes[i]+
+               ", \"count\": "+res.myPhaseCounts[i]+" }"+
+               (i < phases.length-1 ? "," : ""));
+         }
+         pw.println ("      }");
+         pw.println ("    }" + (k < results.size()-1 ? "," : ""));
+      }
+      pw.println ("  ]");
+      pw.println ("}");
+      pw.flush();
+   }
+
+   /**
+    * Writes results in CSV format, with one line per model.
+    *
+    * @param pw writer to write to
+    * @param results results to write
+    */
+   public void writeCsv (PrintWriter pw, ArrayList<Result> results) {
+      StringBuilder sb = new StringBuilder();
+      sb.append ("name,steps,stepSize,totalTime,stepsPerSecond,");
+      sb.append ("minStepTime,medianStepTime,maxStepTime");
+      for (Phase phase : Phase.values()) {
+         sb.append (","+phase+"_time");
+      }
+      sb.append (",error");
+      pw.println (sb.toString());
+      for (Result res : results) {
+         sb.setLength (0);
+         sb.append (res.myModelName+","+res.myNumSteps+","+res.myStepSize);
+         sb.append (","+res.myTotalTime+","+res.getStepsPerSecond());
+         sb.append (","+res.getStepTimeQuantile(0));
+         sb.append (","+res.getStepTimeQuantile(0.5));
+         sb.append (","+res.getStepTimeQuantile(1));
+         for (Phase phase : Phase.values()) {
+            sb.append (","+res.getPhaseTime(phase));
+         }
+         sb.append (","+(res.myError != null ? quote(res.myError) : ""));
+         pw.println (sb.toString());
+      }
+      pw.flush();
+   }
+
+   private void writeResults() throws IOException {
+      PrintWriter pw;
+      if (myOutFile.value != null) {
+         pw = ArtisynthIO.newIndentingPrintWriter (myOutFile.value);
+      }
+      else {
+         pw = new PrintWriter (System.out);
+      }
+      if (myFormat.value.equalsIgnoreCase ("csv")) {
+         writeCsv (pw, myResults);
+      }
+      else {
+         writeJson (pw, myResults);
+      }
+      if (myOutFile.value != null) {
+         pw.close();
+      }
+   }
+
+   public void run() {
+      ArgParser parser = new ArgParser (
+         "-taskManager artisynth.core.driver.SimulationBenchmark [ options ]");
+      parser.addOption (
+         "-models %s #comma-separated list of model classes to run",
+         myModels);
+      parser.addOption ("-steps %d #number of timed steps", myNumSteps);
+      parser.addOption ("-warmup %d #number of warm-up steps", myNumWarmupSteps);
+      parser.addOption ("-out %s #output file (default is stdout)", myOutFile);
+      parser.addOption ("-format %s{json,csv} #output format", myFormat);
+      parser.addOption (
+         "-noExit %v #do not exit ArtiSynth when finished", myNoExit);
+      parser.matchAllArgs (getArgs());
+
+      ArrayList<String> classNames = new ArrayList<String>();
+      ArrayList<String> modelNames = new ArrayList<String>();
+      if (myModels.value != null) {
+         for (String className : myModels.value.split (",")) {
+            className = className.trim();
+            classNames.add (className);
+            modelNames.add (
+               className.substring (className.lastIndexOf ('.')+1));
+         }
+      }
+      else {
+         for (int i=0; i<DEFAULT_MODELS.length; i+=2) {
+            classNames.add (DEFAULT_MODELS[i]);
+            modelNames.add (DEFAULT_MODELS[i+1]);
+         }
+      }
+      Main main = getMain();
+      main.maskFocusStealing (true);
+      for (int i=0; i<classNames.size(); i++) {
+         Result res = runModel (
+            classNames.get(i), modelNames.get(i),
+            myNumSteps.value, myNumWarmupSteps.value);
+         if (res.myError != null) {
+            System.err.println (res.myModelName + ": " + res.myError);
+         }
+         myResults.add (res);
+      }
+      try {
+         writeResults();
+      }
+      catch (IOException e) {
+         System.err.println ("Error writing results: " + e.getMessage());
+      }
+      if (!myNoExit.value) {
+         main.quit();
+      }
+   }
+}
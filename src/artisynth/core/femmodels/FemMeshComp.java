@@ -622,6 +622,25 @@ implements CollidableBody, PointAttachable {
 
    public static FemMeshComp createEmbedded (
       FemMeshComp surf, MeshBase mesh, FemModel3d fem) {
+      return createEmbedded (surf, mesh, fem, 1);
+   }
+
+   /**
+    * Embeds a mesh within an FEM model, attaching each vertex to the
+    * element that contains it, or to the nearest surface element if it lies
+    * outside the model. The elements for all the vertices are found in a
+    * single call to {@link FemModel3d#findNearestElements}, using
+    * <code>numThreads</code> threads.
+    *
+    * @param surf mesh component to embed the mesh into. If
+    * <code>null</code>, a new component is created.
+    * @param mesh mesh to embed
+    * @param fem FEM model in which to embed the mesh
+    * @param numThreads number of threads used to locate the vertices
+    * @return mesh component containing the embedded mesh
+    */
+   public static FemMeshComp createEmbedded (
+      FemMeshComp surf, MeshBase mesh, FemModel3d fem, int numThreads) {
 
       double reduceTol = 1e-8;
 
@@ -635,6 +654,15 @@ implements CollidableBody, PointAttachable {
       ArrayList<Vertex3d> verts = mesh.getVertices();
 
       surf.myVertexAttachments.clear();
+      Point3d[] pnts = new Point3d[verts.size()];
+      for (int i=0; i<verts.size(); i++) {
+         pnts[i] = verts.get(i).pnt;
+      }
+      // won't use projected locations since we're not projecting vertices
+      // onto the FEM
+      FemElement3d[] elems = new FemElement3d[verts.size()];
+      surf.myFem.findNearestElements (
+         elems, null, pnts, pnts.length, numThreads);
       for (int i=0; i<verts.size(); i++) {
          // this could works very similarly to the code that adds
          // marker points into a mesh
@@ -647,12 +675,7 @@ implements CollidableBody, PointAttachable {
          // }
          // else 
          {
-            FemElement3d elem = surf.myFem.findContainingElement (vtx.pnt);
-            Point3d newLoc = new Point3d(vtx.pnt);
-            if (elem == null) {
-               // won't use newLoc since we're not projecting vertex onto FEM
-               elem = surf.myFem.findNearestSurfaceElement (newLoc, vtx.pnt);
-            }
+            FemElement3d elem = elems[i];
             VectorNd coords = new VectorNd (elem.numNodes());
 
             // first see if there's a node within reduceTol of the point,
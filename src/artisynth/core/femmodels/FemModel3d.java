@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import artisynth.core.modelbase.ModelComponent;
 import artisynth.core.modelbase.ModelComponentBase;
 import artisynth.core.modelbase.RenderableComponentList;
 import artisynth.core.modelbase.StepAdjustment;
+import artisynth.core.modelbase.StepProfiler;
 import artisynth.core.modelbase.StructureChangeEvent;
 import artisynth.core.modelbase.TransformGeometryContext;
 import artisynth.core.modelbase.TransformableGeometry;
@@ -56,6 +58,7 @@ import artisynth.core.util.IntegerToken;
 import artisynth.core.util.ScalableUnits;
 import artisynth.core.util.ScanToken;
 import artisynth.core.util.StringToken;
+import maspack.concurrency.ParallelLoop;
 import maspack.geometry.AABBTree;
 import maspack.geometry.BVFeatureQuery;
 import maspack.geometry.BVNode;
@@ -104,7 +107,6 @@ import maspack.util.ArraySupport;
 import maspack.util.DataBuffer;
 import maspack.util.DoubleInterval;
 import maspack.util.EnumRange;
-import maspack.util.FunctionTimer;
 import maspack.util.IndentingPrintWriter;
 import maspack.util.InternalErrorException;
 import maspack.util.NumberFormat;
@@ -144,16 +146,15 @@ PointAttachable, ConnectableBody {
    protected boolean myWarnOnInvertedElems = true;
    protected boolean myCheckForInvertedElems = true;
 
-   protected FunctionTimer timer = new FunctionTimer();
-
-   protected void timerStart() {
-      timer.start();
-   }
-
-   protected void timerStop(String msg) {
-      timer.stop();
-      System.out.println(msg + ": " + timer.result(1));
-   }
+   public static int DEFAULT_NUM_ASSEMBLY_THREADS = 1;
+   protected int myNumAssemblyThreads = DEFAULT_NUM_ASSEMBLY_THREADS;
+   // minimum number of elements of one color assigned to each thread when
+   // computing stresses and stiffnesses in parallel
+   private static int MIN_ELEMENTS_PER_THREAD = 16;
+   // element coloring used for parallel assembly; null if not yet computed
+   protected int[][] myElementColoring = null;
+   protected ParallelLoop myAssemblyLoop = null;
+   protected StressWorkspace[] myStressWorkspaces = null;
 
    protected AABBTree myAABBTree;
    protected boolean myBVTreeValid;
@@ -267,6 +268,10 @@ PointAttachable, ConnectableBody {
       myProps.add (
          "collidable", 
          "sets the collidability of the FEM", DEFAULT_COLLIDABILITY);
+      myProps.add (
+         "numAssemblyThreads",
+         "number of threads used to compute element stresses and stiffnesses",
+         DEFAULT_NUM_ASSEMBLY_THREADS, "[1,inf]");
    }
 
    public PropertyList getAllPropertyInfo() {
@@ -295,6 +300,50 @@ PointAttachable, ConnectableBody {
       return myElementWidgetSizeMode;
    }
 
+   /**
+    * Returns the number of threads used to compute the element stresses and
+    * stiffnesses.
+    *
+    * @return number of assembly threads
+    * @see #setNumAssemblyThreads
+    */
+   public int getNumAssemblyThreads() {
+      return myNumAssemblyThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute the element stresses and
+    * stiffnesses. If greater than one, the elements are partitioned into
+    * colors such that no two elements of the same color share a node, and
+    * the elements of each color are then processed concurrently. The
+    * resulting forces and stiffnesses are the same as those computed
+    * serially, to within round-off error, and do not depend on the number of
+    * threads. The default value is 1.
+    *
+    * <p>Concurrent processing requires that the materials used by the
+    * model are reentrant, which is true for all the built-in materials.
+    *
+    * @param num number of assembly threads
+    */
+   public void setNumAssemblyThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive");
+      }
+      if (num != myNumAssemblyThreads) {
+         myNumAssemblyThreads = num;
+         disposeAssemblyThreads();
+      }
+   }
+
+   private void disposeAssemblyThreads() {
+      if (myAssemblyLoop != null) {
+         myAssemblyLoop.dispose();
+         myAssemblyLoop = null;
+      }
+      myStressWorkspaces = null;
+   }
+
    @Override
    public void getCollidables(List<Collidable> list, int level) {
       list.add(this);
@@ -721,24 +770,109 @@ PointAttachable, ConnectableBody {
       }
    }
 
+   /**
+    * Storage used when computing the stress and stiffness of individual
+    * elements. One workspace is allocated for each thread used in the
+    * computation. Workspaces used by threads other than the calling thread
+    * also contain private copies of the integration points, which are
+    * otherwise shared by all elements of the same type.
+    */
+   protected static class StressWorkspace {
+      Matrix6d D = new Matrix6d();
+      Matrix6d Dtmp = new Matrix6d();
+      SolidDeformation def = new SolidDeformation();
+      SymmetricMatrix3d sigma = new SymmetricMatrix3d();
+      SymmetricMatrix3d sigmaTmp = new SymmetricMatrix3d();
+      SymmetricMatrix3d C = new SymmetricMatrix3d();
+
+      // temp space for computing pressures
+      VectorNd pressures = new VectorNd(MAX_PRESSURE_VALS);
+      MatrixNd Rinv = new MatrixNd();
+      // temp space for computing pressure stiffness
+      double[] Kp = new double[MAX_PRESSURE_VALS];
+      // temp space for computing nodal incompressibility constraints
+      Vector3d[] nodalConstraints = new Vector3d[MAX_NODAL_INCOMP_NODES];
+
+      // private copies of shared integration points, or null if the
+      // shared points should be used directly
+      IdentityHashMap<Object,Object> myPointCopies;
+
+      // tallies for inverted elements and tangent stability
+      double minDetJ;
+      FemElement3d minDetJElement;
+      int numInverted;
+      double minStability;
+      FemElement3d minStabilityElement;
+
+      StressWorkspace (boolean copyPoints) {
+         for (int i = 0; i < MAX_NODAL_INCOMP_NODES; i++) {
+            nodalConstraints[i] = new Vector3d();
+         }
+         if (copyPoints) {
+            myPointCopies = new IdentityHashMap<Object,Object>();
+         }
+         clearTallies();
+      }
+
+      void clearTallies() {
+         minDetJ = Double.MAX_VALUE;
+         minDetJElement = null;
+         numInverted = 0;
+         minStability = Double.MAX_VALUE;
+         minStabilityElement = null;
+      }
+
+      IntegrationPoint3d[] getIntegrationPoints (FemElement3d e) {
+         IntegrationPoint3d[] ipnts = e.getIntegrationPoints();
+         if (myPointCopies == null) {
+            return ipnts;
+         }
+         IntegrationPoint3d[] copy = (IntegrationPoint3d[])myPointCopies.get(ipnts);
+         if (copy == null) {
+            copy = new IntegrationPoint3d[ipnts.length];
+            for (int k = 0; k < ipnts.length; k++) {
+               copy[k] = new IntegrationPoint3d(ipnts[k]);
+            }
+            myPointCopies.put(ipnts, copy);
+         }
+         return copy;
+      }
+
+      IntegrationPoint3d getWarpingPoint (FemElement3d e) {
+         IntegrationPoint3d wpnt = e.getWarpingPoint();
+         if (myPointCopies == null) {
+            return wpnt;
+         }
+         IntegrationPoint3d copy = (IntegrationPoint3d)myPointCopies.get(wpnt);
+         if (copy == null) {
+            copy = new IntegrationPoint3d(wpnt);
+            myPointCopies.put(wpnt, copy);
+         }
+         return copy;
+      }
+   }
+
    protected void computePressuresAndRinv(
-      FemElement3d e, IncompressibleMaterial imat, double scale) {
+      FemElement3d e, IncompressibleMaterial imat, double scale,
+      StressWorkspace ws) {
 
       int npvals = e.numPressureVals();
 
-      myRinv.setSize(npvals, npvals);
-      myPressures.setSize(npvals);
+      MatrixNd Rinv = ws.Rinv;
+      VectorNd pressures = ws.pressures;
+      Rinv.setSize(npvals, npvals);
+      pressures.setSize(npvals);
 
-      double[] pbuf = myPressures.getBuffer();
+      double[] pbuf = pressures.getBuffer();
       double restVol = e.getRestVolume();
 
       if (npvals > 1) {
-         myPressures.setZero();
-         IntegrationPoint3d[] ipnts = e.getIntegrationPoints();
+         pressures.setZero();
+         IntegrationPoint3d[] ipnts = ws.getIntegrationPoints(e);
          IntegrationData3d[] idata = e.getIntegrationData();
 
          if (imat.getBulkPotential() != BulkPotential.QUADRATIC) {
-            myRinv.setZero();
+            Rinv.setZero();
          }
          for (int k = 0; k < ipnts.length; k++) {
             IntegrationPoint3d pt = ipnts[k];
@@ -754,46 +888,46 @@ PointAttachable, ConnectableBody {
                double mod = imat.getEffectiveModulus(detJ);
                for (int i = 0; i < npvals; i++) {
                   for (int j = 0; j < npvals; j++) {
-                     myRinv.add(i, j, H[i] * H[j] * mod * dV);
+                     Rinv.add(i, j, H[i] * H[j] * mod * dV);
                   }
                }
             }
          }
          Matrix W = e.getPressureWeightMatrix();
-         W.mul(myPressures, myPressures);
-         myPressures.scale(1 / restVol);
+         W.mul(pressures, pressures);
+         pressures.scale(1 / restVol);
          if (imat.getBulkPotential() == BulkPotential.QUADRATIC) {
-            myRinv.set(W);
-            myRinv.scale(scale*imat.getBulkModulus() / restVol);
+            Rinv.set(W);
+            Rinv.scale(scale*imat.getBulkModulus() / restVol);
          }
          else {
             // optimize later
             MatrixNd Wtmp = new MatrixNd(W);
             Wtmp.scale(scale / restVol);
-            myRinv.mul(Wtmp);
-            myRinv.mul(Wtmp, myRinv);
+            Rinv.mul(Wtmp);
+            Rinv.mul(Wtmp, Rinv);
          }
       }
       else {
          double Jpartial = e.myVolumes[0] / e.myRestVolumes[0];
          pbuf[0] = (imat.getEffectivePressure(Jpartial) +
             0 * e.myLagrangePressures[0]);
-         myRinv.set(0, 0, scale*imat.getEffectiveModulus(Jpartial) / restVol);
+         Rinv.set(0, 0, scale*imat.getEffectiveModulus(Jpartial) / restVol);
       }
    }
 
    // DIVBLK
    private void computeStressAndStiffness(FemElement3d e, FemMaterial mat, 
-      Matrix6d D, IncompMethod softIncomp) {
+      Matrix6d D, IncompMethod softIncomp, StressWorkspace ws) {
 
-      IntegrationPoint3d[] ipnts = e.getIntegrationPoints();
+      IntegrationPoint3d[] ipnts = ws.getIntegrationPoints(e);
       IntegrationData3d[] idata = e.getIntegrationData();
       FemNode3d[] nodes = e.getNodes();
       if (D != null) {
          D.setZero();
       }
 
-      SolidDeformation def = new SolidDeformation();
+      SolidDeformation def = ws.def;
 
       //===========================================
       // linear material optimizations
@@ -806,7 +940,7 @@ PointAttachable, ConnectableBody {
       if (!warper.isCacheEmpty()) {
 
          // compute warping rotation
-         warper.computeWarpingRotation(e);
+         warper.computeWarpingRotation(e, ws.getWarpingPoint(e));
 
          // add force and stiffness
          for (int i = 0; i < nodes.length; i++) {
@@ -830,7 +964,7 @@ PointAttachable, ConnectableBody {
 
             // estimate at warping point
             RotationMatrix3d R = warper.getRotation();
-            IntegrationPoint3d wpnt = e.getWarpingPoint();
+            IntegrationPoint3d wpnt = ws.getWarpingPoint(e);
             IntegrationData3d wdata = e.getWarpingData();
             wpnt.computeJacobianAndGradient(nodes, wdata.myInvJ0);
 
@@ -839,8 +973,9 @@ PointAttachable, ConnectableBody {
             def.setAveragePressure(0);
             def.setR(R);
 
-            SymmetricMatrix3d sigma = new SymmetricMatrix3d();
-            SymmetricMatrix3d tmp = new SymmetricMatrix3d();
+            SymmetricMatrix3d sigma = ws.sigma;
+            SymmetricMatrix3d tmp = ws.sigmaTmp;
+            sigma.setZero();
 
             // compute nodal stress at wpnt
             if (myComputeNodalStress) {
@@ -901,10 +1036,10 @@ PointAttachable, ConnectableBody {
       //===========================================
 
       // temporary stress and tangent
-      SymmetricMatrix3d sigmaTmp = new SymmetricMatrix3d();
+      SymmetricMatrix3d sigmaTmp = ws.sigmaTmp;
       Matrix6d Dtmp = null;
       if (D != null) {
-         Dtmp = new Matrix6d();
+         Dtmp = ws.Dtmp;
       }
 
       // viscoelastic behaviour
@@ -920,12 +1055,12 @@ PointAttachable, ConnectableBody {
          imat = (IncompressibleMaterial)mat;
       }
       MatrixBlock[] constraints = null;
-      SymmetricMatrix3d C = new SymmetricMatrix3d();
+      SymmetricMatrix3d C = ws.C;
 
       // initialize incompressible pressure
-      double[] pbuf = myPressures.getBuffer();
+      double[] pbuf = ws.pressures.getBuffer();
       if (mat.isIncompressible() && softIncomp == IncompMethod.ELEMENT) {
-         computePressuresAndRinv (e, imat, vebTangentScale);
+         computePressuresAndRinv (e, imat, vebTangentScale, ws);
          if (D != null) {
             constraints = e.getIncompressConstraints();
             for (int i = 0; i < e.myNodes.length; i++) {
@@ -950,13 +1085,13 @@ PointAttachable, ConnectableBody {
          def.setR(null);
 
          double detJ = pt.computeInverseJacobian();
-         if (detJ < myMinDetJ) {
-            myMinDetJ = detJ;
-            myMinDetJElement = e;
+         if (detJ < ws.minDetJ) {
+            ws.minDetJ = detJ;
+            ws.minDetJElement = e;
          }
          if (detJ <= 0 && !invertibleMaterials) {
             e.setInverted(true);
-            myNumInverted++;
+            ws.numInverted++;
          }
 
          // compute shape function gradient and volume fraction
@@ -1170,16 +1305,16 @@ PointAttachable, ConnectableBody {
       // tet nodal incompressibility
       if (D != null && mat.isIncompressible() && softIncomp == IncompMethod.NODAL) {
          if (e instanceof TetElement) {
-            ((TetElement)e).getAreaWeightedNormals(myNodalConstraints);
+            ((TetElement)e).getAreaWeightedNormals(ws.nodalConstraints);
             for (int i = 0; i < 4; i++) {
-               myNodalConstraints[i].scale(-1 / 12.0);
+               ws.nodalConstraints[i].scale(-1 / 12.0);
             }
 
             for (int i=0; i<e.numNodes(); ++i) {
                for (FemNodeNeighbor nbr : getNodeNeighbors(e.myNodes[i])) {
                   int j = e.getLocalNodeIndex(nbr.myNode);
                   if (j != -1) {
-                     nbr.myDivBlk.scaledAdd(1, myNodalConstraints[j]);
+                     nbr.myDivBlk.scaledAdd(1, ws.nodalConstraints[j]);
                   }
                }
             }
@@ -1193,9 +1328,9 @@ PointAttachable, ConnectableBody {
             int npvals = e.numPressureVals();
             for (int l = 0; l < npvals; l++) {
                double Jpartial = e.myVolumes[l] / e.myRestVolumes[l];
-               myKp[l] =
+               ws.Kp[l] =
                   imat.getEffectiveModulus(Jpartial) / e.myRestVolumes[l];
-               if (myKp[l] != 0) {
+               if (ws.Kp[l] != 0) {
                   kpIsNonzero = true;
                }
             }
@@ -1208,7 +1343,7 @@ PointAttachable, ConnectableBody {
                         int bj = e.myNodes[j].getSolveIndex();
                         if (!mySolveMatrixSymmetricP || bj >= bi) {
                            e.myNbrs[i][j].addDilationalStiffness(
-                              myRinv, constraints[i], constraints[j]);
+                              ws.Rinv, constraints[i], constraints[j]);
                         } // end filling in symmetric
                      } // end filling in dilatational stiffness
                   } // end checking if valid index
@@ -1383,6 +1518,7 @@ PointAttachable, ConnectableBody {
    // DIVBLK
    public void updateStressAndStiffness() {
 
+      long t0 = StepProfiler.start (isProfilingActive());
       // allocate or deallocate nodal incompressibility blocks
       setNodalIncompBlocksAllocated (getSoftIncompMethod()==IncompMethod.NODAL);
 
@@ -1424,35 +1560,17 @@ PointAttachable, ConnectableBody {
          }
       }
 
-      Matrix6d D = new Matrix6d();
       // compute new forces as well as stiffness matrix if warping is enabled
 
       myMinDetJ = Double.MAX_VALUE;
       myMinDetJElement = null;
       myNumInverted = 0;
 
-      double mins = Double.MAX_VALUE;
-      FemElement3d minE = null;
-
-      for (FemElement3d e : myElements) {
-         FemMaterial mat = getElementMaterial(e);
-         computeStressAndStiffness(e, mat, D, softIncomp);
-         if (checkTangentStability) {
-            double s = checkMatrixStability(D);
-            if (s < mins) {
-               mins = s;
-               minE = e;
-            }
-         }
-      }
+      computeElementStresses (/*computeTangent=*/true, softIncomp);
 
       // incompressibility
       if ( (softIncomp == IncompMethod.NODAL) && myMaterial != null && myMaterial.isIncompressible()) {
-         computeNodalIncompressibility((IncompressibleMaterial)myMaterial, D);
-      }
-
-      if (checkTangentStability && minE != null) {
-         System.out.println("min s=" + mins + ", element " + minE.getNumber());
+         computeNodalIncompressibility((IncompressibleMaterial)myMaterial, null);
       }
 
       if (myNumInverted > 0) {
@@ -1493,12 +1611,12 @@ PointAttachable, ConnectableBody {
       }
       myStiffnessesValidP = true;
       myStressesValidP = true;
-      // timerStop("stressAndStiffness");
+      StepProfiler.stop (StepProfiler.Phase.STRESS_STIFFNESS, this, t0);
    }
 
    public void updateStress() {
       // clear existing internal forces and maybe stiffnesses
-      timerStart();
+      long t0 = StepProfiler.start (isProfilingActive());
       for (FemNode3d n : myNodes) {
          n.myInternalForce.setZero();
          for (FemNodeNeighbor nbr : getNodeNeighbors(n)) {
@@ -1526,12 +1644,132 @@ PointAttachable, ConnectableBody {
 
       // compute new forces as well as stiffness matrix if warping is enabled
       // myMinDetJ = Double.MAX_VALUE;
+      computeElementStresses (/*computeTangent=*/false, softIncomp);
+      myStressesValidP = true;
+      StepProfiler.stop (StepProfiler.Phase.STRESS_STIFFNESS, this, t0);
+   }
+
+   private StressWorkspace[] getStressWorkspaces (int num) {
+      if (myStressWorkspaces == null || myStressWorkspaces.length < num) {
+         StressWorkspace[] workspaces = new StressWorkspace[num];
+         for (int i = 0; i < num; i++) {
+            if (myStressWorkspaces != null && i < myStressWorkspaces.length) {
+               workspaces[i] = myStressWorkspaces[i];
+            }
+            else {
+               // the first workspace is used by the calling thread and so
+               // can use the shared integration points
+               workspaces[i] = new StressWorkspace(/*copyPoints=*/i > 0);
+            }
+         }
+         myStressWorkspaces = workspaces;
+      }
+      return myStressWorkspaces;
+   }
+
+   /**
+    * Returns the element coloring used for parallel stress and stiffness
+    * computation, computing it if necessary.
+    */
+   protected int[][] getElementColoring() {
+      if (myElementColoring == null) {
+         myElementColoring = FemUtilities.computeElementColoring(myElements);
+      }
+      return myElementColoring;
+   }
+
+   /**
+    * Performs, in a single thread, any lazy initialization of element data
+    * that would otherwise be done within computeStressAndStiffness(). This
+    * must be called before the elements are processed concurrently, since
+    * some of this data is shared between elements of the same type.
+    */
+   private void prepareElementsForConcurrentStress() {
       for (FemElement3d e : myElements) {
+         e.getIntegrationPoints();
+         e.getWarpingPoint();
+         e.getIntegrationData();
+         e.getWarpingData();
+         e.getStiffnessWarper();
+         e.getNodalExtrapolationMatrix();
+         if (e.numPressureVals() > 1) {
+            e.getPressureWeightMatrix();
+         }
+         e.getIncompressConstraints();
+      }
+   }
+
+   private void computeElementStresses (
+      int[] elemIdxs, int lo, int hi, boolean computeTangent,
+      IncompMethod softIncomp, StressWorkspace ws) {
+
+      Matrix6d D = (computeTangent ? ws.D : null);
+      for (int k = lo; k < hi; k++) {
+         FemElement3d e = myElements.get(elemIdxs != null ? elemIdxs[k] : k);
          FemMaterial mat = getElementMaterial(e);
-         computeStressAndStiffness(
-            e, mat, /* D= */null, softIncomp);
+         computeStressAndStiffness(e, mat, D, softIncomp, ws);
+         if (D != null && checkTangentStability) {
+            double s = checkMatrixStability(D);
+            if (s < ws.minStability) {
+               ws.minStability = s;
+               ws.minStabilityElement = e;
+            }
+         }
+      }
+   }
+
+   /**
+    * Computes the stress, and optionally the stiffness, for all elements.
+    * If the number of assembly threads is greater than one, elements with
+    * the same color are processed concurrently.
+    */
+   private void computeElementStresses (
+      final boolean computeTangent, final IncompMethod softIncomp) {
+
+      int nthreads = myNumAssemblyThreads;
+      if (nthreads > 1 && myElements.size() < 2*MIN_ELEMENTS_PER_THREAD) {
+         nthreads = 1;
+      }
+      final StressWorkspace[] workspaces = getStressWorkspaces(nthreads);
+      for (int i = 0; i < nthreads; i++) {
+         workspaces[i].clearTallies();
+      }
+      if (nthreads == 1) {
+         computeElementStresses (
+            null, 0, myElements.size(), computeTangent, softIncomp,
+            workspaces[0]);
+      }
+      else {
+         if (myAssemblyLoop == null) {
+            myAssemblyLoop = new ParallelLoop ("FemAssembly", nthreads);
+         }
+         prepareElementsForConcurrentStress();
+         for (final int[] elemIdxs : getElementColoring()) {
+            myAssemblyLoop.run (
+               elemIdxs.length, MIN_ELEMENTS_PER_THREAD,
+               (worker, lo, hi) -> computeElementStresses (
+                  elemIdxs, lo, hi, computeTangent, softIncomp,
+                  workspaces[worker]));
+         }
+      }
+      // merge tallies in a fixed order so that results are reproducible
+      double mins = Double.MAX_VALUE;
+      FemElement3d minE = null;
+      for (int i = 0; i < nthreads; i++) {
+         StressWorkspace ws = workspaces[i];
+         if (ws.minDetJ < myMinDetJ) {
+            myMinDetJ = ws.minDetJ;
+            myMinDetJElement = ws.minDetJElement;
+         }
+         myNumInverted += ws.numInverted;
+         if (ws.minStability < mins) {
+            mins = ws.minStability;
+            minE = ws.minStabilityElement;
+         }
+      }
+      if (checkTangentStability && minE != null) {
+         System.out.println("min s=" + mins + ", element " + minE.getNumber());
       }
-      myStressesValidP = true;
    }
 
    public static boolean defaultAutoGenerateSurface = true;  // add surface mesh to model by default
@@ -2934,6 +3172,7 @@ PointAttachable, ConnectableBody {
       myHardIncompMethodValidP = false;
       myHardIncompConfigValidP = false;
       myNumTetElements = -1; // invalidates all element counts
+      myElementColoring = null;
    }
 
    // Called when the geometry (but not the topology) of one or
@@ -3027,10 +3266,7 @@ PointAttachable, ConnectableBody {
     */
    public FemElement3d findNearestSurfaceElement(Point3d loc, Point3d pnt) {
       Vector2d coords = new Vector2d();
-      PolygonalMesh surf = getSurfaceMesh();
-      if (surf == null || surf.numFaces() == 0) {
-         surf = getInternalSurfaceMesh();
-      }
+      PolygonalMesh surf = getProjectionSurfaceMesh();
       if (surf != null) {
          Face face = BVFeatureQuery.getNearestFaceToPoint (
             loc, coords, surf, pnt);
@@ -3046,6 +3282,19 @@ PointAttachable, ConnectableBody {
       }
    }
 
+   /**
+    * Returns the mesh onto which points outside the FEM are projected when
+    * finding the nearest surface element. This is the surface mesh, or the
+    * internal surface mesh if the surface mesh has no faces.
+    */
+   PolygonalMesh getProjectionSurfaceMesh() {
+      PolygonalMesh surf = getSurfaceMesh();
+      if (surf == null || surf.numFaces() == 0) {
+         surf = getInternalSurfaceMesh();
+      }
+      return surf;
+   }
+
    /**
     * Returns the element within an FEM that contains a specified point, or if
     * there is no such element, finds the closest surface element.
@@ -3066,6 +3315,69 @@ PointAttachable, ConnectableBody {
       return e;
    }
 
+   /**
+    * Finds the elements containing each of a set of points. This gives the
+    * same results as calling {@link #findContainingElement} for each point,
+    * except that for a point lying on a boundary shared by several elements,
+    * any of these elements may be returned. It is much faster for large
+    * numbers of points, since the points are sorted spatially and the search
+    * for each point starts from the element found for the previous one and
+    * the elements adjacent to it, using the element bounding volume
+    * hierarchy only when these do not contain the point. The search can also
+    * be performed using several threads, which does not change the results.
+    *
+    * @param elems returns the containing element for each point, or
+    * <code>null</code> if there is no such element. Must have a length
+    * <code>&gt;=</code> <code>num</code>.
+    * @param pnts points for which containing elements are desired
+    * @param num number of points
+    * @param numThreads number of threads used to perform the search
+    * @return number of points contained in an element
+    */
+   public int findContainingElements (
+      FemElement3d[] elems, Point3d[] pnts, int num, int numThreads) {
+      if (numThreads < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive");
+      }
+      FemPointLocator locator = new FemPointLocator (this, null);
+      return locator.locate (
+         elems, null, pnts, num, /*project=*/false, numThreads);
+   }
+
+   /**
+    * Finds the nearest element for each of a set of points. This gives the
+    * same results as calling {@link #findNearestElement} for each point,
+    * except that for a point lying on a boundary shared by several elements,
+    * any of these elements may be returned. The search is performed as
+    * described for {@link #findContainingElements}, with points outside the
+    * FEM being projected onto its surface. This method can be used to
+    * efficiently embed large meshes or numbers of markers.
+    *
+    * @param elems returns the nearest element for each point. Must have a
+    * length <code>&gt;=</code> <code>num</code>.
+    * @param locs if not <code>null</code>, returns the location of each
+    * point, within the FEM or projected onto the surface. Must have a
+    * length <code>&gt;=</code> <code>num</code> and contain allocated
+    * points.
+    * @param pnts points for which the nearest elements are desired
+    * @param num number of points
+    * @param numThreads number of threads used to perform the search
+    * @return number of points contained in an element
+    */
+   public int findNearestElements (
+      FemElement3d[] elems, Point3d[] locs, Point3d[] pnts, int num,
+      int numThreads) {
+      if (numThreads < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive");
+      }
+      FemPointLocator locator =
+         new FemPointLocator (this, getProjectionSurfaceMesh());
+      return locator.locate (
+         elems, locs, pnts, num, /*project=*/true, numThreads);
+   }
+
    /**
     * Finds the nearest node to a specified point that is within
     * a specified maximum distance. If no node is within the
@@ -3860,6 +4172,7 @@ PointAttachable, ConnectableBody {
    }
 
    public void dispose() {
+      disposeAssemblyThreads();
    }
 
    public void useAnsysNumbering() {
@@ -4078,6 +4391,10 @@ PointAttachable, ConnectableBody {
       fem.myNodalIncompConstraintsAllocatedP = false;
 
       fem.myPressures = new VectorNd(MAX_PRESSURE_VALS);
+      fem.myRinv = new MatrixNd();
+      fem.myElementColoring = null;
+      fem.myAssemblyLoop = null;
+      fem.myStressWorkspaces = null;
       fem.myKp = new double[MAX_PRESSURE_VALS];
       fem.myNodalConstraints = new Vector3d[MAX_NODAL_INCOMP_NODES];
       for (int i = 0; i < MAX_NODAL_INCOMP_NODES; i++) {
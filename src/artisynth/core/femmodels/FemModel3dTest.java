@@ -15,6 +15,7 @@ import maspack.spatialmotion.*;
 
 import artisynth.core.mechmodels.*;
 import artisynth.core.materials.*;
+import artisynth.core.femmodels.FemModel.IncompMethod;
 
 public class FemModel3dTest extends UnitTest {
 
@@ -315,8 +316,120 @@ public class FemModel3dTest extends UnitTest {
          e.printStackTrace(); 
       }
    }
+   private FemModel3d createAssemblyTestModel (int nthreads) {
+      FemModel3d fem =
+         FemFactory.createQuadtetGrid (null, 1.0, 0.5, 0.5, 6, 3, 3);
+      fem.setMaterial (new MooneyRivlinMaterial (1000, 0, 0, 0, 0, 100000));
+      fem.setSoftIncompMethod (IncompMethod.ELEMENT);
+      fem.setNumAssemblyThreads (nthreads);
+      // perturb the nodes so that stresses are non-zero
+      RandomGenerator.setSeed (0x1234);
+      for (FemNode3d n : fem.getNodes()) {
+         Vector3d del = new Vector3d();
+         del.setRandom (-0.01, 0.01);
+         n.getPosition().add (del);
+      }
+      fem.invalidateStressAndStiffness();
+      return fem;
+   }
+
+   /**
+    * Checks that forces and stiffnesses computed using multiple assembly
+    * threads match those computed serially.
+    */
+   public void testParallelAssembly() {
+      FemModel3d fem1 = createAssemblyTestModel (1);
+      MechModel mech1 = new MechModel();
+      mech1.addModel (fem1);
+      SparseBlockMatrix K1 = fem1.createStiffnessMatrix();
+
+      for (int nthreads : new int[] {2, 4}) {
+         FemModel3d femN = createAssemblyTestModel (nthreads);
+         MechModel mechN = new MechModel();
+         mechN.addModel (femN);
+         SparseBlockMatrix KN = femN.createStiffnessMatrix();
+
+         double tol = 1e-10*K1.frobeniusNorm();
+         if (!KN.epsilonEquals (K1, tol)) {
+            throw new TestException (
+               "stiffness with "+nthreads+" threads differs from serial");
+         }
+         for (int i=0; i<fem1.numNodes(); i++) {
+            Vector3d f1 = fem1.getNodes().get(i).getInternalForce();
+            Vector3d fN = femN.getNodes().get(i).getInternalForce();
+            if (!fN.epsilonEquals (f1, 1e-10*(1+f1.norm()))) {
+               throw new TestException (
+                  "internal force for node "+i+" with "+nthreads+
+                  " threads is "+fN+", expected "+f1);
+            }
+         }
+         femN.dispose();
+      }
+   }
+
+   /**
+    * Checks that the elements found by findNearestElements() and
+    * findContainingElements() match those found using single queries.
+    */
+   public void testBatchedPointLocation() {
+      FemModel3d fem =
+         FemFactory.createTetGrid (null, 1.0, 0.5, 0.5, 8, 4, 4);
+      int num = 1000;
+      Point3d[] pnts = new Point3d[num];
+      Point3d[] locs = new Point3d[num];
+      for (int i=0; i<num; i++) {
+         pnts[i] = new Point3d();
+         pnts[i].setRandom();
+         pnts[i].scale (0.7); // some points will lie outside the FEM
+         locs[i] = new Point3d();
+      }
+      for (int nthreads : new int[] {1, 3}) {
+         FemElement3d[] elems = new FemElement3d[num];
+         FemElement3d[] celems = new FemElement3d[num];
+         int numInside =
+            fem.findNearestElements (elems, locs, pnts, num, nthreads);
+         int numContained =
+            fem.findContainingElements (celems, pnts, num, nthreads);
+         checkEquals ("number of contained points", numContained, numInside);
+         int cnt = 0;
+         for (int i=0; i<num; i++) {
+            Point3d loc = new Point3d();
+            FemElement3d elem = fem.findNearestElement (loc, pnts[i]);
+            if (fem.findContainingElement (pnts[i]) != null) {
+               cnt++;
+               // points on a shared boundary may be assigned to any of the
+               // elements containing them
+               if (elems[i] != elem && !elems[i].isInside (pnts[i])) {
+                  throw new TestException (
+                     "point "+i+" not inside element "+elems[i].getNumber());
+               }
+               if (celems[i] != elems[i]) {
+                  throw new TestException (
+                     "containing element for point "+i+" is "+celems[i]+
+                     ", expected "+elems[i]);
+               }
+            }
+            else {
+               if (elems[i] != elem) {
+                  throw new TestException (
+                     "nearest element for point "+i+" is "+elems[i]+
+                     ", expected "+elem);
+               }
+               if (celems[i] != null) {
+                  throw new TestException (
+                     "containing element found for outside point "+i);
+               }
+            }
+            checkEquals ("location for point "+i, locs[i], loc, 1e-12);
+         }
+         checkEquals ("number of contained points", numInside, cnt);
+      }
+   }
+
    public void test() {
       testFrameRelativeMass();
+      testParallelAssembly();
+      testBatchedPointLocation();
    }
 
    public static void main (String[] args) {
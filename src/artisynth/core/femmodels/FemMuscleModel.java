@@ -89,6 +89,18 @@ implements AuxiliaryMaterial, ExcitationComponent {
    //   protected PolylineMesh myFiberMesh = null;
    //   protected boolean myFiberMeshActive = false;
    protected Vector3d myTmpDir = new Vector3d();
+
+   // fibre direction storage used when computing stress and tangent, which
+   // is obtained from the deformation workspace since these computations
+   // may be performed in parallel
+   private static class Scratch {
+      Vector3d dir = new Vector3d();
+   }
+
+   private Vector3d getTmpDir (SolidDeformation def) {
+      return def.getWorkspace().getScratch (Scratch.class, Scratch::new).dir;
+   }
+
    private double myExcitation = 0;
    protected ExcitationSourceList myExcitationSources;
    protected CombinationRule myComboRule = CombinationRule.Sum;
@@ -609,10 +621,11 @@ implements AuxiliaryMaterial, ExcitationComponent {
 
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null && dt.myFrame != null) {
-         myTmpDir.x = dt.myFrame.m00;
-         myTmpDir.y = dt.myFrame.m10;
-         myTmpDir.z = dt.myFrame.m20;
-         mat.computeTangent(D, stress, getNetExcitation(), myTmpDir, def, baseMat);
+         Vector3d dir = getTmpDir (def);
+         dir.x = dt.myFrame.m00;
+         dir.y = dt.myFrame.m10;
+         dir.z = dt.myFrame.m20;
+         mat.computeTangent(D, stress, getNetExcitation(), dir, def, baseMat);
       }
    }
 
@@ -622,11 +635,12 @@ implements AuxiliaryMaterial, ExcitationComponent {
 
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null) {
-         myTmpDir.x = Q.m00;
-         myTmpDir.y = Q.m10;
-         myTmpDir.z = Q.m20;
+         Vector3d dir = getTmpDir (def);
+         dir.x = Q.m00;
+         dir.y = Q.m10;
+         dir.z = Q.m20;
          mat.computeTangent (
-            D, stress, getNetExcitation(), myTmpDir, def, baseMat);
+            D, stress, getNetExcitation(), dir, def, baseMat);
       }
    }
 
@@ -650,10 +664,11 @@ implements AuxiliaryMaterial, ExcitationComponent {
 
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null && dt.myFrame != null) {
-         myTmpDir.x = dt.myFrame.m00;
-         myTmpDir.y = dt.myFrame.m10;
-         myTmpDir.z = dt.myFrame.m20;
-         mat.computeStress (sigma, getNetExcitation(), myTmpDir, def, baseMat);
+         Vector3d dir = getTmpDir (def);
+         dir.x = dt.myFrame.m00;
+         dir.y = dt.myFrame.m10;
+         dir.z = dt.myFrame.m20;
+         mat.computeStress (sigma, getNetExcitation(), dir, def, baseMat);
       }
    }
 
@@ -663,10 +678,11 @@ implements AuxiliaryMaterial, ExcitationComponent {
 
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null) {
-         myTmpDir.x = Q.m00;
-         myTmpDir.y = Q.m10;
-         myTmpDir.z = Q.m20;
-         mat.computeStress (sigma, getNetExcitation(), myTmpDir, def, baseMat);
+         Vector3d dir = getTmpDir (def);
+         dir.x = Q.m00;
+         dir.y = Q.m10;
+         dir.z = Q.m20;
+         mat.computeStress (sigma, getNetExcitation(), dir, def, baseMat);
       }
    }
 
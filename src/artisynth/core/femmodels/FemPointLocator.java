@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.femmodels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import maspack.concurrency.ParallelLoop;
+import maspack.geometry.BVFeatureQuery;
+import maspack.geometry.BVNode;
+import maspack.geometry.BVTree;
+import maspack.geometry.Boundable;
+import maspack.geometry.Face;
+import maspack.geometry.PolygonalMesh;
+import maspack.matrix.Point3d;
+import maspack.matrix.Vector2d;
+import maspack.util.InternalErrorException;
+
+/**
+ * Locates the elements of a FemModel3d that contain, or are nearest to, a
+ * set of query points. The points are sorted along a Morton (Z-order) curve
+ * so that consecutive queries are spatially close, and each query first
+ * checks the element found for the previous point, together with the
+ * elements that share a node with it, before falling back on the model's
+ * element bounding volume hierarchy. Points not contained in any element
+ * can be projected onto the model's surface.
+ *
+ * <p>The sorted points are processed in blocks of fixed size, with the
+ * search for the first point of each block starting from scratch. The
+ * results therefore do not depend on the number of threads used to process
+ * the blocks.
+ */
+class FemPointLocator {
+
+   // number of points processed as a unit, starting from no previous element
+   static final int BLOCK_SIZE = 64;
+   // number of bits per axis used to compute Morton codes
+   private static final int MORTON_BITS = 10;
+
+   FemModel3d myFem;
+   BVTree myElementTree;
+   BVTree mySurfaceTree;
+
+   /**
+    * Per-thread storage used when locating points.
+    */
+   private static class Workspace {
+      ArrayList<BVNode> bvnodes = new ArrayList<BVNode>(16);
+      ArrayList<FemElement3d> tested = new ArrayList<FemElement3d>(64);
+      BVFeatureQuery query = new BVFeatureQuery();
+      Vector2d uv = new Vector2d();
+      Point3d loc = new Point3d();
+      HashMap<Face,FemElement3d> faceElems = new HashMap<Face,FemElement3d>();
+   }
+
+   /**
+    * Creates a locator for a specified FEM model. The model's element
+    * hierarchy, and the surface mesh and its hierarchy if
+    * <code>surface</code> is not <code>null</code>, are brought up to date
+    * here, so that they are not updated lazily by concurrent queries.
+    */
+   FemPointLocator (FemModel3d fem, PolygonalMesh surface) {
+      myFem = fem;
+      myElementTree = fem.getBVTree();
+      if (surface != null) {
+         mySurfaceTree = surface.getBVTree();
+      }
+   }
+
+   private static long spreadBits (int v) {
+      long x = v & 0x3ff;
+      x = (x | (x << 16)) & 0x030000ffL;
+      x = (x | (x << 8)) & 0x0300f00fL;
+      x = (x | (x << 4)) & 0x030c30c3L;
+      x = (x | (x << 2)) & 0x09249249L;
+      return x;
+   }
+
+   private static int quantize (double x, double min, double scale) {
+      int i = (int)((x-min)*scale);
+      int max = (1 << MORTON_BITS)-1;
+      return i < 0 ? 0 : (i > max ? max : i);
+   }
+
+   /**
+    * Returns the indices of the first <code>num</code> points, sorted in
+    * Morton order with respect to the points' bounding box. Ties are broken
+    * by index, so that the ordering is deterministic.
+    */
+   static int[] spatialOrder (Point3d[] pnts, int num) {
+      Point3d min = new Point3d (
+         Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+      Point3d max = new Point3d (
+         -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE);
+      for (int i=0; i<num; i++) {
+         pnts[i].updateBounds (min, max);
+      }
+      double ext = Math.max (max.x-min.x, Math.max (max.y-min.y, max.z-min.z));
+      double scale = (ext > 0 ? ((1 << MORTON_BITS)-1)/ext : 0);
+      long[] keys = new long[num];
+      for (int i=0; i<num; i++) {
+         Point3d p = pnts[i];
+         long code =
+            (spreadBits (quantize (p.x, min.x, scale)) << 2) |
+            (spreadBits (quantize (p.y, min.y, scale)) << 1) |
+            (spreadBits (quantize (p.z, min.z, scale)));
+         keys[i] = (code << 31) | i;
+      }
+      Arrays.sort (keys);
+      int[] order = new int[num];
+      for (int k=0; k<num; k++) {
+         order[k] = (int)(keys[k] & 0x7fffffffL);
+      }
+      return order;
+   }
+
+   private static boolean boundsContain (FemElement3d elem, Point3d pnt) {
+      double minx = Double.MAX_VALUE;
+      double miny = Double.MAX_VALUE;
+      double minz = Double.MAX_VALUE;
+      double maxx = -Double.MAX_VALUE;
+      double maxy = -Double.MAX_VALUE;
+      double maxz = -Double.MAX_VALUE;
+      for (FemNode3d n : elem.getNodes()) {
+         Point3d pos = n.getPosition();
+         if (pos.x < minx) minx = pos.x;
+         if (pos.x > maxx) maxx = pos.x;
+         if (pos.y < miny) miny = pos.y;
+         if (pos.y > maxy) maxy = pos.y;
+         if (pos.z < minz) minz = pos.z;
+         if (pos.z > maxz) maxz = pos.z;
+      }
+      // small tolerance so that points on the element boundary are not
+      // rejected because of round-off
+      double tol = 1e-10*((maxx-minx) + (maxy-miny) + (maxz-minz));
+      return (pnt.x >= minx-tol && pnt.x <= maxx+tol &&
+              pnt.y >= miny-tol && pnt.y <= maxy+tol &&
+              pnt.z >= minz-tol && pnt.z <= maxz+tol);
+   }
+
+   /**
+    * Finds an element containing <code>pnt</code>, checking first
+    * <code>prev</code> and the elements adjacent to it, if
+    * <code>prev</code> is not <code>null</code>.
+    */
+   private FemElement3d findContainingElement (
+      Point3d pnt, FemElement3d prev, Workspace ws) {
+
+      ArrayList<FemElement3d> tested = ws.tested;
+      tested.clear();
+      if (prev != null) {
+         if (prev.isInside (pnt)) {
+            return prev;
+         }
+         tested.add (prev);
+         for (FemNode3d n : prev.getNodes()) {
+            for (FemElement3d e : n.getElementDependencies()) {
+               if (!tested.contains (e)) {
+                  tested.add (e);
+                  if (boundsContain (e, pnt) && e.isInside (pnt)) {
+                     return e;
+                  }
+               }
+            }
+         }
+      }
+      ArrayList<BVNode> bvnodes = ws.bvnodes;
+      bvnodes.clear();
+      myElementTree.intersectPoint (bvnodes, pnt);
+      for (BVNode n : bvnodes) {
+         Boundable[] elements = n.getElements();
+         for (int i=0; i<elements.length; i++) {
+            FemElement3d e = (FemElement3d)elements[i];
+            if (!tested.contains (e) && e.isInside (pnt)) {
+               return e;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Finds the surface element nearest to <code>pnt</code>, returning
+    * the projection of the point onto the surface in <code>loc</code>.
+    */
+   private FemElement3d findNearestSurfaceElement (
+      Point3d loc, Point3d pnt, Workspace ws) {
+
+      if (mySurfaceTree == null) {
+         return null;
+      }
+      Face face = ws.query.nearestFaceToPoint (loc, ws.uv, mySurfaceTree, pnt);
+      FemElement3d elem = ws.faceElems.get (face);
+      if (elem == null) {
+         elem = myFem.getSurfaceElement (face);
+         if (elem == null) {
+            throw new InternalErrorException (
+               "surface element not found for face");
+         }
+         ws.faceElems.put (face, elem);
+      }
+      return elem;
+   }
+
+   private void locateBlocks (
+      FemElement3d[] elems, Point3d[] locs, boolean[] inside, Point3d[] pnts,
+      int[] order, int blo, int bhi, boolean project, Workspace ws) {
+
+      int num = order.length;
+      for (int b=blo; b<bhi; b++) {
+         FemElement3d prev = null;
+         int kend = Math.min (num, (b+1)*BLOCK_SIZE);
+         for (int k=b*BLOCK_SIZE; k<kend; k++) {
+            int i = order[k];
+            Point3d pnt = pnts[i];
+            FemElement3d elem = findContainingElement (pnt, prev, ws);
+            if (elem != null) {
+               prev = elem;
+               inside[i] = true;
+               if (locs != null) {
+                  locs[i].set (pnt);
+               }
+            }
+            else if (project) {
+               Point3d loc = (locs != null ? locs[i] : ws.loc);
+               elem = findNearestSurfaceElement (loc, pnt, ws);
+            }
+            elems[i] = elem;
+         }
+      }
+   }
+
+   /**
+    * Locates the first <code>num</code> points in <code>pnts</code>. If
+    * <code>project</code> is <code>true</code>, points not contained in an
+    * element are assigned the nearest surface element, and their projection
+    * onto the surface is returned in <code>locs</code>, if
+    * <code>locs</code> is not <code>null</code>.
+    *
+    * @return number of points contained in an element
+    */
+   int locate (
+      FemElement3d[] elems, Point3d[] locs, Point3d[] pnts, int num,
+      boolean project, int numThreads) {
+
+      final int[] order = spatialOrder (pnts, num);
+      final boolean[] inside = new boolean[num];
+      int numBlocks = (num + BLOCK_SIZE - 1)/BLOCK_SIZE;
+      if (numThreads > 1 && numBlocks > 1) {
+         final Workspace[] workspaces = new Workspace[numThreads];
+         for (int i=0; i<numThreads; i++) {
+            workspaces[i] = new Workspace();
+         }
+         ParallelLoop loop = new ParallelLoop ("FemPointLocator", numThreads);
+         try {
+            loop.run (
+               numBlocks, (worker, lo, hi) -> locateBlocks (
+                  elems, locs, inside, pnts, order, lo, hi, project,
+                  workspaces[worker]));
+         }
+         finally {
+            loop.dispose();
+         }
+      }
+      else {
+         locateBlocks (
+            elems, locs, inside, pnts, order, 0, numBlocks, project,
+            new Workspace());
+      }
+      int numInside = 0;
+      for (int i=0; i<num; i++) {
+         if (inside[i]) {
+            numInside++;
+         }
+      }
+      return numInside;
+   }
+}
@@ -6,9 +6,14 @@
  */
 package artisynth.core.femmodels;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+
 import artisynth.core.materials.TensorUtils;
 
 import maspack.matrix.*;
+import maspack.util.ListView;
 
 /** 
  * Provides some general utilities for FEM computations. Some of these
@@ -805,4 +810,62 @@ public class FemUtilities {
       df.y += fd.y*dv;
       df.z += fd.z*dv;
    }
+
+   /**
+    * Partitions a list of elements into colors, such that no two elements
+    * with the same color share a node. Elements with the same color can then
+    * add contributions to their nodes concurrently without interfering with
+    * each other. A greedy algorithm is used, with elements being assigned
+    * the smallest color not used by any previously colored element with
+    * which they share a node.
+    *
+    * @param elems elements to color
+    * @return array giving, for each color, the indices (within
+    * <code>elems</code>) of the elements with that color, in increasing order
+    */
+   public static int[][] computeElementColoring (
+      ListView<? extends FemElement3d> elems) {
+
+      IdentityHashMap<FemNode3d,BitSet> nodeColors =
+         new IdentityHashMap<FemNode3d,BitSet>();
+      int[] colors = new int[elems.size()];
+      ArrayList<Integer> colorCounts = new ArrayList<Integer>();
+      BitSet used = new BitSet();
+      for (int i=0; i<elems.size(); i++) {
+         FemNode3d[] nodes = elems.get(i).getNodes();
+         used.clear();
+         for (FemNode3d n : nodes) {
+            BitSet ncolors = nodeColors.get (n);
+            if (ncolors != null) {
+               used.or (ncolors);
+            }
+         }
+         int c = used.nextClearBit (0);
+         for (FemNode3d n : nodes) {
+            BitSet ncolors = nodeColors.get (n);
+            if (ncolors == null) {
+               ncolors = new BitSet();
+               nodeColors.put (n, ncolors);
+            }
+            ncolors.set (c);
+         }
+         colors[i] = c;
+         if (c == colorCounts.size()) {
+            colorCounts.add (1);
+         }
+         else {
+            colorCounts.set (c, colorCounts.get(c)+1);
+         }
+      }
+      int[][] coloring = new int[colorCounts.size()][];
+      for (int c=0; c<coloring.length; c++) {
+         coloring[c] = new int[colorCounts.get(c)];
+      }
+      int[] cnts = new int[coloring.length];
+      for (int i=0; i<colors.length; i++) {
+         int c = colors[i];
+         coloring[c][cnts[c]++] = i;
+      }
+      return coloring;
+   }
 }
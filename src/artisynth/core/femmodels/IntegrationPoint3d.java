@@ -78,6 +78,34 @@ public class IntegrationPoint3d {
       init(nnodes, npvals);
    }
 
+   /**
+    * Creates a copy of an existing integration point which shares its
+    * readonly data but has its own transient storage. This allows stiffness
+    * computations for elements of the same type to be performed concurrently
+    * in different threads.
+    *
+    * @param pnt integration point to copy
+    */
+   public IntegrationPoint3d (IntegrationPoint3d pnt) {
+      myJ = new Matrix3d();
+      myInvJ = new Matrix3d();
+
+      F = new Matrix3d();
+      sigma = new SymmetricMatrix3d();
+
+      myNumNodes = pnt.myNumNodes;
+      N = pnt.N;
+      H = pnt.H;
+      GNs = pnt.GNs;
+      GNx = new Vector3d[myNumNodes];
+      for (int i=0; i<myNumNodes; i++) {
+         GNx[i] = new Vector3d();
+      }
+      coords = pnt.coords;
+      myWeight = pnt.myWeight;
+      myNum = pnt.myNum;
+   }
+
    /**
     * Returns the number of this integration point. This will be
     * in the range 0 to numi-1, where numi is the number of
@@ -81,12 +81,27 @@ public class PointSkinAttachment extends PointAttachment
     * objects utilizing this attachment.
     */
    public void setSkinMesh(SkinMeshBody skinMesh) {
+      invalidateWeightTable();
       mySkinMesh = skinMesh;
+      invalidateWeightTable();
+   }
+
+   /**
+    * Notifies the associated SkinMeshBody, if any, that its packed weight
+    * table needs to be rebuilt because the connections, weights or base
+    * position of this attachment have changed.
+    */
+   protected void invalidateWeightTable() {
+      if (mySkinMesh != null) {
+         mySkinMesh.invalidateWeightTable();
+      }
    }
 
    /**
     * Gets the base position for this attachment. Base positions are used for
-    * displacement-based position computations.
+    * displacement-based position computations. If the returned point is
+    * modified directly, {@link SkinMeshBody#invalidateWeightTable} should be
+    * called on the associated SkinMeshBody.
     */
    public Point3d getBasePosition() {
       return myBasePos;
@@ -97,6 +112,7 @@ public class PointSkinAttachment extends PointAttachment
     */
    public void setBasePosition(Vector3d pos) {
       myBasePos.set(pos);
+      invalidateWeightTable();
    }
 
    /**
@@ -114,6 +130,7 @@ public class PointSkinAttachment extends PointAttachment
       myConnections = new Connection[0];
       myNumConnections = 0;
       myMasters = null;
+      invalidateWeightTable();
    }
 
    /**
@@ -155,6 +172,7 @@ public class PointSkinAttachment extends PointAttachment
     */
    public void setWeight(int idx, double w) {
       myConnections[idx].myWeight = w;
+      invalidateWeightTable();
    }
 
    /**
@@ -255,6 +273,7 @@ public class PointSkinAttachment extends PointAttachment
       ensureCapacity(numc + 1);
       myConnections[numc] = connection;
       myNumConnections++;
+      invalidateWeightTable();
    }
 
    /**
@@ -276,6 +295,7 @@ public class PointSkinAttachment extends PointAttachment
        */
       public void setWeight(double w) {
          myWeight = w;
+         invalidateWeightTable();
       }
 
       /**
@@ -752,6 +772,7 @@ public class PointSkinAttachment extends PointAttachment
       throws IOException {
       super.postscan(tokens, ancestor);
       finalizeConnections();
+      invalidateWeightTable();
    }
 
    public void writeItems(
@@ -805,6 +826,7 @@ public class PointSkinAttachment extends PointAttachment
 
    public void scaleDistance(double s) {
       myBasePos.scale(s);
+      invalidateWeightTable();
    }
 
    public void scaleMass(double s) {
@@ -835,6 +857,7 @@ public class PointSkinAttachment extends PointAttachment
             connections[i].myWeight *= s;
          }
       }
+      invalidateWeightTable();
    }
 
    /**
@@ -848,6 +871,7 @@ public class PointSkinAttachment extends PointAttachment
             myConnections = (Connection[])obj;
             myNumConnections = myConnections.length;
             myMasters = null;
+            invalidateWeightTable();
          }
       }
       else {
@@ -908,6 +932,7 @@ public class PointSkinAttachment extends PointAttachment
                c.myWeight /= wtotal;
             }
             myMasters = null;          
+            invalidateWeightTable();
             undoInfo.addLast (old);
          }
          else {
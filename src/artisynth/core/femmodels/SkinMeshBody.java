@@ -16,6 +16,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.function.ConstantFuntion1x1;
 import maspack.function.SISOFunction;
 import maspack.geometry.BVFeatureQuery;
@@ -32,6 +33,7 @@ import maspack.matrix.RigidTransform3d;
 import maspack.matrix.Vector2d;
 import maspack.matrix.Vector3d;
 import maspack.properties.PropertyList;
+import maspack.util.Disposable;
 import maspack.util.IndentingPrintWriter;
 import maspack.util.ListRemove;
 import maspack.util.NumberFormat;
@@ -53,6 +55,7 @@ import artisynth.core.mechmodels.PointAttachable;
 import artisynth.core.mechmodels.PointAttachment;
 import artisynth.core.mechmodels.RigidBody;
 import artisynth.core.mechmodels.SkinMeshBase;
+import artisynth.core.modelbase.ComponentChangeEvent;
 import artisynth.core.modelbase.ComponentList;
 import artisynth.core.modelbase.ComponentUtils;
 import artisynth.core.modelbase.CompositeComponent;
@@ -204,7 +207,7 @@ import artisynth.core.util.StringToken;
  * SkinMeshBody#getFemModel getFemModel()}.
  */
 public class SkinMeshBody extends SkinMeshBase 
-   implements CollidableBody, PointAttachable {
+   implements CollidableBody, PointAttachable, Disposable {
 
    /**
     * Characterizes the blend mechanism used for the frame-based
@@ -233,6 +236,19 @@ public class SkinMeshBody extends SkinMeshBase
    protected Collidability myCollidability = DEFAULT_COLLIDABILITY;
    protected int myCollidableIndex;
 
+   public static int DEFAULT_NUM_SKINNING_THREADS = 1;
+   protected int myNumSkinningThreads = DEFAULT_NUM_SKINNING_THREADS;
+   // minimum number of vertices to be processed by each skinning thread
+   protected static int MIN_VERTICES_PER_THREAD = 1000;
+   protected ParallelLoop mySkinningLoop = null;
+
+   // packed form of the attachments, used to update the vertex positions.
+   // Set to null whenever the attachments change.
+   protected SkinWeightTable myWeightTable = null;
+   // true if the weight table could not be built for the current attachments
+   protected boolean myWeightTableUnsupported = false;
+   protected SkinWeightTable.Workspace[] myWeightWorkspaces = null;
+
    /**
     * Base class for information about bodies (e.g., Frames or
     * FemNodels) used to control the skinning.
@@ -346,7 +362,7 @@ public class SkinMeshBody extends SkinMeshBase
          myDeltaPose.mulInverseRight (
             myFrame.getPose(), myBasePose);
          if (myFrameBlending != FrameBlending.LINEAR) {
-            updateDualQuaternions();
+            updateDualQuaternion();
          }
       }
 
@@ -521,6 +537,10 @@ public class SkinMeshBody extends SkinMeshBase
       myProps.add (
          "collidable", 
          "sets the collidability of this SkinMeshBody mesh", DEFAULT_COLLIDABILITY);      
+      myProps.add (
+         "numSkinningThreads",
+         "number of threads used to compute the vertex positions",
+         DEFAULT_NUM_SKINNING_THREADS, "[1,inf]");
    }
 
    public PropertyList getAllPropertyInfo() {
@@ -563,6 +583,82 @@ public class SkinMeshBody extends SkinMeshBase
       return myFrameBlending;
    }
 
+   /**
+    * Returns the number of threads used to compute the vertex positions.
+    *
+    * @return number of skinning threads
+    * @see #setNumSkinningThreads
+    */
+   public int getNumSkinningThreads() {
+      return myNumSkinningThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute the vertex positions in
+    * {@link #updateSlavePos}. If greater than one, the positions of different
+    * vertices are computed concurrently. Each vertex is still computed by a
+    * single thread, so the results do not depend on the number of threads.
+    * The default value is 1.
+    *
+    * @param num number of skinning threads
+    */
+   public void setNumSkinningThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive");
+      }
+      if (num != myNumSkinningThreads) {
+         myNumSkinningThreads = num;
+         disposeSkinningThreads();
+      }
+   }
+
+   private void disposeSkinningThreads() {
+      if (mySkinningLoop != null) {
+         mySkinningLoop.dispose();
+         mySkinningLoop = null;
+      }
+      myWeightWorkspaces = null;
+   }
+
+   /**
+    * Invalidates the packed weight table that is used to compute the vertex
+    * positions from the attachments, so that it will be rebuilt the next
+    * time it is needed. This is done automatically when attachments are
+    * added or modified through their methods, but must be called
+    * explicitly if connection weights or base positions are modified
+    * directly.
+    */
+   public void invalidateWeightTable() {
+      myWeightTable = null;
+      myWeightTableUnsupported = false;
+      myWeightWorkspaces = null;
+   }
+
+   /**
+    * Returns the packed weight table for the current attachments, building
+    * it if necessary, or <code>null</code> if the attachments contain
+    * connection types that the table does not support.
+    */
+   SkinWeightTable getWeightTable() {
+      if (myWeightTable == null && !myWeightTableUnsupported) {
+         myWeightTable = SkinWeightTable.create (this);
+         myWeightTableUnsupported = (myWeightTable == null);
+      }
+      return myWeightTable;
+   }
+
+   private SkinWeightTable.Workspace[] getWeightWorkspaces (
+      SkinWeightTable table, int nthreads) {
+      if (myWeightWorkspaces == null || myWeightWorkspaces.length < nthreads) {
+         myWeightWorkspaces = new SkinWeightTable.Workspace[nthreads];
+         for (int i=0; i<nthreads; i++) {
+            myWeightWorkspaces[i] = table.createWorkspace();
+         }
+      }
+      return myWeightWorkspaces;
+   }
+
    /**
     * Returns the number of attachments currently in this SkinMeshBody.
     */
@@ -599,6 +695,7 @@ public class SkinMeshBody extends SkinMeshBase
       int vidx = myVertexAttachments.size();
       myVertexAttachments.addNumbered (a, vidx);
       a.setSkinMesh (this);
+      invalidateWeightTable();
       if (initBase) {
          a.setBasePosition (getVertex(vidx).getPosition());
       }
@@ -611,6 +708,7 @@ public class SkinMeshBody extends SkinMeshBase
    public void setAttachment( int idx, PointSkinAttachment a, boolean initBase) {
       myVertexAttachments.set(idx, a);
       a.setSkinMesh (this);
+      invalidateWeightTable();
       if (initBase) {
          a.setBasePosition (getVertex(idx).getPosition());
       }
@@ -621,6 +719,7 @@ public class SkinMeshBody extends SkinMeshBase
     */
    public void clearAttachments() {
       myVertexAttachments.clear();
+      invalidateWeightTable();
    }
 
    /**
@@ -660,6 +759,7 @@ public class SkinMeshBody extends SkinMeshBase
       int numVtxs = mesh.numVertices();
       myVertexAttachments.removeAll();
       myVertexAttachments.ensureCapacity (numVtxs);
+      invalidateWeightTable();
    }
 
    /**
@@ -704,6 +804,7 @@ public class SkinMeshBody extends SkinMeshBase
             myFrameInfo.set(idx, last);
             myFrameInfo.remove(lastIdx);
          }
+         invalidateWeightTable();
          return true;
       }
       
@@ -1019,12 +1120,43 @@ public class SkinMeshBody extends SkinMeshBase
 
    /**
     * {@inheritDoc}
+    *
+    * <p>The vertex positions are computed from a packed form of the
+    * attachments, using <code>numSkinningThreads</code> threads. The
+    * results are the same as those given by each attachment's {@link
+    * PointSkinAttachment#getCurrentPos getCurrentPos()} method.
     */
    public void updateSlavePos () {
       for (FrameInfo finfo : myFrameInfo) {
          finfo.updatePosState();
       }
-      super.updateSlavePos();
+      final MeshBase mesh = getMesh();
+      final SkinWeightTable table = (mesh != null ? getWeightTable() : null);
+      if (table == null) {
+         super.updateSlavePos();
+         return;
+      }
+      final FrameBlending blending = myFrameBlending;
+      int numr = table.numRows();
+      int nthreads = myNumSkinningThreads;
+      if (nthreads > 1 && numr < 2*MIN_VERTICES_PER_THREAD) {
+         nthreads = 1;
+      }
+      final SkinWeightTable.Workspace[] workspaces =
+         getWeightWorkspaces (table, nthreads);
+      if (nthreads == 1) {
+         table.blendVertices (mesh, blending, 0, numr, workspaces[0]);
+      }
+      else {
+         if (mySkinningLoop == null) {
+            mySkinningLoop = new ParallelLoop ("SkinMeshBody", nthreads);
+         }
+         mySkinningLoop.run (
+            numr, MIN_VERTICES_PER_THREAD,
+            (worker, lo, hi) -> table.blendVertices (
+               mesh, blending, lo, hi, workspaces[worker]));
+      }
+      mesh.notifyVertexPositionsModified();
    }
 
    public void transformGeometry (
@@ -1039,6 +1171,7 @@ public class SkinMeshBody extends SkinMeshBase
          Point3d base = myVertexAttachments.get(i).getBasePosition();
          gtr.transformPnt (base);
       }
+      invalidateWeightTable();
       // update base poses for frames that are being transformed
       for (FrameInfo finfo : myFrameInfo) {
          if (context.contains (finfo.myFrame)) {
@@ -1150,6 +1283,7 @@ public class SkinMeshBody extends SkinMeshBase
       for (int i=0; i<myVertexAttachments.size(); i++) {
          myVertexAttachments.get(i).setSkinMesh (this);
       }      
+      invalidateWeightTable();
    }
 
    protected boolean postscanItem (
@@ -1186,6 +1320,19 @@ public class SkinMeshBody extends SkinMeshBase
       // writeAttachments (pw, fmt, ancestor);
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void componentChanged (ComponentChangeEvent e) {
+      // attachments may have been added or removed
+      invalidateWeightTable();
+      super.componentChanged (e);
+   }
+
+   public void dispose() {
+      disposeSkinningThreads();
+   }
+
    @Override
    public void connectToHierarchy () {
       // XXX not sure what to do here. Probably don't want to add back
@@ -1227,6 +1374,7 @@ public class SkinMeshBody extends SkinMeshBase
          if (obj != NULL_OBJ) {
             ((ListRemove<FemModelInfo>)obj).undo();
          }
+         invalidateWeightTable();
       }
       else {
          ListRemove<FrameInfo> frameRemove = null;
@@ -1263,6 +1411,7 @@ public class SkinMeshBody extends SkinMeshBase
          else {
             undoInfo.addLast (NULL_OBJ);
          }
+         invalidateWeightTable();
       }
    }
 
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.femmodels;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import maspack.geometry.MeshBase;
+import maspack.geometry.Vertex3d;
+import maspack.matrix.DualQuaternion;
+import maspack.matrix.Point3d;
+import artisynth.core.femmodels.PointSkinAttachment.BaseConnection;
+import artisynth.core.femmodels.PointSkinAttachment.Connection;
+import artisynth.core.femmodels.PointSkinAttachment.FemDisplacementConnection;
+import artisynth.core.femmodels.PointSkinAttachment.FrameConnection;
+import artisynth.core.femmodels.PointSkinAttachment.ParticleConnection;
+import artisynth.core.femmodels.SkinMeshBody.FrameBlending;
+import artisynth.core.femmodels.SkinMeshBody.FrameInfo;
+import artisynth.core.mechmodels.Particle;
+
+/**
+ * Packed representation of the attachments of a SkinMeshBody, used to
+ * compute the skin vertex positions without traversing the attachment and
+ * connection objects. Each attached vertex is described by a row, whose
+ * connections are stored as a contiguous range of connection types,
+ * weights, and indices into arrays of frames, particles, and FEM nodes.
+ *
+ * <p>The positions are computed by {@link #blendVertices blendVertices()},
+ * which performs exactly the same operations as {@link
+ * PointSkinAttachment#getCurrentPos}, so that the results are identical.
+ * Rows are independent, so different ranges of rows may be blended
+ * concurrently, provided each thread uses its own {@link Workspace}.
+ */
+class SkinWeightTable {
+
+   static final byte FRAME = 0;
+   static final byte PARTICLE = 1;
+   static final byte BASE = 2;
+   static final byte FEM_DISPLACEMENT = 3;
+
+   int myNumRows;
+   int[] myVertexIdxs;    // vertex index for each row
+   int[] myOffsets;       // start of each row's connections; size numRows+1
+   double[] myBasePos;    // base position for each row, three values per row
+   byte[] myTypes;        // type of each connection
+   double[] myWeights;    // weight of each connection
+   int[] myMasterIdxs;    // index of each connection's master, if any
+   int myMaxFrameConnections; // maximum frame connections in any row
+
+   FrameInfo[] myFrames;
+   Particle[] myParticles;
+   FemNode3d[] myNodes;
+
+   /**
+    * Per-thread storage used by {@link #blendVertices blendVertices()}.
+    */
+   static class Workspace {
+      Point3d pos = new Point3d();
+      Point3d tmp = new Point3d();
+      Point3d base = new Point3d();
+      DualQuaternion blendQ = new DualQuaternion();
+      double[] weights;
+      DualQuaternion[] dualqs;
+
+      Workspace (int maxFrameConnections) {
+         weights = new double[maxFrameConnections];
+         dualqs = new DualQuaternion[maxFrameConnections];
+      }
+   }
+
+   private SkinWeightTable() {
+   }
+
+   private static <T> int getIndex (
+      T obj, ArrayList<T> list, IdentityHashMap<T,Integer> map) {
+      Integer idx = map.get (obj);
+      if (idx == null) {
+         idx = list.size();
+         list.add (obj);
+         map.put (obj, idx);
+      }
+      return idx;
+   }
+
+   /**
+    * Creates a table for the attachments of a skin mesh. Returns
+    * <code>null</code> if some attachment uses a connection type that the
+    * table does not support, in which case the positions must be computed
+    * using the attachments directly.
+    */
+   static SkinWeightTable create (SkinMeshBody skin) {
+      int numa = skin.numAttachments();
+      int numc = 0;
+      int numr = 0;
+      for (int i=0; i<numa; i++) {
+         PointSkinAttachment a = skin.getAttachment (i);
+         if (a != null) {
+            numc += a.numConnections();
+            numr++;
+         }
+      }
+      SkinWeightTable table = new SkinWeightTable();
+      table.myNumRows = numr;
+      table.myVertexIdxs = new int[numr];
+      table.myOffsets = new int[numr+1];
+      table.myBasePos = new double[3*numr];
+      table.myTypes = new byte[numc];
+      table.myWeights = new double[numc];
+      table.myMasterIdxs = new int[numc];
+
+      ArrayList<FrameInfo> frames = new ArrayList<FrameInfo>();
+      ArrayList<Particle> particles = new ArrayList<Particle>();
+      ArrayList<FemNode3d> nodes = new ArrayList<FemNode3d>();
+      IdentityHashMap<FrameInfo,Integer> frameMap =
+         new IdentityHashMap<FrameInfo,Integer>();
+      IdentityHashMap<Particle,Integer> particleMap =
+         new IdentityHashMap<Particle,Integer>();
+      IdentityHashMap<FemNode3d,Integer> nodeMap =
+         new IdentityHashMap<FemNode3d,Integer>();
+
+      int r = 0;
+      int k = 0;
+      for (int i=0; i<numa; i++) {
+         PointSkinAttachment a = skin.getAttachment (i);
+         if (a == null) {
+            continue;
+         }
+         table.myVertexIdxs[r] = i;
+         table.myOffsets[r] = k;
+         Point3d base = a.getBasePosition();
+         table.myBasePos[3*r  ] = base.x;
+         table.myBasePos[3*r+1] = base.y;
+         table.myBasePos[3*r+2] = base.z;
+         int numFrameConnections = 0;
+         for (int j=0; j<a.numConnections(); j++) {
+            Connection c = a.getConnection (j);
+            if (c instanceof FrameConnection) {
+               table.myTypes[k] = FRAME;
+               table.myMasterIdxs[k] = getIndex (
+                  ((FrameConnection)c).myFrameInfo, frames, frameMap);
+               numFrameConnections++;
+            }
+            else if (c instanceof ParticleConnection) {
+               table.myTypes[k] = PARTICLE;
+               table.myMasterIdxs[k] = getIndex (
+                  ((ParticleConnection)c).myParticle, particles, particleMap);
+            }
+            else if (c instanceof BaseConnection) {
+               table.myTypes[k] = BASE;
+               table.myMasterIdxs[k] = -1;
+            }
+            else if (c instanceof FemDisplacementConnection) {
+               table.myTypes[k] = FEM_DISPLACEMENT;
+               table.myMasterIdxs[k] = getIndex (
+                  ((FemDisplacementConnection)c).myNode, nodes, nodeMap);
+            }
+            else {
+               return null;
+            }
+            table.myWeights[k] = c.myWeight;
+            k++;
+         }
+         if (numFrameConnections > table.myMaxFrameConnections) {
+            table.myMaxFrameConnections = numFrameConnections;
+         }
+         r++;
+      }
+      table.myOffsets[r] = k;
+      table.myFrames = frames.toArray (new FrameInfo[0]);
+      table.myParticles = particles.toArray (new Particle[0]);
+      table.myNodes = nodes.toArray (new FemNode3d[0]);
+      return table;
+   }
+
+   /**
+    * Returns the number of rows (i.e., attached vertices) in this table.
+    */
+   int numRows() {
+      return myNumRows;
+   }
+
+   /**
+    * Creates a workspace for use with this table.
+    */
+   Workspace createWorkspace() {
+      return new Workspace (myMaxFrameConnections);
+   }
+
+   /**
+    * Computes the positions of the vertices for rows <code>lo</code> up to
+    * but not including <code>hi</code>, and stores them in the mesh. The
+    * frame delta poses and, for dual quaternion blending, the blend
+    * quaternions, must be up to date.
+    */
+   void blendVertices (
+      MeshBase mesh, FrameBlending blending, int lo, int hi, Workspace ws) {
+
+      ArrayList<Vertex3d> vertices = mesh.getVertices();
+      Point3d pos = ws.pos;
+      Point3d tmp = ws.tmp;
+      Point3d base = ws.base;
+      DualQuaternion blendQ = ws.blendQ;
+      for (int r=lo; r<hi; r++) {
+         base.set (myBasePos[3*r], myBasePos[3*r+1], myBasePos[3*r+2]);
+         pos.setZero();
+         boolean blendQSet = false;
+         int fidx = 0; // frame counter for iterative dual quaternion blending
+         double dualw = 0; // weight for just the dual quaternion part
+         for (int k=myOffsets[r]; k<myOffsets[r+1]; k++) {
+            double w = myWeights[k];
+            switch (myTypes[k]) {
+               case FRAME: {
+                  FrameInfo finfo = myFrames[myMasterIdxs[k]];
+                  switch (blending) {
+                     case LINEAR: {
+                        tmp.transform (finfo.myDeltaPose, base);
+                        tmp.scale (w);
+                        pos.add (tmp);
+                        break;
+                     }
+                     case DUAL_QUATERNION_LINEAR: {
+                        if (!blendQSet) {
+                           blendQ.scale (w, finfo.myBlendQuaternion);
+                           blendQSet = true;
+                        }
+                        else {
+                           blendQ.scaledAdd (w, finfo.myBlendQuaternion);
+                        }
+                        dualw += w;
+                        break;
+                     }
+                     case DUAL_QUATERNION_ITERATIVE: {
+                        ws.dualqs[fidx] = finfo.myBlendQuaternion;
+                        ws.weights[fidx] = w;
+                        dualw += w;
+                        fidx++;
+                        break;
+                     }
+                  }
+                  break;
+               }
+               case PARTICLE: {
+                  pos.scaledAdd (
+                     w, myParticles[myMasterIdxs[k]].getPosition());
+                  break;
+               }
+               case BASE: {
+                  pos.scaledAdd (w, base);
+                  break;
+               }
+               case FEM_DISPLACEMENT: {
+                  FemNode3d node = myNodes[myMasterIdxs[k]];
+                  pos.scaledAdd (w, node.getPosition());
+                  pos.scaledAdd (-w, node.getRestPosition());
+                  break;
+               }
+            }
+         }
+         if (blendQSet) {
+            blendQ.normalize();
+            blendQ.transform (tmp, base);
+            pos.scaledAdd (dualw, tmp);
+         }
+         else if (blending == FrameBlending.DUAL_QUATERNION_ITERATIVE &&
+                  fidx > 0) {
+            blendQ.dualQuaternionIterativeBlending (
+               ws.weights, ws.dualqs, fidx,
+               SkinMeshBody.DQ_BLEND_TOLERANCE,
+               SkinMeshBody.DQ_MAX_BLEND_STEPS);
+            blendQ.transform (tmp, base);
+            pos.scaledAdd (dualw, tmp);
+         }
+         vertices.get(myVertexIdxs[r]).setPosition (pos);
+      }
+   }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.femmodels;
+
+import java.util.ArrayList;
+
+import maspack.geometry.MeshFactory;
+import maspack.geometry.PolygonalMesh;
+import maspack.matrix.Point3d;
+import maspack.matrix.RigidTransform3d;
+import maspack.util.RandomGenerator;
+import maspack.util.UnitTest;
+import artisynth.core.femmodels.SkinMeshBody.FrameBlending;
+import artisynth.core.mechmodels.Particle;
+import artisynth.core.mechmodels.RigidBody;
+
+/**
+ * Checks that the vertex positions computed by SkinMeshBody from its packed
+ * weight table match those computed by the attachments themselves, for
+ * different blending types and numbers of threads, and that the table is
+ * rebuilt when the attachments change.
+ */
+public class SkinWeightTableTest extends UnitTest {
+
+   SkinMeshBody mySkin;
+   ArrayList<RigidBody> myBodies = new ArrayList<RigidBody>();
+   Particle myParticle;
+   FemModel3d myFem;
+
+   SkinWeightTableTest() {
+      // enough vertices that updateSlavePos() will use several threads
+      PolygonalMesh mesh = MeshFactory.createIcosahedralSphere (1.0, 4);
+      mySkin = new SkinMeshBody (mesh);
+
+      for (int i=0; i<3; i++) {
+         RigidBody body = new RigidBody ("body"+i);
+         body.setPose (new RigidTransform3d (i-1.0, 0, 0));
+         myBodies.add (body);
+         mySkin.addFrame (body);
+      }
+      myParticle = new Particle (1, 0, 0, 1.5);
+      myFem = FemFactory.createHexGrid (null, 2.4, 2.4, 2.4, 3, 3, 3);
+      ArrayList<FemNode3d> nodes = new ArrayList<FemNode3d>();
+      nodes.addAll (myFem.getNodes());
+
+      for (int i=0; i<mesh.numVertices(); i++) {
+         PointSkinAttachment a = new PointSkinAttachment();
+         double w0 = RandomGenerator.nextDouble (0.1, 1.0);
+         double w1 = RandomGenerator.nextDouble (0.1, 1.0);
+         int f0 = RandomGenerator.nextInt (0, 2);
+         int f1 = (f0 + RandomGenerator.nextInt (1, 2)) % 3;
+         a.addFrameConnection (mySkin.getFrameInfo (f0), 0.6*w0/(w0+w1));
+         a.addFrameConnection (mySkin.getFrameInfo (f1), 0.6*w1/(w0+w1));
+         // vary the connection types, so that rows have different lengths
+         switch (i%4) {
+            case 0: {
+               a.addParticleConnection (myParticle, 0.2);
+               a.addBaseConnection (0.2);
+               break;
+            }
+            case 1: {
+               a.addBaseConnection (0.4);
+               break;
+            }
+            case 2: {
+               FemNode3d node =
+                  nodes.get (RandomGenerator.nextInt (0, nodes.size()-1));
+               a.addFemDisplacementConnection (node, 0.5);
+               a.addBaseConnection (0.4);
+               break;
+            }
+            default: {
+               a.addParticleConnection (myParticle, 0.4);
+               break;
+            }
+         }
+         mySkin.addAttachment (a);
+      }
+   }
+
+   void moveMasters() {
+      for (RigidBody body : myBodies) {
+         RigidTransform3d TBW = new RigidTransform3d (body.getPose());
+         RigidTransform3d T = new RigidTransform3d();
+         T.setRandom();
+         T.p.scale (0.2);
+         TBW.mul (T);
+         body.setPose (TBW);
+      }
+      Point3d pos = new Point3d();
+      pos.setRandom();
+      pos.scale (0.1);
+      pos.add (myParticle.getPosition());
+      myParticle.setPosition (pos);
+      for (FemNode3d node : myFem.getNodes()) {
+         pos.setRandom();
+         pos.scale (0.1);
+         pos.add (node.getPosition());
+         node.setPosition (pos);
+      }
+   }
+
+   void checkVertexPositions (String msg) {
+      Point3d pos = new Point3d();
+      for (int i=0; i<mySkin.numAttachments(); i++) {
+         mySkin.getAttachment(i).getCurrentPos (pos);
+         checkEquals (
+            msg + ", vertex " + i, mySkin.getVertex(i).getPosition(), pos);
+      }
+   }
+
+   void testBlending (FrameBlending blending) {
+      mySkin.setFrameBlending (blending);
+      for (int nthreads : new int[] { 1, 4 }) {
+         String msg = blending + ", " + nthreads + " threads";
+         mySkin.setNumSkinningThreads (nthreads);
+         moveMasters();
+         mySkin.updateSlavePos();
+         checkVertexPositions (msg);
+
+         // changing a weight or base position must cause the table to be
+         // rebuilt
+         PointSkinAttachment a = mySkin.getAttachment (7);
+         a.setWeight (0, 0.5*a.getWeight(0));
+         mySkin.updateSlavePos();
+         checkVertexPositions (msg + ", after setWeight");
+
+         Point3d base = new Point3d (mySkin.getBasePosition (11));
+         base.scale (1.1);
+         mySkin.setBasePosition (11, base);
+         mySkin.updateSlavePos();
+         checkVertexPositions (msg + ", after setBasePosition");
+      }
+   }
+
+   void testRemoveFrame() {
+      SkinWeightTable table = mySkin.getWeightTable();
+      check ("weight table not built", table != null);
+      check ("weight table rebuilt unnecessarily",
+             mySkin.getWeightTable() == table);
+      // remove the first frame, after zeroing the weights of the
+      // connections to it, so that it no longer affects the positions
+      RigidBody body = myBodies.get(0);
+      for (int i=0; i<mySkin.numAttachments(); i++) {
+         PointSkinAttachment a = mySkin.getAttachment(i);
+         for (int j=0; j<a.numConnections(); j++) {
+            if (a.getMaster(j) == body) {
+               a.setWeight (j, 0);
+            }
+         }
+      }
+      table = mySkin.getWeightTable();
+      check ("frame not removed", mySkin.removeFrame (body));
+      check ("frame info still present", mySkin.getFrameInfo (body) == null);
+      check ("weight table not invalidated by removeFrame",
+             mySkin.getWeightTable() != table);
+      moveMasters();
+      mySkin.updateSlavePos();
+      checkVertexPositions ("after removeFrame");
+   }
+
+   public void test() {
+      for (FrameBlending blending : FrameBlending.values()) {
+         testBlending (blending);
+      }
+      testRemoveFrame();
+      mySkin.dispose();
+   }
+
+   public static void main (String[] args) {
+      RandomGenerator.setSeed (0x1234);
+      SkinWeightTableTest tester = new SkinWeightTableTest();
+      tester.runtest();
+   }
+}
@@ -212,7 +212,19 @@ public class StiffnessWarper3d {
    //   }
    
    public void computeWarpingRotation(FemElement3d elem) {
-      IntegrationPoint3d wpnt = elem.getWarpingPoint();
+      computeWarpingRotation (elem, elem.getWarpingPoint());
+   }
+
+   /**
+    * Computes the warping rotation using a supplied warping point, which
+    * should be a copy of the element's warping point. This allows the
+    * rotation to be computed for several elements concurrently.
+    * 
+    * @param elem element for which the rotation should be computed
+    * @param wpnt warping point used to compute the deformation gradient
+    */
+   public void computeWarpingRotation(
+      FemElement3d elem, IntegrationPoint3d wpnt) {
       IntegrationData3d wdata = elem.getWarpingData();
       wpnt.computeJacobianAndGradient(elem.getNodes(), wdata.myInvJ0);
       computeRotation(wpnt.F, null);
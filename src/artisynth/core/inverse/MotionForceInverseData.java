@@ -66,6 +66,8 @@ public class MotionForceInverseData
    VectorNd Hlam_j = new VectorNd();
    VectorNd Hc_j = new VectorNd();
    MatrixNd Hlam = new MatrixNd();
+   MatrixNd Hthe = new MatrixNd();
+   MatrixNd Fa = new MatrixNd();
    MatrixNd Hc = new MatrixNd();
    
    VectorNd the = new VectorNd(0);
@@ -216,6 +218,9 @@ public class MotionForceInverseData
       // Hm = Jm Hu
       // compute Hu: get column j of Hu by solving with RHS = fa(e_j) = f(e_j) - f(0)
       // where e_j is elementary unit vector
+      if (!useKKTFactorAndSolve) {
+         Fa.setSize (velSize, exSize);
+      }
       for (int j = 0; j < exSize; j++)
       {
          if (j > 0) {
@@ -244,21 +249,33 @@ public class MotionForceInverseData
                    Hu_j, null, fa, /*tmp=*/ftmp, curVel, h);
              }     
             lam = myMechSysSolver.getLambda ();
+            if (j == 0) {
+               Hlam.setSize (lam.size(), exSize);
+            }
+            Hu.setColumn (j, Hu_j.getBuffer ());
+            Hlam.setColumn (j, lam.getBuffer ());
          }
          else {
-            // use pre-factored KKT system
-            // Note neglecting change in jacobians due to excitation
-            myMechSysSolver.KKTSolve(Hu_j, lam, the, fa);
+            // store the RHS, and solve for all columns at once below
+            Fa.setColumn (j, fa.getBuffer ());
          }
-         
-
-         
+      }
+      if (!useKKTFactorAndSolve) {
+         // use pre-factored KKT system, solving for all excitations with a
+         // single batched call. Note neglecting change in jacobians due to
+         // excitation
+         myMechSysSolver.KKTSolve (Hu, Hlam, Hthe, Fa);
+      }
+      
 //         if (TrackingController.isDebugTimestep (t0, t1)) {
 //            System.out.println("fa"+j+" = " + fa);            
 //            System.out.println("Hu_"+j+" = " + Hu_j);
 //         }
 //         
-         Hu.setColumn (j, Hu_j.getBuffer ());
+
+      for (int j = 0; j < exSize; j++)
+      {
+         Hu.getColumn (j, Hu_j);
          // Hm_j = Jm Hu_j;
          if (Jm != null)
             Jm.mul(Hm_j, Hu_j, Jm.rowSize (), velSize);
@@ -267,13 +284,14 @@ public class MotionForceInverseData
 
          Hv.setColumn(j, Hm_j.getBuffer());
          
-         Hlam.setColumn (j, lam.getBuffer ());
+         Hlam_j.setSize (Hlam.rowSize());
+         Hlam.getColumn (j, Hlam_j);
          // Hc_j = Jc H_lambda_j
          if (Jc != null) {
-            Jc.mul (Hc_j,lam);
+            Jc.mul (Hc_j,Hlam_j);
          }
          else {
-            Hc_j.set(lam);
+            Hc_j.set(Hlam_j);
          }
          Hc.setColumn(j,Hc_j.getBuffer());    
       }
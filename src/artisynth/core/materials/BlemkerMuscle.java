@@ -39,9 +39,6 @@ public class BlemkerMuscle extends MuscleMaterial {
    protected PropertyMode myExpStressCoeffMode = PropertyMode.Inherited;
    protected PropertyMode myUncrimpingFactorMode = PropertyMode.Inherited;
 
-   protected Vector3d myTmp = new Vector3d();
-   protected Matrix3d myMat = new Matrix3d();
-
    // Set this true to keep the tangent matrix continuous (and symmetric) at
    // lam = lamOpt, at the expense of slightly negative forces for lam < lamOpt
    protected static boolean myZeroForceBelowLamOptP = true;
@@ -257,11 +254,22 @@ public class BlemkerMuscle extends MuscleMaterial {
       return x*x;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      Vector3d a = new Vector3d();
+      Matrix3d mat = new Matrix3d();
+      Vector3d dir = new Vector3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, double excitation, Vector3d dir0,
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
       
-      Vector3d a = myTmp;
+      Vector3d a = scratch.a;
       def.getF().mul (a, dir0);
       double mag = a.norm();
       a.scale (1/mag);
@@ -323,8 +331,11 @@ public class BlemkerMuscle extends MuscleMaterial {
    public void computeTangent (
       Matrix6d D, SymmetricMatrix3d stress, double excitation, Vector3d dir0, 
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      Matrix3d mat = scratch.mat;
 
-      Vector3d a = myTmp;
+      Vector3d a = scratch.a;
       def.getF().mul (a, dir0);
       double mag = a.norm();
       a.scale (1/mag);
@@ -400,11 +411,11 @@ public class BlemkerMuscle extends MuscleMaterial {
       //
       // compute -2/3 (dev sigma (X) I)' - 4 wa/(3J) (a (X) a (X) I)'
       //
-      myMat.outerProduct (a, a);
-      myMat.scale (2*wa/J); // will be scaled again by -2/3 below
-      addStress (myMat, J, I4, W4, a);
-      myMat.scale (-2/3.0);
-      TensorUtils.addSymmetricIdentityProduct (D, myMat);
+      mat.outerProduct (a, a);
+      mat.scale (2*wa/J); // will be scaled again by -2/3 below
+      addStress (mat, J, I4, W4, a);
+      mat.scale (-2/3.0);
+      TensorUtils.addSymmetricIdentityProduct (D, mat);
 
       TensorUtils.addScaledIdentity (D, 4/3.0*w0/J);
       TensorUtils.addScaledIdentityProduct (D, 4/9.0*(wa-w0)/J);
@@ -412,7 +423,9 @@ public class BlemkerMuscle extends MuscleMaterial {
    }
 
    public double computeStretch (Vector3d dir0, SolidDeformation def) {
-      Vector3d dir = myTmp;
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      Vector3d dir = scratch.dir;
       def.getF().mul(dir, dir0);
       double mag = dir.norm();
       double J = def.getDetF();
@@ -438,8 +451,6 @@ public class BlemkerMuscle extends MuscleMaterial {
 
    public BlemkerMuscle clone() {
       BlemkerMuscle mat = (BlemkerMuscle)super.clone();
-      mat.myTmp = new Vector3d();
-      mat.myMat = new Matrix3d();
       return mat;
    }
 
@@ -51,10 +51,6 @@ public class FungMaterial extends IncompressibleMaterial {
    PropertyMode myL31Mode = PropertyMode.Inherited;
    PropertyMode myCCMode  = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myC;
-   private SymmetricMatrix3d myC2;
-
    static {
       myProps.addInheritable (
          "MU1:Inherited", "MU1", DEFAULT_MU1, "[0,inf]");
@@ -83,9 +79,6 @@ public class FungMaterial extends IncompressibleMaterial {
    }
 
    public FungMaterial () {
-      myB   = new SymmetricMatrix3d();
-      myC   = new SymmetricMatrix3d();
-      myC2  = new SymmetricMatrix3d();
    }
 
    public FungMaterial (double MU1, double MU2, double MU3, double L11, double L22, 
@@ -303,31 +296,64 @@ public class FungMaterial extends IncompressibleMaterial {
       return myCCMode;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      SymmetricMatrix3d C = new SymmetricMatrix3d();
+      SymmetricMatrix3d C2 = new SymmetricMatrix3d();
+      double[] K = new double[3];
+      double[] L = new double[3];
+      Vector3d[] a0 = {new Vector3d(), new Vector3d(), new Vector3d()};
+      Vector3d[] a = {new Vector3d(), new Vector3d(), new Vector3d()};
+      Vector3d vtmp = new Vector3d();
+      SymmetricMatrix3d[] A = {
+         new SymmetricMatrix3d(), new SymmetricMatrix3d(),
+         new SymmetricMatrix3d()};
+      Matrix3d tmpMatrix = new Matrix3d();
+      Matrix3d tmpMatrix2 = new Matrix3d();
+      SymmetricMatrix3d tmpSymmMatrix = new SymmetricMatrix3d();
+      SymmetricMatrix3d sigmaFung = new SymmetricMatrix3d();
+      Matrix3d mydevF = new Matrix3d();
+      SymmetricMatrix3d bmi = new SymmetricMatrix3d();
+      Matrix6d tmpMatrix6d = new Matrix6d();
+      Matrix6d cFung = new Matrix6d();
+      Matrix6d tmpDdots = new Matrix6d();
+      SymmetricMatrix3d sd = new SymmetricMatrix3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, SolidDeformation def, Matrix3d Q,
       FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
+      SymmetricMatrix3d C = scratch.C;
+      SymmetricMatrix3d C2 = scratch.C2;
 
       sigma.setZero();
 
-      double[] K = new double[3];
-      double[] L = new double[3];
+      double[] K = scratch.K;
+      double[] L = scratch.L;
       
-      Vector3d[] a0 = {new Vector3d(), new Vector3d(), new Vector3d()};
-      Vector3d[] a  = {new Vector3d(), new Vector3d(), new Vector3d()};
+      Vector3d[] a0 = scratch.a0;
+      Vector3d[] a = scratch.a;
       
-      Vector3d vtmp = new Vector3d();
+      Vector3d vtmp = scratch.vtmp;
       
       // Matrix3d Q = Matrix3d.IDENTITY;
       // if (dt.getFrame() != null) {
       //   Q = dt.getFrame(); 
       // }
-      SymmetricMatrix3d[] A  = {new SymmetricMatrix3d(), new SymmetricMatrix3d(), new SymmetricMatrix3d()};
+      SymmetricMatrix3d[] A = scratch.A;
       
-      Matrix3d tmpMatrix  = new Matrix3d();
-      Matrix3d tmpMatrix2 = new Matrix3d();
-      SymmetricMatrix3d tmpSymmMatrix  = new SymmetricMatrix3d();
+      Matrix3d tmpMatrix = scratch.tmpMatrix;
+      Matrix3d tmpMatrix2 = scratch.tmpMatrix2;
+      SymmetricMatrix3d tmpSymmMatrix = scratch.tmpSymmMatrix;
       
-      SymmetricMatrix3d sigmaFung = new SymmetricMatrix3d();
+      SymmetricMatrix3d sigmaFung = scratch.sigmaFung;
+      sigmaFung.setZero();
 
       // Evaluate Lame coefficients
       mu[0] = myMU1;
@@ -348,15 +374,16 @@ public class FungMaterial extends IncompressibleMaterial {
       double avgp = def.getAveragePressure();
 
       // Calculate deviatoric left Cauchy-Green tensor
-      def.computeDevLeftCauchyGreen(myB);
+      def.computeDevLeftCauchyGreen(B);
 
       // Calculate deviatoric right Cauchy-Green tensor
-      def.computeDevRightCauchyGreen(myC);
+      def.computeDevRightCauchyGreen(C);
 
       // calculate square of C
-      myC2.mulTransposeLeft (myC);
+      C2.mulTransposeLeft (C);
 
-      Matrix3d mydevF = new Matrix3d(def.getF());
+      Matrix3d mydevF = scratch.mydevF;
+      mydevF.set (def.getF());
       mydevF.scale(Math.pow(J,-1.0 / 3.0));
 
       for (int i=0; i<3; i++) {
@@ -365,10 +392,10 @@ public class FungMaterial extends IncompressibleMaterial {
          a0[i].y = Q.get(1,i);
          a0[i].z = Q.get(2,i);
 
-         vtmp.mul(myC,a0[i]);
+         vtmp.mul(C,a0[i]);
          K[i] = a0[i].dot(vtmp);
 
-         vtmp.mul(myC2,a0[i]);
+         vtmp.mul(C2,a0[i]);
          L[i] = a0[i].dot(vtmp);
 
          a[i].mul(mydevF,a0[i]);
@@ -389,8 +416,8 @@ public class FungMaterial extends IncompressibleMaterial {
       eQ = Math.exp(eQ/(4.*myCC));
 
       // Evaluate the stress
-      SymmetricMatrix3d bmi = new SymmetricMatrix3d(); 
-      bmi.sub(myB,SymmetricMatrix3d.IDENTITY);
+      SymmetricMatrix3d bmi = scratch.bmi;
+      bmi.sub(B,SymmetricMatrix3d.IDENTITY);
       for (int i=0; i<3; i++) {
          //       s += mu[i]*K[i]*(A[i]*bmi + bmi*A[i]);
          tmpMatrix.mul(A[i], bmi);
@@ -426,30 +453,37 @@ public class FungMaterial extends IncompressibleMaterial {
    public void computeTangent (
       Matrix6d c, SymmetricMatrix3d stress, SolidDeformation def, 
       Matrix3d Q, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
+      SymmetricMatrix3d C = scratch.C;
+      SymmetricMatrix3d C2 = scratch.C2;
       
       c.setZero();
 
-      double[] K = new double[3];
-      double[] L = new double[3];
+      double[] K = scratch.K;
+      double[] L = scratch.L;
       
-      Vector3d[] a0 = {new Vector3d(), new Vector3d(), new Vector3d()};
-      Vector3d[] a  = {new Vector3d(), new Vector3d(), new Vector3d()};
-      Vector3d vtmp = new Vector3d();
+      Vector3d[] a0 = scratch.a0;
+      Vector3d[] a = scratch.a;
+      Vector3d vtmp = scratch.vtmp;
       
       // Matrix3d Q = Matrix3d.IDENTITY;
       // if (dt.getFrame() != null) {
       //    Q = dt.getFrame(); 
       //  }
-      SymmetricMatrix3d[] A  = {new SymmetricMatrix3d(), 
-         new SymmetricMatrix3d(), new SymmetricMatrix3d()};
+      SymmetricMatrix3d[] A = scratch.A;
       
-      Matrix3d tmpMatrix  = new Matrix3d();
-      Matrix3d tmpMatrix2 = new Matrix3d();
+      Matrix3d tmpMatrix = scratch.tmpMatrix;
+      Matrix3d tmpMatrix2 = scratch.tmpMatrix2;
       
-      SymmetricMatrix3d tmpSymmMatrix  = new SymmetricMatrix3d();
-      Matrix6d tmpMatrix6d  = new Matrix6d();
+      SymmetricMatrix3d tmpSymmMatrix = scratch.tmpSymmMatrix;
+      Matrix6d tmpMatrix6d = scratch.tmpMatrix6d;
+      tmpMatrix6d.setZero();
 
-      Matrix6d cFung = new Matrix6d();
+      Matrix6d cFung = scratch.cFung;
+      cFung.setZero();
+      Matrix6d tmpDdots = scratch.tmpDdots;
       
       // Evaluate Lame coefficients
       mu[0] = myMU1;
@@ -470,15 +504,16 @@ public class FungMaterial extends IncompressibleMaterial {
       double avgp = def.getAveragePressure();
 
       // Calculate deviatoric left Cauchy-Green tensor
-      def.computeDevLeftCauchyGreen(myB);
+      def.computeDevLeftCauchyGreen(B);
 
       // Calculate deviatoric right Cauchy-Green tensor
-      def.computeDevRightCauchyGreen(myC);
+      def.computeDevRightCauchyGreen(C);
 
       // calculate square of C
-      myC2.mulTransposeLeft (myC);
+      C2.mulTransposeLeft (C);
 
-      Matrix3d mydevF = new Matrix3d(def.getF());
+      Matrix3d mydevF = scratch.mydevF;
+      mydevF.set (def.getF());
       mydevF.scale(Math.pow(J,-1.0 / 3.0));
 
       for (int i=0; i<3; i++) {
@@ -487,10 +522,10 @@ public class FungMaterial extends IncompressibleMaterial {
          a0[i].y = Q.get(1,i);
          a0[i].z = Q.get(2,i);
 
-         vtmp.mul(myC,a0[i]);
+         vtmp.mul(C,a0[i]);
          K[i] = a0[i].dot(vtmp);
          
-         vtmp.mul(myC2,a0[i]);
+         vtmp.mul(C2,a0[i]);
          L[i] = a0[i].dot(vtmp);
 
          a[i].mul(mydevF,a0[i]);
@@ -511,10 +546,11 @@ public class FungMaterial extends IncompressibleMaterial {
       eQ = Math.exp(eQ/(4.*myCC));
       
       // Evaluate the distortional part of the Cauchy stress
-      SymmetricMatrix3d sd = new SymmetricMatrix3d();
+      SymmetricMatrix3d sd = scratch.sd;
+      sd.setZero();
 
-      SymmetricMatrix3d bmi = new SymmetricMatrix3d(); 
-      bmi.sub(myB,SymmetricMatrix3d.IDENTITY);
+      SymmetricMatrix3d bmi = scratch.bmi;
+      bmi.sub(B,SymmetricMatrix3d.IDENTITY);
       
       for (int i=0; i<3; i++) {
 
@@ -532,7 +568,7 @@ public class FungMaterial extends IncompressibleMaterial {
             sd.scaledAdd(lam[i][j]/2.0*(K[i]-1.0)*K[j], A[j]);
             sd.scaledAdd(lam[i][j]/2.0*(K[j]-1.0)*K[i], A[i]);
          }
-         addTensorProduct4(cFung, mu[i]*K[i], A[i], myB);
+         addTensorProduct4(cFung, mu[i]*K[i], A[i], B);
          
          // C += mu[i]*K[i]*dyad4s(A[i],b);
          for (int j=0; j<3; j++) {
@@ -558,7 +594,8 @@ public class FungMaterial extends IncompressibleMaterial {
       //      + 2./3.*((I4-IxI/3.)*sd.tr()-dyad1s(sd.dev(),I));
 
       TensorUtils.addScaledIdentityProduct (tmpMatrix6d, -1.0 / 3.0);
-      cFung.add(ddots(cFung,tmpMatrix6d));
+      ddots(tmpDdots, cFung, tmpMatrix6d);
+      cFung.add(tmpDdots);
 
       TensorUtils.addScaledIdentityProduct (cFung, 1.0/9.0*cTrace);
 
@@ -617,7 +654,6 @@ public class FungMaterial extends IncompressibleMaterial {
 
    public FungMaterial clone() {
       FungMaterial mat = (FungMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       return mat;
    }
 
@@ -682,7 +718,17 @@ public class FungMaterial extends IncompressibleMaterial {
    }
    public static Matrix6d ddots (Matrix6d a, Matrix6d b) {
       Matrix6d c = new Matrix6d();
+      ddots (c, a, b);
+      return c;
+   }
 
+   /**
+    * Computes the upper triangular part of ddots(a,b) and places the result
+    * in c, with the lower triangular part set to zero. c should not be the
+    * same as a or b.
+    */
+   public static void ddots (Matrix6d c, Matrix6d a, Matrix6d b) {
+      c.setZero();
       c.m00 = 2*(a.m00*b.m00 + a.m01*b.m01 + a.m02*b.m02 + 2*a.m03*b.m03 
          + 2*a.m04*b.m04 + 2*a.m05*b.m05);
 
@@ -761,8 +807,6 @@ public class FungMaterial extends IncompressibleMaterial {
 
       c.m55 = 2*(a.m05*b.m05 + a.m15*b.m15 + a.m25*b.m25 
          + 2*a.m35*b.m35 + 2*a.m45*b.m45 + 2*a.m55*b.m55);
-
-      return c;
    }
 
    //-----------------------------------------------------------------------------
@@ -42,9 +42,6 @@ public class GenericMuscle extends MuscleMaterial {
    protected PropertyMode myExpStressCoeffMode = PropertyMode.Inherited;
    protected PropertyMode myUncrimpingFactorMode = PropertyMode.Inherited;
 
-   protected Vector3d myTmp = new Vector3d();
-   protected Matrix3d myMat = new Matrix3d();
-
    // Set this true to keep the tangent matrix continuous (and symmetric) at
    // lam = lamOpt, at the expense of slightly negative forces for lam < lamOpt
    protected static boolean myZeroForceBelowLamOptP = false;
@@ -283,16 +280,27 @@ public class GenericMuscle extends MuscleMaterial {
       sig.m21 = sig.m12;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      Vector3d dir = new Vector3d();
+      Matrix3d mat = new Matrix3d();
+      Vector3d a = new Vector3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, double excitation, Vector3d dir0,
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
       
       // Methods and naming conventions follow the paper "Finite element
       // implementation of incompressible, isotropic hyperelasticity", by
       // Weiss, Makerc, and Govindjeed, Computer Methods in Applied Mechanical
       // Engineering, 1996.
 
-      Vector3d dir = myTmp;
+      Vector3d dir = scratch.dir;
       def.getF().mul (dir, dir0);
       double mag = dir.norm();
       dir.scale (1/mag);
@@ -328,8 +336,11 @@ public class GenericMuscle extends MuscleMaterial {
    public void computeTangent (
       Matrix6d D, SymmetricMatrix3d stress, double excitation, Vector3d dir0, 
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      Matrix3d mat = scratch.mat;
 
-      Vector3d a = myTmp;
+      Vector3d a = scratch.a;
       def.getF().mul (a, dir0);
       double lam = a.norm();
       a.scale (1/lam);
@@ -372,11 +383,11 @@ public class GenericMuscle extends MuscleMaterial {
       //
       // compute -2/3 (dev sigma (X) I)' - 4 wa/(3J) (a (X) a (X) I)'
       //
-      myMat.outerProduct (a, a);
-      myMat.scale (2*wa/J); // will be scaled again by -2/3 below
-      addStress (myMat, J, I4, W4, a);
-      myMat.scale (-2/3.0);
-      TensorUtils.addSymmetricIdentityProduct (D, myMat);
+      mat.outerProduct (a, a);
+      mat.scale (2*wa/J); // will be scaled again by -2/3 below
+      addStress (mat, J, I4, W4, a);
+      mat.scale (-2/3.0);
+      TensorUtils.addSymmetricIdentityProduct (D, mat);
       TensorUtils.addScaledIdentity (D, 4/3.0*w0/J);
       TensorUtils.addScaledIdentityProduct (D, 4/9.0*(wa-w0)/J);
 
@@ -406,8 +417,6 @@ public class GenericMuscle extends MuscleMaterial {
 
    public GenericMuscle clone() {
       GenericMuscle mat = (GenericMuscle)super.clone();
-      mat.myTmp = new Vector3d();
-      mat.myMat = new Matrix3d();
       return mat;
    }
 
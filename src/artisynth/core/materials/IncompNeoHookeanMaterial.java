@@ -19,8 +19,6 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
 
    PropertyMode myGMode = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
-
    static {
       myProps.addInheritable (
          "shearModulus:Inherited", "shear modulus", DEFAULT_G);
@@ -31,11 +29,9 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
    }
 
    public IncompNeoHookeanMaterial (){
-      myB = new SymmetricMatrix3d();
    }
 
    public IncompNeoHookeanMaterial (double E, double kappa) {
-      myB = new SymmetricMatrix3d();
       setShearModulus (E);
       setBulkModulus (kappa);
    }
@@ -60,19 +56,29 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
       return myGMode;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, SolidDeformation def, Matrix3d Q,
       FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
 
       double J = def.getDetF();
       double p = def.getAveragePressure();
 
-      def.computeLeftCauchyGreen (myB);
+      def.computeLeftCauchyGreen (B);
 
       double muJ = myG/Math.pow(J, 5.0/3.0);
-      double diagTerm = -muJ*(myB.m00 + myB.m11 + myB.m22)/3.0 + p;
+      double diagTerm = -muJ*(B.m00 + B.m11 + B.m22)/3.0 + p;
 
-      sigma.scale (muJ, myB);
+      sigma.scale (muJ, B);
       sigma.m00 += diagTerm;
       sigma.m11 += diagTerm;
       sigma.m22 += diagTerm;
@@ -81,12 +87,15 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
    public void computeTangent (
       Matrix6d D, SymmetricMatrix3d stress, SolidDeformation def, 
       Matrix3d Q, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
 
       double J = def.getDetF();
 
-      def.computeLeftCauchyGreen (myB);
+      def.computeLeftCauchyGreen (B);
 
-      double Ib = myB.m00+myB.m11+myB.m22;
+      double Ib = B.m00+B.m11+B.m22;
       double muJ = myG/Math.pow(J, 5.0/3.0);
       double p = def.getAveragePressure();
 
@@ -95,7 +104,7 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
       TensorUtils.addScaledIdentityProduct (D, p+ 2/9.0*muJ*Ib);
       TensorUtils.addScaledIdentity (D, -2*p + 2/3.0*muJ*Ib);
       TensorUtils.addSymmetricTensorProduct (
-         D, -2/3.0*muJ, myB, SymmetricMatrix3d.IDENTITY);
+         D, -2/3.0*muJ, B, SymmetricMatrix3d.IDENTITY);
       D.setLowerToUpper();
    }
 
@@ -114,7 +123,6 @@ public class IncompNeoHookeanMaterial extends IncompressibleMaterial {
 
    public IncompNeoHookeanMaterial clone() {
       IncompNeoHookeanMaterial mat = (IncompNeoHookeanMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       return mat;
    }
 
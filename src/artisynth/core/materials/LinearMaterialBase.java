@@ -72,15 +72,31 @@ public abstract class LinearMaterialBase extends FemMaterial {
       return myCorotatedMode;
    }
 
-   private SVDecomposition3d mySVD = null;
    protected RotationMatrix3d computeRotation(Matrix3d F, SymmetricMatrix3d P) {
-      if (mySVD == null) {
-         mySVD = new SVDecomposition3d();
-      }
+      SVDecomposition3d svd = new SVDecomposition3d();
       RotationMatrix3d R = new RotationMatrix3d();
-      mySVD.polarDecomposition (R, P, F);
+      svd.polarDecomposition (R, P, F);
       return R;
    }
+
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      SVDecomposition3d svd = new SVDecomposition3d();
+      RotationMatrix3d R = new RotationMatrix3d();
+      Matrix6d T = new Matrix6d();
+   }
+
+   /**
+    * Computes the rotation from the polar decomposition of F, using
+    * the scratch storage of the deformation.
+    */
+   private RotationMatrix3d computeRotation (
+      Scratch scratch, Matrix3d F, SymmetricMatrix3d P) {
+      scratch.svd.polarDecomposition (scratch.R, P, F);
+      return scratch.R;
+   }
    
    /**
     * Multiplies strain by the spatial stiffness tensor C to compute the
@@ -108,7 +124,9 @@ public abstract class LinearMaterialBase extends FemMaterial {
       // cauchy strain, rotated if necessary
       if (myCorotated) {
          if (R == null) {
-            R = computeRotation(F, sigma);
+            Scratch scratch =
+               def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+            R = computeRotation(scratch, F, sigma);
          } else {
             // remove rotation from F
             sigma.mulTransposeLeftSymmetric(R, F);
@@ -140,15 +158,17 @@ public abstract class LinearMaterialBase extends FemMaterial {
       if (isCorotated()) {
 
          // need to rotate this tensor from linear frame into material one
+         Scratch scratch =
+            def.getWorkspace().getScratch (Scratch.class, Scratch::new);
          RotationMatrix3d R = def.getR();
          if (R == null) {
             Matrix3d F = def.getF();
-            R = computeRotation(F, null);
+            R = computeRotation(scratch, F, null);
          }
 
          // R rotates from material frame to the spatial one. Transpose
          // of R rotates from spatial frame to material one.
-         TensorUtils.unrotateTangent (D, D, R);
+         TensorUtils.unrotateTangent (D, D, R, scratch.T);
       }
       
    }
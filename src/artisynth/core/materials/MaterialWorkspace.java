@@ -0,0 +1,65 @@
+package artisynth.core.materials;
+
+import java.util.HashMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-thread scratch storage used by materials when computing stress and
+ * tangent matrices. A workspace is obtained from the {@link
+ * SolidDeformation} passed to the material, via {@link
+ * SolidDeformation#getWorkspace}, and since each thread evaluating materials
+ * uses its own deformation object, a material can use the scratch storage
+ * without synchronization.
+ *
+ * <p>Scratch storage is organized as a set of scratch objects, each
+ * identified by its class. A material typically defines a private static
+ * class containing all the temporary matrices and vectors it needs, and then
+ * obtains an instance of it at the start of each computation using
+ * <pre>
+ *   Scratch tmp = def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+ * </pre>
+ * The instance is created on first use and then reused, so that once all
+ * materials have been evaluated at least once, no further allocation takes
+ * place. Because the scratch object is shared by all instances of the
+ * material that are evaluated by the same thread, its contents should not
+ * be expected to persist between calls, and a material method should not
+ * call another method which uses the same scratch class.
+ */
+public class MaterialWorkspace {
+
+   private HashMap<Class<?>,Object> myScratch =
+      new HashMap<Class<?>,Object>();
+
+   /**
+    * Returns the scratch object for the class <code>type</code>, creating it
+    * with <code>factory</code> if it does not yet exist.
+    *
+    * @param type class of the scratch object
+    * @param factory used to create the scratch object on first use
+    * @return scratch object for <code>type</code>
+    */
+   public <T> T getScratch (Class<T> type, Supplier<? extends T> factory) {
+      Object obj = myScratch.get (type);
+      if (obj == null) {
+         obj = factory.get();
+         myScratch.put (type, obj);
+      }
+      return type.cast (obj);
+   }
+
+   /**
+    * Removes all scratch objects from this workspace.
+    */
+   public void clear() {
+      myScratch.clear();
+   }
+
+   /**
+    * Returns the number of scratch objects currently held by this workspace.
+    *
+    * @return number of scratch objects
+    */
+   public int numScratchObjects() {
+      return myScratch.size();
+   }
+}
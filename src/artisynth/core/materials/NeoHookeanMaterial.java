@@ -21,7 +21,6 @@ public class NeoHookeanMaterial extends FemMaterial {
    PropertyMode myNuMode = PropertyMode.Inherited;
    PropertyMode myEMode = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
    //private SymmetricMatrix3d myB2;
 
    static {
@@ -36,7 +35,6 @@ public class NeoHookeanMaterial extends FemMaterial {
    }
 
    public NeoHookeanMaterial (){
-      myB = new SymmetricMatrix3d();
       //myB2 = new SymmetricMatrix3d();
    }
    
@@ -86,9 +84,19 @@ public class NeoHookeanMaterial extends FemMaterial {
       return myEMode;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, SolidDeformation def, Matrix3d Q,
       FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
 
       double J = def.getDetF();
 
@@ -97,9 +105,9 @@ public class NeoHookeanMaterial extends FemMaterial {
       double lam = (myE*myNu)/((1-2*myNu)*(1+myNu));
       double mu = G;
 
-      def.computeLeftCauchyGreen (myB);
+      def.computeLeftCauchyGreen (B);
 
-      sigma.scale (mu/J, myB);
+      sigma.scale (mu/J, B);
       double diagTerm = (lam*Math.log(J)-mu)/J;
       sigma.m00 += diagTerm;
       sigma.m11 += diagTerm;
@@ -109,10 +117,13 @@ public class NeoHookeanMaterial extends FemMaterial {
    public void computeTangent (
       Matrix6d D, SymmetricMatrix3d stress, SolidDeformation def, 
       Matrix3d Q, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
 
       double J = def.getDetF();
 
-      def.computeLeftCauchyGreen (myB);
+      def.computeLeftCauchyGreen (B);
 
       // express constitutive law in terms of Lama parameters
       double G = myE/(2*(1+myNu)); // bulk modulus
@@ -141,7 +152,6 @@ public class NeoHookeanMaterial extends FemMaterial {
 
    public NeoHookeanMaterial clone() {
       NeoHookeanMaterial mat = (NeoHookeanMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       //mat.myB2 = new SymmetricMatrix3d();
       return mat;
    }
@@ -47,10 +47,6 @@ public class OgdenMaterial extends IncompressibleMaterial {
    PropertyMode myAlpha5Mode = PropertyMode.Inherited;
    PropertyMode myAlpha6Mode = PropertyMode.Inherited;
 
-   private SymmetricMatrix3d myB;
-   private SymmetricMatrix3d myB2;
-   private SymmetricMatrix3d myTmp;
-   
    static {
       myProps.addInheritable (
          "Alpha1:Inherited", "Alpha1", DEFAULT_ALPHA1);
@@ -83,9 +79,6 @@ public class OgdenMaterial extends IncompressibleMaterial {
    }
 
    public OgdenMaterial () {
-      myB   = new SymmetricMatrix3d();
-      myB2  = new SymmetricMatrix3d();
-      myTmp = new SymmetricMatrix3d();
    }
    
    public OgdenMaterial (double[] mu, double[] alpha, double kappa) {
@@ -345,9 +338,28 @@ public class OgdenMaterial extends IncompressibleMaterial {
       return myAlpha6Mode;
    }
 	   
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      SymmetricMatrix3d B = new SymmetricMatrix3d();
+      Vector3d principalStretch = new Vector3d();
+      Vector3d principalStretch2 = new Vector3d();
+      Matrix3d principalDirection = new Matrix3d();
+      SymmetricMatrix3d B2 = new SymmetricMatrix3d();
+      SymmetricMatrix3d tmp = new SymmetricMatrix3d();
+      double[][] principalStretchDevPow = new double[3][6];
+      Vector3d principalStretchDev = new Vector3d();
+      SymmetricMatrix3d ma = new SymmetricMatrix3d();
+      SymmetricMatrix3d mb = new SymmetricMatrix3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, SolidDeformation def, Matrix3d Q,
       FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
 
       double J = def.getDetF();
       double avgp = def.getAveragePressure();
@@ -355,14 +367,14 @@ public class OgdenMaterial extends IncompressibleMaterial {
       sigma.setZero();
 
       // Calculate Deviatoric left Cauchy-Green tensor
-      def.computeDevLeftCauchyGreen(myB);
+      def.computeDevLeftCauchyGreen(B);
 
-      Vector3d principalStretch   = new Vector3d();
-      Vector3d principalStretch2  = new Vector3d();
-      Matrix3d principalDirection = new Matrix3d();
+      Vector3d principalStretch = scratch.principalStretch;
+      Vector3d principalStretch2 = scratch.principalStretch2;
+      Matrix3d principalDirection = scratch.principalDirection;
      
       // Calculate principal stretches and principal directions
-      myB.getEigenValues(principalStretch2, principalDirection);
+      B.getEigenValues(principalStretch2, principalDirection);
       for ( int i=0; i<3; i++) {
          principalStretch.set(i, Math.sqrt(principalStretch2.get(i)) );
       }
@@ -397,27 +409,31 @@ public class OgdenMaterial extends IncompressibleMaterial {
    public void computeTangent (
       Matrix6d c, SymmetricMatrix3d stress, SolidDeformation def, 
       Matrix3d Q, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      SymmetricMatrix3d B = scratch.B;
+      SymmetricMatrix3d B2 = scratch.B2;
+      SymmetricMatrix3d tmp = scratch.tmp;
       
       double J = def.getDetF();
 
-      double[][] principalStretchDevPow;
-      principalStretchDevPow = new double[3][6];
+      double[][] principalStretchDevPow = scratch.principalStretchDevPow;
 
       // Calculate left Cauchy-Green tensor
-      def.computeLeftCauchyGreen(myB);
+      def.computeLeftCauchyGreen(B);
   
       // Calculate square of B
-      myB2.mulTransposeLeft(myB);
+      B2.mulTransposeLeft(B);
 
       double p = def.getAveragePressure(); // average element pressure
 
-      Vector3d principalStretch         = new Vector3d();
-      Vector3d principalStretch2        = new Vector3d();
-      Vector3d principalStretchDev      = new Vector3d();
-      Matrix3d principalDirection       = new Matrix3d();
+      Vector3d principalStretch = scratch.principalStretch;
+      Vector3d principalStretch2 = scratch.principalStretch2;
+      Vector3d principalStretchDev = scratch.principalStretchDev;
+      Matrix3d principalDirection = scratch.principalDirection;
 
       // Calculate principal stretches and principal directions
-      myB.getEigenValues (principalStretch2, principalDirection);
+      B.getEigenValues (principalStretch2, principalDirection);
 
       for ( int i=0; i<3; i++ ) {
          principalStretch.set (i, Math.sqrt(principalStretch2.get(i)) );
@@ -441,11 +457,14 @@ public class OgdenMaterial extends IncompressibleMaterial {
                principalStretchDevPow[i][n] =
                   Math.pow(principalStretchDev.get(i), myAlpha[n]);
             }
+            else {
+               principalStretchDevPow[i][n] = 0;
+            }
          }
       }
 
-      SymmetricMatrix3d ma = new SymmetricMatrix3d();
-      SymmetricMatrix3d mb = new SymmetricMatrix3d();
+      SymmetricMatrix3d ma = scratch.ma;
+      SymmetricMatrix3d mb = scratch.mb;
 
       // Constant for determining differences in principal stretches
       double smallNum = 1e-8;
@@ -496,9 +515,9 @@ public class OgdenMaterial extends IncompressibleMaterial {
                ( principalStretch2.get(i) - principalStretch2.get(k) );
 
             // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-            ma.set(myB2);
-            ma.scaledAdd (-principalStretch2.get(k), myB);
-            ma.scaledAdd (-principalStretch2.get(j), myB);
+            ma.set(B2);
+            ma.scaledAdd (-principalStretch2.get(k), B);
+            ma.scaledAdd (-principalStretch2.get(j), B);
             ma.scaledAdd ( principalStretch2.get(j) * principalStretch2.get(k), 
                            SymmetricMatrix3d.IDENTITY);
             ma.scale (1.0 / Di);
@@ -516,14 +535,14 @@ public class OgdenMaterial extends IncompressibleMaterial {
             }
 
             // Calculate dgm term in Eq 2.68 of Simo and Taylor (1991)
-            TensorUtils.addTensorProduct4 (c, 2.0 * beta / J / Di, myB);
-            TensorUtils.addTensorProduct  (c, -2.0 * beta / J / Di, myB);
+            TensorUtils.addTensorProduct4 (c, 2.0 * beta / J / Di, B);
+            TensorUtils.addTensorProduct  (c, -2.0 * beta / J / Di, B);
             TensorUtils.addScaledIdentityProduct (c, I3 * 2.0 * beta / J / Di / 
                                                   principalStretch2.get(i));
             TensorUtils.addScaledIdentity (c, -I3 * 2.0 * beta / J / Di / 
                                            principalStretch2.get(i));
             TensorUtils.addSymmetricTensorProduct (
-               c, 2.0 * beta / J / Di * principalStretch2.get(i), myB, ma);
+               c, 2.0 * beta / J / Di * principalStretch2.get(i), B, ma);
             TensorUtils.addTensorProduct  (c, -1.0 * beta / J / Di * Dpi * 
                                            principalStretch.get(i), ma);
             TensorUtils.addSymmetricTensorProduct (
@@ -538,9 +557,9 @@ public class OgdenMaterial extends IncompressibleMaterial {
                   ( principalStretch2.get(n) - principalStretch2.get(k) );
                     
                // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-               mb.set(myB2);
-               mb.scaledAdd (-principalStretch2.get(k), myB);
-               mb.scaledAdd (-principalStretch2.get(j), myB);
+               mb.set(B2);
+               mb.scaledAdd (-principalStretch2.get(k), B);
+               mb.scaledAdd (-principalStretch2.get(j), B);
                mb.scaledAdd ( principalStretch2.get(j)*principalStretch2.get(k), 
                               SymmetricMatrix3d.IDENTITY);
                mb.scale (1.0 / Di);
@@ -640,22 +659,22 @@ public class OgdenMaterial extends IncompressibleMaterial {
          }
               
          // the matrix mi - Eq. 2.15 of Simo and Taylor (1991)
-         ma.set (myB2);
-         ma.scaledAdd (-principalStretch2.get(k), myB);
-         ma.scaledAdd (-principalStretch2.get(j), myB);
+         ma.set (B2);
+         ma.scaledAdd (-principalStretch2.get(k), B);
+         ma.scaledAdd (-principalStretch2.get(j), B);
          ma.scaledAdd ( principalStretch2.get(j) * principalStretch2.get(k),
                         SymmetricMatrix3d.IDENTITY);
          ma.scale (1.0 / Di);
 
          // Calculate dgm term in Eq. 2.48b and Eq 2.70 of Simo and Taylor (1991)
-         TensorUtils.addTensorProduct4 (c, 2.0 * (beta3-beta1) / J / Di, myB);
-         TensorUtils.addTensorProduct  (c, -2.0 * (beta3-beta1) / J / Di, myB);
+         TensorUtils.addTensorProduct4 (c, 2.0 * (beta3-beta1) / J / Di, B);
+         TensorUtils.addTensorProduct  (c, -2.0 * (beta3-beta1) / J / Di, B);
          TensorUtils.addScaledIdentityProduct (
             c, 2.0 * (beta3-beta1) / J * I3 / Di / principalStretch2.get(i));
          TensorUtils.addScaledIdentity (
             c, -2.0 * (beta3-beta1) / J * I3 / Di / principalStretch2.get(i));
          TensorUtils.addSymmetricTensorProduct (
-            c, 2.0 * (beta3-beta1) / J / Di * principalStretch2.get(i),myB,ma);
+            c, 2.0 * (beta3-beta1) / J / Di * principalStretch2.get(i),B,ma);
          TensorUtils.addTensorProduct  (
             c, -1.0 * (beta3-beta1) / J / Di * Dpi * principalStretch.get(i), ma);
          TensorUtils.addSymmetricTensorProduct (
@@ -664,11 +683,11 @@ public class OgdenMaterial extends IncompressibleMaterial {
 
          // Calculate other terms in Eq 2.70 of Simo and Taylor (1991)
          TensorUtils.addScaledIdentity (c, -2.0 * beta1 / J);
-         myTmp.set (SymmetricMatrix3d.IDENTITY);
-         myTmp.scaledAdd (-1.0, ma);
-         TensorUtils.addTensorProduct  (c, g11 / J, myTmp);
+         tmp.set (SymmetricMatrix3d.IDENTITY);
+         tmp.scaledAdd (-1.0, ma);
+         TensorUtils.addTensorProduct  (c, g11 / J, tmp);
          TensorUtils.addTensorProduct  (c, g33 / J, ma);
-         TensorUtils.addSymmetricTensorProduct (c, g13 / J, ma, myTmp);
+         TensorUtils.addSymmetricTensorProduct (c, g13 / J, ma, tmp);
       }
       
       c.m00 += - p;
@@ -703,7 +722,6 @@ public class OgdenMaterial extends IncompressibleMaterial {
 
    public OgdenMaterial clone() {
       OgdenMaterial mat = (OgdenMaterial)super.clone();
-      mat.myB = new SymmetricMatrix3d();
       return mat;
    }
 
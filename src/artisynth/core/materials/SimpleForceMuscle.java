@@ -29,9 +29,6 @@ public class SimpleForceMuscle extends MuscleMaterial {
 
    protected PropertyMode myMaxStressMode = PropertyMode.Inherited;
 
-   protected Vector3d myTmp = new Vector3d();
-   protected Matrix3d myMat = new Matrix3d();
-
    // Set this true to keep the tangent matrix continuous (and symmetric) at
    // lam = lamOpt, at the expense of slightly negative forces for lam < lamOpt
    protected static boolean myZeroForceBelowLamOptP = false;
@@ -164,9 +161,20 @@ public class SimpleForceMuscle extends MuscleMaterial {
       sig.m21 = sig.m12;
    }
 
+   /**
+    * Temporary storage used by the stress and tangent computations.
+    */
+   private static class Scratch {
+      Vector3d dir = new Vector3d();
+      Matrix3d mat = new Matrix3d();
+      Vector3d a = new Vector3d();
+   }
+
    public void computeStress (
       SymmetricMatrix3d sigma, double excitation, Vector3d dir0,
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
       
       // Methods and naming conventions follow the paper "Finite element
       // implementation of incompressible, isotropic hyperelasticity", by
@@ -178,7 +186,7 @@ public class SimpleForceMuscle extends MuscleMaterial {
          return;
       }
       
-      Vector3d dir = myTmp;
+      Vector3d dir = scratch.dir;
       def.getF().mul (dir, dir0);
       double mag = dir.norm();
       dir.scale (1/mag);
@@ -193,13 +201,16 @@ public class SimpleForceMuscle extends MuscleMaterial {
    public void computeTangent (
       Matrix6d D, SymmetricMatrix3d stress, double excitation, Vector3d dir0, 
       SolidDeformation def, FemMaterial baseMat) {
+      Scratch scratch =
+         def.getWorkspace().getScratch (Scratch.class, Scratch::new);
+      Matrix3d mat = scratch.mat;
 
       double J = def.getDetF();
       if (myZeroForceBelowNegativeJ && J <= 0) {
          return;
       }
       
-      Vector3d a = myTmp;
+      Vector3d a = scratch.a;
       def.getF().mul (a, dir0);
       double lam = a.norm();
       a.scale (1/lam);
@@ -216,11 +227,11 @@ public class SimpleForceMuscle extends MuscleMaterial {
       //
       // compute -2/3 (dev sigma (X) I)' - 4 wa/(3J) (a (X) a (X) I)'
       //
-      myMat.outerProduct (a, a);
-      myMat.scale (2*wa/J); // will be scaled again by -2/3 below
-      addStress (myMat, J, I4, W4, a);
-      myMat.scale (-2/3.0);
-      TensorUtils.addSymmetricIdentityProduct (D, myMat);
+      mat.outerProduct (a, a);
+      mat.scale (2*wa/J); // will be scaled again by -2/3 below
+      addStress (mat, J, I4, W4, a);
+      mat.scale (-2/3.0);
+      TensorUtils.addSymmetricIdentityProduct (D, mat);
       TensorUtils.addScaledIdentity (D, 4/3.0*w0/J);
       TensorUtils.addScaledIdentityProduct (D, 4/9.0*(wa-w0)/J);
 
@@ -247,8 +258,6 @@ public class SimpleForceMuscle extends MuscleMaterial {
 
    public SimpleForceMuscle clone() {
       SimpleForceMuscle mat = (SimpleForceMuscle)super.clone();
-      mat.myTmp = new Vector3d();
-      mat.myMat = new Matrix3d();
       return mat;
    }
 
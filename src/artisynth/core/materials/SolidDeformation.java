@@ -12,6 +12,7 @@ public class SolidDeformation {
    double myDetF;           // determinant of the deformation gradient
    double myP;              // local pressure
    RotationMatrix3d myRot;  // local rotation (if stiffness warping)
+   MaterialWorkspace myWorkspace; // scratch storage for materials
 
    public SolidDeformation() {
       myF = new Matrix3d();
@@ -94,6 +95,22 @@ public class SolidDeformation {
       return myRot;
    }
 
+   /**
+    * Returns the scratch workspace that materials should use for temporary
+    * storage when computing stress and tangent matrices with this
+    * deformation. The workspace is created on demand and retained across
+    * calls to {@link #clear}. Since the workspace is not thread-safe, a
+    * deformation object should be used by only one thread at a time.
+    *
+    * @return scratch workspace for materials
+    */
+   public MaterialWorkspace getWorkspace() {
+      if (myWorkspace == null) {
+         myWorkspace = new MaterialWorkspace();
+      }
+      return myWorkspace;
+   }
+
    /**
     * Computes the right Cauchy-Green tensor from the deformation gradient.
     */
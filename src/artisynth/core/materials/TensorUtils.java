@@ -635,17 +635,14 @@ public class TensorUtils {
       D.m55 += 0.5*(a22*b00 + 2*a02*b02 + a00*b22);
    }
 
-   private static double getTanMat (Matrix6d D, int i, int j) {
+   // locations in D for a given indices in stiffness tensor
+   private static final int[] DtoC = new int[] { 0, 3, 5, 3, 1, 4, 5, 4, 2 };
 
-      // locations in D for a given indices in stiffness tensor
-      int[] DtoC = new int[] { 0, 3, 5, 3, 1, 4, 5, 4, 2 };
+   private static double getTanMat (Matrix6d D, int i, int j) {
       return D.get (DtoC[i], DtoC[j]);
    }
 
    private static void setTanMat (Matrix6d D, int i, int j, double value) {
-
-      // locations in D for a given indices in stiffness tensor
-      int[] DtoC = new int[] { 0, 3, 5, 3, 1, 4, 5, 4, 2 };
       D.set (DtoC[i], DtoC[j], value);
    }
 
@@ -929,7 +926,20 @@ public class TensorUtils {
     * @param R rotation matrix
     */
    public static void rotateTangent (Matrix6d DR, Matrix6d D1, Matrix3dBase R) {
-      Matrix6d T = new Matrix6d();
+      rotateTangent (DR, D1, R, new Matrix6d());
+   }
+
+   /**
+    * Rotates a 6x6 material tangent matrix into a new coordinate system,
+    * using a supplied matrix for temporary storage.
+    *
+    * @param DR result is returned here
+    * @param D1 original tangent matrix to rotate
+    * @param R rotation matrix
+    * @param T temporary storage; should not be the same as DR or D1
+    */
+   public static void rotateTangent (
+      Matrix6d DR, Matrix6d D1, Matrix3dBase R, Matrix6d T) {
       createElasticityRotation(T, R);
       DR.mul(T, D1);
       DR.mulTranspose(T);
@@ -944,7 +954,20 @@ public class TensorUtils {
     * @param R rotation to "unrotate"
     */
    public static void unrotateTangent (Matrix6d DR, Matrix6d D1, Matrix3dBase R) {
-      Matrix6d T = new Matrix6d();
+      unrotateTangent (DR, D1, R, new Matrix6d());
+   }
+
+   /**
+    * Rotates a 6x6 material tangent matrix by the transpose of R, using a
+    * supplied matrix for temporary storage.
+    *
+    * @param DR result is returned here
+    * @param D1 original tangent matrix to rotate
+    * @param R rotation to "unrotate"
+    * @param T temporary storage; should not be the same as DR or D1
+    */
+   public static void unrotateTangent (
+      Matrix6d DR, Matrix6d D1, Matrix3dBase R, Matrix6d T) {
       createElasticityUnrotation(T, R);
       DR.mul(T, D1);
       DR.mulTranspose(T);
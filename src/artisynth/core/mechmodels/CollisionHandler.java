@@ -50,6 +50,8 @@ public class CollisionHandler extends ConstrainerBase
    LinkedHashMap<ContactPoint,ContactConstraint> myBilaterals0;
    LinkedHashMap<ContactPoint,ContactConstraint> myBilaterals1;
    ArrayList<ContactConstraint> myUnilaterals;
+   // unilaterals from the previous contact computation, used for warm starts
+   ArrayList<ContactConstraint> myPrevUnilaterals;
    int myMaxUnilaterals = 100;
    ContactInfo myLastContactInfo; // last contact info produced by this handler
    ContactInfo myRenderContactInfo; // contact info to be used for rendering
@@ -117,6 +119,7 @@ public class CollisionHandler extends ConstrainerBase
       myBilaterals0 = new LinkedHashMap<ContactPoint,ContactConstraint>();
       myBilaterals1 = new LinkedHashMap<ContactPoint,ContactConstraint>();
       myUnilaterals = new ArrayList<ContactConstraint>();
+      myPrevUnilaterals = new ArrayList<ContactConstraint>();
       //myCollider = SurfaceMeshCollider.newCollider();
       myManager = manager;
    }
@@ -277,6 +280,7 @@ public class CollisionHandler extends ConstrainerBase
          clearContactActivity();
          removeInactiveContacts();
          myUnilaterals.clear();
+         myPrevUnilaterals.clear();
       }
       setLastContactInfo(cinfo);
       updateCompliance(myBehavior);
@@ -699,16 +703,17 @@ public class CollisionHandler extends ConstrainerBase
    double computeContourRegionConstraints (
       ContactInfo info, CollidableBody collidable0, CollidableBody collidable1) {
 
+      // Keep the previous contacts, so that the impulses of the new contacts
+      // can be initialized from them to provide a "warm start" for iterative
+      // contact solvers.
+      ArrayList<ContactConstraint> prev = myPrevUnilaterals;
+      myPrevUnilaterals = myUnilaterals;
+      myUnilaterals = prev;
       myUnilaterals.clear();
       double maxpen = 0;
 
       //clearRenderData();
 
-      // Currently, no correspondence is established between new contacts and
-      // previous contacts. If there was, then we could set the multipliers for
-      // the new contacts to something based on the old contacts, thereby
-      // providing initial "warm start" values for the solver.
-
       if (info != null) {
          int numc = 0;
          info.setPointTol (myBehavior.myRigidPointTol);
@@ -727,6 +732,8 @@ public class CollisionHandler extends ConstrainerBase
 
                maxpen = region.depth;
                c.setDistance (-region.depth);
+               c.setImpulse (
+                  findPreviousImpulse (c, myBehavior.myRigidPointTol));
                myUnilaterals.add (c);
                numc++;
             }
@@ -735,10 +742,33 @@ public class CollisionHandler extends ConstrainerBase
       return maxpen;
    }
 
+   /**
+    * Returns the impulse of the previous unilateral contact that is closest
+    * to a new contact, or 0 if there is no previous contact within the
+    * distance <code>tol</code> with a similar normal. Contour region contact
+    * points are not associated with mesh features, and so unlike vertex
+    * contacts, they are matched by location.
+    */
+   double findPreviousImpulse (ContactConstraint c, double tol) {
+      double impulse = 0;
+      double dmin = tol*tol;
+      Point3d pnt = c.myCpnt0.getPoint();
+      for (int i=0; i<myPrevUnilaterals.size(); i++) {
+         ContactConstraint p = myPrevUnilaterals.get(i);
+         double d = pnt.distanceSquared (p.myCpnt0.getPoint());
+         if (d <= dmin && c.myNormal.dot (p.myNormal) > 0.9) {
+            dmin = d;
+            impulse = p.getImpulse();
+         }
+      }
+      return impulse;
+   }
+
    void clearContactData() {
       myBilaterals0.clear();
       myBilaterals1.clear();
       myUnilaterals.clear();
+      myPrevUnilaterals.clear();
    }
 
    public void clearContactActivity() {
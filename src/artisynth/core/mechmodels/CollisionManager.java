@@ -7,6 +7,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,13 @@ import maspack.collision.MeshCollider;
 import maspack.collision.SurfaceMeshIntersector;
 import maspack.collision.SurfaceMeshIntersector.RegionType;
 import maspack.collision.SignedDistanceCollider;
+import maspack.collision.SweepAndPrune;
+import maspack.concurrency.ParallelLoop;
+import maspack.geometry.BVTree;
+import maspack.geometry.DistanceGrid;
 import maspack.geometry.PolygonalMesh;
+import maspack.matrix.RigidTransform3d;
+import maspack.matrix.RotationMatrix3d;
 import maspack.matrix.SparseBlockMatrix;
 import maspack.matrix.Vector3d;
 import maspack.matrix.VectorNd;
@@ -50,6 +57,7 @@ import artisynth.core.modelbase.DynamicActivityChangeEvent;
 import artisynth.core.modelbase.ModelComponent;
 import artisynth.core.modelbase.ModelComponentBase;
 import artisynth.core.modelbase.RenderableCompositeBase;
+import artisynth.core.modelbase.StepProfiler;
 import artisynth.core.modelbase.StructureChangeEvent;
 import artisynth.core.util.ScalableUnits;
 import artisynth.core.util.ScalarRange;
@@ -155,9 +163,30 @@ public class CollisionManager extends RenderableCompositeBase
 
    AbstractCollider myCollider = null;
 
-   SurfaceMeshIntersector myAjlIntersector = null;
-   SignedDistanceCollider mySDCollider = null;
-   MeshCollider myTriTriCollider = null;
+   // colliders used by each thread that computes contacts
+   Colliders[] myColliders = null;
+   // body pairs collected for contact checking during the current step
+   ArrayList<ContactPair> myContactPairs = new ArrayList<ContactPair>();
+   // number of entries in myContactPairs used for the current step. Pairs
+   // beyond this are retained so that they can be reused in later steps.
+   int myNumContactPairs = 0;
+
+   static int defaultNumCollisionThreads = 1;
+   int myNumCollisionThreads = defaultNumCollisionThreads;
+   ParallelLoop myCollisionLoop = null;
+
+   // broad phase used to cull body pairs whose bounds do not overlap
+   boolean myBroadPhaseEnabled = true;
+   SweepAndPrune myBroadPhase = null;
+   // indices of the bodies within the broad phase, or null if the broad
+   // phase is not being used for the current step
+   IdentityHashMap<CollidableBody,Integer> myBroadPhaseIndices = null;
+   // bodies in the broad phase, ordered by index, and the list collected for
+   // the current step, which is compared with it to detect changes
+   ArrayList<CollidableBody> myBroadPhaseBodies =
+      new ArrayList<CollidableBody>();
+   ArrayList<CollidableBody> myNewBroadPhaseBodies =
+      new ArrayList<CollidableBody>();
 
    double myMaxpen; // accumulates maximum penetration 
 
@@ -371,6 +400,11 @@ public class CollisionManager extends RenderableCompositeBase
       myProps.addInheritable (
          "colliderType", "type of collider to use for collisions",
          myDefaultColliderType);
+
+      myProps.add (
+         "numCollisionThreads",
+         "number of threads used to compute contact information",
+         defaultNumCollisionThreads, "[1,inf]");
    }
 
    public PropertyList getAllPropertyInfo() {
@@ -950,6 +984,65 @@ public class CollisionManager extends RenderableCompositeBase
       return myColliderTypeMode;
    }
 
+   /**
+    * Returns the number of threads used to compute contact information.
+    * See {@link #setNumCollisionThreads}.
+    *
+    * @return number of collision threads
+    */
+   public int getNumCollisionThreads() {
+      return myNumCollisionThreads;
+   }
+
+   /**
+    * Sets the number of threads used to compute contact information for
+    * the body pairs checked by this manager. If greater than one, contact
+    * information for different body pairs is computed concurrently. The
+    * default value is 1.
+    *
+    * @param num number of collision threads
+    */
+   public void setNumCollisionThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be at least 1; got " + num);
+      }
+      if (num != myNumCollisionThreads) {
+         myNumCollisionThreads = num;
+         if (myCollisionLoop != null) {
+            myCollisionLoop.dispose();
+            myCollisionLoop = null;
+         }
+      }
+   }
+
+   /**
+    * Queries whether broad-phase culling is enabled for this manager.
+    * See {@link #setBroadPhaseEnabled}.
+    *
+    * @return <code>true</code> if broad-phase culling is enabled
+    */
+   public boolean getBroadPhaseEnabled() {
+      return myBroadPhaseEnabled;
+   }
+
+   /**
+    * Enables or disables broad-phase culling for this manager. When enabled
+    * (the default), the world bounding boxes of all collidable bodies are
+    * compared before collision detection is performed, and only body pairs
+    * whose bounding boxes overlap are passed to the collider.
+    *
+    * @param enable if <code>true</code>, enables broad-phase culling
+    */
+   public void setBroadPhaseEnabled (boolean enable) {
+      myBroadPhaseEnabled = enable;
+      if (!enable) {
+         myBroadPhase = null;
+         myBroadPhaseIndices = null;
+         myBroadPhaseBodies.clear();
+      }
+   }
+
    // end of property accessors
 
    // behavior and response accessors
@@ -1993,6 +2086,32 @@ public class CollisionManager extends RenderableCompositeBase
       }
    }
 
+   /**
+    * Describes a pair of collidable bodies that needs to be checked for
+    * contact, together with the resulting contact information.
+    */
+   static class ContactPair {
+      CollidableBody myC0;
+      CollidableBody myC1;
+      PolygonalMesh myMesh0;
+      PolygonalMesh myMesh1;
+      DistanceGrid myGrid0;
+      DistanceGrid myGrid1;
+      CollisionBehavior myBehav;
+      ColliderType myColliderType;
+      ContactInfo myCinfo;
+   }
+
+   /**
+    * Colliders used to compute contact information. Colliders maintain
+    * internal state, so each thread that computes contacts uses its own set.
+    */
+   static class Colliders {
+      SurfaceMeshIntersector myAjlIntersector;
+      SignedDistanceCollider mySDCollider;
+      MeshCollider myTriTriCollider;
+   }
+
    void checkForContact (
       CollidableBody c0, CollidableBody c1, 
       CollisionBehavior behav, boolean testMode) {
@@ -2001,13 +2120,25 @@ public class CollisionManager extends RenderableCompositeBase
          c0 = c1;
          c1 = tmp;
       }
-      PolygonalMesh mesh0 = c0.getCollisionMesh();
-      PolygonalMesh mesh1 = c1.getCollisionMesh();
-      ContactInfo cinfo;
-      if (testMode) {
-         cinfo = new ContactInfo (mesh0, mesh1);
+      ContactPair pair;
+      if (myNumContactPairs < myContactPairs.size()) {
+         pair = myContactPairs.get (myNumContactPairs);
       }
       else {
+         pair = new ContactPair();
+         myContactPairs.add (pair);
+      }
+      myNumContactPairs++;
+      pair.myC0 = c0;
+      pair.myC1 = c1;
+      pair.myMesh0 = c0.getCollisionMesh();
+      pair.myMesh1 = c1.getCollisionMesh();
+      pair.myBehav = behav;
+      pair.myGrid0 = null;
+      pair.myGrid1 = null;
+      pair.myColliderType = null;
+      pair.myCinfo = null;
+      if (!testMode) {
          ColliderType colliderType = behav.getColliderType();
          if (colliderType == ColliderType.SIGNED_DISTANCE) {
             // if using signed distance collider, at least one collidable
@@ -2016,13 +2147,39 @@ public class CollisionManager extends RenderableCompositeBase
                 (c1.isDeformable() || !c1.hasDistanceGrid())) {
                colliderType = ColliderType.AJL_CONTOUR;
             }
+            else {
+               // grids are created on demand, so obtain them here rather
+               // than in a (possibly concurrent) call to computeContactInfo
+               pair.myGrid0 = c0.getDistanceGrid();
+               pair.myGrid1 = c1.getDistanceGrid();
+            }
          }
+         pair.myColliderType = colliderType;
+      }
+   }
+
+   /**
+    * Computes the contact information for a pair of collidable bodies.
+    */
+   private ContactInfo computeContactInfo (
+      ContactPair pair, Colliders colliders, boolean testMode) {
+
+      CollidableBody c0 = pair.myC0;
+      CollidableBody c1 = pair.myC1;
+      PolygonalMesh mesh0 = pair.myMesh0;
+      PolygonalMesh mesh1 = pair.myMesh1;
+      CollisionBehavior behav = pair.myBehav;
+      ContactInfo cinfo;
+      if (testMode) {
+         cinfo = new ContactInfo (mesh0, mesh1);
+      }
+      else {
          //FunctionTimer timer = new FunctionTimer();
          //timer.start();
-         switch (colliderType) {
+         switch (pair.myColliderType) {
             case AJL_CONTOUR: {
-               if (myAjlIntersector == null) {
-                  myAjlIntersector = new SurfaceMeshIntersector();
+               if (colliders.myAjlIntersector == null) {
+                  colliders.myAjlIntersector = new SurfaceMeshIntersector();
                }
                // types of regions that we need to compute for mesh0 and mesh1
                RegionType regions0 = RegionType.INSIDE;
@@ -2042,38 +2199,251 @@ public class CollisionManager extends RenderableCompositeBase
                      regions1 = RegionType.NONE;
                   }
                }
-               cinfo = myAjlIntersector.findContoursAndRegions (
+               cinfo = colliders.myAjlIntersector.findContoursAndRegions (
                   mesh0, regions0, mesh1, regions1);
                break;
             }
             case TRI_INTERSECTION: {
-               if (myTriTriCollider == null) {
-                  myTriTriCollider = new MeshCollider();
+               if (colliders.myTriTriCollider == null) {
+                  colliders.myTriTriCollider = new MeshCollider();
                }
-               cinfo = myTriTriCollider.getContacts (mesh0, mesh1);
+               cinfo = colliders.myTriTriCollider.getContacts (mesh0, mesh1);
                break;
             }
             case SIGNED_DISTANCE: {
-               if (mySDCollider == null) {
-                  mySDCollider = new SignedDistanceCollider();
+               if (colliders.mySDCollider == null) {
+                  colliders.mySDCollider = new SignedDistanceCollider();
                }
-               cinfo = mySDCollider.getContacts (
-                  mesh0, c0.getDistanceGrid(),
-                  mesh1, c1.getDistanceGrid());
+               cinfo = colliders.mySDCollider.getContacts (
+                  mesh0, pair.myGrid0, mesh1, pair.myGrid1);
                break;
             }
             default: {
                throw new UnsupportedOperationException (
-                  "Unimplemented collider type " + colliderType);
+                  "Unimplemented collider type " + pair.myColliderType);
             }
          }
          //timer.stop();
          //System.out.println ("time=" + timer.getTimeUsec());
          //cinfo = myCollider.getContacts (mesh0, mesh1);
       }
-      if (cinfo != null) {
-         addOrUpdateHandler (cinfo, c0, c1, behav);
-      }     
+      return cinfo;
+   }
+
+   private Colliders getColliders (int worker) {
+      if (myColliders == null || myColliders.length <= worker) {
+         Colliders[] colliders = new Colliders[worker+1];
+         for (int i=0; i<colliders.length; i++) {
+            if (myColliders != null && i < myColliders.length) {
+               colliders[i] = myColliders[i];
+            }
+            else {
+               colliders[i] = new Colliders();
+            }
+         }
+         myColliders = colliders;
+      }
+      return myColliders[worker];
+   }
+
+   /**
+    * Data that the colliders compute on demand, such as bounding volume
+    * hierarchies, face normals and bounds, is stored in the meshes. Before
+    * contacts are computed concurrently, this data must be brought up to
+    * date, so that the worker threads only read it.
+    */
+   private void prepareForConcurrentContacts() {
+      IdentityHashMap<Object,Object> visited =
+         new IdentityHashMap<Object,Object>();
+      for (int i=0; i<myNumContactPairs; i++) {
+         ContactPair pair = myContactPairs.get(i);
+         for (int k=0; k<2; k++) {
+            PolygonalMesh mesh = (k == 0 ? pair.myMesh0 : pair.myMesh1);
+            if (mesh != null && visited.put (mesh, mesh) == null) {
+               mesh.updateFaceNormals();
+               mesh.getBVTree();
+               mesh.isClosed();
+               mesh.getLocalBounds (null, null);
+               mesh.getWorldBounds (null, null);
+               mesh.getRadius();
+            }
+         }
+      }
+   }
+
+   /**
+    * Computes contact information for all the body pairs collected by {@link
+    * #checkForContact}, and then uses it to update the collision handlers.
+    * If <code>numCollisionThreads</code> exceeds one, the contact information
+    * is computed concurrently, with each thread using its own colliders. The
+    * handlers are always updated serially, in the order that the pairs were
+    * collected, so that results do not depend on the number of threads.
+    */
+   void computeContacts (boolean testMode) {
+      final boolean testModeF = testMode;
+      final ArrayList<ContactPair> pairs = myContactPairs;
+      int numPairs = myNumContactPairs;
+      int nthreads = testMode ? 1 : myNumCollisionThreads;
+      if (nthreads > 1 && numPairs > 1) {
+         if (myCollisionLoop == null) {
+            myCollisionLoop = new ParallelLoop (
+               "CollisionManager", myNumCollisionThreads);
+         }
+         prepareForConcurrentContacts();
+         for (int w=0; w<myCollisionLoop.numThreads(); w++) {
+            getColliders (w);
+         }
+         myCollisionLoop.run (numPairs, (worker, lo, hi) -> {
+            Colliders colliders = myColliders[worker];
+            for (int i=lo; i<hi; i++) {
+               ContactPair pair = pairs.get(i);
+               pair.myCinfo = computeContactInfo (pair, colliders, testModeF);
+            }
+         });
+      }
+      else {
+         Colliders colliders = getColliders (0);
+         for (int i=0; i<numPairs; i++) {
+            ContactPair pair = pairs.get(i);
+            pair.myCinfo = computeContactInfo (pair, colliders, testMode);
+         }
+      }
+      for (int i=0; i<numPairs; i++) {
+         ContactPair pair = pairs.get(i);
+         if (pair.myCinfo != null) {
+            addOrUpdateHandler (
+               pair.myCinfo, pair.myC0, pair.myC1, pair.myBehav);
+         }
+         // clear references so that reused pairs do not retain components
+         pair.myCinfo = null;
+         pair.myC0 = null;
+         pair.myC1 = null;
+         pair.myMesh0 = null;
+         pair.myMesh1 = null;
+         pair.myGrid0 = null;
+         pair.myGrid1 = null;
+         pair.myBehav = null;
+      }
+      myNumContactPairs = 0;
+   }
+
+   /**
+    * Computes an axis-aligned bounding box, in world coordinates, for the
+    * collision mesh of a body. The box is obtained from the root of the
+    * mesh's bounding volume hierarchy, which is also used (and hence kept up
+    * to date) by the colliders.
+    */
+   private void getWorldBounds (
+      CollidableBody cb, Vector3d pmin, Vector3d pmax) {
+
+      double inf = Double.POSITIVE_INFINITY;
+      PolygonalMesh mesh = cb.getCollisionMesh();
+      if (mesh == null) {
+         // no mesh, so body cannot collide with anything
+         pmin.set (inf, inf, inf);
+         pmax.set (-inf, -inf, -inf);
+         return;
+      }
+      BVTree bvh = mesh.getBVTree();
+      pmin.set (inf, inf, inf);
+      pmax.set (-inf, -inf, -inf);
+      bvh.updateBounds (pmin, pmax);
+      RigidTransform3d X = bvh.getBvhToWorld();
+      if (X != RigidTransform3d.IDENTITY && pmin.x <= pmax.x) {
+         // transform the box into world coordinates, and bound the result
+         Vector3d cent = new Vector3d();
+         Vector3d hw = new Vector3d();
+         cent.add (pmin, pmax);
+         cent.scale (0.5);
+         hw.sub (pmax, pmin);
+         hw.scale (0.5);
+         cent.transform (X.R);
+         cent.add (X.p);
+         RotationMatrix3d R = X.R;
+         Vector3d w = new Vector3d (
+            Math.abs(R.m00)*hw.x + Math.abs(R.m01)*hw.y + Math.abs(R.m02)*hw.z,
+            Math.abs(R.m10)*hw.x + Math.abs(R.m11)*hw.y + Math.abs(R.m12)*hw.z,
+            Math.abs(R.m20)*hw.x + Math.abs(R.m21)*hw.y + Math.abs(R.m22)*hw.z);
+         pmin.sub (cent, w);
+         pmax.add (cent, w);
+      }
+   }
+
+   private void addBroadPhaseBodies (ArrayList<CollidableBody> cols) {
+      myNewBroadPhaseBodies.addAll (cols);
+   }
+
+   /**
+    * Updates the broad phase for all bodies that can be checked by this
+    * manager, including those of the sub MechModels. If the broad phase is
+    * not used, myBroadPhaseIndices is set to null so that all body pairs are
+    * passed to the colliders.
+    */
+   void updateBroadPhase (ArrayList<MechModel> subMechs, boolean testMode) {
+      if (!myBroadPhaseEnabled || testMode) {
+         myBroadPhaseIndices = null;
+         return;
+      }
+      if (myBroadPhase == null) {
+         myBroadPhase = new SweepAndPrune();
+      }
+      // bodies are added in a consistent order, so that box indices, and
+      // hence the sorted order maintained by the sweep, remain coherent
+      // between steps
+      myNewBroadPhaseBodies.clear();
+      addBroadPhaseBodies (myRigidExts);
+      addBroadPhaseBodies (myDeformableExts);
+      addBroadPhaseBodies (myDeformableInts);
+      for (int i=1; i<subMechs.size(); i++) {
+         CollisionManager cm = subMechs.get(i).getCollisionManager();
+         addBroadPhaseBodies (cm.myRigidExts);
+         addBroadPhaseBodies (cm.myDeformableExts);
+      }
+      // rebuild the index map only if the bodies have changed
+      if (myBroadPhaseIndices == null ||
+          !myNewBroadPhaseBodies.equals (myBroadPhaseBodies)) {
+         ArrayList<CollidableBody> tmp = myBroadPhaseBodies;
+         myBroadPhaseBodies = myNewBroadPhaseBodies;
+         myNewBroadPhaseBodies = tmp;
+         myBroadPhaseIndices = new IdentityHashMap<CollidableBody,Integer>();
+         for (CollidableBody cb : myBroadPhaseBodies) {
+            if (!myBroadPhaseIndices.containsKey (cb)) {
+               myBroadPhaseIndices.put (cb, myBroadPhaseIndices.size());
+            }
+         }
+         myBroadPhase.setNumBoxes (myBroadPhaseIndices.size());
+      }
+      Vector3d pmin = new Vector3d();
+      Vector3d pmax = new Vector3d();
+      for (Map.Entry<CollidableBody,Integer> e :
+              myBroadPhaseIndices.entrySet()) {
+         getWorldBounds (e.getKey(), pmin, pmax);
+         myBroadPhase.setBox (e.getValue(), pmin, pmax);
+      }
+      myBroadPhase.update();
+   }
+
+   private int getBroadPhaseIndex (CollidableBody cb) {
+      if (myBroadPhaseIndices != null) {
+         Integer idx = myBroadPhaseIndices.get (cb);
+         if (idx != null) {
+            return idx;
+         }
+      }
+      return -1;
+   }
+
+   /**
+    * Returns <code>false</code> if the broad phase has determined that the
+    * bounds of two bodies do not overlap, in which case the bodies cannot be
+    * in contact. The first body is specified by its broad phase index.
+    */
+   private boolean boundsMayOverlap (int idx0, CollidableBody c1) {
+      if (idx0 == -1) {
+         return true;
+      }
+      int idx1 = getBroadPhaseIndex (c1);
+      return idx1 == -1 || myBroadPhase.overlaps (idx0, idx1);
    }
 
    /**
@@ -2086,9 +2456,11 @@ public class CollisionManager extends RenderableCompositeBase
 
       for (int i=0; i<cols0.size(); i++) {
          CollidableBody ci = cols0.get(i);
+         int bi = getBroadPhaseIndex (ci);
          for (int j=0; j<cols1.size(); j++) {
             CollidableBody cj = cols1.get(j);
-            if (getExplicitBehavior (ci, cj) == null) {
+            if (boundsMayOverlap (bi, cj) &&
+                getExplicitBehavior (ci, cj) == null) {
                CollisionBehavior behav = getExternalBehavior (ci, cj);
                if (behav.isEnabled()) {
                   checkForContact (ci, cj, behav, testMode);
@@ -2106,9 +2478,11 @@ public class CollisionManager extends RenderableCompositeBase
 
       for (int i=0; i<cols.size(); i++) {
          CollidableBody ci = cols.get(i);
+         int bi = getBroadPhaseIndex (ci);
          for (int j=i+1; j<cols.size(); j++) {
             CollidableBody cj = cols.get(j);
-            if (getExplicitBehavior (ci, cj) == null &&
+            if (boundsMayOverlap (bi, cj) &&
+                getExplicitBehavior (ci, cj) == null &&
                 nearestCommonCollidableAncestor (ci, cj) == null) {
                CollisionBehavior behav = getExternalBehavior (ci, cj);
                if (behav.isEnabled()) {
@@ -2127,9 +2501,11 @@ public class CollisionManager extends RenderableCompositeBase
 
       for (int i=0; i<cols.size(); i++) {
          CollidableBody ci = cols.get(i);
+         int bi = getBroadPhaseIndex (ci);
          for (int j=i+1; j<cols.size(); j++) {
             CollidableBody cj = cols.get(j);
-            if (getExplicitBehavior (ci, cj) == null) {
+            if (boundsMayOverlap (bi, cj) &&
+                getExplicitBehavior (ci, cj) == null) {
                Collidable ancestor = nearestCommonCollidableAncestor (ci, cj);
                if (ancestor != null) {
                   CollisionBehavior behav = getInternalBehavior (ancestor);
@@ -2385,8 +2761,10 @@ public class CollisionManager extends RenderableCompositeBase
          return 0;
       }
 
+      long t0 = StepProfiler.start (myMechModel.isProfilingActive());
       myHandlers.clear();
       double maxpen = updateConstraints (myHandlers, t, flags);      
+      StepProfiler.stop (StepProfiler.Phase.COLLISION, this, t0);
 
       return maxpen;
    }
@@ -2436,6 +2814,7 @@ public class CollisionManager extends RenderableCompositeBase
       }
       // compute implicit collisions
 
+      updateBroadPhase (subMechs, testMode);
       checkExternalCollisions (myRigidExts, testMode);
       checkExternalCollisions (myDeformableExts, myRigidExts, testMode);
       checkExternalCollisions (myDeformableExts, testMode);
@@ -2459,6 +2838,8 @@ public class CollisionManager extends RenderableCompositeBase
          }
       }
 
+      computeContacts (testMode);
+
       myHandlerTable.removeInactiveHandlers();
       myHandlerTable.collectHandlers (handlers);
 
@@ -1228,6 +1228,49 @@ public class CollisionManagerTest extends UnitTest {
          "Should have failed with repeated behavior");
    }
    
+   /**
+    * Creates two balls resting on a fixed box, with collisions between the
+    * balls and the box handled by the signed distance collider, and
+    * returns the number of unilateral contact constraints that result.
+    */
+   int countSignedDistanceContacts (int numThreads) {
+      MechModel mech = new MechModel ("mech");
+      RigidBody box = RigidBody.createBox ("box", 1.0, 1.0, 0.2, 1000);
+      box.setDynamic (false);
+      mech.addRigidBody (box);
+      for (int i=0; i<2; i++) {
+         RigidBody ball =
+            RigidBody.createIcosahedralSphere ("ball"+i, 0.2, 1000, 2);
+         // place the balls so that they penetrate the top of the box
+         ball.setPosition (new Point3d (-0.25+0.5*i, 0, 0.28));
+         ball.setDistanceGridMaxRes (20);
+         mech.addRigidBody (ball);
+         mech.setCollisionBehavior (ball, box, true);
+      }
+      box.setDistanceGridMaxRes (20);
+      CollisionManager cm = mech.getCollisionManager();
+      cm.setColliderType (CollisionManager.ColliderType.SIGNED_DISTANCE);
+      cm.setNumCollisionThreads (numThreads);
+      cm.updateConstraints (0, 0);
+      int numc = 0;
+      for (CollisionHandler ch : cm.collisionHandlers()) {
+         numc += ch.numUnilateralConstraints();
+      }
+      mech.dispose();
+      return numc;
+   }
+
+   void testSignedDistanceContacts() {
+      int numc = countSignedDistanceContacts (1);
+      if (numc == 0) {
+         throw new TestException (
+            "no contacts found using the signed distance collider");
+      }
+      checkEquals (
+         "number of contacts with two collision threads",
+         countSignedDistanceContacts (2), numc);
+   }
+
    @Override
    public void test() {
       myMech = createMechModel ("top");
@@ -1756,6 +1799,7 @@ public class CollisionManagerTest extends UnitTest {
               "                            . 2 "+ // ball
               "                              . ");// base
 
+      testSignedDistanceContacts();
    }
 
    public static void main (String[] args) {
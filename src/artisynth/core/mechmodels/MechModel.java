@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.geometry.GeometryTransformer;
 import maspack.matrix.AffineTransform3dBase;
 import maspack.matrix.Matrix;
@@ -32,6 +33,7 @@ import maspack.util.StringHolder;
 import maspack.util.Disposable;
 import artisynth.core.mechmodels.Collidable;
 import artisynth.core.mechmodels.Collidable.Group;
+import artisynth.core.mechmodels.MechSystemSolver.ContactSolver;
 import artisynth.core.mechmodels.MechSystemSolver.Integrator;
 import artisynth.core.mechmodels.MechSystemSolver.MatrixSolver;
 import artisynth.core.mechmodels.MechSystemSolver.PosStabilization;
@@ -112,6 +114,20 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
    protected static double DEFAULT_ROTARY_DAMPING = 0;
    protected static PosStabilization DEFAULT_STABILIZATION =
       PosStabilization.GlobalMass;
+   protected static ContactSolver DEFAULT_CONTACT_SOLVER =
+      ContactSolver.Direct;
+   protected static int DEFAULT_CONTACT_SOLVER_MAX_ITERATIONS =
+      PGSContactSolver.DEFAULT_MAX_ITERATIONS;
+   protected static double DEFAULT_CONTACT_SOLVER_TOL =
+      PGSContactSolver.DEFAULT_TOLERANCE;
+   protected static int DEFAULT_NUM_WRAP_THREADS = 1;
+
+   protected int myNumWrapThreads = DEFAULT_NUM_WRAP_THREADS;
+   // loop used to update wrap segments concurrently
+   ParallelLoop myWrapLoop = null;
+   // springs whose wrap segments are updated concurrently
+   ArrayList<MultiPointSpring> myWrapSprings =
+      new ArrayList<MultiPointSpring>();
 
    protected Integrator myIntegrationMethod;
    protected MatrixSolver myMatrixSolver;
@@ -157,6 +173,21 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
       myProps.addInheritable (
          "penetrationTol:Inherited", "collision penetration tolerance",
          DEFAULT_PENETRATION_TOL);
+      myProps.add (
+         "contactSolver", "method used to compute contact impulses",
+         DEFAULT_CONTACT_SOLVER);
+      myProps.add (
+         "contactSolverMaxIterations",
+         "maximum iterations for PGS and NNCG contact solvers",
+         DEFAULT_CONTACT_SOLVER_MAX_ITERATIONS, "[1,inf]");
+      myProps.add (
+         "contactSolverTol",
+         "relative convergence tolerance for PGS and NNCG contact solvers",
+         DEFAULT_CONTACT_SOLVER_TOL, "[0,inf]");
+      myProps.add (
+         "numWrapThreads",
+         "number of threads used to update multipoint spring wrap paths",
+         DEFAULT_NUM_WRAP_THREADS, "[1,inf]");
       myProps.add("staticTikhonovFactor", "Tikhonov regularization factor for static solves", 0);
       myProps.add("staticIncrements", "Number of load increments for incremental static solves", 20);
       myProps.addInheritable (
@@ -207,6 +238,10 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
       myMaxColoredExcitation = 1.0;
       setMatrixSolver (DEFAULT_MATRIX_SOLVER);
       setIntegrator (DEFAULT_INTEGRATOR);
+      setContactSolver (DEFAULT_CONTACT_SOLVER);
+      setContactSolverMaxIterations (DEFAULT_CONTACT_SOLVER_MAX_ITERATIONS);
+      setContactSolverTol (DEFAULT_CONTACT_SOLVER_TOL);
+      setNumWrapThreads (DEFAULT_NUM_WRAP_THREADS);
       setMaxStepSize (0.01);
    }
    
@@ -948,6 +983,85 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
       return myIntegrationMethod;
    }
    
+   /**
+    * Sets the method used to compute unilateral contact impulses. See
+    * {@link MechSystemSolver#setContactSolver}.
+    *
+    * @param solver method used to compute contact impulses
+    */
+   public void setContactSolver (ContactSolver solver) {
+      if (mySolver != null) {
+         mySolver.setContactSolver (solver);
+      }
+   }
+
+   public ContactSolver getContactSolver() {
+      if (mySolver != null) {
+         return mySolver.getContactSolver();
+      }
+      return DEFAULT_CONTACT_SOLVER;
+   }
+
+   public void setContactSolverMaxIterations (int maxi) {
+      if (mySolver != null) {
+         mySolver.setContactSolverMaxIterations (maxi);
+      }
+   }
+
+   public int getContactSolverMaxIterations() {
+      if (mySolver != null) {
+         return mySolver.getContactSolverMaxIterations();
+      }
+      return DEFAULT_CONTACT_SOLVER_MAX_ITERATIONS;
+   }
+
+   public void setContactSolverTol (double tol) {
+      if (mySolver != null) {
+         mySolver.setContactSolverTol (tol);
+      }
+   }
+
+   public double getContactSolverTol() {
+      if (mySolver != null) {
+         return mySolver.getContactSolverTol();
+      }
+      return DEFAULT_CONTACT_SOLVER_TOL;
+   }
+
+   /**
+    * Returns the number of threads used to update the wrap paths of the
+    * multipoint springs in this model. See {@link #setNumWrapThreads}.
+    *
+    * @return number of wrap threads
+    */
+   public int getNumWrapThreads() {
+      return myNumWrapThreads;
+   }
+
+   /**
+    * Sets the number of threads used to update the wrap paths of the
+    * multipoint springs in this model. If greater than one, the wrap
+    * segments of different springs are updated concurrently at the start of
+    * each step, before any forces are computed. Each spring is still updated
+    * by a single thread, so the results do not depend on the number of
+    * threads. The default value is 1.
+    *
+    * @param num number of wrap threads
+    */
+   public void setNumWrapThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be at least 1; got " + num);
+      }
+      if (num != myNumWrapThreads) {
+         myNumWrapThreads = num;
+         if (myWrapLoop != null) {
+            myWrapLoop.dispose();
+            myWrapLoop = null;
+         }
+      }
+   }
+
    public void setStaticTikhonovFactor(double eps) {
       if (mySolver != null) {
          mySolver.setStaticTikhonovFactor(eps);
@@ -1755,12 +1869,63 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
          mySolver.projectPosConstraints (0);
       }     
       updateLocalAdvanceComponents();
+      if (myNumWrapThreads > 1) {
+         updateWrapSegmentsConcurrently();
+      }
       for (RequiresPrePostAdvance c : myLocalPrePostAdvanceComps) {
          c.preadvance (t0, t1, flags);
       }
       return super.preadvance (t0, t1, flags);
    }
 
+   /**
+    * Updates the wrap segments of all the local multipoint springs that
+    * have wrappables, using <code>numWrapThreads</code> threads. Each
+    * spring is marked so that its own <code>preadvance()</code> does not
+    * repeat the update.
+    */
+   private void updateWrapSegmentsConcurrently() {
+      final ArrayList<MultiPointSpring> springs = myWrapSprings;
+      springs.clear();
+      for (RequiresPrePostAdvance c : myLocalPrePostAdvanceComps) {
+         if (c instanceof MultiPointSpring &&
+             ((MultiPointSpring)c).numWrappables() > 0) {
+            springs.add ((MultiPointSpring)c);
+         }
+      }
+      if (springs.size() > 1) {
+         if (myWrapLoop == null) {
+            myWrapLoop = new ParallelLoop ("MechModel", myNumWrapThreads);
+         }
+         prepareForConcurrentWrapping (springs);
+         myWrapLoop.run (springs.size(), 1, (worker, lo, hi) -> {
+            for (int i=lo; i<hi; i++) {
+               springs.get(i).preupdateWrapSegments();
+            }
+         });
+      }
+      springs.clear();
+   }
+
+   /**
+    * Brings up to date the data that the wrappables of the specified springs
+    * compute on demand, so that the worker threads that update the wrap
+    * segments only read it. Wrappables shared by several springs are
+    * prepared once.
+    */
+   private void prepareForConcurrentWrapping (
+      ArrayList<MultiPointSpring> springs) {
+      IdentityHashMap<Wrappable,Wrappable> visited =
+         new IdentityHashMap<Wrappable,Wrappable>();
+      for (MultiPointSpring spring : springs) {
+         for (Wrappable w : spring.myWrappables) {
+            if (visited.put (w, w) == null) {
+               w.prepareForConcurrentWrapping();
+            }
+         }
+      }
+   }
+
    // public StepAdjustment advance (double t0, double t1, int flags) {
 
    //    initializeAdvance (t0, t1, flags);
@@ -2208,6 +2373,10 @@ TransformableGeometry, ScalableUnits, MechSystemModel {
    public void dispose() {
       recursivelyDispose (this);
       mySolver.dispose();
+      if (myWrapLoop != null) {
+         myWrapLoop.dispose();
+         myWrapLoop = null;
+      }
    }
 
    // ForceEffector that implements gravity for MechModels
@@ -92,7 +92,6 @@ public abstract class MechSystemBase extends RenderableModelBase
    protected boolean myDynamicsEnabled = DEFAULT_DYNAMICS_ENABLED; 
    protected boolean myProfilingP = DEFAULT_PROFILING;
    protected boolean myInsideAdvanceP = false;
-   protected long mySolveTime;
    protected StepAdjustment myStepAdjust;
 
    String myPrintState = null;
@@ -128,7 +127,8 @@ public abstract class MechSystemBase extends RenderableModelBase
          "update forces values at the end of each step", 
          DEFAULT_UPDATE_FORCES_AT_STEP_END);
       myProps.add (
-         "profiling", "print step time and computation time", DEFAULT_PROFILING);
+         "profiling", "record step phase timings with StepProfiler",
+         DEFAULT_PROFILING);
    }
 
    public void setPenetrationLimit (double lim) {
@@ -890,9 +890,7 @@ public abstract class MechSystemBase extends RenderableModelBase
    public StepAdjustment advance (double t0, double t1, int flags) {
 
       myInsideAdvanceP = true;
-      if (myProfilingP) {
-         mySolveTime = System.nanoTime();
-      }      
+      long tstart = StepProfiler.start (isProfilingActive());
       StepAdjustment stepAdjust = new StepAdjustment();
       collectInitialForces();
 
@@ -922,11 +920,7 @@ public abstract class MechSystemBase extends RenderableModelBase
          }
       }
 
-      if (myProfilingP) {
-         mySolveTime = System.nanoTime() - mySolveTime;
-         System.out.println (
-            "T1=" + t1 + " solveTime=" + mySolveTime/1e6 + " ms");
-      }
+      StepProfiler.stop (StepProfiler.Phase.ADVANCE, this, tstart);
       myInsideAdvanceP = false;
       return stepAdjust;
    }
@@ -1268,13 +1262,48 @@ public abstract class MechSystemBase extends RenderableModelBase
       StepAdjustment stepAdjust, double t0, double t1, int flags, int level) {
    }  
 
+   /**
+    * Enables or disables profiling for this system. When enabled, the step
+    * phases of this system, and of any systems it contains, are recorded by
+    * {@link StepProfiler} even if profiling has not been enabled globally.
+    * Other systems are not affected. The timings can then be queried or
+    * written out using the methods of {@link StepProfiler}.
+    *
+    * @param enable if <code>true</code>, enables profiling
+    */
    public void setProfiling (boolean enable) {
       myProfilingP = enable;
    }
 
+   /**
+    * Queries whether profiling is enabled for this system.
+    *
+    * @return <code>true</code> if profiling is enabled
+    * @see #setProfiling
+    */
    public boolean getProfiling() {
       return myProfilingP;
    }
+
+   /**
+    * Queries whether the step phases of this system should be recorded by
+    * {@link StepProfiler}, because profiling is enabled either for this
+    * system or for a system containing it. Global enabling of {@link
+    * StepProfiler} is handled separately by {@link StepProfiler#start}.
+    *
+    * @return <code>true</code> if profiling is enabled for this system
+    */
+   protected boolean isProfilingActive() {
+      if (myProfilingP) {
+         return true;
+      }
+      for (CompositeComponent c=getParent(); c!=null; c=c.getParent()) {
+         if (c instanceof MechSystemBase && ((MechSystemBase)c).myProfilingP) {
+            return true;
+         }
+      }
+      return false;
+   }
    
    protected void clearCachedData (ComponentChangeEvent e) {
       myDynamicComponents = null;
@@ -1791,6 +1820,8 @@ public abstract class MechSystemBase extends RenderableModelBase
    }
 
    public void updateForces (double t) {
+      boolean profiling = isProfilingActive();
+      long t0 = StepProfiler.start (profiling);
       updateDynamicComponentLists();
       updateForceComponentList();
       // initialize the forces by adding the initial forces that 
@@ -1814,9 +1845,13 @@ public abstract class MechSystemBase extends RenderableModelBase
          }
       }
       for (int i=0; i<myForceEffectors.size(); i++) {
-         myForceEffectors.get(i).applyForces (t);
+         ForceEffector fe = myForceEffectors.get(i);
+         long tf = StepProfiler.start (profiling);
+         fe.applyForces (t);
+         StepProfiler.stop (StepProfiler.Phase.FORCE_EFFECTOR, fe, tf);
       }
       applyAttachmentForces();
+      StepProfiler.stop (StepProfiler.Phase.FORCES, this, t0);
    }
 
    public void addPosJacobian (
@@ -14,6 +14,7 @@ import artisynth.core.mechmodels.MechSystem.ConstraintInfo;
 import artisynth.core.mechmodels.MechSystem.FrictionInfo;
 import artisynth.core.modelbase.ModelComponent;
 import artisynth.core.modelbase.StepAdjustment;
+import artisynth.core.modelbase.StepProfiler;
 import artisynth.core.util.ArtisynthIO;
 import maspack.function.Function1x1;
 import maspack.matrix.Matrix;
@@ -22,6 +23,8 @@ import maspack.matrix.Matrix3x1;
 import maspack.matrix.Matrix6d;
 import maspack.matrix.MatrixBlock;
 import maspack.matrix.MatrixNd;
+import maspack.matrix.MatrixNdBlock;
+import maspack.matrix.PackedBlockCRS;
 import maspack.matrix.RotationMatrix3d;
 import maspack.matrix.SparseBlockMatrix;
 import maspack.matrix.SparseNumberedBlockMatrix;
@@ -33,6 +36,7 @@ import maspack.solvers.IterativeSolver;
 import maspack.solvers.IterativeSolver.ToleranceType;
 import maspack.solvers.KKTSolver;
 import maspack.solvers.PardisoSolver;
+import maspack.solvers.SparseLDLTSolver;
 import maspack.solvers.UmfpackSolver;
 import maspack.util.FunctionTimer;
 import maspack.util.InternalErrorException;
@@ -89,6 +93,19 @@ public class MechSystemSolver {
    private VectorNd myRn = new VectorNd();
    private VectorNd myBn = new VectorNd();
    private VectorNd myThe = new VectorNd();
+   private VectorNd myBfc = new VectorNd(); // bf plus contact impulses
+
+   // storage for the iterative contact solver. Inverses of the diagonal
+   // blocks are kept separately for the solve and mass matrices, since both
+   // are used within a single step
+   private DiagonalInverse mySolveDiagInverse = new DiagonalInverse();
+   private DiagonalInverse myMassDiagInverse = new DiagonalInverse();
+   private FactoredResponse myContactResponse = new FactoredResponse();
+   // solver, diagonal inverse and coupling used by the last iterative
+   // contact solve, for use by the iterative friction solve
+   private KKTSolver myIterativeContactSolver;
+   private SparseBlockMatrix myIterativeContactMinv;
+   private boolean myIterativeContactCoupled;
 
    // friction constraints
 
@@ -124,6 +141,8 @@ public class MechSystemSolver {
 
    private SparseNumberedBlockMatrix mySolveMatrix;
    private int mySolveMatrixVersion = -1;
+   // packed copy of the solve matrix used by iterative solvers
+   private PackedBlockCRS myPackedSolveMatrix;
 
    //private SparseNumberedBlockMatrix myKKTSolveMatrix;
    //private int myKKTSolveMatrixVersion = -1;
@@ -175,7 +194,7 @@ public class MechSystemSolver {
    }
 
    public static enum MatrixSolver {
-      Pardiso, Umfpack, ConjugateGradient, None
+      Pardiso, Umfpack, SparseLDLT, ConjugateGradient, None
    }
 
    public static enum Integrator {
@@ -209,16 +228,88 @@ public class MechSystemSolver {
       GlobalStiffness
    }
 
+   /** 
+    * Indicates the method by which unilateral constraint impulses, such as
+    * those arising from contact, should be computed. <code>Direct</code>
+    * uses the pivoting LCP solver within the KKT solver, while
+    * <code>PGS</code> and <code>NNCG</code> use a {@link PGSContactSolver},
+    * without or with conjugate gradient acceleration.
+    */
+   public enum ContactSolver {
+      Direct,
+      PGS,
+      NNCG
+   }
+
    public boolean getHybridSolve () {
       return myHybridSolveP;
    }
 
+   /**
+    * Sets the method used to compute unilateral constraint impulses. When
+    * set to <code>PGS</code> or <code>NNCG</code>, the KKT system is
+    * factored with bilateral constraints only, the unilateral impulses are
+    * computed iteratively, starting from the impulses of the previous step,
+    * and friction is computed iteratively as well. This gives a bounded cost
+    * per step for models with many contacts, at the expense of accuracy,
+    * since the iteration approximates the system matrix by the mass matrix.
+    *
+    * @param solver method used to compute unilateral impulses
+    */
+   public void setContactSolver (ContactSolver solver) {
+      myContactSolver = solver;
+      myPGSSolver.setNNCG (solver == ContactSolver.NNCG);
+   }
+
+   public ContactSolver getContactSolver () {
+      return myContactSolver;
+   }
+
+   /**
+    * Sets the maximum number of iterations used by the iterative contact
+    * solver.
+    *
+    * @param maxi maximum number of iterations
+    */
+   public void setContactSolverMaxIterations (int maxi) {
+      myPGSSolver.setMaxIterations (maxi);
+   }
+
+   public int getContactSolverMaxIterations () {
+      return myPGSSolver.getMaxIterations();
+   }
+
+   /**
+    * Sets the relative convergence tolerance used by the iterative contact
+    * solver.
+    *
+    * @param tol convergence tolerance
+    */
+   public void setContactSolverTol (double tol) {
+      myPGSSolver.setTolerance (tol);
+   }
+
+   public double getContactSolverTol () {
+      return myPGSSolver.getTolerance();
+   }
+
+   /**
+    * Returns the iterative solver used when the contact solver is
+    * <code>PGS</code> or <code>NNCG</code>.
+    *
+    * @return iterative contact solver
+    */
+   public PGSContactSolver getPGSContactSolver () {
+      return myPGSSolver;
+   }
+
    public void setHybridSolve (boolean enable) {
       myHybridSolveP = enable;
    }
 
    PardisoSolver myPardisoSolver;
    UmfpackSolver myUmfpackSolver;
+   SparseLDLTSolver mySparseLDLTSolver;
    KKTSolver myKKTSolver;
    KKTSolver myConSolver;
    KKTSolver myStaticSolver;
@@ -231,6 +322,8 @@ public class MechSystemSolver {
    int myMaxIterations = 20;
    boolean myUseDirectSolver = true;
    PosStabilization myStabilization = PosStabilization.GlobalMass;
+   ContactSolver myContactSolver = ContactSolver.Direct;
+   PGSContactSolver myPGSSolver = new PGSContactSolver();
    
    double myStaticTikhonov = -1;  // tikhonov regularization parameter for static solves
    double myStaticTol = 1e-8;    // static solver tolerance (small displacement value per element)
@@ -398,7 +491,8 @@ public class MechSystemSolver {
       switch (integrator) {
          case BackwardEuler: {
             if (solver != MatrixSolver.Umfpack &&
-               solver != MatrixSolver.Pardiso) {
+               solver != MatrixSolver.Pardiso &&
+               solver != MatrixSolver.SparseLDLT) {
                return Integrator.SymplecticEuler;
             }
             break;
@@ -406,7 +500,8 @@ public class MechSystemSolver {
          case Trapezoidal:
          case FullBackwardEuler:
          case ConstrainedBackwardEuler: {
-            if (solver != MatrixSolver.Pardiso) {
+            if (solver != MatrixSolver.Pardiso &&
+                solver != MatrixSolver.SparseLDLT) {
                if (solver == MatrixSolver.Umfpack) {
                   return Integrator.BackwardEuler;
                }
@@ -535,6 +630,9 @@ public class MechSystemSolver {
                }
                break;
             }
+            case SparseLDLT: {
+               break;
+            }
             case ConjugateGradient: {
                setIterativeSolver (new CGSolver());
                break;
@@ -584,6 +682,14 @@ public class MechSystemSolver {
             myUseDirectSolver = true;
             break;
          }
+         case SparseLDLT: {
+            if (mySparseLDLTSolver == null) {
+               mySparseLDLTSolver = new SparseLDLTSolver();
+            }
+            myDirectSolver = mySparseLDLTSolver;
+            myUseDirectSolver = true;
+            break;
+         }
          case ConjugateGradient: {
             if (!(myIterativeSolver instanceof CGSolver)) {
                setIterativeSolver (new CGSolver());
@@ -603,6 +709,19 @@ public class MechSystemSolver {
       }
    }
 
+   /**
+    * Creates a KKTSolver whose direct solver is consistent with the
+    * current matrix solver.
+    */
+   private KKTSolver createKKTSolver() {
+      if (myMatrixSolver == MatrixSolver.SparseLDLT) {
+         return new KKTSolver (KKTSolver.SolverType.SPARSE_LDLT);
+      }
+      else {
+         return new KKTSolver();
+      }
+   }
+
    public boolean isPardisoAvailable () {
       return PardisoSolver.isAvailable();
    }
@@ -615,6 +734,9 @@ public class MechSystemSolver {
          case Umfpack: {
             return UmfpackSolver.isAvailable();
          }
+         case SparseLDLT: {
+            return true;
+         }
          case ConjugateGradient: {
             return true;
          }
@@ -636,6 +758,9 @@ public class MechSystemSolver {
       if (PardisoSolver.isAvailable()) {
          setMatrixSolver (MatrixSolver.Pardiso);
       }
+      else {
+         setMatrixSolver (MatrixSolver.SparseLDLT);
+      }
       // Umfpack no longer supported ...
       // else if (UmfpackSolver.isAvailable()) {
       //    setMatrixSolver (MatrixSolver.Umfpack);
@@ -662,6 +787,19 @@ public class MechSystemSolver {
       setHybridSolve (solver.getHybridSolve());
       setIntegrator (solver.getIntegrator());
       setMatrixSolver (solver.getMatrixSolver());
+      setContactSolver (solver.getContactSolver());
+      setContactSolverMaxIterations (solver.getContactSolverMaxIterations());
+      setContactSolverTol (solver.getContactSolverTol());
+   }
+
+   /**
+    * Marks the start of a phase timed by {@link StepProfiler}, which is
+    * timed if profiling is enabled either globally or for the system.
+    */
+   private long startTiming() {
+      return StepProfiler.start (
+         mySys instanceof MechSystemBase &&
+         ((MechSystemBase)mySys).isProfilingActive());
    }
 
    public void nonDynamicSolve (double t0, double t1, StepAdjustment stepAdjust) {
@@ -1186,7 +1324,14 @@ public class MechSystemSolver {
             doDirectSolve (myU, mySolveMatrix, myB);
          }
          else {
-            myIterativeSolver.solve (myU, mySolveMatrix, myB);
+            if (myPackedSolveMatrix == null ||
+                !myPackedSolveMatrix.isCurrent (mySolveMatrix)) {
+               myPackedSolveMatrix = new PackedBlockCRS (mySolveMatrix);
+            }
+            else {
+               myPackedSolveMatrix.updateValues();
+            }
+            myIterativeSolver.solve (myU, myPackedSolveMatrix, myB);
          }
       }
 
@@ -1433,11 +1578,13 @@ public class MechSystemSolver {
 
       // assumes that updateMassMatrix() has been called
       updateStateSizes();
+      myIterativeContactSolver = null;
 
       int velSize = myActiveVelSize;
 
       boolean analyze = false;
 
+      long t0 = startTiming();
       updateSolveMatrixStructure();
       if (myKKTSolveMatrixVersion != mySolveMatrixVersion) {
          myKKTSolveMatrixVersion = mySolveMatrixVersion;
@@ -1486,7 +1633,7 @@ public class MechSystemSolver {
       }
 
       if (myKKTSolver == null) {
-         myKKTSolver = new KKTSolver();
+         myKKTSolver = createKKTSolver();
       }
 
       updateBilateralConstraints ();
@@ -1546,31 +1693,65 @@ public class MechSystemSolver {
          }
       }
 
+      StepProfiler.stop (StepProfiler.Phase.ASSEMBLY, mySys, t0);
       if (velSize != 0) {
          if (vel0 != null) {
             // set vel to vel0 in case the solver needs a warm start
             vel.set (vel0);
          }
          if (analyze) {
+            if (profileKKTSolveTime) {
+               timerStart();
+            }
+            t0 = startTiming();
             myKKTSolver.analyze (
                S, velSize, myGT, myRg, mySys.getSolveMatrixType());
+            StepProfiler.stop (StepProfiler.Phase.ANALYZE, mySys, t0);
+            if (profileKKTSolveTime) {
+               timerStop (
+                  "KKTanalyze(reused " + myKKTSolver.getNumReusedAnalyses() +
+                  "/" + myKKTSolver.getNumAnalyzeCalls() + ")");
+            }
          }
          if (myHybridSolveP && !analyze && myNT.colSize() == 0) {
             if (profileKKTSolveTime) {
                timerStart();
             }
+            t0 = startTiming();
             myKKTSolver.factorAndSolve (
                S, velSize, myGT, myRg, vel, myLam, bf, myBg, myHybridSolveTol);
+            StepProfiler.stop (StepProfiler.Phase.SOLVE, mySys, t0);
             if (profileKKTSolveTime) {
                timerStop ("KKTsolve(hybrid)");
             }
          }
+         else if (useIterativeContactSolve()) {
+            if (profileKKTSolveTime) {
+               timerStart();
+            }
+            t0 = startTiming();
+            myKKTSolver.factor (S, velSize, myGT, myRg);
+            StepProfiler.stop (StepProfiler.Phase.FACTOR, mySys, t0);
+            t0 = startTiming();
+            solveIterativeContacts (
+               myKKTSolver, S, vel, bf, velSize, /*warmStart=*/true);
+            StepProfiler.stop (StepProfiler.Phase.SOLVE, mySys, t0);
+            if (profileKKTSolveTime) {
+               timerStop (
+                  "KKTsolve(" + myContactSolver + " " +
+                  myPGSSolver.numIterations() + " iterations)");
+            }
+         }
          else {
             if (profileKKTSolveTime) {
                timerStart();
             }
+            t0 = startTiming();
             myKKTSolver.factor (S, velSize, myGT, myRg, myNT, myRn);
+            StepProfiler.stop (StepProfiler.Phase.FACTOR, mySys, t0);
+            t0 = startTiming();
             myKKTSolver.solve (vel, myLam, myThe, bf, myBg, myBn);
+            StepProfiler.stop (StepProfiler.Phase.SOLVE, mySys, t0);
             if (profileKKTSolveTime) {
                timerStop ("KKTsolve");
             }
@@ -1742,7 +1923,7 @@ public class MechSystemSolver {
       }
       
       if (myStaticSolver == null) {
-         myStaticSolver = new KKTSolver();
+         myStaticSolver = createKKTSolver();
       }
 
       updateBilateralConstraints ();
@@ -1806,16 +1987,21 @@ public class MechSystemSolver {
 
       if (velSize != 0) {
          u.setZero();
+         long t0;
          if (analyze) {
+            t0 = startTiming();
             myStaticSolver.analyze (
                S, velSize, myGT, myRg, mySys.getSolveMatrixType());
+            StepProfiler.stop (StepProfiler.Phase.ANALYZE, mySys, t0);
          }
          if (myHybridSolveP && !analyze && myNT.colSize() == 0) {
             if (profileKKTSolveTime) {
                timerStart();
             }
+            t0 = startTiming();
             myStaticSolver.factorAndSolve (
                S, velSize, myGT, myRg, u, myLam, bf, myBg, myHybridSolveTol);
+            StepProfiler.stop (StepProfiler.Phase.SOLVE, mySys, t0);
             if (profileKKTSolveTime) {
                timerStop ("KKTsolve(hybrid)");
             }
@@ -1824,9 +2010,13 @@ public class MechSystemSolver {
             if (profileKKTSolveTime) {
                timerStart();
             }
+            t0 = startTiming();
             myStaticSolver.factor (S, velSize, myGT, myRg, myNT, myRn);
+            StepProfiler.stop (StepProfiler.Phase.FACTOR, mySys, t0);
             // int nperturbed = myStaticSolver.getNumNonZerosInFactors();
+            t0 = startTiming();
             myStaticSolver.solve (u, myLam, myThe, bf, myBg, myBn);
+            StepProfiler.stop (StepProfiler.Phase.SOLVE, mySys, t0);
             if (profileKKTSolveTime) {
                timerStop ("KKTsolve");
             }
@@ -1961,15 +2151,34 @@ public class MechSystemSolver {
    public void KKTSolve (
       VectorNd vel, VectorNd lam, VectorNd the, VectorNd bf) {
 
-      if (myKKTSolver == null || !myKKTSolver.isFactored()) {
-         throw new IllegalStateException (
-            "KKTFactorAndSolve must be called prior to KKTSolve");
-      }
       int velSize = mySys.getActiveVelStateSize();
       if (velSize != vel.size()) {
          throw new IllegalStateException (
             "Velocity size != current active velocity state size");
       }
+      checkKKTSolveState();
+
+      lam.setSize (myGT.colSize());
+      if (myNT != null) {
+         the.setSize (myNT.colSize());
+      }
+      else {
+         the.setSize (0);
+      }
+      if (velSize != 0) {
+         myKKTSolver.solve (vel, lam, the, bf, myBg, myBn);
+      }
+   }
+
+   /**
+    * Checks that the KKT system is in a state that allows KKTSolve() to
+    * be called.
+    */
+   private void checkKKTSolveState() {
+      if (myKKTSolver == null || !myKKTSolver.isFactored()) {
+         throw new IllegalStateException (
+            "KKTFactorAndSolve must be called prior to KKTSolve");
+      }
       //SparseBlockMatrix S = mySys.getSolveMatrix (MechSystem.FULL_MATRIX);
       //if (S != myKKTSolveMatrix) {
       //   throw new IllegalStateException ("Solve matrix has changed");
@@ -1986,17 +2195,48 @@ public class MechSystemSolver {
          throw new IllegalStateException (
             "Number of unilateral offsets != number of unilateral constraints");
       }
+   }
 
-      lam.setSize (myGT.colSize());
-      if (myNT != null) {
-         the.setSize (myNT.colSize());
-      }
-      else {
-         the.setSize (0);
+   /**
+    * Solves the KKT system factored by the most recent call to
+    * KKTFactorAndSolve() for several right-hand sides at once. This is
+    * equivalent to calling {@link
+    * #KKTSolve(VectorNd,VectorNd,VectorNd,VectorNd) KKTSolve(vel,lam,the,bf)}
+    * for each column of <code>bf</code>, with the results stored in the
+    * corresponding columns of <code>vel</code>, <code>lam</code>, and
+    * <code>the</code>. When there are no unilateral constraints and the
+    * matrix solver is {@link SparseLDLTSolver}, all columns are solved
+    * together using blocked substitutions, which is considerably faster
+    * than solving them one at a time. It is useful when computing the
+    * velocity response to a set of different force inputs, such as the
+    * excitations of individual muscles.
+    *
+    * @param vel returns the velocities, one column per right-hand side
+    * @param lam returns the bilateral impulses, one column per right-hand side
+    * @param the returns the unilateral impulses, one column per
+    * right-hand side
+    * @param bf right-hand sides, one per column, each formed as described
+    * for {@link #KKTSolve(VectorNd,VectorNd,VectorNd,VectorNd) KKTSolve}.
+    */
+   public void KKTSolve (
+      MatrixNd vel, MatrixNd lam, MatrixNd the, MatrixNd bf) {
+
+      int velSize = mySys.getActiveVelStateSize();
+      if (velSize != bf.rowSize()) {
+         throw new IllegalStateException (
+            "Row size of bf != current active velocity state size");
       }
+      checkKKTSolveState();
+
       if (velSize != 0) {
          myKKTSolver.solve (vel, lam, the, bf, myBg, myBn);
       }
+      else {
+         int ncols = bf.colSize();
+         vel.setSize (0, ncols);
+         lam.setSize (myGT.colSize(), ncols);
+         the.setSize (myNT != null ? myNT.colSize() : 0, ncols);
+      }
    }
 
    private double projectSingleFrictionConstraint (
@@ -2076,7 +2316,181 @@ public class MechSystemSolver {
       return phi;
    }
 
+   /**
+    * Returns true if unilateral constraints are present and should be
+    * handled by the iterative contact solver.
+    */
+   private boolean useIterativeContactSolve() {
+      return myContactSolver != ContactSolver.Direct && myNsize > 0;
+   }
+
+   /**
+    * Inverse of the active diagonal blocks of a system matrix. The storage
+    * is reused while the matrix and its structure are unchanged. Singular
+    * blocks are omitted, so that the iterative contact solver ignores them.
+    */
+   private static class DiagonalInverse {
+      SparseBlockMatrix myMinv;
+      MatrixNdBlock[] myBlocks;
+      SparseBlockMatrix mySource;
+      int myVersion = -1;
+
+      SparseBlockMatrix update (SparseBlockMatrix S, int nactive, int version) {
+         int nrows = Math.min (nactive, S.numBlockRows());
+         if (myMinv == null || S != mySource || version != myVersion ||
+             myBlocks.length != nrows) {
+            int[] sizes = new int[nrows];
+            for (int bi=0; bi<nrows; bi++) {
+               sizes[bi] = S.getBlockRowSize (bi);
+            }
+            myMinv = new SparseBlockMatrix (sizes, sizes);
+            myBlocks = new MatrixNdBlock[nrows];
+            mySource = S;
+            myVersion = version;
+         }
+         for (int bi=0; bi<nrows; bi++) {
+            MatrixBlock blk = S.getBlock (bi, bi);
+            MatrixNdBlock inv = myBlocks[bi];
+            if (blk == null) {
+               if (inv != null && myMinv.getBlock (bi, bi) != null) {
+                  myMinv.removeBlock (inv);
+               }
+               continue;
+            }
+            if (inv == null) {
+               int size = S.getBlockRowSize (bi);
+               inv = new MatrixNdBlock (size, size);
+               myBlocks[bi] = inv;
+            }
+            inv.set (blk);
+            boolean present = (myMinv.getBlock (bi, bi) != null);
+            if (inv.invert()) {
+               if (!present) {
+                  myMinv.addBlock (bi, bi, inv);
+               }
+            }
+            else if (present) {
+               myMinv.removeBlock (inv);
+            }
+         }
+         return myMinv;
+      }
+   }
+
+   /**
+    * Computes the velocity response to constraint impulses using a factored
+    * KKT solver, so that the iterative contact solver can account for
+    * coupled components and bilateral constraints. Each application
+    * requires one solve with the existing factorization.
+    */
+   private class FactoredResponse
+      implements PGSContactSolver.ResponseOperator {
+
+      KKTSolver mySolver;
+      SparseBlockMatrix myT;
+      int myVelSize;
+      VectorNd myBf = new VectorNd();
+      VectorNd myBg = new VectorNd();
+      VectorNd myLam = new VectorNd();
+
+      void set (KKTSolver solver, SparseBlockMatrix T, int velSize) {
+         mySolver = solver;
+         myT = T;
+         myVelSize = velSize;
+      }
+
+      public void computeResponse (VectorNd dvel, VectorNd dimp) {
+         myBf.setSize (myVelSize);
+         myBf.setZero();
+         myT.mulAdd (myBf, dimp, myVelSize, myT.colSize());
+         myBg.setSize (myGT.colSize());
+         myBg.setZero();
+         myLam.setSize (myGT.colSize());
+         dvel.setSize (myVelSize);
+         mySolver.solve (dvel, myLam, myBf, myBg);
+      }
+   }
+
+   /**
+    * Solves a KKT system whose unilateral constraints are handled by the
+    * iterative contact solver. <code>solver</code> should have been factored
+    * for the matrix <code>S</code> using the bilateral constraints only. The
+    * system is first solved with the unilateral impulses held at their
+    * starting values, after which the impulses are computed iteratively, and
+    * the system is then solved again so that the velocities and bilateral
+    * impulses are consistent with the final unilateral impulses.
+    *
+    * <p>The iteration uses the inverse of the diagonal blocks of
+    * <code>S</code>. If the components are coupled, by off-diagonal blocks
+    * of <code>S</code> or by bilateral constraints, the factored solver is
+    * also used to correct the velocities for the coupling, with one solve
+    * per correction.
+    */
+   private void solveIterativeContacts (
+      KKTSolver solver, SparseBlockMatrix S, VectorNd vel, VectorNd bf,
+      int velSize, boolean warmStart) {
+
+      if (warmStart) {
+         double[] tbuf = myThe.getBuffer();
+         for (int i=0; i<myNsize; i++) {
+            if (tbuf[i] < 0) {
+               tbuf[i] = 0;
+            }
+         }
+      }
+      else {
+         myThe.setZero();
+      }
+      myBfc.set (bf);
+      myNT.mulAdd (myBfc, myThe, velSize, myNsize);
+      solver.solve (vel, myLam, myBfc, myBg);
+      int nactive = mySys.numActiveComponents();
+      DiagonalInverse dinv =
+         (S == myMass ? myMassDiagInverse : mySolveDiagInverse);
+      SparseBlockMatrix Minv =
+         dinv.update (S, nactive, mySys.getStructureVersion());
+      myIterativeContactSolver = solver;
+      myIterativeContactMinv = Minv;
+      myIterativeContactCoupled = isCoupled (S, nactive);
+      if (myIterativeContactCoupled) {
+         myContactResponse.set (solver, myNT, velSize);
+         myPGSSolver.solve (
+            Minv, nactive, myNT, myRn, myBn, vel, myThe, myContactResponse);
+      }
+      else {
+         myPGSSolver.solve (Minv, nactive, myNT, myRn, myBn, vel, myThe);
+      }
+      myBfc.set (bf);
+      myNT.mulAdd (myBfc, myThe, velSize, myNsize);
+      solver.solve (vel, myLam, myBfc, myBg);
+   }
+
+   /**
+    * Returns true if the active components are coupled, either by
+    * bilateral constraints or by off-diagonal blocks of <code>S</code>.
+    */
+   private boolean isCoupled (SparseBlockMatrix S, int nactive) {
+      if (myGsize > 0) {
+         return true;
+      }
+      int nrows = Math.min (nactive, S.numBlockRows());
+      for (int bi=0; bi<nrows; bi++) {
+         for (MatrixBlock blk=S.firstBlockInRow(bi);
+              blk != null; blk=blk.next()) {
+            int bj = blk.getBlockCol();
+            if (bj != bi && bj < nactive) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
    protected void projectFrictionConstraints (VectorNd vel, double t0) {
+      if (myContactSolver != ContactSolver.Direct) {
+         projectFrictionConstraintsIteratively (vel, t0);
+         return;
+      }
       // BEGIN project friction constraints
       updateFrictionConstraints();
       // assumes that updateMassMatrix() has been called
@@ -2131,16 +2545,54 @@ public class MechSystemSolver {
       }
    }
 
+   /**
+    * Computes friction impulses for all friction constraints using the
+    * iterative contact solver, given the current bilateral and unilateral
+    * impulses. If the preceding velocity solve used the iterative contact
+    * solver, the friction response is computed the same way; otherwise, the
+    * inverse mass matrix is used.
+    */
+   protected void projectFrictionConstraintsIteratively (
+      VectorNd vel, double t0) {
+      updateFrictionConstraints();
+      KKTSolver solver = myIterativeContactSolver;
+      myIterativeContactSolver = null;
+      if (myDT.colSize() > 0) {
+         if (solver != null && myIterativeContactCoupled) {
+            myContactResponse.set (solver, myDT, myActiveVelSize);
+            myPGSSolver.solveFriction (
+               myIterativeContactMinv, mySys.numActiveComponents(), myDT,
+               myBd, myFrictionInfo, myLam, myThe, vel, myPhi,
+               myContactResponse);
+         }
+         else if (solver != null) {
+            myPGSSolver.solveFriction (
+               myIterativeContactMinv, mySys.numActiveComponents(), myDT,
+               myBd, myFrictionInfo, myLam, myThe, vel, myPhi);
+         }
+         else {
+            updateInverseMassMatrix (t0);
+            myPGSSolver.solveFriction (
+               myInverseMass, mySys.numActiveComponents(), myDT, myBd,
+               myFrictionInfo, myLam, myThe, vel, myPhi);
+         }
+      }
+      if (myUpdateForcesAtStepEnd && myDT.colSize() > 0) {
+         myDT.mulAdd (myFcon, myPhi, myActiveVelSize, myDT.colSize());
+      }
+   }
+
    protected void computeVelCorrections (VectorNd vel, double t0, double t1) {
 
       double h = t1-t0;
       // assumes that updateMassMatrix() has been called
+      myIterativeContactSolver = null;
       int velSize = myActiveVelSize;
       if (velSize == 0) {
          return;
       }            
       if (myConSolver == null) {
-         myConSolver = new KKTSolver();
+         myConSolver = createKKTSolver();
       }
       updateBilateralConstraints ();
       updateUnilateralConstraints ();
@@ -2190,8 +2642,15 @@ public class MechSystemSolver {
       mySys.getBilateralImpulses (myLam);
       mySys.getUnilateralImpulses (myThe);
 
-      myConSolver.factor (myMass, velSize, myGT, myRg, myNT, myRn);
-      myConSolver.solve (vel, myLam, myThe, myBf, myBg, myBn);
+      if (useIterativeContactSolve()) {
+         myConSolver.factor (myMass, velSize, myGT, myRg);
+         solveIterativeContacts (
+            myConSolver, myMass, vel, myBf, velSize, /*warmStart=*/true);
+      }
+      else {
+         myConSolver.factor (myMass, velSize, myGT, myRg, myNT, myRn);
+         myConSolver.solve (vel, myLam, myThe, myBf, myBg, myBn);
+      }
       if (computeKKTResidual) {
          double res = myConSolver.residual (
             myMass, velSize, myGT, myRg, myNT, myRn, 
@@ -2218,6 +2677,7 @@ public class MechSystemSolver {
       VectorNd vel, VectorNd f, double t0, double t1) {
 
       // assumes that updateMassMatrix() has been called
+      myIterativeContactSolver = null;
 
       double h = t1-t0;
 
@@ -2226,7 +2686,7 @@ public class MechSystemSolver {
          return;
       }            
       if (myConSolver == null) {
-         myConSolver = new KKTSolver();
+         myConSolver = createKKTSolver();
       }
       updateBilateralConstraints ();
       updateUnilateralConstraints ();
@@ -2326,7 +2786,9 @@ public class MechSystemSolver {
       mySys.updateConstraints (
          t, stepAdjust, /*flags=*/MechSystem.COMPUTE_CONTACTS);
       mySys.getActivePosState (q);
+      long t0 = startTiming();
       computePosCorrections (q, u, t);
+      StepProfiler.stop (StepProfiler.Phase.PROJECTION, mySys, t0);
       mySys.setActivePosState (q);
       // mySys.updateConstraints (
       //    t, stepAdjust, /*flags=*/MechSystem.UPDATE_CONTACTS);
@@ -2343,7 +2805,7 @@ public class MechSystemSolver {
          return false;
       }            
       if (myConSolver == null) {
-         myConSolver = new KKTSolver();
+         myConSolver = createKKTSolver();
       }
       updateBilateralConstraints ();
       updateUnilateralConstraints ();
@@ -2386,8 +2848,15 @@ public class MechSystemSolver {
          myConMassVersion = myMassVersion;
          myConGTVersion = myGTVersion;
       }
-      myConSolver.factor (myMass, velSize, myGT, myRg, myNT, myRn);
-      myConSolver.solve (vel, myLam, myThe, myBf, myBg, myBn);
+      if (useIterativeContactSolve()) {
+         myConSolver.factor (myMass, velSize, myGT, myRg);
+         solveIterativeContacts (
+            myConSolver, myMass, vel, myBf, velSize, /*warmStart=*/false);
+      }
+      else {
+         myConSolver.factor (myMass, velSize, myGT, myRg, myNT, myRn);
+         myConSolver.solve (vel, myLam, myThe, myBf, myBg, myBn);
+      }
       if (computeKKTResidual) {
          double res = myConSolver.residual (
             myMass, velSize, myGT, myRg, myNT, myRn, 
@@ -2411,7 +2880,7 @@ public class MechSystemSolver {
       mySys.addPosJacobian (S, null, -1);
       addActiveMassMatrix (mySys, S);
       if (myKKTSolver == null) {
-         myKKTSolver = new KKTSolver();
+         myKKTSolver = createKKTSolver();
          analyze = true;
       }
       if (myKKTGTVersion != myGTVersion) {
@@ -2426,6 +2895,11 @@ public class MechSystemSolver {
          myKKTSolver.factorAndSolve (
             S, velSize, myGT, myRg, vel, myLam, myBf, myBg, myHybridSolveTol);
       }
+      else if (useIterativeContactSolve()) {
+         myKKTSolver.factor (S, velSize, myGT, myRg);
+         solveIterativeContacts (
+            myKKTSolver, S, vel, myBf, velSize, /*warmStart=*/false);
+      }
       else {
          myKKTSolver.factor (S, velSize, myGT, myRg, myNT, myRn);
          myKKTSolver.solve (vel, myLam, myThe, myBf, myBg, myBn);
@@ -2465,7 +2939,9 @@ public class MechSystemSolver {
       updateMassMatrix (-1);
       mySys.updateConstraints (
          t, stepAdjust, /*flags=*/MechSystem.COMPUTE_CONTACTS);
+      long t0 = startTiming();
       computePosCorrections (pos, vel, t);
+      StepProfiler.stop (StepProfiler.Phase.PROJECTION, mySys, t0);
 
       mySys.setActivePosState (pos);
       // mySys.updateConstraints (
@@ -2483,7 +2959,7 @@ public class MechSystemSolver {
          return;
       }            
       if (myConSolver == null) {
-         myConSolver = new KKTSolver();
+         myConSolver = createKKTSolver();
       }
       updateBilateralConstraints ();
       updateUnilateralConstraints ();
@@ -3620,6 +4096,10 @@ public class MechSystemSolver {
          myUmfpackSolver.dispose();
          myUmfpackSolver = null;
       }
+      if (mySparseLDLTSolver != null) {
+         mySparseLDLTSolver.dispose();
+         mySparseLDLTSolver = null;
+      }
       if (myRBSolver != null) {
          myRBSolver.dispose();
          myRBSolver = null;
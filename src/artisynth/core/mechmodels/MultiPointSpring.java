@@ -123,6 +123,10 @@ public class MultiPointSpring extends PointSpringBase
    
    protected FunctionTimer myProfileTimer = new FunctionTimer();
    protected int myProfileCnt = 0;
+
+   // set when the wrap segments have already been updated for the current
+   // step by the owning MechModel, so that preadvance() can skip the update
+   boolean myWrapSegmentsPreupdated = false;
    protected int myUpdateContactsCnt = 0;
    protected int myIterationCnt = 0;
    
@@ -527,6 +531,14 @@ public class MultiPointSpring extends PointSpringBase
 
       protected int[] myContactCnts; // number of knots contacting each wrappable
 
+      // packed knot positions and query results, used by updateContacts()
+      // to query all the knots against each wrappable at once
+      double[] myKnotPnts;
+      double[] myKnotDists;
+      double[] myKnotNrmls;
+      double[] myKnotDnrms;
+      int[] myKnotLastIdxs;
+
       private abstract class LineSearchFunc implements DifferentiableFunction1x1 {
 
          boolean contactChanged = false;
@@ -865,26 +877,46 @@ public class MultiPointSpring extends PointSpringBase
        */
       boolean updateContacts (int[] contactCnts, boolean getStiffness) {
          boolean changed = false;
-         Vector3d nrml = new Vector3d();
-         Matrix3d dnrm = getStiffness ? new Matrix3d() : null;
+         int numk = myNumKnots;
+         if (myKnotPnts == null || myKnotDists.length < numk) {
+            myKnotPnts = new double[3*numk];
+            myKnotDists = new double[numk];
+            myKnotNrmls = new double[3*numk];
+            myKnotDnrms = new double[9*numk];
+            myKnotLastIdxs = new int[numk];
+         }
+         double[] pnts = myKnotPnts;
+         double[] dists = myKnotDists;
+         double[] nrmls = myKnotNrmls;
+         double[] dnrms = getStiffness ? myKnotDnrms : null;
          if (contactCnts != null) {
             for (int i=0; i<contactCnts.length; i++) {
                contactCnts[i] = 0;
             }
          }
-         for (int k=0; k<myNumKnots; k++) {
+         for (int k=0; k<numk; k++) {
             WrapKnot knot = myKnots[k];
-            Wrappable lastWrappable = knot.getWrappable();
+            myKnotLastIdxs[k] = knot.myWrappableIdx;
             if (contactCnts != null) {
                knot.myPrevDist = knot.myDist;
                knot.myPrevWrappableIdx = knot.myWrappableIdx;
             }
             knot.setWrappableIdx (-1);
             knot.myDist = Wrappable.OUTSIDE;
-            for (int i=0; i<myWrappables.size(); i++) {
-               Wrappable wrappable = myWrappables.get(i);
-               double d = wrappable.penetrationDistance (
-                  nrml, dnrm, knot.myPos);
+            Point3d pos = knot.myPos;
+            pnts[3*k  ] = pos.x;
+            pnts[3*k+1] = pos.y;
+            pnts[3*k+2] = pos.z;
+         }
+         // query all knots against each wrappable in turn. Wrappables are
+         // visited in order, so that each knot is assigned to the same
+         // wrappable as it would be if queried individually
+         for (int i=0; i<myWrappables.size(); i++) {
+            Wrappable wrappable = myWrappables.get(i);
+            wrappable.penetrationDistances (dists, nrmls, dnrms, pnts, numk);
+            for (int k=0; k<numk; k++) {
+               WrapKnot knot = myKnots[k];
+               double d = dists[k];
                if (d < knot.myDist) {
                   knot.myDist = d;
                   if (d < 0) {
@@ -892,14 +924,26 @@ public class MultiPointSpring extends PointSpringBase
                      if (contactCnts != null) {
                         contactCnts[i]++;
                      }
-                     knot.myNrml.set (nrml);
-                     if (dnrm != null) {
-                        knot.myDnrm.set (dnrm);
+                     knot.myNrml.set (nrmls[3*k], nrmls[3*k+1], nrmls[3*k+2]);
+                     if (dnrms != null) {
+                        int k9 = 9*k;
+                        Matrix3d dnrm = knot.myDnrm;
+                        dnrm.m00 = dnrms[k9  ];
+                        dnrm.m01 = dnrms[k9+1];
+                        dnrm.m02 = dnrms[k9+2];
+                        dnrm.m10 = dnrms[k9+3];
+                        dnrm.m11 = dnrms[k9+4];
+                        dnrm.m12 = dnrms[k9+5];
+                        dnrm.m20 = dnrms[k9+6];
+                        dnrm.m21 = dnrms[k9+7];
+                        dnrm.m22 = dnrms[k9+8];
                      }
                   }
                }
             }
-            if (knot.getWrappable() != lastWrappable) {
+         }
+         for (int k=0; k<numk; k++) {
+            if (myKnots[k].myWrappableIdx != myKnotLastIdxs[k]) {
                changed = true;
             }
          }
@@ -4053,8 +4097,24 @@ public class MultiPointSpring extends PointSpringBase
       }
    }
 
-   public void preadvance (double t0, double t1, int flags) {
+   /**
+    * Updates the wrap segments in advance of {@link #preadvance}. This is
+    * called by {@link MechModel} when it updates the wrap segments of
+    * several springs concurrently, and causes the next call to
+    * <code>preadvance()</code> to skip the update.
+    */
+   void preupdateWrapSegments() {
       updateWrapSegments(myMaxWrapIterations);
+      myWrapSegmentsPreupdated = true;
+   }
+
+   public void preadvance (double t0, double t1, int flags) {
+      if (myWrapSegmentsPreupdated) {
+         myWrapSegmentsPreupdated = false;
+      }
+      else {
+         updateWrapSegments(myMaxWrapIterations);
+      }
    }
    
    public void postadvance (double t0, double t1, int flags) {
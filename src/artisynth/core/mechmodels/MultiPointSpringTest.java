@@ -10,6 +10,7 @@ import java.util.*;
 import java.io.*;
 
 import artisynth.core.modelbase.ScanTest;
+import maspack.geometry.MeshFactory;
 import maspack.matrix.*;
 import maspack.util.*;
 import maspack.spatialmotion.*;
@@ -209,6 +210,83 @@ public class MultiPointSpringTest {
       ScanTest.testScanAndWrite (spring, mech, null);
    }
 
+   private MechModel createWrapModel (int numWrapThreads) {
+      MechModel mech = new MechModel ("wrap");
+      mech.setNumWrapThreads (numWrapThreads);
+
+      // cylinder along the y axis, and a mesh sphere with a distance grid
+      // lying above it, both shared by all the springs
+      RigidCylinder cylinder = new RigidCylinder ("cylinder", 0.5, 4.0, 1, 32);
+      cylinder.setPose (new RigidTransform3d (0, 0, 0, 0, 0, Math.PI/2));
+      mech.addRigidBody (cylinder);
+      RigidMesh sphere = new RigidMesh (
+         "sphere", MeshFactory.createIcosahedralSphere (0.5, 2), null, 1, 1);
+      sphere.setPose (new RigidTransform3d (0, 0, 1.2));
+      sphere.setDistanceGridRes (new Vector3i (16, 16, 16));
+      mech.addRigidBody (sphere);
+
+      for (int i=0; i<8; i++) {
+         double y = -0.35 + 0.1*i;
+         double z = (i%2 == 0 ? -0.2 : 1.2);
+         Particle p0 = new Particle (1, -2, y, z);
+         Particle p1 = new Particle (1, 2, y, z);
+         mech.addParticle (p0);
+         mech.addParticle (p1);
+         MultiPointSpring spring = new MultiPointSpring (1, 0, 0);
+         spring.addPoint (p0);
+         spring.setSegmentWrappable (50);
+         spring.addPoint (p1);
+         spring.addWrappable (cylinder);
+         spring.addWrappable (sphere);
+         mech.addMultiPointSpring (spring);
+      }
+      return mech;
+   }
+
+   private void moveEndPoints (MechModel mech, double dz) {
+      for (Particle p : mech.particles()) {
+         Point3d pos = new Point3d (p.getPosition());
+         pos.z += dz;
+         p.setPosition (pos);
+      }
+   }
+
+   /**
+    * Checks that the wrap paths of several springs sharing the same
+    * wrappables are the same whether the paths are updated by one thread or
+    * several.
+    */
+   public void testConcurrentWrapping() {
+      MechModel mech1 = createWrapModel (1);
+      MechModel mechN = createWrapModel (4);
+      double h = 0.01;
+      for (int k=1; k<=5; k++) {
+         mech1.preadvance (k*h, (k+1)*h, 0);
+         mechN.preadvance (k*h, (k+1)*h, 0);
+         for (int i=0; i<mech1.multiPointSprings().size(); i++) {
+            MultiPointSpring spr1 = mech1.multiPointSprings().get(i);
+            MultiPointSpring sprN = mechN.multiPointSprings().get(i);
+            if (spr1.getLength() != sprN.getLength()) {
+               throw new TestException (
+                  "spring "+i+", step "+k+": length with 4 threads is " +
+                  sprN.getLength()+", expected "+spr1.getLength());
+            }
+            for (int j=0; j<spr1.numKnots(0); j++) {
+               Point3d pos1 = spr1.getKnot(0,j).myPos;
+               Point3d posN = sprN.getKnot(0,j).myPos;
+               if (!pos1.equals (posN)) {
+                  throw new TestException (
+                     "spring "+i+", step "+k+", knot "+j+
+                     ": position with 4 threads is " + posN +
+                     ", expected " + pos1);
+               }
+            }
+         }
+         moveEndPoints (mech1, 0.02);
+         moveEndPoints (mechN, 0.02);
+      }
+   }
+
    public static void main (String[] args) {
       MultiPointSpringTest tester = new MultiPointSpringTest();
 
@@ -223,6 +301,7 @@ public class MultiPointSpringTest {
          tester.test(2, new int[] {0});               
          tester.test(4, new int[] {0, 1});               
          tester.test(5, new int[] {0, 2, 4});   
+         tester.testConcurrentWrapping();
          
       }
       catch (Exception e) {
@@ -0,0 +1,791 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.mechmodels;
+
+import java.util.Arrays;
+
+import maspack.matrix.MatrixBlock;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.VectorNd;
+import artisynth.core.mechmodels.MechSystem.FrictionInfo;
+
+/**
+ * Iterative solver for unilateral contact and friction impulses, based on
+ * projected Gauss-Seidel (PGS) iteration. It is used by {@link
+ * MechSystemSolver} in place of the pivoting LCP solver in {@link
+ * maspack.solvers.KKTSolver} when the contact solver is set to {@link
+ * MechSystemSolver.ContactSolver#PGS PGS} or {@link
+ * MechSystemSolver.ContactSolver#NNCG NNCG}.
+ *
+ * <p>Each iteration sweeps through the constraints, solving for each
+ * impulse in turn while holding the others fixed, and then projecting it
+ * onto its feasible set: non-negative values for unilateral constraints, and
+ * a disk (or interval) whose radius is given by the friction coefficient
+ * times the normal impulse for friction constraints. Because the iteration
+ * starts from the impulses supplied by the caller, it can be warm started
+ * from the impulses of the previous step.
+ *
+ * <p>The effect of each impulse on the velocities is computed using the
+ * inverse of the diagonal blocks of the system matrix, which makes the cost
+ * per iteration proportional to the number of constraint matrix entries.
+ * This is exact if the components are uncoupled, with a block diagonal
+ * system matrix and no bilateral constraints. Otherwise, the caller can
+ * supply a {@link ResponseOperator} which computes the exact velocity
+ * response to a set of impulses, typically using a factored system matrix.
+ * The block diagonal iteration is then used to find a search direction for
+ * the impulses, and the exact response to that direction is used to compute
+ * the step length and correct the velocities. Each correction requires one
+ * application of the response operator, and the operator
+ * <code>N S^-1 N^T</code> is never formed explicitly.
+ *
+ * <p>Optionally, the iteration can be accelerated using the nonsmooth
+ * nonlinear conjugate gradient (NNCG) method of Silcowski et al., in which
+ * the change produced by each PGS sweep is treated as a negative gradient
+ * and combined with the previous search direction.
+ *
+ * <p>The iteration stops when the largest impulse change in a sweep is
+ * less than the tolerance times the largest impulse magnitude, or when the
+ * maximum number of iterations is reached. Likewise, the corrections stop
+ * when the search direction is small enough, or when the maximum number of
+ * corrections is reached, so that the cost per step is bounded.
+ */
+public class PGSContactSolver {
+
+   public static int DEFAULT_MAX_ITERATIONS = 50;
+   public static int DEFAULT_MAX_CORRECTIONS = 10;
+   public static double DEFAULT_TOLERANCE = 1e-4;
+
+   /**
+    * Computes the exact change in the velocities produced by a change in
+    * the impulses of a set of constraints.
+    */
+   public interface ResponseOperator {
+
+      /**
+       * Computes the velocity change <code>dvel</code> produced by the
+       * constraint impulse change <code>dimp</code>. For constraints
+       * described by a transposed constraint matrix <code>T</code>, this is
+       * given by <code>S^-1 T dimp</code>, where <code>S^-1</code> includes
+       * the effect of any bilateral constraints.
+       *
+       * @param dvel returns the velocity change
+       * @param dimp impulse change for each constraint
+       */
+      public void computeResponse (VectorNd dvel, VectorNd dimp);
+   }
+
+   // prevents division by zero for constraints with no effective mass
+   private static double MIN_DIAG = 1e-16;
+
+   private int myMaxIterations = DEFAULT_MAX_ITERATIONS;
+   private int myMaxCorrections = DEFAULT_MAX_CORRECTIONS;
+   private double myTol = DEFAULT_TOLERANCE;
+   private boolean myNNCG = false;
+
+   private int myNumIterations = 0;
+   private int myNumCorrections = 0;
+   private boolean myConverged = false;
+
+   // Compressed storage for the constraint columns. For scalar constraint
+   // k, entries myStart[k] to myStart[k+1]-1 give the velocity index of each
+   // non-zero column entry, its value, and the corresponding entry of the
+   // inverse mass matrix times the column.
+   private int myNumCons = 0;
+   private int[] myStart = new int[1];
+   private int[] myIdxs = new int[0];
+   private double[] myVals = new double[0];
+   private double[] myMinvVals = new double[0];
+   private double[] myDiag = new double[0];  // N Minv N^T diagonal plus R
+   private double[] myComp = new double[0];  // compliance R
+   private double[] myOffs = new double[0];  // constraint offsets
+
+   // Constraint sets. Set i contains mySetSize[i] scalar constraints starting
+   // at mySetStart[i], with a maximum impulse of myMaxImpulse[i]. Unilateral
+   // constraints are stored as sets of size 1 with a negative max impulse.
+   private int myNumSets = 0;
+   private int[] mySetStart = new int[0];
+   private int[] mySetSize = new int[0];
+   private double[] myMaxImpulse = new double[0];
+
+   // work vectors for NNCG
+   private double[] myXprev = new double[0];
+   private double[] myDir = new double[0];
+
+   // work vectors for corrections using a response operator
+   private double[] myXhat = new double[0];
+   private VectorNd myVhat = new VectorNd();
+   private VectorNd myDimp = new VectorNd();
+   private VectorNd myDvel = new VectorNd();
+
+   /**
+    * Returns the maximum number of iterations.
+    *
+    * @return maximum number of iterations
+    */
+   public int getMaxIterations() {
+      return myMaxIterations;
+   }
+
+   /**
+    * Sets the maximum number of iterations. Each iteration is one sweep
+    * through all the constraints.
+    *
+    * @param maxi maximum number of iterations
+    */
+   public void setMaxIterations (int maxi) {
+      if (maxi < 1) {
+         throw new IllegalArgumentException (
+            "maximum iterations must be positive");
+      }
+      myMaxIterations = maxi;
+   }
+
+   /**
+    * Returns the maximum number of corrections.
+    *
+    * @return maximum number of corrections
+    */
+   public int getMaxCorrections() {
+      return myMaxCorrections;
+   }
+
+   /**
+    * Sets the maximum number of corrections used when a response operator
+    * is supplied. Each correction applies the operator once.
+    *
+    * @param maxc maximum number of corrections
+    */
+   public void setMaxCorrections (int maxc) {
+      if (maxc < 1) {
+         throw new IllegalArgumentException (
+            "maximum corrections must be positive");
+      }
+      myMaxCorrections = maxc;
+   }
+
+   /**
+    * Returns the convergence tolerance.
+    *
+    * @return convergence tolerance
+    */
+   public double getTolerance() {
+      return myTol;
+   }
+
+   /**
+    * Sets the convergence tolerance. Iteration stops when the largest
+    * impulse change in a sweep is less than this value times the largest
+    * impulse magnitude.
+    *
+    * @param tol convergence tolerance
+    */
+   public void setTolerance (double tol) {
+      if (tol < 0) {
+         throw new IllegalArgumentException ("tolerance must be non-negative");
+      }
+      myTol = tol;
+   }
+
+   /**
+    * Queries whether NNCG acceleration is enabled.
+    *
+    * @return <code>true</code> if NNCG acceleration is enabled
+    */
+   public boolean getNNCG() {
+      return myNNCG;
+   }
+
+   /**
+    * Enables or disables NNCG acceleration of the PGS iteration.
+    *
+    * @param enable if <code>true</code>, enables NNCG acceleration
+    */
+   public void setNNCG (boolean enable) {
+      myNNCG = enable;
+   }
+
+   /**
+    * Returns the number of iterations used by the most recent solve. If a
+    * response operator was supplied, this is the total over all
+    * corrections.
+    *
+    * @return number of iterations
+    */
+   public int numIterations() {
+      return myNumIterations;
+   }
+
+   /**
+    * Returns the number of corrections used by the most recent solve, or 0
+    * if no response operator was supplied.
+    *
+    * @return number of corrections
+    */
+   public int numCorrections() {
+      return myNumCorrections;
+   }
+
+   /**
+    * Queries whether the most recent solve converged within the maximum
+    * number of iterations.
+    *
+    * @return <code>true</code> if the most recent solve converged
+    */
+   public boolean converged() {
+      return myConverged;
+   }
+
+   /**
+    * Solves for the impulses of a set of unilateral constraints, such that
+    * <pre>
+    * w = N vel + Rn the - bn,  w &gt;= 0,  the &gt;= 0,  w^T the = 0
+    * </pre>
+    * where velocity changes caused by impulse changes are computed using
+    * <code>Minv</code>, the inverse of the diagonal blocks of the system
+    * matrix. This is exact only if the system matrix is block diagonal and
+    * there are no bilateral constraints. On input, <code>vel</code> should
+    * contain the velocities produced by the impulses in <code>the</code>,
+    * which are used as the starting point for the iteration.
+    *
+    * @param Minv inverse of the diagonal blocks of the system matrix
+    * @param nactive number of active components. Blocks of NT associated
+    * with other components are ignored.
+    * @param NT transposed unilateral constraint matrix
+    * @param Rn unilateral compliance terms, or <code>null</code>
+    * @param bn unilateral constraint offsets
+    * @param vel active velocities (updated on output)
+    * @param the unilateral impulses (updated on output)
+    * @return <code>true</code> if the iteration converged
+    */
+   public boolean solve (
+      SparseBlockMatrix Minv, int nactive, SparseBlockMatrix NT, VectorNd Rn,
+      VectorNd bn, VectorNd vel, VectorNd the) {
+      return solve (Minv, nactive, NT, Rn, bn, vel, the, null);
+   }
+
+   /**
+    * Solves for the impulses of a set of unilateral constraints, as
+    * described for {@link
+    * #solve(SparseBlockMatrix,int,SparseBlockMatrix,VectorNd,VectorNd,VectorNd,VectorNd)},
+    * except that if <code>resp</code> is non-<code>null</code>, it is used
+    * to correct the velocities for coupling that is not described by
+    * <code>Minv</code>, so that the iteration converges to the solution of
+    * the coupled system. On input, <code>vel</code> should then contain the
+    * exact velocities produced by the impulses in <code>the</code>.
+    *
+    * @param Minv inverse of the diagonal blocks of the system matrix
+    * @param nactive number of active components. Blocks of NT associated
+    * with other components are ignored.
+    * @param NT transposed unilateral constraint matrix
+    * @param Rn unilateral compliance terms, or <code>null</code>
+    * @param bn unilateral constraint offsets
+    * @param vel active velocities (updated on output)
+    * @param the unilateral impulses (updated on output)
+    * @param resp if non-<code>null</code>, computes the exact velocity
+    * response to changes in <code>the</code>
+    * @return <code>true</code> if the iteration converged
+    */
+   public boolean solve (
+      SparseBlockMatrix Minv, int nactive, SparseBlockMatrix NT, VectorNd Rn,
+      VectorNd bn, VectorNd vel, VectorNd the, ResponseOperator resp) {
+
+      clearConstraints();
+      int ncons = NT.colSize();
+      double[] x = the.getBuffer();
+      for (int k=0; k<ncons; k++) {
+         if (x[k] < 0) {
+            x[k] = 0;
+         }
+      }
+      addConstraints (Minv, nactive, NT, Rn, bn);
+      for (int k=0; k<ncons; k++) {
+         addSet (k, 1, -1);
+      }
+      // velocities are assumed to already include the effect of the
+      // starting impulses, so no adjustment is needed
+      if (resp != null) {
+         return iterateWithCorrections (x, vel, resp);
+      }
+      else {
+         myNumCorrections = 0;
+         return iterate (x, vel.getBuffer());
+      }
+   }
+
+   /**
+    * Solves for friction impulses, given the current bilateral and
+    * unilateral impulses which determine the friction limits. Friction
+    * constraints with two columns form a disk-shaped friction cone, while
+    * those with one column form an interval. The friction impulses are
+    * initialized to zero, and <code>vel</code> is assumed to contain the
+    * velocities prior to the application of friction.
+    *
+    * @param Minv inverse of the diagonal blocks of the system matrix
+    * @param nactive number of active components. Blocks of DT associated
+    * with other components are ignored.
+    * @param DT transposed friction constraint matrix
+    * @param bd friction constraint offsets
+    * @param finfo friction information for each block column of DT
+    * @param lam bilateral impulses
+    * @param the unilateral impulses
+    * @param vel active velocities (updated on output)
+    * @param phi friction impulses (output)
+    * @return <code>true</code> if the iteration converged
+    */
+   public boolean solveFriction (
+      SparseBlockMatrix Minv, int nactive, SparseBlockMatrix DT, VectorNd bd,
+      FrictionInfo[] finfo, VectorNd lam, VectorNd the,
+      VectorNd vel, VectorNd phi) {
+      return solveFriction (
+         Minv, nactive, DT, bd, finfo, lam, the, vel, phi, null);
+   }
+
+   /**
+    * Solves for friction impulses, as described for {@link
+    * #solveFriction(SparseBlockMatrix,int,SparseBlockMatrix,VectorNd,FrictionInfo[],VectorNd,VectorNd,VectorNd,VectorNd)},
+    * except that if <code>resp</code> is non-<code>null</code>, it is used
+    * to correct the velocities for coupling that is not described by
+    * <code>Minv</code>.
+    *
+    * @param Minv inverse of the diagonal blocks of the system matrix
+    * @param nactive number of active components. Blocks of DT associated
+    * with other components are ignored.
+    * @param DT transposed friction constraint matrix
+    * @param bd friction constraint offsets
+    * @param finfo friction information for each block column of DT
+    * @param lam bilateral impulses
+    * @param the unilateral impulses
+    * @param vel active velocities (updated on output)
+    * @param phi friction impulses (output)
+    * @param resp if non-<code>null</code>, computes the exact velocity
+    * response to changes in <code>phi</code>
+    * @return <code>true</code> if the iteration converged
+    */
+   public boolean solveFriction (
+      SparseBlockMatrix Minv, int nactive, SparseBlockMatrix DT, VectorNd bd,
+      FrictionInfo[] finfo, VectorNd lam, VectorNd the,
+      VectorNd vel, VectorNd phi, ResponseOperator resp) {
+
+      clearConstraints();
+      phi.setSize (DT.colSize());
+      phi.setZero();
+      addConstraints (Minv, nactive, DT, null, bd);
+      addFrictionSets (DT, finfo, lam, the);
+      if (resp != null) {
+         return iterateWithCorrections (phi.getBuffer(), vel, resp);
+      }
+      else {
+         myNumCorrections = 0;
+         return iterate (phi.getBuffer(), vel.getBuffer());
+      }
+   }
+
+   private void addFrictionSets (
+      SparseBlockMatrix DT, FrictionInfo[] finfo, VectorNd lam, VectorNd the) {
+
+      for (int bj=0; bj<DT.numBlockCols(); bj++) {
+         FrictionInfo info = finfo[bj];
+         double phiMax;
+         if ((info.flags & FrictionInfo.BILATERAL) != 0) {
+            phiMax = info.getMaxFriction (lam);
+         }
+         else {
+            phiMax = info.getMaxFriction (the);
+         }
+         addSet (DT.getBlockColOffset (bj), DT.getBlockColSize (bj),
+                 Math.max (phiMax, 0));
+      }
+   }
+
+   private void clearConstraints() {
+      myNumCons = 0;
+      myStart[0] = 0;
+      myNumSets = 0;
+   }
+
+   /**
+    * Adds the columns of a constraint matrix to the compressed storage. The
+    * matrix is traversed by rows, since it may not be vertically linked, so
+    * the entries for each column are counted first and then filled in.
+    */
+   private void addConstraints (
+      SparseBlockMatrix Minv, int nactive, SparseBlockMatrix T,
+      VectorNd R, VectorNd b) {
+
+      int k0 = myNumCons;
+      int ncons = T.colSize();
+      ensureConstraintCapacity (k0+ncons);
+      int nrows = Math.min (nactive, T.numBlockRows());
+
+      // count the entries in each column
+      int[] start = myStart;
+      for (int k=k0; k<k0+ncons; k++) {
+         start[k+1] = 0;
+      }
+      for (int bi=0; bi<nrows; bi++) {
+         if (Minv.getBlock (bi, bi) == null) {
+            continue;
+         }
+         for (MatrixBlock blk=T.firstBlockInRow(bi);
+              blk != null; blk=blk.next()) {
+            int coff = T.getBlockColOffset (blk.getBlockCol());
+            for (int j=0; j<blk.colSize(); j++) {
+               start[k0+coff+j+1] += blk.rowSize();
+            }
+         }
+      }
+      for (int k=k0; k<k0+ncons; k++) {
+         start[k+1] += start[k];
+      }
+      ensureEntryCapacity (start[k0+ncons]);
+
+      // fill in the entries, using myDiag to hold the fill position
+      for (int k=k0; k<k0+ncons; k++) {
+         myDiag[k] = start[k];
+      }
+      for (int bi=0; bi<nrows; bi++) {
+         MatrixBlock Mblk = Minv.getBlock (bi, bi);
+         if (Mblk == null) {
+            continue;
+         }
+         int roff = T.getBlockRowOffset (bi);
+         int rsize = Mblk.rowSize();
+         for (MatrixBlock blk=T.firstBlockInRow(bi);
+              blk != null; blk=blk.next()) {
+            int coff = T.getBlockColOffset (blk.getBlockCol());
+            for (int j=0; j<blk.colSize(); j++) {
+               int k = k0+coff+j;
+               int e = (int)myDiag[k];
+               for (int i=0; i<rsize; i++) {
+                  double sum = 0;
+                  for (int l=0; l<rsize; l++) {
+                     sum += Mblk.get (i, l)*blk.get (l, j);
+                  }
+                  myIdxs[e+i] = roff+i;
+                  myVals[e+i] = blk.get (i, j);
+                  myMinvVals[e+i] = sum;
+               }
+               myDiag[k] = e+rsize;
+            }
+         }
+      }
+
+      // compute the diagonal of N Minv N^T plus compliance
+      for (int k=k0; k<k0+ncons; k++) {
+         double diag = 0;
+         for (int e=start[k]; e<start[k+1]; e++) {
+            diag += myVals[e]*myMinvVals[e];
+         }
+         myComp[k] = (R != null ? R.get(k-k0) : 0);
+         diag += myComp[k];
+         myDiag[k] = Math.max (diag, MIN_DIAG);
+         myOffs[k] = b.get(k-k0);
+      }
+      myNumCons += ncons;
+   }
+
+   private void addSet (int start, int size, double maxImpulse) {
+      if (myNumSets == mySetStart.length) {
+         int cap = Math.max (16, 2*myNumSets);
+         mySetStart = Arrays.copyOf (mySetStart, cap);
+         mySetSize = Arrays.copyOf (mySetSize, cap);
+         myMaxImpulse = Arrays.copyOf (myMaxImpulse, cap);
+      }
+      mySetStart[myNumSets] = start;
+      mySetSize[myNumSets] = size;
+      myMaxImpulse[myNumSets] = maxImpulse;
+      myNumSets++;
+   }
+
+   private void ensureConstraintCapacity (int ncons) {
+      if (myDiag.length < ncons) {
+         int cap = Math.max (ncons, 2*myDiag.length);
+         myStart = Arrays.copyOf (myStart, cap+1);
+         myDiag = Arrays.copyOf (myDiag, cap);
+         myComp = Arrays.copyOf (myComp, cap);
+         myOffs = Arrays.copyOf (myOffs, cap);
+         myXprev = new double[cap];
+         myDir = new double[cap];
+         myXhat = new double[cap];
+      }
+   }
+
+   private void ensureEntryCapacity (int nentries) {
+      if (myIdxs.length < nentries) {
+         int cap = Math.max (nentries, 2*myIdxs.length);
+         myIdxs = Arrays.copyOf (myIdxs, cap);
+         myVals = Arrays.copyOf (myVals, cap);
+         myMinvVals = Arrays.copyOf (myMinvVals, cap);
+      }
+   }
+
+   /**
+    * Returns the impulse change required to zero the velocity of scalar
+    * constraint k, given its current impulse x.
+    */
+   private double computeDelta (int k, double x, double[] v) {
+      double w = myComp[k]*x - myOffs[k] + columnDot (k, v);
+      return -w/myDiag[k];
+   }
+
+   /**
+    * Returns the product of the stored column for scalar constraint k with
+    * the velocities v.
+    */
+   private double columnDot (int k, double[] v) {
+      double sum = 0;
+      for (int e=myStart[k]; e<myStart[k+1]; e++) {
+         sum += myVals[e]*v[myIdxs[e]];
+      }
+      return sum;
+   }
+
+   /**
+    * Updates the velocities to reflect an impulse change dx for scalar
+    * constraint k.
+    */
+   private void applyDelta (int k, double dx, double[] v) {
+      for (int e=myStart[k]; e<myStart[k+1]; e++) {
+         v[myIdxs[e]] += myMinvVals[e]*dx;
+      }
+   }
+
+   /**
+    * Performs one projected Gauss-Seidel sweep and returns the largest
+    * impulse change.
+    */
+   private double sweep (double[] x, double[] v) {
+      double dmax = 0;
+      for (int s=0; s<myNumSets; s++) {
+         int k = mySetStart[s];
+         double max = myMaxImpulse[s];
+         if (max < 0) {
+            // unilateral constraint
+            double xnew = x[k] + computeDelta (k, x[k], v);
+            if (xnew < 0) {
+               xnew = 0;
+            }
+            double dx = xnew - x[k];
+            if (dx != 0) {
+               applyDelta (k, dx, v);
+               x[k] = xnew;
+               dmax = Math.max (dmax, Math.abs(dx));
+            }
+         }
+         else if (mySetSize[s] == 1) {
+            double xnew = x[k] + computeDelta (k, x[k], v);
+            if (xnew > max) {
+               xnew = max;
+            }
+            else if (xnew < -max) {
+               xnew = -max;
+            }
+            double dx = xnew - x[k];
+            if (dx != 0) {
+               applyDelta (k, dx, v);
+               x[k] = xnew;
+               dmax = Math.max (dmax, Math.abs(dx));
+            }
+         }
+         else {
+            // two-dimensional friction: solve each direction for the
+            // current velocity, then project onto the friction disk
+            double x0 = x[k] + computeDelta (k, x[k], v);
+            double x1 = x[k+1] + computeDelta (k+1, x[k+1], v);
+            double mag = Math.sqrt (x0*x0 + x1*x1);
+            if (mag > max) {
+               double s0 = (mag > 0 ? max/mag : 0);
+               x0 *= s0;
+               x1 *= s0;
+            }
+            double dx0 = x0 - x[k];
+            double dx1 = x1 - x[k+1];
+            applyDelta (k, dx0, v);
+            applyDelta (k+1, dx1, v);
+            x[k] = x0;
+            x[k+1] = x1;
+            dmax = Math.max (dmax, Math.max (Math.abs(dx0), Math.abs(dx1)));
+         }
+      }
+      return dmax;
+   }
+
+   /**
+    * Projects the impulses onto their feasible sets, updating the
+    * velocities accordingly.
+    */
+   private void project (double[] x, double[] v) {
+      for (int s=0; s<myNumSets; s++) {
+         int k = mySetStart[s];
+         double max = myMaxImpulse[s];
+         if (max < 0) {
+            if (x[k] < 0) {
+               applyDelta (k, -x[k], v);
+               x[k] = 0;
+            }
+         }
+         else {
+            double mag = 0;
+            for (int i=0; i<mySetSize[s]; i++) {
+               mag += x[k+i]*x[k+i];
+            }
+            mag = Math.sqrt (mag);
+            if (mag > max) {
+               double scale = max/mag;
+               for (int i=0; i<mySetSize[s]; i++) {
+                  double xnew = scale*x[k+i];
+                  applyDelta (k+i, xnew-x[k+i], v);
+                  x[k+i] = xnew;
+               }
+            }
+         }
+      }
+   }
+
+   private boolean isConverged (double dmax, double[] x) {
+      double xmax = 0;
+      for (int k=0; k<myNumCons; k++) {
+         xmax = Math.max (xmax, Math.abs(x[k]));
+      }
+      return dmax <= myTol*xmax;
+   }
+
+   private boolean iterate (double[] x, double[] v) {
+      int ncons = myNumCons;
+      myNumIterations = 0;
+      myConverged = true;
+      if (ncons == 0) {
+         return true;
+      }
+      myConverged = false;
+      boolean projectionNeeded = false;
+      double gnormPrev = 0;
+      for (int k=0; k<ncons; k++) {
+         myDir[k] = 0;
+      }
+      while (myNumIterations < myMaxIterations) {
+         if (myNNCG) {
+            for (int k=0; k<ncons; k++) {
+               myXprev[k] = x[k];
+            }
+         }
+         double dmax = sweep (x, v);
+         myNumIterations++;
+         projectionNeeded = false;
+         if (isConverged (dmax, x)) {
+            myConverged = true;
+            break;
+         }
+         if (myNNCG) {
+            // the PGS step x - xprev is the negative gradient
+            double gnorm = 0;
+            for (int k=0; k<ncons; k++) {
+               double g = x[k] - myXprev[k];
+               gnorm += g*g;
+            }
+            double beta = (gnormPrev > 0 ? gnorm/gnormPrev : 0);
+            if (beta > 1) {
+               // restart
+               for (int k=0; k<ncons; k++) {
+                  myDir[k] = 0;
+               }
+            }
+            else if (beta > 0) {
+               for (int k=0; k<ncons; k++) {
+                  double dx = beta*myDir[k];
+                  if (dx != 0) {
+                     applyDelta (k, dx, v);
+                     x[k] += dx;
+                  }
+               }
+               projectionNeeded = true;
+            }
+            for (int k=0; k<ncons; k++) {
+               myDir[k] = x[k] - myXprev[k];
+            }
+            gnormPrev = gnorm;
+         }
+      }
+      if (projectionNeeded) {
+         // conjugate gradient steps can leave the impulses infeasible
+         project (x, v);
+      }
+      return myConverged;
+   }
+
+   /**
+    * Iterates using a response operator to account for the coupling not
+    * described by the inverse diagonal blocks. Each correction runs the
+    * block diagonal iteration from the current impulses and exact velocities
+    * to obtain a search direction, applies the response operator to the
+    * direction, and then takes the step along it that minimizes the
+    * quadratic energy of the coupled problem, limited to the full step so
+    * that the impulses remain feasible. Since the block diagonal iteration
+    * decreases a local model of this energy, the step is a descent
+    * direction, and the energy decreases with each correction.
+    */
+   private boolean iterateWithCorrections (
+      double[] x, VectorNd vel, ResponseOperator resp) {
+
+      int ncons = myNumCons;
+      myNumCorrections = 0;
+      myConverged = true;
+      if (ncons == 0) {
+         myNumIterations = 0;
+         return true;
+      }
+      myConverged = false;
+      int numIters = 0;
+      double[] xhat = myXhat;
+      double[] v = vel.getBuffer();
+      myDimp.setSize (ncons);
+      double[] d = myDimp.getBuffer();
+      while (myNumCorrections < myMaxCorrections) {
+         // search direction from the block diagonal iteration
+         for (int k=0; k<ncons; k++) {
+            xhat[k] = x[k];
+         }
+         myVhat.set (vel);
+         iterate (xhat, myVhat.getBuffer());
+         numIters += myNumIterations;
+         myNumCorrections++;
+         double dmax = 0;
+         for (int k=0; k<ncons; k++) {
+            d[k] = xhat[k] - x[k];
+            dmax = Math.max (dmax, Math.abs(d[k]));
+         }
+         if (isConverged (dmax, xhat)) {
+            myConverged = true;
+            break;
+         }
+         // exact line search along d, using the gradient g = w and the
+         // curvature d^T (N S^-1 N^T + R) d
+         resp.computeResponse (myDvel, myDimp);
+         double[] dv = myDvel.getBuffer();
+         double gd = 0;
+         double dWd = 0;
+         for (int k=0; k<ncons; k++) {
+            double w = myComp[k]*x[k] - myOffs[k] + columnDot (k, v);
+            gd += w*d[k];
+            dWd += (columnDot (k, dv) + myComp[k]*d[k])*d[k];
+         }
+         if (gd >= 0 || dWd <= 0) {
+            // no further decrease is possible, so the impulses are optimal
+            // to within round-off
+            myConverged = true;
+            break;
+         }
+         double alpha = Math.min (1, -gd/dWd);
+         for (int k=0; k<ncons; k++) {
+            x[k] += alpha*d[k];
+         }
+         vel.scaledAdd (alpha, myDvel);
+      }
+      myNumIterations = numIters;
+      return myConverged;
+   }
+}
@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.mechmodels;
+
+import maspack.matrix.CholeskyDecomposition;
+import maspack.matrix.LUDecomposition;
+import maspack.matrix.Matrix3x1Block;
+import maspack.matrix.Matrix3x2Block;
+import maspack.matrix.Matrix3x3Block;
+import maspack.matrix.MatrixNd;
+import maspack.matrix.RigidTransform3d;
+import maspack.matrix.SparseBlockMatrix;
+import maspack.matrix.Vector3d;
+import maspack.matrix.VectorNd;
+import maspack.util.RandomGenerator;
+import maspack.util.TestException;
+import maspack.util.UnitTest;
+import artisynth.core.femmodels.FemFactory;
+import artisynth.core.femmodels.FemModel3d;
+import artisynth.core.materials.LinearMaterial;
+import artisynth.core.mechmodels.MechSystem.FrictionInfo;
+import artisynth.core.mechmodels.MechSystemSolver.ContactSolver;
+
+/**
+ * Tests PGSContactSolver against exact solutions. For a set of particles,
+ * the inverse mass matrix is exact, so the solver should reproduce the
+ * solution of the underlying LCP, as it should for coupled systems when
+ * given an operator that computes the exact velocity response. Coupled
+ * models are also stepped with the PGS contact solver to check that
+ * contacts do not approach each other.
+ */
+public class PGSContactSolverTest extends UnitTest {
+
+   private static double EPS = 1e-8;
+
+   SparseBlockMatrix createInverseMass (double[] masses) {
+      int[] sizes = new int[masses.length];
+      for (int i=0; i<masses.length; i++) {
+         sizes[i] = 3;
+      }
+      SparseBlockMatrix Minv = new SparseBlockMatrix (sizes, sizes);
+      for (int i=0; i<masses.length; i++) {
+         Matrix3x3Block blk = new Matrix3x3Block();
+         blk.setDiagonal (1/masses[i], 1/masses[i], 1/masses[i]);
+         Minv.addBlock (i, i, blk);
+      }
+      return Minv;
+   }
+
+   /**
+    * Creates random unilateral constraints, each acting on one or two
+    * particles.
+    */
+   SparseBlockMatrix createConstraints (int nparts, int ncons) {
+      int[] rsizes = new int[nparts];
+      int[] csizes = new int[ncons];
+      for (int i=0; i<nparts; i++) {
+         rsizes[i] = 3;
+      }
+      for (int j=0; j<ncons; j++) {
+         csizes[j] = 1;
+      }
+      SparseBlockMatrix NT = new SparseBlockMatrix (rsizes, csizes);
+      for (int j=0; j<ncons; j++) {
+         int p0 = RandomGenerator.nextInt (0, nparts-1);
+         int p1 = RandomGenerator.nextInt (0, nparts-1);
+         Vector3d nrm = new Vector3d();
+         nrm.setRandom();
+         nrm.normalize();
+         Matrix3x1Block blk = new Matrix3x1Block();
+         blk.set (nrm);
+         NT.addBlock (p0, j, blk);
+         if (p1 != p0) {
+            blk = new Matrix3x1Block();
+            nrm.negate();
+            blk.set (nrm);
+            NT.addBlock (p1, j, blk);
+         }
+      }
+      return NT;
+   }
+
+   /**
+    * Solves a small LCP w = W the + q exactly by enumerating the possible
+    * active sets.
+    */
+   VectorNd solveLCPExactly (MatrixNd W, VectorNd q) {
+      int n = q.size();
+      VectorNd the = new VectorNd (n);
+      for (int set=0; set<(1<<n); set++) {
+         int[] active = new int[Integer.bitCount (set)];
+         int k = 0;
+         for (int i=0; i<n; i++) {
+            if ((set & (1<<i)) != 0) {
+               active[k++] = i;
+            }
+         }
+         the.setZero();
+         if (active.length > 0) {
+            MatrixNd WA = new MatrixNd (active.length, active.length);
+            VectorNd qA = new VectorNd (active.length);
+            for (int i=0; i<active.length; i++) {
+               for (int j=0; j<active.length; j++) {
+                  WA.set (i, j, W.get (active[i], active[j]));
+               }
+               qA.set (i, -q.get (active[i]));
+            }
+            if (Math.abs (WA.determinant()) < 1e-10) {
+               continue;
+            }
+            VectorNd thA = new VectorNd (active.length);
+            new LUDecomposition (WA).solve (thA, qA);
+            for (int i=0; i<active.length; i++) {
+               the.set (active[i], thA.get(i));
+            }
+         }
+         VectorNd w = new VectorNd (n);
+         W.mul (w, the);
+         w.add (q);
+         boolean feasible = true;
+         for (int i=0; i<n; i++) {
+            if (the.get(i) < -EPS || w.get(i) < -EPS) {
+               feasible = false;
+            }
+         }
+         if (feasible) {
+            return the;
+         }
+      }
+      throw new TestException ("no LCP solution found");
+   }
+
+   void testUnilateral (int nparts, int ncons, boolean nncg) {
+      double[] masses = new double[nparts];
+      for (int i=0; i<nparts; i++) {
+         masses[i] = RandomGenerator.nextDouble (0.5, 2.0);
+      }
+      SparseBlockMatrix Minv = createInverseMass (masses);
+      SparseBlockMatrix NT = createConstraints (nparts, ncons);
+      VectorNd vel = new VectorNd (3*nparts);
+      vel.setRandom();
+      VectorNd bn = new VectorNd (ncons);
+      bn.setRandom();
+      VectorNd Rn = new VectorNd (ncons);
+      for (int j=0; j<ncons; j++) {
+         Rn.set (j, RandomGenerator.nextDouble (0, 0.1));
+      }
+
+      // exact solution from W = N Minv NT + Rn and q = N vel - bn
+      MatrixNd N = new MatrixNd (NT);
+      N.transpose();
+      MatrixNd MinvNT = new MatrixNd();
+      MinvNT.mul (new MatrixNd (Minv), new MatrixNd (NT));
+      MatrixNd W = new MatrixNd();
+      W.mul (N, MinvNT);
+      for (int j=0; j<ncons; j++) {
+         W.add (j, j, Rn.get(j));
+      }
+      VectorNd q = new VectorNd (ncons);
+      N.mul (q, vel);
+      q.sub (bn);
+      VectorNd check = solveLCPExactly (W, q);
+
+      PGSContactSolver solver = new PGSContactSolver();
+      solver.setNNCG (nncg);
+      solver.setMaxIterations (10000);
+      solver.setTolerance (1e-12);
+      VectorNd the = new VectorNd (ncons);
+      solver.solve (Minv, nparts, NT, Rn, bn, vel, the);
+      if (!solver.converged()) {
+         throw new TestException (
+            "solver did not converge in "+solver.numIterations()+
+            " iterations");
+      }
+      checkEquals ("impulses", the, check, 1e-6);
+
+      // velocities should be consistent with the impulses
+      VectorNd w = new VectorNd (ncons);
+      N.mul (w, vel);
+      w.sub (bn);
+      for (int j=0; j<ncons; j++) {
+         double wj = w.get(j) + Rn.get(j)*the.get(j);
+         if (wj < -1e-6 || Math.abs (wj*the.get(j)) > 1e-6) {
+            throw new TestException (
+               "complementarity violated for constraint " + j +
+               ": w=" + wj + " the=" + the.get(j));
+         }
+      }
+   }
+
+   void testCoupledUnilateral (int nparts, int ncons, boolean nncg) {
+      // random SPD system matrix, so that all components are coupled
+      int vsize = 3*nparts;
+      MatrixNd S = new MatrixNd (vsize, vsize);
+      S.setRandom();
+      MatrixNd ST = new MatrixNd();
+      ST.transpose (S);
+      S.mul (ST);
+      for (int i=0; i<vsize; i++) {
+         S.add (i, i, 1.0);
+      }
+      final CholeskyDecomposition chol = new CholeskyDecomposition (S);
+      final SparseBlockMatrix NT = createConstraints (nparts, ncons);
+
+      // inverse of the diagonal blocks of S
+      int[] sizes = new int[nparts];
+      for (int i=0; i<nparts; i++) {
+         sizes[i] = 3;
+      }
+      SparseBlockMatrix Minv = new SparseBlockMatrix (sizes, sizes);
+      for (int i=0; i<nparts; i++) {
+         MatrixNd blk = new MatrixNd (3, 3);
+         S.getSubMatrix (3*i, 3*i, blk);
+         blk.invert();
+         Matrix3x3Block inv = new Matrix3x3Block();
+         inv.set (blk);
+         Minv.addBlock (i, i, inv);
+      }
+
+      // exact solution from W = N S^-1 NT + Rn and q = N vel - bn
+      MatrixNd N = new MatrixNd (NT);
+      N.transpose();
+      MatrixNd R = new MatrixNd (vsize, ncons);
+      chol.solve (R, new MatrixNd (NT));
+      MatrixNd W = new MatrixNd();
+      W.mul (N, R);
+
+      VectorNd vel = new VectorNd (vsize);
+      vel.setRandom();
+      VectorNd bn = new VectorNd (ncons);
+      bn.setRandom();
+      VectorNd Rn = new VectorNd (ncons);
+      for (int j=0; j<ncons; j++) {
+         Rn.set (j, RandomGenerator.nextDouble (0, 0.1));
+         W.add (j, j, Rn.get(j));
+      }
+      VectorNd q = new VectorNd (ncons);
+      N.mul (q, vel);
+      q.sub (bn);
+      VectorNd check = solveLCPExactly (W, q);
+
+      // velocity response computed from the factored system matrix
+      PGSContactSolver.ResponseOperator resp = (dvel, dimp) -> {
+         VectorNd f = new VectorNd (NT.rowSize());
+         NT.mul (f, dimp);
+         chol.solve (dvel, f);
+      };
+      PGSContactSolver solver = new PGSContactSolver();
+      solver.setNNCG (nncg);
+      solver.setMaxIterations (10000);
+      solver.setMaxCorrections (1000);
+      solver.setTolerance (1e-12);
+      VectorNd the = new VectorNd (ncons);
+      solver.solve (Minv, nparts, NT, Rn, bn, vel, the, resp);
+      if (!solver.converged()) {
+         throw new TestException (
+            "solver did not converge in "+solver.numCorrections()+
+            " corrections");
+      }
+      checkEquals ("coupled impulses", the, check, 1e-6);
+
+      // velocities should be consistent with the impulses
+      VectorNd w = new VectorNd (ncons);
+      N.mul (w, vel);
+      w.sub (bn);
+      for (int j=0; j<ncons; j++) {
+         double wj = w.get(j) + Rn.get(j)*the.get(j);
+         if (wj < -1e-6 || Math.abs (wj*the.get(j)) > 1e-6) {
+            throw new TestException (
+               "coupled complementarity violated for constraint " + j +
+               ": w=" + wj + " the=" + the.get(j));
+         }
+      }
+   }
+
+   void testFriction (double speed, double normalImpulse) {
+      // single particle sliding on the x-y plane
+      double mass = 2.0;
+      double mu = 0.5;
+      SparseBlockMatrix Minv = createInverseMass (new double[] { mass });
+      SparseBlockMatrix DT =
+         new SparseBlockMatrix (new int[] { 3 }, new int[] { 2 });
+      Matrix3x2Block blk = new Matrix3x2Block();
+      blk.m00 = 1;
+      blk.m11 = 1;
+      DT.addBlock (0, 0, blk);
+      FrictionInfo[] finfo = new FrictionInfo[] { new FrictionInfo() };
+      finfo[0].mu = mu;
+      finfo[0].contactIdx0 = 0;
+      finfo[0].contactIdx1 = -1;
+      finfo[0].flags = 0;
+      VectorNd the = new VectorNd (new double[] { normalImpulse });
+      VectorNd lam = new VectorNd (0);
+      Vector3d dir = new Vector3d (3, 4, 0);
+      dir.normalize();
+      VectorNd vel = new VectorNd (3);
+      vel.set (0, speed*dir.x);
+      vel.set (1, speed*dir.y);
+      VectorNd phi = new VectorNd (2);
+
+      PGSContactSolver solver = new PGSContactSolver();
+      solver.solveFriction (
+         Minv, 1, DT, new VectorNd (2), finfo, lam, the, vel, phi);
+
+      double maxImpulse = mu*normalImpulse;
+      double newSpeed = Math.max (0, speed - maxImpulse/mass);
+      VectorNd check = new VectorNd (3);
+      check.set (0, newSpeed*dir.x);
+      check.set (1, newSpeed*dir.y);
+      checkEquals ("friction velocity", vel, check, 1e-10);
+   }
+
+   /**
+    * Steps a model resting on a fixed plate using the PGS contact solver,
+    * and checks that, after each step, the velocities of the contacts found
+    * at the start of the step are non-negative.
+    */
+   void testModelOnPlate (
+      MechModel mech, boolean nncg, Collidable... bodies) {
+      RigidBody plate = RigidBody.createBox ("plate", 1.0, 1.0, 0.1, 1000);
+      plate.setPose (new RigidTransform3d (0, 0, -0.05));
+      plate.setDynamic (false);
+      mech.addRigidBody (plate);
+      for (Collidable body : bodies) {
+         mech.setCollisionBehavior (
+            body, plate, new CollisionBehavior (true, 0));
+      }
+      mech.setContactSolver (nncg ? ContactSolver.NNCG : ContactSolver.PGS);
+      mech.setContactSolverMaxIterations (1000);
+      mech.setContactSolverTol (1e-10);
+
+      double h = 0.01;
+      double t0 = 0;
+      int numContacts = 0;
+      for (int i=0; i<20; i++) {
+         double t1 = t0 + h;
+         mech.preadvance (t0, t1, /*flags=*/0);
+         mech.advance (t0, t1, /*flags=*/0);
+
+         SparseBlockMatrix NT = new SparseBlockMatrix();
+         mech.getUnilateralConstraints (NT, null);
+         int velSize = mech.getActiveVelStateSize();
+         VectorNd u = new VectorNd (velSize);
+         mech.getActiveVelState (u);
+         VectorNd w = new VectorNd (NT.colSize());
+         NT.mulTranspose (w, u, NT.colSize(), velSize);
+         for (int j=0; j<w.size(); j++) {
+            if (w.get(j) < -1e-6) {
+               throw new TestException (
+                  "step " + i + ": contact " + j +
+                  " has penetration velocity " + w.get(j));
+            }
+         }
+         numContacts += NT.colSize();
+         t0 = t1;
+      }
+      if (numContacts == 0) {
+         throw new TestException ("no contacts found");
+      }
+   }
+
+   void testFemOnPlate (boolean nncg) {
+      MechModel mech = new MechModel();
+      FemModel3d fem =
+         FemFactory.createHexGrid (null, 0.4, 0.4, 0.1, 4, 4, 1);
+      fem.setDensity (1000);
+      fem.setMaterial (new LinearMaterial (5000, 0.3));
+      // bottom of the FEM slightly penetrates the plate
+      fem.transformGeometry (new RigidTransform3d (0, 0, 0.049));
+      mech.addModel (fem);
+      testModelOnPlate (mech, nncg, fem);
+   }
+
+   void testJointedBodiesOnPlate (boolean nncg) {
+      MechModel mech = new MechModel();
+      RigidBody box0 = RigidBody.createBox ("box0", 0.2, 0.1, 0.1, 1000);
+      box0.setPose (new RigidTransform3d (-0.1, 0, 0.049));
+      RigidBody box1 = RigidBody.createBox ("box1", 0.2, 0.1, 0.1, 1000);
+      box1.setPose (new RigidTransform3d (0.1, 0, 0.049));
+      mech.addRigidBody (box0);
+      mech.addRigidBody (box1);
+      // hinge about the y axis along the top of the shared face
+      RigidTransform3d TCW = new RigidTransform3d (0, 0, 0.099);
+      TCW.R.setAxisAngle (1, 0, 0, Math.PI/2);
+      mech.addBodyConnector (new RevoluteJoint (box0, box1, TCW));
+      testModelOnPlate (mech, nncg, box0, box1);
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+      for (int i=0; i<20; i++) {
+         testUnilateral (3, 5, /*nncg=*/false);
+         testUnilateral (4, 8, /*nncg=*/true);
+         testCoupledUnilateral (2, 5, /*nncg=*/false);
+         testCoupledUnilateral (3, 8, /*nncg=*/true);
+      }
+      testFriction (1.0, 10.0); // sticking
+      testFriction (1.0, 1.0);  // sliding
+      testFemOnPlate (/*nncg=*/false);
+      testFemOnPlate (/*nncg=*/true);
+      testJointedBodiesOnPlate (/*nncg=*/false);
+      testJointedBodiesOnPlate (/*nncg=*/true);
+   }
+
+   public static void main (String[] args) {
+      PGSContactSolverTest tester = new PGSContactSolverTest();
+      tester.runtest();
+   }
+}
@@ -15,9 +15,6 @@ import artisynth.core.util.*;
 
 public class RigidMesh extends RigidBody implements Wrappable {
 
-   BVFeatureQuery myQuery = new BVFeatureQuery();
-   NagataInterpolator myNagata = new NagataInterpolator();
-
    boolean myUseQuadraticTangents = true;
    boolean mySmooth = false;
    boolean myRayCastTangent = false;
@@ -639,7 +636,8 @@ public class RigidMesh extends RigidBody implements Wrappable {
          if (mesh != null) {
             Vector3d dir = new Vector3d();
             dir.sub (p1, pa);
-            myQuery.nearestFaceAlongRay (
+            BVFeatureQuery bvq = new BVFeatureQuery();
+            bvq.nearestFaceAlongRay (
                pr, /*uv=*/null, mesh.getBVTree(), pa, dir);
          }
          else {
@@ -694,11 +692,15 @@ public class RigidMesh extends RigidBody implements Wrappable {
          if (Dnrm != null) {
             Dnrm.setZero();
          }
+         // query objects are created locally, so that wrap paths can be
+         // updated from multiple threads
+         BVFeatureQuery bvq = new BVFeatureQuery();
          if (mySmooth) {
-            myNagata.nearestPointOnMesh (near, nrm, mesh, p0, 1e-8, myQuery);
+            NagataInterpolator nagata = new NagataInterpolator();
+            nagata.nearestPointOnMesh (near, nrm, mesh, p0, 1e-8, bvq);
          }
          else {
-            Face face = myQuery.nearestFaceToPoint (
+            Face face = bvq.nearestFaceToPoint (
                near, /*uv=*/null, mesh.getBVTree(), p0);
             if(face == null)
                return Wrappable.OUTSIDE;
@@ -712,6 +714,61 @@ public class RigidMesh extends RigidBody implements Wrappable {
       }
    }
    
+   /**
+    * {@inheritDoc}
+    *
+    * <p>If this mesh has a distance grid, all the points are transformed
+    * and looked up in the grid in a single pass.
+    */
+   public void penetrationDistances (
+      double[] dists, double[] nrms, double[] dnrms, double[] pnts, int num) {
+
+      if (getSurfaceMesh() == null) {
+         for (int k=0; k<num; k++) {
+            dists[k] = Wrappable.OUTSIDE;
+         }
+      }
+      else if (hasDistanceGrid()) {
+         DistanceGrid grid = getDistanceGrid();
+         grid.getQuadDistancesAndGradients (
+            dists, nrms, dnrms, pnts, num, getPose());
+         for (int k=0; k<num; k++) {
+            if (dists[k] == DistanceGrid.OUTSIDE_GRID) {
+               dists[k] = Wrappable.OUTSIDE;
+            }
+         }
+      }
+      else {
+         Wrappable.super.penetrationDistances (dists, nrms, dnrms, pnts, num);
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>For a mesh, this updates the distance grid and its quadratic
+    * interpolation data, if the mesh has a grid, along with the surface
+    * mesh's normals, feature index offsets, bounds and bounding volume
+    * hierarchy.
+    */
+   public void prepareForConcurrentWrapping() {
+      if (hasDistanceGrid()) {
+         DistanceGrid grid = getDistanceGrid();
+         if (grid != null) {
+            grid.updateQuadDataIfNecessary();
+         }
+      }
+      PolygonalMesh mesh = getSurfaceMesh();
+      if (mesh != null) {
+         mesh.updateFaceNormals();
+         mesh.getNormals();
+         mesh.getFeatureIndexOffsets();
+         mesh.getBVTree();
+         mesh.getLocalBounds (null, null);
+         mesh.getRadius();
+      }
+   }
+
    /**
     * {@inheritDoc}
     */
@@ -156,6 +156,63 @@ public class RigidSphere extends RigidBody implements Wrappable {
       return mag - myRadius;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   public void penetrationDistances (
+      double[] dists, double[] nrms, double[] dnrms, double[] pnts, int num) {
+      RigidTransform3d TBW = getPose();
+      RotationMatrix3d R = TBW.R;
+      Vector3d nrm = new Vector3d();
+      Matrix3d dnrm = (dnrms != null ? new Matrix3d() : null);
+      for (int k=0; k<num; k++) {
+         int k3 = 3*k;
+         // transform the point into body coordinates
+         double x = pnts[k3  ] - TBW.p.x;
+         double y = pnts[k3+1] - TBW.p.y;
+         double z = pnts[k3+2] - TBW.p.z;
+         nrm.x = R.m00*x + R.m10*y + R.m20*z;
+         nrm.y = R.m01*x + R.m11*y + R.m21*z;
+         nrm.z = R.m02*x + R.m12*y + R.m22*z;
+         double mag = nrm.norm();
+         if (mag >= 1.5*myRadius) {
+            dists[k] = Wrappable.OUTSIDE;
+            continue;
+         }
+         else if (mag > 0) {
+            nrm.scale (1/mag);
+         }
+         else {
+            nrm.set (1, 0, 0);
+         }
+         if (dnrms != null) {
+            if (mag > 0) {
+               // dnrm = (I - nrm nrm^T)/mag
+               dnrm.outerProduct (nrm, nrm);
+               dnrm.m00 -= 1;
+               dnrm.m11 -= 1;
+               dnrm.m22 -= 1;
+               dnrm.scale (-1.0/mag);
+               dnrm.transform (R);
+            }
+            else {
+               dnrm.setZero();
+            }
+            int k9 = 9*k;
+            dnrm.getRow (0, dnrms, k9);
+            dnrm.getRow (1, dnrms, k9+3);
+            dnrm.getRow (2, dnrms, k9+6);
+         }
+         if (nrms != null) {
+            nrm.transform (R);
+            nrms[k3  ] = nrm.x;
+            nrms[k3+1] = nrm.y;
+            nrms[k3+2] = nrm.z;
+         }
+         dists[k] = mag - myRadius;
+      }
+   }
+
    /**
     * {@inheritDoc}
     */
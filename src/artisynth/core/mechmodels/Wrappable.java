@@ -55,6 +55,62 @@ public interface Wrappable extends PointAttachable {
     */
    public double penetrationDistance (Vector3d nrm, Matrix3d dnrm, Point3d p0);
 
+   /**
+    * Batch version of {@link #penetrationDistance penetrationDistance}, which
+    * computes the penetration distances of a set of points, along with their
+    * normals and normal derivatives. The points and results are stored in
+    * packed arrays, so that implementations can process all the points in
+    * a single pass without per-point object allocation. For points whose
+    * distance is {@link #OUTSIDE}, the normal values need not be set.
+    *
+    * <p>The default implementation calls <code>penetrationDistance()</code>
+    * for each point.
+    *
+    * @param dists returns the penetration distance for each point
+    * @param nrms if non-<code>null</code>, returns the normals, three values
+    * per point
+    * @param dnrms if non-<code>null</code>, returns the normal derivatives,
+    * as nine values per point in row-major order
+    * @param pnts coordinates of the points, three values per point
+    * @param num number of points
+    */
+   public default void penetrationDistances (
+      double[] dists, double[] nrms, double[] dnrms, double[] pnts, int num) {
+      Point3d p0 = new Point3d();
+      Vector3d nrm = new Vector3d();
+      Matrix3d dnrm = (dnrms != null ? new Matrix3d() : null);
+      for (int k=0; k<num; k++) {
+         int k3 = 3*k;
+         p0.set (pnts[k3], pnts[k3+1], pnts[k3+2]);
+         double d = penetrationDistance (nrm, dnrm, p0);
+         dists[k] = d;
+         if (d != OUTSIDE) {
+            if (nrms != null) {
+               nrms[k3  ] = nrm.x;
+               nrms[k3+1] = nrm.y;
+               nrms[k3+2] = nrm.z;
+            }
+            if (dnrms != null) {
+               int k9 = 9*k;
+               dnrm.getRow (0, dnrms, k9);
+               dnrm.getRow (1, dnrms, k9+3);
+               dnrm.getRow (2, dnrms, k9+6);
+            }
+         }
+      }
+   }
+
+   /**
+    * Brings up to date any data that this wrappable computes on demand and
+    * uses in {@link #surfaceTangent surfaceTangent()} and {@link
+    * #penetrationDistance penetrationDistance()}. This is called before
+    * wrap paths are updated by several threads at once, so that these
+    * methods only need to read the data. The default implementation does
+    * nothing.
+    */
+   public default void prepareForConcurrentWrapping() {
+   }
+
    /**
     * Returns a typical "radius" that should be expected for this wrappable,
     * defined as the distance for a surface point to the center.
@@ -94,6 +94,18 @@ public class MFreeMuscleModel extends MFreeModel3d
 //   protected PolylineMesh myFiberMesh = null;
 //   protected boolean myFiberMeshActive = false;
    protected Vector3d myTmpDir = new Vector3d();
+
+   // fibre direction storage used when computing stress and tangent, which
+   // is obtained from the deformation workspace since these computations
+   // may be performed in parallel
+   private static class Scratch {
+      Vector3d dir = new Vector3d();
+   }
+
+   private Vector3d getTmpDir (SolidDeformation def) {
+      return def.getWorkspace().getScratch (Scratch.class, Scratch::new).dir;
+   }
+
    private double myExcitation = 0;
    protected ExcitationSourceList myExcitationSources;
    protected CombinationRule myComboRule = CombinationRule.Sum;
@@ -650,10 +662,11 @@ public class MFreeMuscleModel extends MFreeModel3d
 
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null && dt.getFrame() != null) {
-         myTmpDir.x = dt.getFrame().m00;
-         myTmpDir.y = dt.getFrame().m10;
-         myTmpDir.z = dt.getFrame().m20;
-         mat.computeTangent(D, stress, getNetExcitation(), myTmpDir, def, baseMat);
+         Vector3d dir = getTmpDir (def);
+         dir.x = dt.getFrame().m00;
+         dir.y = dt.getFrame().m10;
+         dir.z = dt.getFrame().m20;
+         mat.computeTangent(D, stress, getNetExcitation(), dir, def, baseMat);
       }
    }
 
@@ -676,10 +689,11 @@ public class MFreeMuscleModel extends MFreeModel3d
       
       MuscleMaterial mat = getMuscleMaterial();
       if (mat != null && dt.getFrame() != null) {
-         myTmpDir.x = dt.getFrame().m00;
-         myTmpDir.y = dt.getFrame().m10;
-         myTmpDir.z = dt.getFrame().m20;
-         mat.computeStress(sigma, getNetExcitation(), myTmpDir, def, baseMat);
+         Vector3d dir = getTmpDir (def);
+         dir.x = dt.getFrame().m00;
+         dir.y = dt.getFrame().m10;
+         dir.z = dt.getFrame().m20;
+         mat.computeStress(sigma, getNetExcitation(), dir, def, baseMat);
       }
    }
    
@@ -0,0 +1,641 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.modelbase;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the time spent in the main phases of a simulation step, such as
+ * force updates, solve matrix assembly, KKT factorization and collision
+ * detection. Times are recorded separately for each phase and for each
+ * component doing the work, so that the components responsible for most of
+ * the computation time in a large model can be identified.
+ *
+ * <p>Profiling is disabled by default, in which case the instrumented code
+ * pays only the cost of a static boolean check. Instrumented code brackets a
+ * phase using
+ * <pre>
+ *   long t0 = StepProfiler.start();
+ *   ... phase computation ...
+ *   StepProfiler.stop (StepProfiler.Phase.FORCES, comp, t0);
+ * </pre>
+ * where <code>comp</code> is the component (or other object) associated with
+ * the work. For each component and phase, a {@link Timing} accumulates the
+ * number of calls, the total, minimum and maximum times, and a histogram of
+ * call times. Timings may be recorded concurrently from several threads,
+ * such as when independent models are advanced in parallel. Code belonging
+ * to a particular system can use {@link #start(boolean)} to time its phases
+ * whenever profiling is enabled for that system, regardless of the global
+ * setting.
+ *
+ * <p>Components are referenced weakly, so that recording timings for a
+ * component does not prevent it from being garbage collected once it has
+ * been removed from its model. Timings for collected components are
+ * discarded.
+ *
+ * <p>Phases are timed where they occur and may nest: for instance,
+ * {@link Phase#STRESS_STIFFNESS} is usually contained within
+ * {@link Phase#FORCE_EFFECTOR}, which is contained within
+ * {@link Phase#FORCES}. Times for different phases should therefore not be
+ * added together.
+ *
+ * <p>All methods are static, so that the profiler can be used directly from
+ * Jython, as in
+ * <pre>
+ *   StepProfiler.setEnabled (True)
+ *   run (1.0)
+ *   waitForStop()
+ *   print StepProfiler.getSummary (20)
+ *   StepProfiler.writeCsv ("profile.csv")
+ * </pre>
+ * The ArtiSynth Jython console also provides the shorthand functions
+ * <code>startProfiling()</code>, <code>stopProfiling()</code>,
+ * <code>printProfile()</code> and <code>writeProfile(fileName)</code>.
+ */
+public class StepProfiler {
+
+   /**
+    * Phases of a simulation step that are timed.
+    */
+   public enum Phase {
+      /**
+       * Complete advance of a mechanical system.
+       */
+      ADVANCE,
+
+      /**
+       * Computation of all the forces of a mechanical system.
+       */
+      FORCES,
+
+      /**
+       * Force computation of an individual force effector.
+       */
+      FORCE_EFFECTOR,
+
+      /**
+       * Stress and stiffness computation of an FEM model.
+       */
+      STRESS_STIFFNESS,
+
+      /**
+       * Assembly of the solve matrix, force Jacobians and constraints.
+       */
+      ASSEMBLY,
+
+      /**
+       * Symbolic analysis of the KKT system.
+       */
+      ANALYZE,
+
+      /**
+       * Numeric factorization of the KKT system.
+       */
+      FACTOR,
+
+      /**
+       * Solution of the KKT system, given its factorization.
+       */
+      SOLVE,
+
+      /**
+       * Projection of positions onto the constraints.
+       */
+      PROJECTION,
+
+      /**
+       * Collision detection and contact constraint generation.
+       */
+      COLLISION,
+
+      /**
+       * Application of an input or output probe.
+       */
+      PROBES,
+
+      /**
+       * Application of a controller or monitor.
+       */
+      CONTROLLERS
+   }
+
+   /**
+    * Number of bins in each timing histogram. Bin 0 counts times below 1
+    * microsecond, bin k (for k &gt; 0) counts times t in the range
+    * 2^(k-1) &lt;= t &lt; 2^k microseconds, and the last bin also counts
+    * all larger times.
+    */
+   public static final int NUM_HISTOGRAM_BINS = 32;
+
+   // key used for timings not associated with a component
+   private static final Object NO_COMPONENT = new Object();
+
+   private static volatile boolean myEnabled = false;
+   private static final ConcurrentHashMap<ComponentKey,Timing[]> myTimings =
+      new ConcurrentHashMap<ComponentKey,Timing[]>();
+   private static final ReferenceQueue<Object> myCollectedKeys =
+      new ReferenceQueue<Object>();
+
+   /**
+    * Weak reference to a component, used as a map key. Keys compare by the
+    * identity of their components, since components may override
+    * <code>equals()</code>.
+    */
+   private static class ComponentKey extends WeakReference<Object> {
+      int myHash;
+
+      ComponentKey (Object comp, ReferenceQueue<Object> queue) {
+         super (comp, queue);
+         myHash = System.identityHashCode (comp);
+      }
+
+      public int hashCode() {
+         return myHash;
+      }
+
+      public boolean equals (Object obj) {
+         if (obj == this) {
+            return true;
+         }
+         else if (obj instanceof ComponentKey) {
+            Object comp = get();
+            return comp != null && comp == ((ComponentKey)obj).get();
+         }
+         else {
+            return false;
+         }
+      }
+   }
+
+   /**
+    * Timing information for a single component and phase.
+    */
+   public static class Timing {
+      WeakReference<Object> myComp;
+      String myPath; // path at creation, used once the component is collected
+      Phase myPhase;
+      long myCount;
+      long myTotalNsec;
+      long myMinNsec = Long.MAX_VALUE;
+      long myMaxNsec;
+      long[] myHistogram = new long[NUM_HISTOGRAM_BINS];
+
+      Timing (Object comp, Phase phase) {
+         myComp = new WeakReference<Object> (comp);
+         myPath = getKeyName (comp);
+         myPhase = phase;
+      }
+
+      synchronized void add (long nsec) {
+         myCount++;
+         myTotalNsec += nsec;
+         if (nsec < myMinNsec) {
+            myMinNsec = nsec;
+         }
+         if (nsec > myMaxNsec) {
+            myMaxNsec = nsec;
+         }
+         myHistogram[histogramBin (nsec)]++;
+      }
+
+      /**
+       * Returns the component associated with this timing, or
+       * <code>null</code> if there is none or it has been garbage
+       * collected.
+       */
+      public Object getComponent() {
+         Object comp = myComp.get();
+         return comp == NO_COMPONENT ? null : comp;
+      }
+
+      /**
+       * Returns the path name of the component associated with this
+       * timing. If the component is not a {@link ModelComponent}, its
+       * class name is returned instead. If there is no component, an empty
+       * string is returned. If the component has been garbage collected, the
+       * path it had when the timing was created is returned.
+       */
+      public String getPath() {
+         Object comp = myComp.get();
+         return comp != null ? getKeyName (comp) : myPath;
+      }
+
+      /**
+       * Returns the phase associated with this timing.
+       */
+      public Phase getPhase() {
+         return myPhase;
+      }
+
+      /**
+       * Returns the number of timed calls.
+       */
+      public synchronized long getCount() {
+         return myCount;
+      }
+
+      /**
+       * Returns the total time of all calls, in seconds.
+       */
+      public synchronized double getTotalTime() {
+         return myTotalNsec/1e9;
+      }
+
+      /**
+       * Returns the mean time per call, in seconds.
+       */
+      public synchronized double getMeanTime() {
+         return myCount > 0 ? myTotalNsec/(1e9*myCount) : 0;
+      }
+
+      /**
+       * Returns the minimum time of any call, in seconds.
+       */
+      public synchronized double getMinTime() {
+         return myCount > 0 ? myMinNsec/1e9 : 0;
+      }
+
+      /**
+       * Returns the maximum time of any call, in seconds.
+       */
+      public synchronized double getMaxTime() {
+         return myMaxNsec/1e9;
+      }
+
+      /**
+       * Returns a copy of the call time histogram. See {@link
+       * #NUM_HISTOGRAM_BINS} for a description of the bins.
+       */
+      public synchronized long[] getHistogram() {
+         return myHistogram.clone();
+      }
+
+      /**
+       * Returns an estimate of the <code>q</code>-th quantile (0 to 1) of
+       * the call times, in seconds. This is given by the upper limit of the
+       * histogram bin containing the quantile, clipped to the maximum call
+       * time, and so is accurate to within a factor of two.
+       */
+      public synchronized double getQuantile (double q) {
+         if (myCount == 0) {
+            return 0;
+         }
+         long rank = (long)Math.ceil (q*myCount);
+         long cnt = 0;
+         for (int k=0; k<NUM_HISTOGRAM_BINS; k++) {
+            cnt += myHistogram[k];
+            if (cnt >= rank && cnt > 0) {
+               return Math.min ((1L << k)*1e-6, myMaxNsec/1e9);
+            }
+         }
+         return myMaxNsec/1e9;
+      }
+
+      public String toString() {
+         return String.format (
+            "%s %s: count=%d total=%.6f mean=%.6f max=%.6f",
+            getPath(), myPhase, getCount(), getTotalTime(), getMeanTime(),
+            getMaxTime());
+      }
+   }
+
+   static int histogramBin (long nsec) {
+      long usec = nsec/1000;
+      if (usec <= 0) {
+         return 0;
+      }
+      int k = 64 - Long.numberOfLeadingZeros (usec);
+      return Math.min (k, NUM_HISTOGRAM_BINS-1);
+   }
+
+   static String getKeyName (Object key) {
+      if (key == NO_COMPONENT) {
+         return "";
+      }
+      else if (key instanceof ModelComponent) {
+         return ComponentUtils.getPathName ((ModelComponent)key);
+      }
+      else {
+         return key.getClass().getName();
+      }
+   }
+
+   /**
+    * Enables or disables step profiling. Enabling does not clear
+    * previously accumulated timings; use {@link #reset} for that.
+    *
+    * @param enable if <code>true</code>, enables profiling
+    */
+   public static void setEnabled (boolean enable) {
+      myEnabled = enable;
+   }
+
+   /**
+    * Queries whether step profiling is enabled.
+    *
+    * @return <code>true</code> if profiling is enabled
+    */
+   public static boolean isEnabled() {
+      return myEnabled;
+   }
+
+   /**
+    * Marks the start of a phase.
+    *
+    * @return start time in nanoseconds, or 0 if profiling is disabled
+    */
+   public static long start() {
+      return myEnabled ? System.nanoTime() : 0;
+   }
+
+   /**
+    * Marks the start of a phase which should be timed if profiling is
+    * either enabled globally or enabled by the caller, such as for a
+    * particular system.
+    *
+    * @param enable if <code>true</code>, times the phase even if profiling
+    * is not enabled globally
+    * @return start time in nanoseconds, or 0 if the phase is not timed
+    */
+   public static long start (boolean enable) {
+      return (myEnabled || enable) ? System.nanoTime() : 0;
+   }
+
+   /**
+    * Marks the end of a phase that is not associated with a component.
+    *
+    * @param phase phase being timed
+    * @param t0 start time returned by {@link #start}
+    */
+   public static void stop (Phase phase, long t0) {
+      stop (phase, null, t0);
+   }
+
+   /**
+    * Marks the end of a phase and records its time for a specified
+    * component. Nothing is recorded if the phase was not timed, as
+    * indicated by a start time of 0.
+    *
+    * @param phase phase being timed
+    * @param comp component associated with the phase, or <code>null</code>
+    * @param t0 start time returned by {@link #start}
+    */
+   public static void stop (Phase phase, Object comp, long t0) {
+      if (t0 != 0) {
+         long nsec = System.nanoTime()-t0;
+         getOrCreateTiming (comp, phase).add (nsec);
+      }
+   }
+
+   /**
+    * Removes the timings of components that have been garbage collected.
+    */
+   private static void removeCollectedTimings() {
+      Reference<?> ref;
+      while ((ref = myCollectedKeys.poll()) != null) {
+         myTimings.remove (ref);
+      }
+   }
+
+   private static Timing getOrCreateTiming (Object comp, Phase phase) {
+      Object obj = (comp != null ? comp : NO_COMPONENT);
+      Timing[] timings = myTimings.get (new ComponentKey (obj, null));
+      if (timings == null) {
+         removeCollectedTimings();
+         timings = new Timing[Phase.values().length];
+         Timing[] prev = myTimings.putIfAbsent (
+            new ComponentKey (obj, myCollectedKeys), timings);
+         if (prev != null) {
+            timings = prev;
+         }
+      }
+      int idx = phase.ordinal();
+      Timing timing = timings[idx];
+      if (timing == null) {
+         synchronized (timings) {
+            timing = timings[idx];
+            if (timing == null) {
+               timing = new Timing (obj, phase);
+               timings[idx] = timing;
+            }
+         }
+      }
+      return timing;
+   }
+
+   /**
+    * Clears all accumulated timings.
+    */
+   public static void reset() {
+      myTimings.clear();
+   }
+
+   /**
+    * Returns the timing for a specified component and phase.
+    *
+    * @param comp component associated with the timing, or <code>null</code>
+    * for timings not associated with a component
+    * @param phase phase associated with the timing
+    * @return timing, or <code>null</code> if nothing has been recorded
+    */
+   public static Timing getTiming (Object comp, Phase phase) {
+      Timing[] timings = myTimings.get (
+         new ComponentKey (comp != null ? comp : NO_COMPONENT, null));
+      if (timings != null) {
+         synchronized (timings) {
+            return timings[phase.ordinal()];
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Returns the timing for the component with a specified path name and a
+    * specified phase.
+    *
+    * @param path path name of the component, or <code>null</code> for
+    * timings not associated with a component
+    * @param phase phase associated with the timing
+    * @return timing, or <code>null</code> if nothing has been recorded
+    */
+   public static Timing getTiming (String path, Phase phase) {
+      if (path == null) {
+         return getTiming ((Object)null, phase);
+      }
+      for (Timing t : getTimings (phase)) {
+         if (t.getPath().equals (path)) {
+            return t;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Returns all recorded timings, sorted in order of decreasing total time.
+    *
+    * @return list of all timings
+    */
+   public static ArrayList<Timing> getTimings() {
+      return getTimings (null);
+   }
+
+   /**
+    * Returns all recorded timings for a specified phase, sorted in order of
+    * decreasing total time.
+    *
+    * @param phase phase to return timings for, or <code>null</code> for all
+    * phases
+    * @return list of timings
+    */
+   public static ArrayList<Timing> getTimings (Phase phase) {
+      removeCollectedTimings();
+      ArrayList<Timing> list = new ArrayList<Timing>();
+      for (Timing[] timings : myTimings.values()) {
+         synchronized (timings) {
+            for (Timing t : timings) {
+               if (t != null && (phase == null || t.myPhase == phase)) {
+                  list.add (t);
+               }
+            }
+         }
+      }
+      // sort on a snapshot of the totals, since these may be changing
+      final HashMap<Timing,Double> totals = new HashMap<Timing,Double>();
+      for (Timing t : list) {
+         totals.put (t, t.getTotalTime());
+      }
+      Collections.sort (
+         list, (t0, t1) -> Double.compare (totals.get(t1), totals.get(t0)));
+      return list;
+   }
+
+   /**
+    * Returns the total time recorded for a phase, summed over all
+    * components.
+    *
+    * @param phase phase to query
+    * @return total time, in seconds
+    */
+   public static double getTime (Phase phase) {
+      double time = 0;
+      for (Timing t : getTimings (phase)) {
+         time += t.getTotalTime();
+      }
+      return time;
+   }
+
+   /**
+    * Returns the number of calls recorded for a phase, summed over all
+    * components.
+    *
+    * @param phase phase to query
+    * @return number of timed calls
+    */
+   public static long getCount (Phase phase) {
+      long count = 0;
+      for (Timing t : getTimings (phase)) {
+         count += t.getCount();
+      }
+      return count;
+   }
+
+   /**
+    * Returns a summary of the timings with the largest total times, one per
+    * line.
+    *
+    * @param max maximum number of timings to include
+    * @return summary string
+    */
+   public static String getSummary (int max) {
+      StringBuilder sb = new StringBuilder();
+      sb.append (String.format (
+         "%-12s %-18s %8s %10s %10s %10s %s\n",
+         "total(s)", "phase", "count", "mean(ms)", "p90(ms)", "max(ms)",
+         "component"));
+      ArrayList<Timing> timings = getTimings();
+      for (int i=0; i<Math.min (max, timings.size()); i++) {
+         Timing t = timings.get(i);
+         sb.append (String.format (
+            "%-12.6f %-18s %8d %10.4f %10.4f %10.4f %s\n",
+            t.getTotalTime(), t.getPhase(), t.getCount(),
+            1000*t.getMeanTime(), 1000*t.getQuantile(0.9),
+            1000*t.getMaxTime(), t.getPath()));
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Prints a summary of the timings with the largest total times to the
+    * standard output.
+    *
+    * @param max maximum number of timings to print
+    */
+   public static void printSummary (int max) {
+      System.out.print (getSummary (max));
+   }
+
+   /**
+    * Writes all recorded timings to a CSV file, one line per component and
+    * phase, in order of decreasing total time. Times are given in
+    * seconds. The last {@link #NUM_HISTOGRAM_BINS} columns give the call
+    * time histogram, with each column labeled by the upper limit of its bin
+    * in microseconds.
+    *
+    * @param fileName name of the CSV file
+    * @throws IOException if an I/O error occurs
+    */
+   public static void writeCsv (String fileName) throws IOException {
+      PrintWriter pw = new PrintWriter (new FileWriter (fileName));
+      try {
+         writeCsv (pw);
+      }
+      finally {
+         pw.close();
+      }
+   }
+
+   /**
+    * Writes all recorded timings in CSV format to a print writer.
+    *
+    * @param pw writer to write to
+    * @see #writeCsv(String)
+    */
+   public static void writeCsv (PrintWriter pw) {
+      StringBuilder sb = new StringBuilder();
+      sb.append ("component,phase,count,total,mean,min,max,p50,p90");
+      for (int k=0; k<NUM_HISTOGRAM_BINS; k++) {
+         sb.append (",lt" + (1L << k) + "us");
+      }
+      pw.println (sb);
+      for (Timing t : getTimings()) {
+         long[] hist;
+         sb.setLength (0);
+         synchronized (t) {
+            sb.append ("\"" + t.getPath().replace ("\"", "\"\"") + "\"");
+            sb.append ("," + t.getPhase() + "," + t.getCount());
+            sb.append ("," + t.getTotalTime() + "," + t.getMeanTime());
+            sb.append ("," + t.getMinTime() + "," + t.getMaxTime());
+            sb.append ("," + t.getQuantile(0.5) + "," + t.getQuantile(0.9));
+            hist = t.myHistogram;
+            for (int k=0; k<NUM_HISTOGRAM_BINS; k++) {
+               sb.append ("," + hist[k]);
+            }
+         }
+         pw.println (sb);
+      }
+      pw.flush();
+   }
+}
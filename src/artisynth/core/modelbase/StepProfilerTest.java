@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.modelbase;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+import artisynth.core.modelbase.StepProfiler.Phase;
+import artisynth.core.modelbase.StepProfiler.Timing;
+import maspack.util.TestException;
+import maspack.util.UnitTest;
+
+/**
+ * Tests the accumulation and reporting of timings by StepProfiler.
+ */
+public class StepProfilerTest extends UnitTest {
+
+   void record (Phase phase, Object comp, long nsec) {
+      // fake a start time so that the recorded time is at least nsec
+      StepProfiler.stop (phase, comp, System.nanoTime()-nsec);
+   }
+
+   void testHistogramBins() {
+      checkEquals ("bin for 0", StepProfiler.histogramBin (0), 0);
+      checkEquals ("bin for 999ns", StepProfiler.histogramBin (999), 0);
+      checkEquals ("bin for 1us", StepProfiler.histogramBin (1000), 1);
+      checkEquals ("bin for 3us", StepProfiler.histogramBin (3000), 2);
+      checkEquals ("bin for 4us", StepProfiler.histogramBin (4000), 3);
+      checkEquals (
+         "bin for huge", StepProfiler.histogramBin (Long.MAX_VALUE),
+         StepProfiler.NUM_HISTOGRAM_BINS-1);
+   }
+
+   void testTimings() {
+      Object compA = new Object();
+      Object compB = new Object();
+
+      StepProfiler.reset();
+      StepProfiler.setEnabled (false);
+      long t0 = StepProfiler.start();
+      StepProfiler.stop (Phase.FORCES, compA, t0);
+      if (StepProfiler.getTiming (compA, Phase.FORCES) != null) {
+         throw new TestException (
+            "timing recorded while profiling disabled");
+      }
+
+      StepProfiler.setEnabled (true);
+      for (int i=0; i<10; i++) {
+         record (Phase.FORCES, compA, 1000000);
+      }
+      record (Phase.FORCES, compB, 50000000);
+      record (Phase.SOLVE, null, 2000000);
+      StepProfiler.setEnabled (false);
+
+      Timing timingA = StepProfiler.getTiming (compA, Phase.FORCES);
+      Timing timingB = StepProfiler.getTiming (compB, Phase.FORCES);
+      Timing timingN = StepProfiler.getTiming (null, Phase.SOLVE);
+      checkEquals ("count A", timingA.getCount(), 10L);
+      checkEquals ("count B", timingB.getCount(), 1L);
+      checkEquals ("count N", timingN.getCount(), 1L);
+      if (timingN.getComponent() != null) {
+         throw new TestException ("timing with no component has component");
+      }
+      checkEquals ("count FORCES", StepProfiler.getCount (Phase.FORCES), 11L);
+      if (StepProfiler.getTime (Phase.FORCES) < 0.06) {
+         throw new TestException (
+            "FORCES time " + StepProfiler.getTime (Phase.FORCES) +
+            " less than 0.06");
+      }
+      if (timingA.getMinTime() > timingA.getMaxTime() ||
+          timingA.getMinTime() < 0.001) {
+         throw new TestException (
+            "bad min/max times " + timingA.getMinTime() + " " +
+            timingA.getMaxTime());
+      }
+      long[] hist = timingA.getHistogram();
+      long sum = 0;
+      for (int k=0; k<hist.length; k++) {
+         sum += hist[k];
+      }
+      checkEquals ("histogram sum", sum, 10L);
+      double q = timingA.getQuantile (0.5);
+      if (q < timingA.getMinTime() || q > timingA.getMaxTime()) {
+         throw new TestException ("median " + q + " outside min/max range");
+      }
+
+      // timings for a phase should be sorted by decreasing total time
+      ArrayList<Timing> forces = StepProfiler.getTimings (Phase.FORCES);
+      checkEquals ("num FORCES timings", forces.size(), 2);
+      if (forces.get(0) != timingB) {
+         throw new TestException ("FORCES timings not sorted by total time");
+      }
+      checkEquals ("num timings", StepProfiler.getTimings().size(), 3);
+
+      StringWriter sw = new StringWriter();
+      PrintWriter pw = new PrintWriter (sw);
+      StepProfiler.writeCsv (pw);
+      pw.flush();
+      String[] lines = sw.toString().split ("\n");
+      checkEquals ("num CSV lines", lines.length, 4);
+      if (!lines[0].startsWith ("component,phase,count")) {
+         throw new TestException ("unexpected CSV header: " + lines[0]);
+      }
+
+      StepProfiler.reset();
+      checkEquals ("num timings after reset",
+                   StepProfiler.getTimings().size(), 0);
+      checkEquals ("FORCES count after reset",
+                   StepProfiler.getCount (Phase.FORCES), 0L);
+   }
+
+   void testLocalEnabling() {
+      Object comp = new Object();
+      StepProfiler.reset();
+      StepProfiler.setEnabled (false);
+      StepProfiler.stop (Phase.SOLVE, comp, StepProfiler.start (false));
+      if (StepProfiler.getTiming (comp, Phase.SOLVE) != null) {
+         throw new TestException (
+            "timing recorded while profiling disabled locally and globally");
+      }
+      StepProfiler.stop (Phase.SOLVE, comp, StepProfiler.start (true));
+      Timing timing = StepProfiler.getTiming (comp, Phase.SOLVE);
+      if (timing == null || timing.getCount() != 1) {
+         throw new TestException ("timing not recorded when enabled locally");
+      }
+      if (StepProfiler.isEnabled()) {
+         throw new TestException ("local enabling changed global setting");
+      }
+      StepProfiler.reset();
+   }
+
+   /**
+    * Timings should not keep their components from being garbage collected.
+    */
+   void testCollection() {
+      StepProfiler.reset();
+      StepProfiler.setEnabled (true);
+      Object comp = new Object();
+      record (Phase.FORCES, comp, 1000);
+      record (Phase.FORCES, null, 1000);
+      StepProfiler.setEnabled (false);
+      Timing timing = StepProfiler.getTiming (comp, Phase.FORCES);
+      String path = timing.getPath();
+      WeakReference<Object> ref = new WeakReference<Object> (comp);
+      comp = null;
+      for (int i=0; i<100 && ref.get() != null; i++) {
+         System.gc();
+         try {
+            Thread.sleep (10);
+         }
+         catch (InterruptedException e) {
+            // ignore
+         }
+      }
+      if (ref.get() != null) {
+         throw new TestException ("component not garbage collected");
+      }
+      checkEquals ("path after collection", timing.getPath(), path);
+      // collected timings are purged, leaving the one with no component
+      ArrayList<Timing> timings = null;
+      for (int i=0; i<100; i++) {
+         timings = StepProfiler.getTimings();
+         if (timings.size() == 1) {
+            break;
+         }
+         try {
+            Thread.sleep (10);
+         }
+         catch (InterruptedException e) {
+            // ignore
+         }
+      }
+      checkEquals ("num timings after collection", timings.size(), 1);
+      StepProfiler.reset();
+   }
+
+   public void test() {
+      testHistogramBins();
+      testTimings();
+      testLocalEnabling();
+      testCollection();
+   }
+
+   public static void main (String[] args) {
+      StepProfilerTest tester = new StepProfilerTest();
+      tester.runtest();
+   }
+}
@@ -184,7 +184,7 @@ public class AffineNumericInputProbe extends NumericInputProbe {
       updateJythonVariables(myVariables, tloc);
       for (int i = 0; i < myDrivers.size(); i++) {
          NumericProbeDriver driver = myDrivers.get(i);
-         double[] vals = driver.eval(myVariables, myJythonLocals);
+         double[] vals = driver.eval(myVariables, myJythonLocals, tloc);
          Object valObj = myConverters[i].arrayToObject(vals);
          myPropList.get(i).set(valObj);
       }
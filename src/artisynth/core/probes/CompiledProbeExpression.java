@@ -0,0 +1,897 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.probes;
+
+import java.util.*;
+
+import maspack.matrix.ImproperStateException;
+import maspack.util.InternalErrorException;
+
+/**
+ * A numeric probe driver expression that has been compiled into a tree of
+ * typed Java evaluators, so that it can be evaluated at each time step
+ * without invoking the Jython interpreter.
+ *
+ * <p>Only a common arithmetic subset of the Jython expression language is
+ * supported, consisting of
+ *
+ * <ul>
+ * <li>integer and floating point literals;</li>
+ * <li>probe variables, which are scalars if their dimension is 1 and
+ * vectors otherwise, and the time variable <code>t</code>;</li>
+ * <li>the binary operators <code>+</code>, <code>-</code>, <code>*</code>,
+ * <code>/</code> and <code>**</code>, and the unary operators
+ * <code>+</code> and <code>-</code>;</li>
+ * <li>vector indexing with non-negative integer literals, as in
+ * <code>V0[1]</code>;</li>
+ * <li>the functions <code>abs</code>, <code>min</code>, <code>max</code>
+ * and <code>pow</code>, the scalar functions of <code>java.lang.Math</code>
+ * (such as <code>Math.sin</code>), and the constants <code>Math.PI</code>
+ * and <code>Math.E</code>.</li>
+ * </ul>
+ *
+ * Vector operands follow the same rules as the VectorNd operator bindings
+ * used by Jython: vectors can be added to or subtracted from vectors of the
+ * same size, multiplied by scalars, and divided by scalars. Expressions
+ * outside this subset are rejected by {@link #compile compile}, in which
+ * case they should be evaluated using Jython instead.
+ *
+ * <p>Evaluation uses internal buffers, and so an instance should not be
+ * evaluated by more than one thread at a time.
+ */
+public class CompiledProbeExpression {
+
+   private static final int ADD = 1;
+   private static final int SUB = 2;
+   private static final int MUL = 3;
+   private static final int DIV = 4;
+   private static final int POW = 5;
+
+   private String mySource;        // expression text
+   private String[] mySourceNames; // variable names used in the text
+   private String[] myVarNames;
+   private int[] myVarDimensions;
+   private boolean myUsesTime;
+   private double[][] myVarValues;
+   private double myTime;
+   private Node myRoot;
+
+   /**
+    * Thrown internally when an expression cannot be compiled.
+    */
+   private static class UnsupportedExpressionException extends Exception {
+      private static final long serialVersionUID = 1L;
+   }
+
+   /**
+    * Base class for nodes in the evaluation tree. A node evaluates to either
+    * a scalar or a vector of fixed size.
+    */
+   private abstract class Node {
+      int mySize = 0;        // vector size, or 0 if the node is a scalar
+      boolean myIntP = false; // true if the value is a Jython integer
+      double[] myBuf;        // vector result buffer
+
+      boolean isScalar() {
+         return mySize == 0;
+      }
+
+      void setVector (int size) {
+         mySize = size;
+         myBuf = new double[size];
+      }
+
+      double scalar() {
+         throw new UnsupportedOperationException();
+      }
+
+      double[] vector() {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private class ConstantNode extends Node {
+      double myValue;
+
+      ConstantNode (double value, boolean isInt) {
+         myValue = value;
+         myIntP = isInt;
+      }
+
+      double scalar() {
+         return myValue;
+      }
+   }
+
+   private class TimeNode extends Node {
+      double scalar() {
+         return myTime;
+      }
+   }
+
+   private class VariableNode extends Node {
+      int mySlot;
+
+      VariableNode (int slot, int dimension) {
+         mySlot = slot;
+         if (dimension > 1) {
+            mySize = dimension;
+         }
+      }
+
+      double scalar() {
+         return myVarValues[mySlot][0];
+      }
+
+      double[] vector() {
+         return myVarValues[mySlot];
+      }
+   }
+
+   private class IndexNode extends Node {
+      Node myArg;
+      int myIdx;
+
+      IndexNode (Node arg, int idx) {
+         myArg = arg;
+         myIdx = idx;
+      }
+
+      double scalar() {
+         return myArg.vector()[myIdx];
+      }
+   }
+
+   private class NegateNode extends Node {
+      Node myArg;
+
+      NegateNode (Node arg) {
+         myArg = arg;
+         myIntP = arg.myIntP;
+         if (!arg.isScalar()) {
+            setVector (arg.mySize);
+         }
+      }
+
+      double scalar() {
+         return -myArg.scalar();
+      }
+
+      double[] vector() {
+         double[] a = myArg.vector();
+         for (int i=0; i<mySize; i++) {
+            myBuf[i] = -a[i];
+         }
+         return myBuf;
+      }
+   }
+
+   private class AbsNode extends Node {
+      Node myArg;
+
+      AbsNode (Node arg) {
+         myArg = arg;
+         myIntP = arg.myIntP;
+         if (!arg.isScalar()) {
+            setVector (arg.mySize);
+         }
+      }
+
+      double scalar() {
+         return Math.abs (myArg.scalar());
+      }
+
+      double[] vector() {
+         double[] a = myArg.vector();
+         for (int i=0; i<mySize; i++) {
+            myBuf[i] = Math.abs (a[i]);
+         }
+         return myBuf;
+      }
+   }
+
+   /**
+    * Binary operation on two scalars.
+    */
+   private class ScalarOpNode extends Node {
+      int myOp;
+      Node myA;
+      Node myB;
+
+      ScalarOpNode (int op, Node a, Node b) {
+         myOp = op;
+         myA = a;
+         myB = b;
+         myIntP = (a.myIntP && b.myIntP && op != DIV);
+      }
+
+      double scalar() {
+         double a = myA.scalar();
+         double b = myB.scalar();
+         switch (myOp) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case POW: return Math.pow (a, b);
+            default: {
+               throw new UnsupportedOperationException (
+                  "Unknown operation " + myOp);
+            }
+         }
+      }
+   }
+
+   /**
+    * Addition or subtraction of two vectors.
+    */
+   private class VectorOpNode extends Node {
+      int myOp;
+      Node myA;
+      Node myB;
+
+      VectorOpNode (int op, Node a, Node b) {
+         myOp = op;
+         myA = a;
+         myB = b;
+         setVector (a.mySize);
+      }
+
+      double[] vector() {
+         double[] a = myA.vector();
+         double[] b = myB.vector();
+         if (myOp == ADD) {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = a[i] + b[i];
+            }
+         }
+         else {
+            for (int i=0; i<mySize; i++) {
+               myBuf[i] = a[i] - b[i];
+            }
+         }
+         return myBuf;
+      }
+   }
+
+   /**
+    * Multiplication or division of a vector by a scalar.
+    */
+   private class ScaleNode extends Node {
+      Node myVec;
+      Node myScalar;
+      boolean myDivideP;
+
+      ScaleNode (Node vec, Node scalar, boolean divide) {
+         myVec = vec;
+         myScalar = scalar;
+         myDivideP = divide;
+         setVector (vec.mySize);
+      }
+
+      double[] vector() {
+         double s = myScalar.scalar();
+         if (myDivideP) {
+            s = 1/s;
+         }
+         double[] v = myVec.vector();
+         for (int i=0; i<mySize; i++) {
+            myBuf[i] = s*v[i];
+         }
+         return myBuf;
+      }
+   }
+
+   // scalar functions, with their number of arguments (-1 if variable)
+   private static final String[] FUNCTION_NAMES = new String[] {
+      "sin", "cos", "tan", "asin", "acos", "atan", "sinh", "cosh", "tanh",
+      "exp", "log", "log10", "sqrt", "cbrt", "floor", "ceil", "signum",
+      "toRadians", "toDegrees", "atan2", "hypot", "pow", "min", "max"
+   };
+   private static final int[] FUNCTION_NUM_ARGS = new int[] {
+      1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 2, 2, 2, -1, -1
+   };
+
+   private static int getFunctionIndex (String name) {
+      for (int i=0; i<FUNCTION_NAMES.length; i++) {
+         if (FUNCTION_NAMES[i].equals (name)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   private class FunctionNode extends Node {
+      int myFunc;
+      Node[] myArgs;
+
+      FunctionNode (int func, Node[] args, boolean isInt) {
+         myFunc = func;
+         myArgs = args;
+         myIntP = isInt;
+      }
+
+      double scalar() {
+         Node[] args = myArgs;
+         switch (myFunc) {
+            case 0: return Math.sin (args[0].scalar());
+            case 1: return Math.cos (args[0].scalar());
+            case 2: return Math.tan (args[0].scalar());
+            case 3: return Math.asin (args[0].scalar());
+            case 4: return Math.acos (args[0].scalar());
+            case 5: return Math.atan (args[0].scalar());
+            case 6: return Math.sinh (args[0].scalar());
+            case 7: return Math.cosh (args[0].scalar());
+            case 8: return Math.tanh (args[0].scalar());
+            case 9: return Math.exp (args[0].scalar());
+            case 10: return Math.log (args[0].scalar());
+            case 11: return Math.log10 (args[0].scalar());
+            case 12: return Math.sqrt (args[0].scalar());
+            case 13: return Math.cbrt (args[0].scalar());
+            case 14: return Math.floor (args[0].scalar());
+            case 15: return Math.ceil (args[0].scalar());
+            case 16: return Math.signum (args[0].scalar());
+            case 17: return Math.toRadians (args[0].scalar());
+            case 18: return Math.toDegrees (args[0].scalar());
+            case 19: return Math.atan2 (args[0].scalar(), args[1].scalar());
+            case 20: return Math.hypot (args[0].scalar(), args[1].scalar());
+            case 21: return Math.pow (args[0].scalar(), args[1].scalar());
+            case 22: {
+               double min = args[0].scalar();
+               for (int i=1; i<args.length; i++) {
+                  min = Math.min (min, args[i].scalar());
+               }
+               return min;
+            }
+            case 23: {
+               double max = args[0].scalar();
+               for (int i=1; i<args.length; i++) {
+                  max = Math.max (max, args[i].scalar());
+               }
+               return max;
+            }
+            default: {
+               throw new UnsupportedOperationException (
+                  "Unknown function " + FUNCTION_NAMES[myFunc]);
+            }
+         }
+      }
+   }
+
+   /*
+    * Tokenizer and recursive descent parser.
+    */
+
+   private static final int TOK_EOF = 0;
+   private static final int TOK_NUMBER = 1;
+   private static final int TOK_NAME = 2;
+   private static final int TOK_OP = 3;
+
+   private String myExpr;
+   private int myPos;
+   private int myTokType;
+   private String myTokStr;
+   private double myTokValue;
+   private boolean myTokIntP;
+   private HashMap<String,NumericProbeVariable> myVariables;
+   private ArrayList<String> myUsedNames;
+
+   private CompiledProbeExpression () {
+   }
+
+   private void nextToken() throws UnsupportedExpressionException {
+      String s = myExpr;
+      int len = s.length();
+      while (myPos < len && Character.isWhitespace (s.charAt (myPos))) {
+         myPos++;
+      }
+      if (myPos == len) {
+         myTokType = TOK_EOF;
+         myTokStr = "";
+         return;
+      }
+      char c = s.charAt (myPos);
+      int start = myPos;
+      if (Character.isDigit (c) ||
+          (c == '.' && myPos+1 < len && Character.isDigit (s.charAt(myPos+1)))) {
+         boolean isInt = true;
+         while (myPos < len && Character.isDigit (s.charAt (myPos))) {
+            myPos++;
+         }
+         if (myPos < len && s.charAt (myPos) == '.') {
+            isInt = false;
+            myPos++;
+            while (myPos < len && Character.isDigit (s.charAt (myPos))) {
+               myPos++;
+            }
+         }
+         if (myPos < len && (s.charAt (myPos) == 'e' || s.charAt (myPos) == 'E')) {
+            isInt = false;
+            myPos++;
+            if (myPos < len &&
+                (s.charAt (myPos) == '+' || s.charAt (myPos) == '-')) {
+               myPos++;
+            }
+            int expStart = myPos;
+            while (myPos < len && Character.isDigit (s.charAt (myPos))) {
+               myPos++;
+            }
+            if (myPos == expStart) {
+               throw new UnsupportedExpressionException();
+            }
+         }
+         if (myPos < len && Character.isJavaIdentifierPart (s.charAt (myPos))) {
+            // suffixes such as 'L' or 'j', or hex and octal forms
+            throw new UnsupportedExpressionException();
+         }
+         myTokStr = s.substring (start, myPos);
+         if (isInt && myTokStr.length() > 1 && myTokStr.charAt(0) == '0') {
+            // octal in Jython
+            throw new UnsupportedExpressionException();
+         }
+         try {
+            myTokValue = Double.parseDouble (myTokStr);
+         }
+         catch (NumberFormatException e) {
+            throw new UnsupportedExpressionException();
+         }
+         myTokIntP = isInt;
+         myTokType = TOK_NUMBER;
+      }
+      else if (Character.isJavaIdentifierStart (c)) {
+         while (myPos < len && Character.isJavaIdentifierPart (s.charAt (myPos))) {
+            myPos++;
+         }
+         myTokStr = s.substring (start, myPos);
+         myTokType = TOK_NAME;
+      }
+      else {
+         if (c == '*' && myPos+1 < len && s.charAt (myPos+1) == '*') {
+            myPos += 2;
+         }
+         else if ("+-*/()[],.".indexOf (c) != -1) {
+            myPos++;
+         }
+         else {
+            throw new UnsupportedExpressionException();
+         }
+         myTokStr = s.substring (start, myPos);
+         myTokType = TOK_OP;
+      }
+   }
+
+   private boolean isOp (String op) {
+      return myTokType == TOK_OP && myTokStr.equals (op);
+   }
+
+   private void expectOp (String op) throws UnsupportedExpressionException {
+      if (!isOp (op)) {
+         throw new UnsupportedExpressionException();
+      }
+      nextToken();
+   }
+
+   private Node parseSum() throws UnsupportedExpressionException {
+      Node node = parseProduct();
+      while (isOp ("+") || isOp ("-")) {
+         int op = isOp ("+") ? ADD : SUB;
+         nextToken();
+         node = createBinaryNode (op, node, parseProduct());
+      }
+      return node;
+   }
+
+   private Node parseProduct() throws UnsupportedExpressionException {
+      Node node = parseUnary();
+      while (isOp ("*") || isOp ("/")) {
+         int op = isOp ("*") ? MUL : DIV;
+         nextToken();
+         node = createBinaryNode (op, node, parseUnary());
+      }
+      return node;
+   }
+
+   private Node parseUnary() throws UnsupportedExpressionException {
+      if (isOp ("-")) {
+         nextToken();
+         Node arg = parseUnary();
+         if (arg instanceof ConstantNode) {
+            ConstantNode cnode = (ConstantNode)arg;
+            cnode.myValue = -cnode.myValue;
+            return cnode;
+         }
+         return new NegateNode (arg);
+      }
+      else if (isOp ("+")) {
+         nextToken();
+         return parseUnary();
+      }
+      else {
+         return parsePower();
+      }
+   }
+
+   private Node parsePower() throws UnsupportedExpressionException {
+      Node node = parsePostfix();
+      if (isOp ("**")) {
+         nextToken();
+         // as in Python, the exponent binds to the right
+         node = createBinaryNode (POW, node, parseUnary());
+      }
+      return node;
+   }
+
+   private Node parsePostfix() throws UnsupportedExpressionException {
+      Node node = parsePrimary();
+      while (isOp ("[")) {
+         nextToken();
+         if (myTokType != TOK_NUMBER || !myTokIntP) {
+            throw new UnsupportedExpressionException();
+         }
+         int idx = (int)myTokValue;
+         if (node.isScalar() || idx >= node.mySize) {
+            throw new UnsupportedExpressionException();
+         }
+         nextToken();
+         expectOp ("]");
+         node = new IndexNode (node, idx);
+      }
+      return node;
+   }
+
+   private Node[] parseArguments() throws UnsupportedExpressionException {
+      expectOp ("(");
+      ArrayList<Node> args = new ArrayList<Node>();
+      if (!isOp (")")) {
+         args.add (parseSum());
+         while (isOp (",")) {
+            nextToken();
+            args.add (parseSum());
+         }
+      }
+      expectOp (")");
+      return args.toArray (new Node[0]);
+   }
+
+   private Node parsePrimary() throws UnsupportedExpressionException {
+      if (myTokType == TOK_NUMBER) {
+         Node node = new ConstantNode (myTokValue, myTokIntP);
+         nextToken();
+         return node;
+      }
+      else if (isOp ("(")) {
+         nextToken();
+         Node node = parseSum();
+         expectOp (")");
+         return node;
+      }
+      else if (myTokType == TOK_NAME) {
+         String name = myTokStr;
+         nextToken();
+         if (isOp ("(")) {
+            if (myVariables.containsKey (name) || name.equals ("t")) {
+               throw new UnsupportedExpressionException();
+            }
+            return createBuiltinNode (name, parseArguments());
+         }
+         else if (name.equals ("Math") && isOp (".")) {
+            nextToken();
+            if (myTokType != TOK_NAME) {
+               throw new UnsupportedExpressionException();
+            }
+            String member = myTokStr;
+            nextToken();
+            if (isOp ("(")) {
+               return createMathNode (member, parseArguments());
+            }
+            else if (member.equals ("PI")) {
+               return new ConstantNode (Math.PI, false);
+            }
+            else if (member.equals ("E")) {
+               return new ConstantNode (Math.E, false);
+            }
+            else {
+               throw new UnsupportedExpressionException();
+            }
+         }
+         else if (name.equals ("t")) {
+            // time is assigned after the variables, and so overrides them
+            myUsesTime = true;
+            return new TimeNode();
+         }
+         else if (myVariables.containsKey (name)) {
+            return createVariableNode (name);
+         }
+         else {
+            throw new UnsupportedExpressionException();
+         }
+      }
+      else {
+         throw new UnsupportedExpressionException();
+      }
+   }
+
+   private Node createVariableNode (String name) {
+      int slot = myUsedNames.indexOf (name);
+      if (slot == -1) {
+         slot = myUsedNames.size();
+         myUsedNames.add (name);
+      }
+      return new VariableNode (slot, myVariables.get(name).getDimension());
+   }
+
+   private Node createBinaryNode (int op, Node a, Node b)
+      throws UnsupportedExpressionException {
+      if (a.isScalar() && b.isScalar()) {
+         if (op == DIV && a.myIntP && b.myIntP) {
+            // Jython performs integer division
+            throw new UnsupportedExpressionException();
+         }
+         if (a instanceof ConstantNode && b instanceof ConstantNode) {
+            // fold constants
+            ScalarOpNode node = new ScalarOpNode (op, a, b);
+            return new ConstantNode (node.scalar(), node.myIntP);
+         }
+         return new ScalarOpNode (op, a, b);
+      }
+      switch (op) {
+         case ADD:
+         case SUB: {
+            if (!a.isScalar() && !b.isScalar() && a.mySize == b.mySize) {
+               return new VectorOpNode (op, a, b);
+            }
+            break;
+         }
+         case MUL: {
+            if (a.isScalar()) {
+               return new ScaleNode (b, a, false);
+            }
+            else if (b.isScalar()) {
+               return new ScaleNode (a, b, false);
+            }
+            break;
+         }
+         case DIV: {
+            if (b.isScalar()) {
+               return new ScaleNode (a, b, true);
+            }
+            break;
+         }
+      }
+      throw new UnsupportedExpressionException();
+   }
+
+   private void checkScalarArgs (Node[] args, int num)
+      throws UnsupportedExpressionException {
+      if (num != -1 && args.length != num) {
+         throw new UnsupportedExpressionException();
+      }
+      for (int i=0; i<args.length; i++) {
+         if (!args[i].isScalar()) {
+            throw new UnsupportedExpressionException();
+         }
+      }
+   }
+
+   private boolean allIntArgs (Node[] args) {
+      for (int i=0; i<args.length; i++) {
+         if (!args[i].myIntP) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private Node createBuiltinNode (String name, Node[] args)
+      throws UnsupportedExpressionException {
+      if (name.equals ("abs")) {
+         if (args.length != 1) {
+            throw new UnsupportedExpressionException();
+         }
+         return new AbsNode (args[0]);
+      }
+      else if (name.equals ("min") || name.equals ("max")) {
+         if (args.length < 2) {
+            throw new UnsupportedExpressionException();
+         }
+         checkScalarArgs (args, -1);
+         return new FunctionNode (
+            getFunctionIndex (name), args, allIntArgs (args));
+      }
+      else if (name.equals ("pow")) {
+         checkScalarArgs (args, 2);
+         if (allIntArgs (args)) {
+            // integer results, and errors for negative exponents
+            throw new UnsupportedExpressionException();
+         }
+         return new FunctionNode (getFunctionIndex (name), args, false);
+      }
+      else {
+         throw new UnsupportedExpressionException();
+      }
+   }
+
+   private Node createMathNode (String name, Node[] args)
+      throws UnsupportedExpressionException {
+      if (name.equals ("abs")) {
+         checkScalarArgs (args, 1);
+         return new AbsNode (args[0]);
+      }
+      int func = getFunctionIndex (name);
+      if (func == -1) {
+         throw new UnsupportedExpressionException();
+      }
+      int nargs = FUNCTION_NUM_ARGS[func];
+      // java.lang.Math.min and max take exactly two arguments
+      checkScalarArgs (args, nargs == -1 ? 2 : nargs);
+      return new FunctionNode (func, args, false);
+   }
+
+   /**
+    * Attempts to compile an expression. If the expression lies outside the
+    * supported subset, or is not syntactically valid, <code>null</code> is
+    * returned and the expression should be handled by Jython instead.
+    *
+    * @param expr expression to compile
+    * @param variables probe variables which may be referenced by the
+    * expression
+    * @return compiled expression, or <code>null</code> if the
+    * expression cannot be compiled
+    */
+   public static CompiledProbeExpression compile (
+      String expr, HashMap<String,NumericProbeVariable> variables) {
+      CompiledProbeExpression cexpr = new CompiledProbeExpression();
+      if (!cexpr.parse (expr, variables)) {
+         return null;
+      }
+      return cexpr;
+   }
+
+   private boolean parse (
+      String expr, HashMap<String,NumericProbeVariable> variables) {
+      myExpr = expr;
+      myPos = 0;
+      myVariables = variables;
+      myUsedNames = new ArrayList<String>();
+      try {
+         nextToken();
+         myRoot = parseSum();
+         if (myTokType != TOK_EOF) {
+            throw new UnsupportedExpressionException();
+         }
+      }
+      catch (UnsupportedExpressionException e) {
+         return false;
+      }
+      int numVars = myUsedNames.size();
+      myVarNames = myUsedNames.toArray (new String[0]);
+      myVarDimensions = new int[numVars];
+      for (int i=0; i<numVars; i++) {
+         myVarDimensions[i] = variables.get(myVarNames[i]).getDimension();
+      }
+      myVarValues = new double[numVars][];
+      mySource = expr;
+      mySourceNames = Arrays.copyOf (myVarNames, numVars);
+      myExpr = null;
+      myVariables = null;
+      myUsedNames = null;
+      return true;
+   }
+
+   /**
+    * Creates a copy of this expression, with its own evaluation tree and
+    * buffers, so that the copy is unaffected by subsequent calls to {@link
+    * #renameVariable} on this expression and vice versa. The copy is
+    * obtained by recompiling the original expression text, with any
+    * variable renamings applied afterwards.
+    *
+    * @return copy of this expression
+    */
+   public CompiledProbeExpression copy() {
+      HashMap<String,NumericProbeVariable> variables =
+         new HashMap<String,NumericProbeVariable>();
+      for (int i=0; i<mySourceNames.length; i++) {
+         variables.put (
+            mySourceNames[i], new NumericProbeVariable (myVarDimensions[i]));
+      }
+      CompiledProbeExpression cexpr = new CompiledProbeExpression();
+      if (!cexpr.parse (mySource, variables)) {
+         throw new InternalErrorException (
+            "expression '"+mySource+"' could not be recompiled");
+      }
+      cexpr.myVarNames = Arrays.copyOf (myVarNames, myVarNames.length);
+      return cexpr;
+   }
+
+   /**
+    * Queries whether this expression references the time value
+    * <code>t</code>.
+    *
+    * @return <code>true</code> if the time is referenced
+    */
+   public boolean usesTime() {
+      return myUsesTime;
+   }
+
+   /**
+    * Returns the number of values produced by this expression, which is 1
+    * for scalar expressions and the vector size otherwise.
+    *
+    * @return number of output values
+    */
+   public int getOutputSize() {
+      return myRoot.isScalar() ? 1 : myRoot.mySize;
+   }
+
+   /**
+    * Queries whether this expression references a specific variable.
+    *
+    * @param name variable name
+    * @return <code>true</code> if the variable is referenced
+    */
+   public boolean usesVariable (String name) {
+      for (int i=0; i<myVarNames.length; i++) {
+         if (myVarNames[i].equals (name)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Renames a variable referenced by this expression.
+    *
+    * @param oldname current variable name
+    * @param newname new variable name
+    */
+   public void renameVariable (String oldname, String newname) {
+      for (int i=0; i<myVarNames.length; i++) {
+         if (myVarNames[i].equals (oldname)) {
+            myVarNames[i] = newname;
+         }
+      }
+   }
+
+   /**
+    * Evaluates this expression.
+    *
+    * @param vals returns the result values. Must have a length at least
+    * equal to {@link #getOutputSize}.
+    * @param variables current probe variables
+    * @param t current time value
+    * @throws ImproperStateException if a referenced variable is missing or
+    * its dimension has changed since the expression was compiled
+    */
+   public void eval (
+      double[] vals, HashMap<String,NumericProbeVariable> variables, double t) {
+      for (int i=0; i<myVarNames.length; i++) {
+         NumericProbeVariable var = variables.get (myVarNames[i]);
+         if (var == null) {
+            throw new ImproperStateException (
+               "variable '" + myVarNames[i] + "' not found");
+         }
+         else if (var.getDimension() != myVarDimensions[i]) {
+            throw new ImproperStateException (
+               "dimension of variable '" + myVarNames[i] +
+               "' has changed since the expression was compiled");
+         }
+         myVarValues[i] = var.getValues();
+      }
+      myTime = t;
+      if (myRoot.isScalar()) {
+         vals[0] = myRoot.scalar();
+      }
+      else {
+         double[] res = myRoot.vector();
+         for (int i=0; i<myRoot.mySize; i++) {
+            vals[i] = res[i];
+         }
+      }
+   }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package artisynth.core.probes;
+
+import java.util.*;
+
+import maspack.matrix.*;
+import maspack.util.*;
+
+public class CompiledProbeExpressionTest extends UnitTest {
+
+   HashMap<String,NumericProbeVariable> myVariables;
+
+   CompiledProbeExpressionTest() {
+      myVariables = new LinkedHashMap<String,NumericProbeVariable>();
+      addVariable ("V0", new double[] { 1, 2, 3 });
+      addVariable ("V1", new double[] { -4, 0.5, 6 });
+      addVariable ("s", new double[] { 2.5 });
+   }
+
+   void addVariable (String name, double[] vals) {
+      NumericProbeVariable var = new NumericProbeVariable (vals.length);
+      var.setValues (vals);
+      myVariables.put (name, var);
+   }
+
+   void checkExpr (String expr, double t, double... chk) {
+      CompiledProbeExpression cexpr =
+         CompiledProbeExpression.compile (expr, myVariables);
+      if (cexpr == null) {
+         throw new TestException ("expression '"+expr+"' not compiled");
+      }
+      if (cexpr.getOutputSize() != chk.length) {
+         throw new TestException (
+            "expression '"+expr+"': output size is "+cexpr.getOutputSize()+
+            ", expected "+chk.length);
+      }
+      double[] vals = new double[chk.length];
+      cexpr.eval (vals, myVariables, t);
+      checkEquals ("expression '"+expr+"'",
+         new VectorNd(vals), new VectorNd(chk), 1e-14);
+   }
+
+   void checkNotCompiled (String expr) {
+      if (CompiledProbeExpression.compile (expr, myVariables) != null) {
+         throw new TestException (
+            "expression '"+expr+"' compiled but should not be");
+      }
+   }
+
+   public void test() {
+      checkExpr ("2*V0+V1", 0, -2, 4.5, 12);
+      checkExpr ("V0[1]", 0, 2);
+      checkExpr ("V0 - V1/2", 0, 3, 1.75, 0);
+      checkExpr ("-V0*s", 0, -2.5, -5, -7.5);
+      checkExpr ("abs(V1)", 0, 4, 0.5, 6);
+      checkExpr ("(V0[0] + V1[2])*t", 2, 14);
+      checkExpr ("-2**2", 0, -4);
+      checkExpr ("2**-1", 0, 0.5);
+      checkExpr ("2**3**2", 0, 512);
+      checkExpr ("1.5e1 + .5 - 3.", 0, 12.5);
+      checkExpr ("Math.sin(Math.PI/2) + Math.atan2(1, 1)", 0, 1+Math.PI/4);
+      checkExpr ("max(s, 1, V1[1]) + min(s, -1)", 0, 1.5);
+      checkExpr ("pow(s, 2) + Math.sqrt(4)", 0, 8.25);
+      checkExpr ("3/2.0 + 7", 0, 8.5);
+
+      // integer division, unsupported functions, and vector operations
+      // not provided by the Jython bindings
+      checkNotCompiled ("3/2");
+      checkNotCompiled ("V0*V1");
+      checkNotCompiled ("V0 + s");
+      checkNotCompiled ("s/V0");
+      checkNotCompiled ("V0[3]");
+      checkNotCompiled ("V0[-1]");
+      checkNotCompiled ("s[0]");
+      checkNotCompiled ("V0[0:2]");
+      checkNotCompiled ("foo(s)");
+      checkNotCompiled ("sin(s)");
+      checkNotCompiled ("x + 1");
+      checkNotCompiled ("V0[1] if s > 0 else 0");
+      checkNotCompiled ("2*(V0[1]");
+
+      // renaming variables
+      CompiledProbeExpression cexpr =
+         CompiledProbeExpression.compile ("s*V0", myVariables);
+      cexpr.renameVariable ("V0", "W");
+      myVariables.put ("W", myVariables.get ("V0"));
+      if (!cexpr.usesVariable ("W") || cexpr.usesVariable ("V0")) {
+         throw new TestException ("variable not renamed");
+      }
+      double[] vals = new double[3];
+      cexpr.eval (vals, myVariables, 0);
+      checkEquals (
+         "renamed", new VectorNd(vals), new VectorNd(new double[] {2.5, 5, 7.5}));
+
+      // copies are independent of renamings applied to the original
+      cexpr = CompiledProbeExpression.compile ("s*V1 + V0*t", myVariables);
+      CompiledProbeExpression copy = cexpr.copy();
+      cexpr.renameVariable ("V1", "W");
+      if (!copy.usesVariable ("V1") || copy.usesVariable ("W")) {
+         throw new TestException ("copy affected by renaming original");
+      }
+      if (!copy.usesTime()) {
+         throw new TestException ("copy does not use time");
+      }
+      copy.renameVariable ("V0", "U");
+      myVariables.put ("U", myVariables.get ("V0"));
+      if (!cexpr.usesVariable ("V0")) {
+         throw new TestException ("original affected by renaming copy");
+      }
+      copy.eval (vals, myVariables, 2);
+      checkEquals (
+         "copy", new VectorNd(vals), new VectorNd(new double[] {-8, 5.25, 21}));
+      myVariables.put ("W", myVariables.get ("V1"));
+      cexpr.eval (vals, myVariables, 2);
+      checkEquals (
+         "original", new VectorNd(vals),
+         new VectorNd(new double[] {-8, 5.25, 21}));
+   }
+
+   public static void main (String[] args) {
+      CompiledProbeExpressionTest tester = new CompiledProbeExpressionTest();
+      tester.runtest();
+   }
+}
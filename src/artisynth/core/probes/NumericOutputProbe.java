@@ -259,7 +259,7 @@ public class NumericOutputProbe extends NumericProbeBase
       int k = 0;
       double[] buf = knot.v.getBuffer();
       for (NumericProbeDriver driver : myDrivers) {
-         double[] vals = driver.eval (myVariables, myJythonLocals);
+         double[] vals = driver.eval (myVariables, myJythonLocals, tloc);
          for (int j = 0; j < vals.length; j++) {
             buf[k++] = vals[j];
          }
@@ -19,12 +19,21 @@ import maspack.matrix.*;
  * NumericInputProbe, or properties to outputs for a NumericOutputProbe.
  */
 public class NumericProbeDriver {
+
+   /**
+    * If <code>true</code>, expressions are compiled into Java evaluators
+    * whenever possible, with Jython used only for expressions outside the
+    * subset supported by {@link CompiledProbeExpression}.
+    */
+   public static boolean useCompiledExpressions = true;
+
    String myExpression = "";
    double[] myValues = new double[0];
    // LinkedHashMap<String,NumericProbeVariable> myVariables;
    String myVariable;
    PyCode myCode;
    NumericConverter myConverter;
+   CompiledProbeExpression myCompiledExpr;
 
    public NumericProbeDriver() {
       // myVariables = new LinkedHashMap<String,NumericProbeVariable>();
@@ -33,6 +42,7 @@ public class NumericProbeDriver {
       myValues = new double[0];
       myCode = null;
       myConverter = null;
+      myCompiledExpr = null;
    }
 
    public NumericProbeDriver (NumericProbeDriver driver) {
@@ -40,6 +50,13 @@ public class NumericProbeDriver {
       myValues = new double[driver.myValues.length];
       myVariable = driver.myVariable;
       myCode = driver.myCode;
+      if (driver.myCompiledExpr != null) {
+         // copy, since renameVariable() modifies the compiled expression
+         myCompiledExpr = driver.myCompiledExpr.copy();
+      }
+      else {
+         myCompiledExpr = null;
+      }
       if (driver.myConverter != null) {
          myConverter = new NumericConverter (driver.myConverter);
       }
@@ -139,10 +156,33 @@ public class NumericProbeDriver {
       setOutputSize (conv.getDimension());
       myCode = code;
       myConverter = conv;
+      myCompiledExpr = null;
       myExpression = expr;
       myVariable = null;
    }
 
+   /**
+    * Attempts to compile an expression into a Java evaluator.
+    *
+    * @return <code>false</code> if the expression is not supported by
+    * {@link CompiledProbeExpression} and should be handled by Jython.
+    */
+   private boolean compileExpression (
+      String expr, HashMap<String,NumericProbeVariable> variables) {
+      CompiledProbeExpression cexpr =
+         CompiledProbeExpression.compile (expr, variables);
+      if (cexpr == null) {
+         return false;
+      }
+      setOutputSize (cexpr.getOutputSize());
+      myCompiledExpr = cexpr;
+      myCode = null;
+      myConverter = null;
+      myExpression = expr;
+      myVariable = null;
+      return true;
+   }
+
    public void setExpression (
       String expr, HashMap<String,NumericProbeVariable> variables) {
       String varname = extractSingleVariable (expr);
@@ -157,6 +197,10 @@ public class NumericProbeDriver {
          myExpression = varname;
          myCode = null;
          myConverter = null;
+         myCompiledExpr = null;
+      }
+      else if (useCompiledExpressions && compileExpression (expr, variables)) {
+         return;
       }
       else {
          if (!JythonInit.jythonIsAvailable()) {
@@ -235,13 +279,53 @@ public class NumericProbeDriver {
          }
       }
       else {
+         if (myCompiledExpr != null) {
+            myCompiledExpr.renameVariable (oldname, newname);
+         }
          return replaceVariable (oldname, newname);
       }
       return false;
    }
 
+   /**
+    * Evaluates this driver, using the current values of the probe variables.
+    * If this driver uses a compiled expression that references the time, the
+    * time value is taken from the entry <code>t</code> in
+    * <code>locals</code>, as it would be for a Jython expression.
+    *
+    * @param variables probe variables
+    * @param locals Jython locals, which must contain the variables and time
+    * if this driver uses a Jython expression
+    * @return driver output values
+    * @throws ImproperStateException if the expression references the time
+    * and <code>locals</code> does not contain it
+    */
    public double[] eval (
       HashMap<String,NumericProbeVariable> variables, PyStringMap locals) {
+      double t = 0;
+      if (myCompiledExpr != null && myCompiledExpr.usesTime()) {
+         PyObject tobj = (locals != null ? locals.__finditem__ ("t") : null);
+         if (tobj == null) {
+            throw new ImproperStateException (
+               "time value 't' not found in locals");
+         }
+         t = tobj.asDouble();
+      }
+      return eval (variables, locals, t);
+   }
+
+   /**
+    * Evaluates this driver, using the current values of the probe variables.
+    *
+    * @param variables probe variables
+    * @param locals Jython locals, which must contain the variables and time
+    * if this driver uses a Jython expression
+    * @param t time value for compiled expressions
+    * @return driver output values
+    */
+   public double[] eval (
+      HashMap<String,NumericProbeVariable> variables, PyStringMap locals,
+      double t) {
       if (myVariable != null) {
          NumericProbeVariable var = variables.get (myVariable);
          if (var != null) {
@@ -249,6 +333,10 @@ public class NumericProbeDriver {
          }
          return myValues;
       }
+      else if (myCompiledExpr != null) {
+         myCompiledExpr.eval (myValues, variables, t);
+         return myValues;
+      }
       else if (myCode != null) {
          Object res =
             Py.tojava (Py.runCode (myCode, locals, locals), Object.class);
@@ -86,4 +86,76 @@ public class ArtisynthIO {
       return rtok;
    }
 
+   /**
+    * Returns the file used to cache the binary token form of a model file.
+    * For a file <code>foo.art</code>, this is <code>foo.artb</code>,
+    * located in the same directory.
+    *
+    * @param file model file
+    * @return binary cache file for <code>file</code>
+    */
+   public static File getBinaryCacheFile (File file) {
+      return new File (file.getPath() + "b");
+   }
+
+   /**
+    * Creates a tokenizer for reading a model file, which may be either a
+    * text <code>.art</code> file or a binary token file written by {@link
+    * RecordingTokenizer#writeBinary}. If <code>useCache</code> is
+    * <code>true</code> and <code>file</code> is a text file, then the
+    * tokenizer will be a {@link BinaryTokenizer} reading from the file's
+    * {@link #getBinaryCacheFile binary cache} if that cache is current, or
+    * otherwise a {@link RecordingTokenizer} whose tokens can be written to
+    * the cache using {@link #writeBinaryCache writeBinaryCache} once the
+    * model has been scanned.
+    *
+    * @param file model file to read
+    * @param useCache if <code>true</code>, use or prepare a binary cache
+    * for text files
+    */
+   public static ReaderTokenizer newModelTokenizer (
+      File file, boolean useCache) throws IOException {
+
+      if (BinaryTokenizer.isBinaryTokenFile (file)) {
+         return new BinaryTokenizer (file);
+      }
+      else if (useCache) {
+         File cacheFile = getBinaryCacheFile (file);
+         if (BinaryTokenizer.isCurrent (cacheFile, file)) {
+            BinaryTokenizer btok = new BinaryTokenizer (cacheFile);
+            btok.setResourceName (file.toString());
+            return btok;
+         }
+         RecordingTokenizer rtok = new RecordingTokenizer (
+            new BufferedReader (new FileReader (file)));
+         rtok.wordChars ("./$");
+         rtok.setResourceName (file.toString());
+         return rtok;
+      }
+      else {
+         return newReaderTokenizer (file);
+      }
+   }
+
+   /**
+    * If <code>rtok</code> is a {@link RecordingTokenizer} created by {@link
+    * #newModelTokenizer newModelTokenizer}, writes its recorded tokens to the
+    * binary cache for <code>file</code>.
+    *
+    * @param rtok tokenizer used to read the model file
+    * @param file model file that was read
+    * @return <code>true</code> if the binary cache was written
+    */
+   public static boolean writeBinaryCache (ReaderTokenizer rtok, File file)
+      throws IOException {
+      if (rtok instanceof RecordingTokenizer) {
+         ((RecordingTokenizer)rtok).writeBinary (
+            getBinaryCacheFile (file), file);
+         return true;
+      }
+      else {
+         return false;
+      }
+   }
+
 }
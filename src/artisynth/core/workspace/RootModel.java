@@ -21,6 +21,7 @@ import javax.swing.JFrame;
 import javax.swing.JTabbedPane;
 import javax.swing.JMenuItem;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.AxisAngle;
 import maspack.matrix.NumericalException;
 import maspack.matrix.Point3d;
@@ -63,6 +64,7 @@ import artisynth.core.modelbase.RenderableComponentList;
 import artisynth.core.modelbase.RenderableModelBase;
 import artisynth.core.modelbase.ScanWriteUtils;
 import artisynth.core.modelbase.StepAdjustment;
+import artisynth.core.modelbase.StepProfiler;
 import artisynth.core.modelbase.StructureChangeEvent;
 import artisynth.core.modelbase.Traceable;
 import artisynth.core.modelbase.ComponentChangeEvent.Code;
@@ -99,18 +101,28 @@ public class RootModel extends RenderableModelBase
    protected ComponentList<Monitor> myMonitors;
 
    // flag to stop advancing - which we need if we are in the midst of 
-   // lots of small adaptive steps
-   protected boolean myStopAdvance = false;
+   // lots of small adaptive steps. Volatile since it is also read by the
+   // worker threads used for parallel model advance
+   protected volatile boolean myStopAdvance = false;
 
    // flag to tell scheduler to stop simulation
    protected boolean myStopRequest = false;
 
-   protected boolean myModelInfoValid = false;
+   // volatile so that it can be cleared without acquiring the root lock,
+   // which is held by the calling thread during parallel model advance
+   protected volatile boolean myModelInfoValid = false;
    private ModelInfo myRootInfo;
    protected static boolean use125Stepping = true;
 
    protected boolean myAdaptiveStepping = DEFAULT_ADAPTIVE_STEPPING;
    protected double myMinStepSize = DEFAULT_MIN_STEP_SIZE;
+   protected boolean myParallelModelAdvance = DEFAULT_PARALLEL_MODEL_ADVANCE;
+   protected int myNumAdvanceThreads =
+      Runtime.getRuntime().availableProcessors();
+   private ParallelLoop myAdvanceLoop;
+   // cached result of the model independence check; null if the check
+   // needs to be redone
+   private Boolean myModelsIndependent = null;
 
    private static final Point3d DEFAULT_VIEWER_CENTER = new Point3d();
    private static final Point3d DEFAULT_VIEWER_EYE = new Point3d (0, -1, 0);
@@ -119,6 +131,7 @@ public class RootModel extends RenderableModelBase
    private static final double DEFAULT_MIN_STEP_SIZE = 1e-7;
    private static final double DEFAULT_MAX_STEP_SIZE = 0.01;
    private static final boolean DEFAULT_ADAPTIVE_STEPPING = false;
+   private static final boolean DEFAULT_PARALLEL_MODEL_ADVANCE = false;
 
    AxisAngle myDefaultViewOrientation = 
       new AxisAngle (DEFAULT_VIEW_ORIENTATION);
@@ -291,11 +304,27 @@ public class RootModel extends RenderableModelBase
          } 
       }
 
+      int numModelAndControllersSubStates() {
+         int num = 0;
+         for (Controller ctl : controllers) {
+            if (ctl.hasState()) {
+               num++;
+            }
+         }
+         if (model == RootModel.this || model.hasState()) {
+            num++;
+         }
+         return num;
+      }
+
       int setModelAndControllersState (CompositeState state) {
-         if (state.numSubStates() < this.state.numSubStates()) {
+         // count the required substates directly, since this.state is only
+         // updated when adaptive stepping is enabled
+         int numRequired = numModelAndControllersSubStates();
+         if (state.numSubStates() < numRequired) {
             throw new InternalErrorException (
                "state has only "+state.numSubStates()+" substates, "+
-               this.state.numSubStates()+" required");
+               numRequired+" required");
          }
          int idx = 0;
          for (Controller ctl : controllers) {
@@ -510,6 +539,10 @@ public class RootModel extends RenderableModelBase
       myProps.add (
          "adaptiveStepping",
          "enables/disables adaptive step sizing", DEFAULT_ADAPTIVE_STEPPING);
+      myProps.add (
+         "parallelModelAdvance",
+         "advance independent top-level models in parallel",
+         DEFAULT_PARALLEL_MODEL_ADVANCE);
       // remove and replace maxStepSize to redefine default value and range
       myProps.remove ("maxStepSize");
       myProps.add (
@@ -535,6 +568,64 @@ public class RootModel extends RenderableModelBase
       return myMinStepSize;
    }
    
+   /**
+    * Queries whether parallel model advance is enabled. See {@link
+    * #setParallelModelAdvance}.
+    *
+    * @return {@code true} if parallel model advance is enabled
+    */
+   public boolean getParallelModelAdvance() {
+      return myParallelModelAdvance;
+   }
+   
+   /**
+    * Enables or disables parallel model advance. When enabled, and this root
+    * model contains more than one top-level model, the models are advanced
+    * concurrently on a pool of worker threads, together with the probes,
+    * controllers and monitors associated with each model. The models are
+    * synchronized at the end of each root step, before the root-level
+    * probes, controllers and monitors are applied.
+    *
+    * <p>Parallel advance is only used if the models are independent, as
+    * determined by {@link #findModelDependencies}. Otherwise, a warning is
+    * printed and the models are advanced serially. Also, while the models
+    * are being advanced, the lock on this root model is held by the calling
+    * thread, and so model agents should not themselves try to acquire it.
+    *
+    * @param enable if {@code true}, enables parallel model advance
+    */
+   public void setParallelModelAdvance (boolean enable) {
+      myParallelModelAdvance = enable;
+   }
+
+   /**
+    * Returns the maximum number of threads used for parallel model
+    * advance. See {@link #setNumAdvanceThreads}.
+    *
+    * @return maximum number of parallel advance threads
+    */
+   public int getNumAdvanceThreads() {
+      return myNumAdvanceThreads;
+   }
+
+   /**
+    * Sets the maximum number of threads used for parallel model advance,
+    * including the calling thread. The default value is the number of
+    * available processors.
+    *
+    * @param num maximum number of parallel advance threads
+    */
+   public synchronized void setNumAdvanceThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      if (num != myNumAdvanceThreads) {
+         myNumAdvanceThreads = num;
+         disposeAdvanceLoop();
+      }
+   }
+   
    public void setMinStepSize (double step) {
       myMinStepSize = step;
    }
@@ -1238,9 +1329,7 @@ public class RootModel extends RenderableModelBase
    public void componentChanged (ComponentChangeEvent e) {
       // no need to notify parent since there is none
       if (e.getCode() == ComponentChangeEvent.Code.STRUCTURE_CHANGED) {
-         synchronized (this) {
-            myModelInfoValid = false;
-         }
+         myModelInfoValid = false;
       }
       // if called in constructor, myControlPanels might still be null ...
       if (myControlPanels != null) {
@@ -1252,9 +1341,7 @@ public class RootModel extends RenderableModelBase
    }
 
    public void notifyStructureChanged (Object comp) {
-      synchronized (this) {
-         myModelInfoValid = false;
-      }
+      myModelInfoValid = false;
       super.notifyStructureChanged (comp);
    }
 
@@ -1273,6 +1360,7 @@ public class RootModel extends RenderableModelBase
 
    private void updateModelInfo() {
 
+      myModelsIndependent = null;
       myRootInfo = new ModelInfo (this);
       // rebuild modelinfo, removing info for deleted models
       // and adding info for new models.
@@ -1462,8 +1550,10 @@ public class RootModel extends RenderableModelBase
 
       synchronized (this) {
          if (!myModelInfoValid) {
-            updateModelInfo();
+            // set valid first, so that any structure change made during the
+            // update is not lost
             myModelInfoValid = true;
+            updateModelInfo();
          }
       }
       doadvance (t0, t1, flags);
@@ -1471,37 +1561,62 @@ public class RootModel extends RenderableModelBase
    }
 
    public synchronized void applyInputProbes (List<Probe> list, double t) {
+      doApplyInputProbes (list, t);
+   }
+
+   private void doApplyInputProbes (List<Probe> list, double t) {
       for (Probe p : list) {
          if (p.isActive() && 
              TimeBase.compare (p.getStartTime(), t) <= 0 && 
              TimeBase.compare (p.getStopTime(), t) >= 0) {
+            long t0 = StepProfiler.start();
             p.apply (t);
+            StepProfiler.stop (StepProfiler.Phase.PROBES, p, t0);
          }
       }
    }
 
    public synchronized void applyControllers (
       List<Controller> list, double t0, double t1) {
+      doApplyControllers (list, t0, t1);
+   }
+
+   private void doApplyControllers (
+      List<Controller> list, double t0, double t1) {
 
       for (Controller c : list) {
          if (c.isActive()) {
+            long tp = StepProfiler.start();
             c.apply (t0, t1);
+            StepProfiler.stop (StepProfiler.Phase.CONTROLLERS, c, tp);
          }
       }
    }
 
    public synchronized void applyMonitors (
       List<Monitor> list, double t0, double t1) {
+      doApplyMonitors (list, t0, t1);
+   }
+
+   private void doApplyMonitors (
+      List<Monitor> list, double t0, double t1) {
 
       for (Monitor m : list) {
          if (m.isActive()) {
+            long tp = StepProfiler.start();
             m.apply (t0, t1);
+            StepProfiler.stop (StepProfiler.Phase.CONTROLLERS, m, tp);
          }
       }
    }
 
    public synchronized void applyOutputProbes (
       List<Probe> list, double t1, ModelInfo info) {
+      doApplyOutputProbes (list, t1, info);
+   }
+
+   private void doApplyOutputProbes (
+      List<Probe> list, double t1, ModelInfo info) {
 
       // see if t1 coincides with the model's max step size
       double maxStep = info.model.getMaxStepSize();
@@ -1516,7 +1631,9 @@ public class RootModel extends RenderableModelBase
          }
          if (p.isEventTime(t1) || 
              (coincidesWithStep && p.getUpdateInterval() < 0)) {
+            long t0 = StepProfiler.start();
             p.apply (t1);
+            StepProfiler.stop (StepProfiler.Phase.PROBES, p, t0);
          }
       }
    }
@@ -1556,7 +1673,7 @@ public class RootModel extends RenderableModelBase
     * This is used by the scheduler to interrupts the current call to advance
     * and cause state to be restored to that of the start time for the advance.
     */
-   public synchronized void stopAdvance() {
+   public void stopAdvance() {
       myStopAdvance = true;
    }
 
@@ -1576,15 +1693,34 @@ public class RootModel extends RenderableModelBase
 
    protected void advanceModel (
       ModelInfo info, double t0, double t1, int flags) {
+      advanceModel (info, t0, t1, flags, this);
+   }
+
+   /**
+    * Advances a single model, using <code>lock</code> to synchronize access
+    * to the model state. Serial advance uses this root model as the lock,
+    * while parallel advance uses a lock specific to each model.
+    */
+   private void advanceModel (
+      ModelInfo info, double t0, double t1, int flags, Object lock) {
 
       double ta = t0;
       if (t0 == 0) {
-         applyOutputProbes (info.outputProbes, t0, info);
+         synchronized (lock) {
+            doApplyOutputProbes (info.outputProbes, t0, info);
+         }
       }
       while (ta < t1) {
          double s;
-         synchronized (this) {
-            info.getModelAndControllersState (info.state);
+         // The model and controller state is needed only to roll back a
+         // step, which happens only with adaptive stepping. Read the flag
+         // once, so that enabling it mid-step cannot roll back to a stale
+         // state.
+         boolean adaptive = myAdaptiveStepping;
+         if (adaptive) {
+            synchronized (lock) {
+               info.getModelAndControllersState (info.state);
+            }
          }
          if (testSaveAndRestoreState) {  
             // test save-and-restore of model state 
@@ -1600,18 +1736,18 @@ public class RootModel extends RenderableModelBase
          }
          double tb = info.getNextAdvanceTime (ta, t1);
          do {
-            synchronized (this) {
+            synchronized (lock) {
                StepAdjustment adj;
                //info.model.setDefaultInputs (ta, tb);
                adj = info.model.preadvance (ta, tb, flags);
                s = getRecommendedScaling (adj);
                if (s >= 1) {
-                  applyInputProbes (info.inputProbes, tb);
-                  applyControllers (info.controllers, ta, tb);
+                  doApplyInputProbes (info.inputProbes, tb);
+                  doApplyControllers (info.controllers, ta, tb);
                   adj = info.model.advance (ta, tb, flags);
                   s = getRecommendedScaling (adj);
                }
-               if (myAdaptiveStepping && s < 1) {
+               if (adaptive && s < 1) {
                   tb = info.reduceAdvanceTime (
                      s, ta, tb, adj.getMessage());
                   info.setModelAndControllersState (info.state);
@@ -1619,19 +1755,150 @@ public class RootModel extends RenderableModelBase
                }
             }
          }
-         while (myAdaptiveStepping && s < 1 && !myStopAdvance);
-         if (!(myAdaptiveStepping && s < 1)) {
+         while (adaptive && s < 1 && !myStopAdvance);
+         if (!(adaptive && s < 1)) {
             // then we have advanced to tb:
             info.updateStepInfo (s);
-            applyMonitors (info.monitors, ta, tb);
-            applyOutputProbes (info.outputProbes, tb, info);
+            synchronized (lock) {
+               doApplyMonitors (info.monitors, ta, tb);
+               doApplyOutputProbes (info.outputProbes, tb, info);
+            }
             ta = tb;
          }
       }
    }
 
+   private Model getTopLevelModel (ModelComponent comp) {
+      while (comp != null && comp.getParent() != myModels) {
+         comp = comp.getParent();
+      }
+      return (Model)comp;
+   }
+
+   private void findReferenceDependencies (
+      List<String> deps, ModelComponent comp, Model model) {
+
+      LinkedList<ModelComponent> refs = new LinkedList<ModelComponent>();
+      comp.getHardReferences (refs);
+      comp.getSoftReferences (refs);
+      for (ModelComponent ref : refs) {
+         Model other = getTopLevelModel (ref);
+         if (other != null && other != model) {
+            deps.add (
+               ComponentUtils.getPathName (comp) + " in model " +
+               ComponentUtils.getPathName (model) + " references " +
+               ComponentUtils.getPathName (ref) + " in model " +
+               ComponentUtils.getPathName (other));
+         }
+      }
+   }
+
+   private void findComponentDependencies (
+      List<String> deps, ModelComponent comp, Model model) {
+
+      findReferenceDependencies (deps, comp, model);
+      if (comp instanceof CompositeComponent) {
+         CompositeComponent ccomp = (CompositeComponent)comp;
+         for (int i=0; i<ccomp.numComponents(); i++) {
+            findComponentDependencies (deps, ccomp.get(i), model);
+         }
+      }
+   }
+
+   private void findAgentDependencies (
+      List<String> deps, Iterable<? extends ModelAgent> agents) {
+
+      for (ModelAgent agent : agents) {
+         Model model = agent.getModel();
+         if (model != null && model.getParent() == myModels &&
+             agent instanceof ModelComponent) {
+            findReferenceDependencies (deps, (ModelComponent)agent, model);
+         }
+      }
+   }
+
+   /**
+    * Checks whether the top-level models of this root model are independent,
+    * so that they can be advanced in parallel. A model is not independent
+    * if any of its components, or any of the probes, controllers or monitors
+    * associated with it, references a component belonging to a different
+    * top-level model. Each such reference is described by one string in the
+    * returned list.
+    *
+    * @return descriptions of the dependencies between the models. If the
+    * models are independent, the list is empty.
+    */
+   public ArrayList<String> findModelDependencies() {
+      ArrayList<String> deps = new ArrayList<String>();
+      for (Model m : myModels) {
+         findComponentDependencies (deps, m, m);
+      }
+      findAgentDependencies (deps, myInputProbes);
+      findAgentDependencies (deps, myControllers);
+      findAgentDependencies (deps, myMonitors);
+      findAgentDependencies (deps, myOutputProbes);
+      return deps;
+   }
+
+   /**
+    * Returns the loop used to advance the models in parallel, or
+    * <code>null</code> if the models should be advanced serially.
+    */
+   private synchronized ParallelLoop getAdvanceLoop() {
+      if (!myParallelModelAdvance ||
+          myModels.size() < 2 || myNumAdvanceThreads < 2) {
+         return null;
+      }
+      if (myModelsIndependent == null) {
+         ArrayList<String> deps = findModelDependencies();
+         if (deps.size() > 0) {
+            System.out.println (
+               "Warning: models are not independent; advancing serially:");
+            for (String dep : deps) {
+               System.out.println ("  " + dep);
+            }
+         }
+         myModelsIndependent = (deps.size() == 0);
+      }
+      if (!myModelsIndependent) {
+         return null;
+      }
+      if (myAdvanceLoop == null) {
+         myAdvanceLoop = new ParallelLoop (
+            "RootModel.advance", myNumAdvanceThreads);
+      }
+      return myAdvanceLoop;
+   }
+
+   private synchronized void disposeAdvanceLoop() {
+      if (myAdvanceLoop != null) {
+         myAdvanceLoop.dispose();
+         myAdvanceLoop = null;
+      }
+   }
+
+   private void advanceModelsInParallel (
+      ParallelLoop loop, double t0, double t1, int flags) {
+
+      final ModelInfo[] infos = new ModelInfo[myModels.size()];
+      for (int i=0; i<infos.length; i++) {
+         infos[i] = myModelInfo.get (myModels.get(i));
+      }
+      // The root lock is held for the whole parallel section, so that the
+      // models cannot be modified from elsewhere, while each worker
+      // synchronizes on its own model info.
+      synchronized (this) {
+         loop.run (infos.length, 1, (worker, lo, hi) -> {
+               for (int i=lo; i<hi; i++) {
+                  advanceModel (infos[i], t0, t1, flags, infos[i]);
+               }
+            });
+      }
+   }
+
    protected void doadvance (double t0, double t1, int flags) {
       
+      ParallelLoop loop = getAdvanceLoop();
       double ta = t0;
       if (t0 == 0) {
          applyOutputProbes (myRootInfo.outputProbes, t0, myRootInfo);
@@ -1642,8 +1909,13 @@ public class RootModel extends RenderableModelBase
          //setDefaultInputs (ta, tb);
          applyInputProbes (myRootInfo.inputProbes, tb);
          applyControllers (myRootInfo.controllers, ta, tb);
-         for (Model m : myModels) {
-            advanceModel (myModelInfo.get(m), ta, tb, flags);
+         if (loop != null) {
+            advanceModelsInParallel (loop, ta, tb, flags);
+         }
+         else {
+            for (Model m : myModels) {
+               advanceModel (myModelInfo.get(m), ta, tb, flags);
+            }
          }
          applyMonitors (myRootInfo.monitors, ta, tb);
          applyOutputProbes (myRootInfo.outputProbes, tb, myRootInfo);
@@ -1729,6 +2001,7 @@ public class RootModel extends RenderableModelBase
    }
 
    public void dispose() {
+      disposeAdvanceLoop();
       for (Model m : myModels) {
          m.dispose();
       }
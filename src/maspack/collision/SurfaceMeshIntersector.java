@@ -624,6 +624,19 @@ public class SurfaceMeshIntersector {
       // triangles may be overlapping.
       BVTree bvh0 = mesh0.getBVTree();
       BVTree bvh1 = mesh1.getBVTree();
+      if (bvh0 instanceof FlatAABBTree && bvh1 instanceof FlatAABBTree) {
+         // process the overlapping leaf pairs directly as they are found
+         final FlatAABBTree flat0 = (FlatAABBTree)bvh0;
+         final FlatAABBTree flat1 = (FlatAABBTree)bvh1;
+         final ArrayList<IntersectionContour> contours =
+            beginIntersectionContours();
+         flat0.intersectTree (flat1, (node0, node1) -> {
+               findIntersectionContours (
+                  contours, flat0.getElements (node0),
+                  flat1.getElements (node1));
+            });
+         return endIntersectionContours (contours);
+      }
       ArrayList<BVNode> nodes0 = new ArrayList<BVNode>();
       ArrayList<BVNode> nodes1 = new ArrayList<BVNode>();
       bvh0.intersectTree (nodes0, nodes1, bvh1);
@@ -2270,27 +2283,51 @@ public class SurfaceMeshIntersector {
     */
    ArrayList<IntersectionContour> findIntersectionContours (
       ArrayList<BVNode> nodes0, ArrayList<BVNode> nodes1) {
-      ArrayList<IntersectionContour> contours =
-         new ArrayList<IntersectionContour>();
+      ArrayList<IntersectionContour> contours = beginIntersectionContours();
+
+      for (int i = 0; i < nodes0.size(); i++) {
+         BVNode node0 = nodes0.get (i);
+         BVNode node1 = nodes1.get (i);
+         findIntersectionContours (
+            contours, node0.getElements(), node1.getElements());
+      }
+      return endIntersectionContours (contours);
+   }
+
+   /**
+    * Clears the intersection data in preparation for finding the
+    * intersection contours between a set of leaf node pairs.
+    */
+   private ArrayList<IntersectionContour> beginIntersectionContours() {
       myEdgeFaceIntersections.clear();
       myEdgeInfos.clear();
       myFaceCalcs0 = new FaceCalculator[myMesh0.numFaces()];
       myFaceCalcs1 = new FaceCalculator[myMesh1.numFaces()];
+      return new ArrayList<IntersectionContour>();
+   }
 
-      for (int i = 0; i < nodes0.size(); i++) {
-         BVNode node0 = nodes0.get (i);
-         BVNode node1 = nodes1.get (i);
-         int nc = findIntersectionContours (
-            contours, node1.getElements(), node0.getElements(),
-            /*edgeOnMesh0=*/true);
-         // Find and add new contours.  next line is probably unnecessary if
-         // mesh0 == mesh1.
-         if (nc == 0) {
-            findIntersectionContours (
-               contours, node0.getElements(), node1.getElements(),
-               /*edgeOnMesh0=*/false);
-         }
+   /**
+    * Looks for intersecting triangles between the elements of a pair of leaf
+    * nodes from mesh0 and mesh1.
+    */
+   private void findIntersectionContours (
+      ArrayList<IntersectionContour> contours,
+      Boundable[] elems0, Boundable[] elems1) {
+      int nc = findIntersectionContours (
+         contours, elems1, elems0, /*edgeOnMesh0=*/true);
+      // Find and add new contours.  next line is probably unnecessary if
+      // mesh0 == mesh1.
+      if (nc == 0) {
+         findIntersectionContours (
+            contours, elems0, elems1, /*edgeOnMesh0=*/false);
       }
+   }
+
+   /**
+    * Finishes the contours found after {@link #beginIntersectionContours}.
+    */
+   private ArrayList<IntersectionContour> endIntersectionContours (
+      ArrayList<IntersectionContour> contours) {
       myContours = contours; // myContours is used for debugging
       // make each contour counterClockwise with respect to mesh0
       for (IntersectionContour c : contours) {
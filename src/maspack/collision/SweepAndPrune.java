@@ -0,0 +1,304 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.collision;
+
+import maspack.matrix.Vector3d;
+
+/**
+ * Broad-phase collision culling using sweep-and-prune. Maintains a set of
+ * axis-aligned boxes, identified by index, and determines which pairs of
+ * boxes overlap.
+ *
+ * <p>Box end points are sorted along a single axis, and the sorted order is
+ * retained between calls to {@link #update}. Since box positions usually
+ * change only slightly between time steps, the end points can then be
+ * resorted using an insertion sort whose cost is roughly linear in the number
+ * of boxes. The sort axis is chosen, whenever the number of boxes changes, as
+ * the axis along which the box centers have the largest variance.
+ *
+ * <p>Boxes whose faces touch are considered to overlap. A box whose
+ * minimum coordinates exceed its maximum coordinates is empty and
+ * overlaps nothing.
+ */
+public class SweepAndPrune {
+
+   private int myNumBoxes = 0;
+   private double[] myMin = new double[0];
+   private double[] myMax = new double[0];
+
+   // box end points, sorted along myAxis. Each is encoded as 2*idx for a
+   // minimum point and 2*idx+1 for a maximum point
+   private int[] myEndPoints = new int[0];
+   private int myAxis = 0;
+   private boolean myEndPointsValid = false;
+
+   // boxes whose intervals are currently open during the sweep
+   private int[] myActive = new int[0];
+   private int[] myActivePos = new int[0];
+
+   // overlapping pairs, stored as consecutive index pairs
+   private int[] myPairs = new int[0];
+   private int myNumPairs = 0;
+   // for each box, the boxes that overlap it. Memory is proportional to
+   // the number of overlapping pairs rather than the number of boxes squared
+   private int[][] myBoxOverlaps = new int[0][];
+   private int[] myNumBoxOverlaps = new int[0];
+
+   /**
+    * Creates a new SweepAndPrune with no boxes.
+    */
+   public SweepAndPrune() {
+   }
+
+   /**
+    * Sets the number of boxes. If this differs from the current number,
+    * the sorted end point order is discarded and rebuilt on the next
+    * call to {@link #update}.
+    *
+    * @param num number of boxes
+    */
+   public void setNumBoxes (int num) {
+      if (num < 0) {
+         throw new IllegalArgumentException (
+            "number of boxes must be non-negative; got " + num);
+      }
+      if (num != myNumBoxes) {
+         myNumBoxes = num;
+         myMin = new double[3*num];
+         myMax = new double[3*num];
+         myEndPoints = new int[2*num];
+         myActive = new int[num];
+         myActivePos = new int[num];
+         myBoxOverlaps = new int[num][];
+         myNumBoxOverlaps = new int[num];
+         myNumPairs = 0;
+         myEndPointsValid = false;
+      }
+   }
+
+   /**
+    * Returns the number of boxes.
+    *
+    * @return number of boxes
+    */
+   public int numBoxes() {
+      return myNumBoxes;
+   }
+
+   /**
+    * Sets the bounds of a specific box.
+    *
+    * @param idx index of the box
+    * @param min minimum coordinates of the box
+    * @param max maximum coordinates of the box
+    */
+   public void setBox (int idx, Vector3d min, Vector3d max) {
+      int k = 3*idx;
+      myMin[k  ] = min.x;
+      myMin[k+1] = min.y;
+      myMin[k+2] = min.z;
+      myMax[k  ] = max.x;
+      myMax[k+1] = max.y;
+      myMax[k+2] = max.z;
+   }
+
+   private double endPointValue (int ep) {
+      int k = 3*(ep >> 1) + myAxis;
+      return (ep & 1) == 0 ? myMin[k] : myMax[k];
+   }
+
+   private void selectAxis() {
+      double[] sum = new double[3];
+      double[] sumSqr = new double[3];
+      for (int i=0; i<myNumBoxes; i++) {
+         for (int j=0; j<3; j++) {
+            double c = (myMin[3*i+j] + myMax[3*i+j])/2;
+            if (!Double.isInfinite (c) && !Double.isNaN (c)) {
+               sum[j] += c;
+               sumSqr[j] += c*c;
+            }
+         }
+      }
+      double maxVar = -1;
+      for (int j=0; j<3; j++) {
+         double var = sumSqr[j] - sum[j]*sum[j]/Math.max (1, myNumBoxes);
+         if (var > maxVar) {
+            maxVar = var;
+            myAxis = j;
+         }
+      }
+   }
+
+   private void sortEndPoints() {
+      if (!myEndPointsValid) {
+         selectAxis();
+         for (int i=0; i<2*myNumBoxes; i++) {
+            myEndPoints[i] = i;
+         }
+         myEndPointsValid = true;
+      }
+      // insertion sort, which is efficient because the end points are
+      // usually close to their sorted order. For equal values, minimum
+      // points precede maximum points, so that touching boxes overlap.
+      int[] eps = myEndPoints;
+      for (int i=1; i<eps.length; i++) {
+         int ep = eps[i];
+         double val = endPointValue (ep);
+         int j = i-1;
+         while (j >= 0) {
+            double v = endPointValue (eps[j]);
+            if (v > val || (v == val && (eps[j] & 1) > (ep & 1))) {
+               eps[j+1] = eps[j];
+               j--;
+            }
+            else {
+               break;
+            }
+         }
+         eps[j+1] = ep;
+      }
+   }
+
+   private boolean isEmpty (int i) {
+      int k = 3*i;
+      // written so that NaN values also make the box empty
+      return !(myMin[k  ] <= myMax[k  ] &&
+               myMin[k+1] <= myMax[k+1] &&
+               myMin[k+2] <= myMax[k+2]);
+   }
+
+   private boolean overlapsOffAxis (int i, int j) {
+      for (int a=0; a<3; a++) {
+         if (a != myAxis) {
+            if (myMin[3*i+a] > myMax[3*j+a] || myMin[3*j+a] > myMax[3*i+a]) {
+               return false;
+            }
+         }
+      }
+      return true;
+   }
+
+   private void addPair (int i, int j) {
+      if (2*myNumPairs+2 > myPairs.length) {
+         int[] newPairs = new int[Math.max (16, 2*myPairs.length)];
+         System.arraycopy (myPairs, 0, newPairs, 0, 2*myNumPairs);
+         myPairs = newPairs;
+      }
+      myPairs[2*myNumPairs  ] = i;
+      myPairs[2*myNumPairs+1] = j;
+      myNumPairs++;
+      addBoxOverlap (i, j);
+      addBoxOverlap (j, i);
+   }
+
+   private void addBoxOverlap (int i, int j) {
+      int[] list = myBoxOverlaps[i];
+      int num = myNumBoxOverlaps[i];
+      if (list == null || num == list.length) {
+         int[] newList = new int[list == null ? 4 : 2*list.length];
+         if (list != null) {
+            System.arraycopy (list, 0, newList, 0, num);
+         }
+         myBoxOverlaps[i] = list = newList;
+      }
+      list[num] = j;
+      myNumBoxOverlaps[i] = num+1;
+   }
+
+   /**
+    * Updates the set of overlapping box pairs. Should be called after
+    * the box bounds have been set.
+    */
+   public void update() {
+      // clear previous overlaps
+      for (int k=0; k<2*myNumPairs; k++) {
+         myNumBoxOverlaps[myPairs[k]] = 0;
+      }
+      myNumPairs = 0;
+
+      sortEndPoints();
+
+      int numActive = 0;
+      for (int k=0; k<myEndPoints.length; k++) {
+         int ep = myEndPoints[k];
+         int i = (ep >> 1);
+         if (isEmpty (i)) {
+            continue;
+         }
+         if ((ep & 1) == 0) {
+            for (int l=0; l<numActive; l++) {
+               int j = myActive[l];
+               if (overlapsOffAxis (i, j)) {
+                  if (i < j) {
+                     addPair (i, j);
+                  }
+                  else {
+                     addPair (j, i);
+                  }
+               }
+            }
+            myActivePos[i] = numActive;
+            myActive[numActive++] = i;
+         }
+         else {
+            // remove i from the active list by replacing it with the last
+            int pos = myActivePos[i];
+            int last = myActive[--numActive];
+            myActive[pos] = last;
+            myActivePos[last] = pos;
+         }
+      }
+   }
+
+   /**
+    * Returns the number of overlapping box pairs found by the last
+    * call to {@link #update}.
+    *
+    * @return number of overlapping pairs
+    */
+   public int numOverlappingPairs() {
+      return myNumPairs;
+   }
+
+   /**
+    * Returns the overlapping box pairs found by the last call to {@link
+    * #update}. Pair <code>k</code> is given by the indices at locations
+    * <code>2*k</code> and <code>2*k+1</code>, with the first index less
+    * than the second.
+    *
+    * @return overlapping pairs
+    */
+   public int[] getOverlappingPairs() {
+      int[] pairs = new int[2*myNumPairs];
+      System.arraycopy (myPairs, 0, pairs, 0, 2*myNumPairs);
+      return pairs;
+   }
+
+   /**
+    * Queries whether two boxes were found to overlap by the last
+    * call to {@link #update}.
+    *
+    * @param i index of the first box
+    * @param j index of the second box
+    * @return <code>true</code> if the boxes overlap
+    */
+   public boolean overlaps (int i, int j) {
+      // search the shorter of the two overlap lists
+      if (myNumBoxOverlaps[j] < myNumBoxOverlaps[i]) {
+         int tmp = i;
+         i = j;
+         j = tmp;
+      }
+      int[] list = myBoxOverlaps[i];
+      for (int k=0; k<myNumBoxOverlaps[i]; k++) {
+         if (list[k] == j) {
+            return true;
+         }
+      }
+      return false;
+   }
+}
@@ -0,0 +1,146 @@
+package maspack.collision;
+
+import maspack.util.*;
+import maspack.matrix.*;
+
+public class SweepAndPruneTest extends UnitTest {
+
+   private void setRandomBox (
+      Vector3d min, Vector3d max, double range, double size) {
+      min.setRandom (-range, range);
+      max.setRandom (0, size);
+      max.add (min);
+   }
+
+   private boolean boxesOverlap (
+      Vector3d min0, Vector3d max0, Vector3d min1, Vector3d max1) {
+      for (int j=0; j<3; j++) {
+         if (!(min0.get(j) <= max0.get(j)) || !(min1.get(j) <= max1.get(j))) {
+            return false;
+         }
+         if (min0.get(j) > max1.get(j) || min1.get(j) > max0.get(j)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private void checkOverlaps (
+      SweepAndPrune sap, Vector3d[] mins, Vector3d[] maxs) {
+
+      int n = mins.length;
+      int numPairs = 0;
+      for (int i=0; i<n; i++) {
+         for (int j=0; j<n; j++) {
+            boolean expected =
+               (i != j && boxesOverlap (mins[i], maxs[i], mins[j], maxs[j]));
+            if (sap.overlaps (i, j) != expected) {
+               throw new TestException (
+                  "overlap for boxes "+i+" and "+j+" is "+sap.overlaps(i,j)+
+                  ", expected "+expected);
+            }
+            if (expected && i < j) {
+               numPairs++;
+            }
+         }
+      }
+      if (sap.numOverlappingPairs() != numPairs) {
+         throw new TestException (
+            "number of overlapping pairs is "+sap.numOverlappingPairs()+
+            ", expected "+numPairs);
+      }
+      int[] pairs = sap.getOverlappingPairs();
+      for (int k=0; k<numPairs; k++) {
+         int i = pairs[2*k];
+         int j = pairs[2*k+1];
+         if (i >= j || !boxesOverlap (mins[i], maxs[i], mins[j], maxs[j])) {
+            throw new TestException (
+               "unexpected overlapping pair ("+i+","+j+")");
+         }
+      }
+   }
+
+   private void testRandomBoxes (int n, int nsteps) {
+      SweepAndPrune sap = new SweepAndPrune();
+      Vector3d[] mins = new Vector3d[n];
+      Vector3d[] maxs = new Vector3d[n];
+      for (int i=0; i<n; i++) {
+         mins[i] = new Vector3d();
+         maxs[i] = new Vector3d();
+         setRandomBox (mins[i], maxs[i], 1.0, 0.5);
+      }
+      // make one box touch another exactly
+      if (n > 1) {
+         mins[1].set (maxs[0]);
+         maxs[1].add (mins[1], new Vector3d (0.1, 0.1, 0.1));
+      }
+      // and make one box empty
+      if (n > 2) {
+         mins[2].set (Double.POSITIVE_INFINITY, 0, 0);
+         maxs[2].set (Double.NEGATIVE_INFINITY, 0, 0);
+      }
+      sap.setNumBoxes (n);
+      Vector3d del = new Vector3d();
+      for (int k=0; k<nsteps; k++) {
+         for (int i=0; i<n; i++) {
+            sap.setBox (i, mins[i], maxs[i]);
+         }
+         sap.update();
+         checkOverlaps (sap, mins, maxs);
+         // move the boxes a small amount
+         for (int i=3; i<n; i++) {
+            del.setRandom (-0.05, 0.05);
+            mins[i].add (del);
+            maxs[i].add (del);
+         }
+      }
+   }
+
+   /**
+    * Checks a large number of boxes, arranged in a row so that each box
+    * overlaps only its neighbours, for which storing overlaps in an n by n
+    * table would be impractical.
+    */
+   private void testManyBoxes (int n) {
+      SweepAndPrune sap = new SweepAndPrune();
+      sap.setNumBoxes (n);
+      Vector3d min = new Vector3d();
+      Vector3d max = new Vector3d();
+      for (int i=0; i<n; i++) {
+         min.set (i, 0, 0);
+         max.set (i+1.5, 1, 1);
+         sap.setBox (i, min, max);
+      }
+      sap.update();
+      if (sap.numOverlappingPairs() != n-1) {
+         throw new TestException (
+            "number of overlapping pairs is "+sap.numOverlappingPairs()+
+            ", expected "+(n-1));
+      }
+      for (int i=0; i<n; i++) {
+         for (int j=Math.max(0,i-3); j<Math.min(n,i+4); j++) {
+            boolean expected = (i != j && Math.abs(i-j) <= 1);
+            if (sap.overlaps (i, j) != expected) {
+               throw new TestException (
+                  "overlap for boxes "+i+" and "+j+" is "+sap.overlaps(i,j)+
+                  ", expected "+expected);
+            }
+         }
+      }
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+      testRandomBoxes (0, 1);
+      testRandomBoxes (1, 1);
+      testRandomBoxes (2, 1);
+      testRandomBoxes (10, 20);
+      testRandomBoxes (100, 50);
+      testManyBoxes (50000);
+   }
+
+   public static void main (String[] args) {
+      SweepAndPruneTest tester = new SweepAndPruneTest();
+      tester.runtest();
+   }
+}
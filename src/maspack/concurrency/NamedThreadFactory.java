@@ -10,21 +10,34 @@ public class NamedThreadFactory implements ThreadFactory {
 	private final ThreadGroup group;
 	private final AtomicInteger threadNumber = new AtomicInteger(1);
 	private final String namePrefix;
+	private final boolean daemon;
 
 	public NamedThreadFactory(String baseName) {
+		this(baseName, false);
+	}
+
+	/**
+	 * Creates a thread factory whose threads are optionally daemon threads,
+	 * so that they will not prevent the JVM from exiting.
+	 *
+	 * @param baseName base name for the created threads
+	 * @param daemon if <code>true</code>, created threads are daemons
+	 */
+	public NamedThreadFactory(String baseName, boolean daemon) {
 		SecurityManager s = System.getSecurityManager();
 		group = (s != null) ? s.getThreadGroup() : Thread.currentThread()
 				.getThreadGroup();
 		namePrefix = baseName + "-thread-";
+		this.daemon = daemon;
 	}
 
 	public Thread newThread(Runnable r) {
 		Thread t = new Thread(group, r, namePrefix
 				+ threadNumber.getAndIncrement(), 0);
-		if (t.isDaemon())
-			t.setDaemon(false);
+		if (t.isDaemon() != daemon)
+			t.setDaemon(daemon);
 		if (t.getPriority() != Thread.NORM_PRIORITY)
 			t.setPriority(Thread.NORM_PRIORITY);
 		return t;
 	}
-}
\ No newline at end of file
+}
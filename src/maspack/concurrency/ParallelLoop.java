@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.concurrency;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes the iterations of a loop in parallel, using a fixed-size pool of
+ * daemon worker threads. The index range <code>[0, n)</code> is divided into
+ * contiguous chunks, one per worker, with the first chunk being executed by
+ * the calling thread. The division depends only on <code>n</code> and the
+ * number of threads, so that results which depend on the work done by each
+ * worker are reproducible.
+ *
+ * <p>The worker pool is created lazily on first use, and is released by
+ * {@link #dispose}. A loop may be shared by several calling threads, in
+ * which case their iterations are queued on the same pool.
+ */
+public class ParallelLoop {
+
+   /**
+    * Body of a loop executed by {@link ParallelLoop}.
+    */
+   public interface Body {
+      /**
+       * Executes the loop iterations in the range <code>[lo, hi)</code>.
+       *
+       * @param worker index of the worker executing this range, in the
+       * range <code>[0, numThreads)</code>. Can be used to select
+       * per-worker storage.
+       * @param lo first index of the range
+       * @param hi one greater than the last index of the range
+       */
+      public void run (int worker, int lo, int hi);
+   }
+
+   private String myName;
+   private int myNumThreads;
+   private ExecutorService myExecutor;
+
+   /**
+    * Creates a new ParallelLoop.
+    *
+    * @param name base name for the worker threads
+    * @param numThreads number of threads (including the calling thread)
+    * used to execute loops
+    */
+   public ParallelLoop (String name, int numThreads) {
+      if (numThreads < 1) {
+         throw new IllegalArgumentException (
+            "numThreads must be positive; got " + numThreads);
+      }
+      myName = name;
+      myNumThreads = numThreads;
+   }
+
+   /**
+    * Returns the number of threads used to execute loops.
+    *
+    * @return number of threads
+    */
+   public int numThreads() {
+      return myNumThreads;
+   }
+
+   private synchronized ExecutorService getExecutor() {
+      if (myExecutor == null) {
+         myExecutor = Executors.newFixedThreadPool (
+            myNumThreads-1, new NamedThreadFactory (myName, /*daemon=*/true));
+      }
+      return myExecutor;
+   }
+
+   /**
+    * Executes the loop body for the index range <code>[0, n)</code>, and
+    * returns once all iterations have completed. If <code>n</code> is less
+    * than <code>minChunk</code> times the number of threads, fewer workers
+    * are used, and if only one worker is needed the body is executed
+    * directly by the calling thread. Any exception thrown by the body
+    * is rethrown by this method.
+    *
+    * @param n number of loop iterations
+    * @param minChunk minimum number of iterations assigned to a worker
+    * @param body loop body
+    * @return number of workers actually used
+    */
+   public int run (int n, int minChunk, final Body body) {
+      int nw = myNumThreads;
+      if (minChunk > 1) {
+         nw = Math.min (nw, n/minChunk);
+      }
+      nw = Math.max (1, Math.min (nw, n));
+      if (nw == 1) {
+         if (n > 0) {
+            body.run (0, 0, n);
+         }
+         return 1;
+      }
+      ExecutorService exec = getExecutor();
+      ArrayList<Future<?>> futures = new ArrayList<Future<?>>(nw-1);
+      for (int w=1; w<nw; w++) {
+         final int worker = w;
+         final int lo = (int)((long)w*n/nw);
+         final int hi = (int)((long)(w+1)*n/nw);
+         futures.add (exec.submit (new Runnable() {
+               public void run() {
+                  body.run (worker, lo, hi);
+               }
+            }));
+      }
+      RuntimeException rex = null;
+      try {
+         body.run (0, 0, (int)((long)n/nw));
+      }
+      catch (RuntimeException e) {
+         rex = e;
+      }
+      // wait for all workers, even if one of them failed, so that no
+      // worker is still running when we return
+      for (Future<?> fut : futures) {
+         try {
+            fut.get();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (rex == null) {
+               rex = new RuntimeException (e);
+            }
+         }
+         catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+               throw (Error)cause;
+            }
+            if (rex == null) {
+               rex = (cause instanceof RuntimeException ?
+                  (RuntimeException)cause : new RuntimeException (cause));
+            }
+         }
+      }
+      if (rex != null) {
+         throw rex;
+      }
+      return nw;
+   }
+
+   /**
+    * Executes the loop body for the index range <code>[0, n)</code>,
+    * with no minimum chunk size.
+    *
+    * @param n number of loop iterations
+    * @param body loop body
+    * @return number of workers actually used
+    */
+   public int run (int n, Body body) {
+      return run (n, 1, body);
+   }
+
+   /**
+    * Shuts down the worker threads. The pool will be recreated if this
+    * loop is used again.
+    */
+   public synchronized void dispose() {
+      if (myExecutor != null) {
+         myExecutor.shutdown();
+         myExecutor = null;
+      }
+   }
+}
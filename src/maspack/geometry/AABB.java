@@ -18,6 +18,13 @@ public class AABB extends BVNode {
    Point3d myMin = new Point3d();
    Point3d myMax = new Point3d();
 
+   // surface area heuristic cost of the subtree rooted at this node,
+   // normalized by this node's surface area, as computed when the subtree was
+   // built and when it was last updated. Used by AABBTree to detect
+   // degradation of deforming trees.
+   double myBuildCost;
+   double myCost;
+
    private static final double INF = Double.POSITIVE_INFINITY;
 
    public AABB() {
@@ -33,6 +40,18 @@ public class AABB extends BVNode {
       return myMin.distance(myMax)/2;
    }
 
+   /**
+    * Returns the surface area of this box.
+    *
+    * @return surface area
+    */
+   public double getSurfaceArea() {
+      double dx = myMax.x-myMin.x;
+      double dy = myMax.y-myMin.y;
+      double dz = myMax.z-myMin.z;
+      return 2*(dx*dy + dy*dz + dz*dx);
+   }
+
    public void getCenter (Vector3d center) {
       center.add (myMin, myMax);
       center.scale (0.5);
@@ -6,13 +6,54 @@
  */
 package maspack.geometry;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.Vector3d;
 
+/**
+ * Bounding volume hierarchy composed of axis-aligned bounding boxes.
+ *
+ * <p>When the elements of the tree move (as when the vertices of a deforming
+ * mesh change position), {@link #update} refits the boxes without changing
+ * the topology of the tree. Since this can cause the boxes to overlap more
+ * and more, the tree tracks the surface area heuristic (SAH) cost of each
+ * subtree, and rebuilds any subtree whose cost, relative to its surface
+ * area, exceeds that at the time it was built by more than a rebuild
+ * threshold (see {@link #setRebuildThreshold}). The number of updates and
+ * rebuilds are recorded as statistics. Updates of large trees are
+ * performed in parallel.
+ */
 public class AABBTree extends BVTree {
 
    private static final double INF = Double.POSITIVE_INFINITY;
    
+   /**
+    * Default value for the rebuild threshold.
+    */
+   public static final double DEFAULT_REBUILD_THRESHOLD = 1.5;
+
+   // minimum number of elements for which updates are done in parallel
+   protected static int PARALLEL_MIN_ELEMENTS = 16384;
+   // approximate number of subtrees per thread for parallel updates
+   private static final int SUBTREES_PER_THREAD = 4;
+
+   private static int myDefaultNumThreads =
+      Runtime.getRuntime().availableProcessors();
+   // loops shared by all trees, indexed by number of threads
+   private static HashMap<Integer,ParallelLoop> myLoops =
+      new HashMap<Integer,ParallelLoop>();
+
    protected AABB myRoot;
+   protected int myNumElements;
+   protected int myNumThreads = myDefaultNumThreads;
+   protected double myRebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+
+   // statistics
+   protected int myNumUpdates;
+   protected int myNumSubtreeRebuilds;
+   protected int myNumRebuiltElements;
 
    private class ElemDesc {
       Vector3d myCentroid;
@@ -142,25 +183,360 @@ public class AABBTree extends BVTree {
          edescs[i] = new ElemDesc (elements[i]);
       }
       myRoot = buildNodesRecursively (edescs, nelems, 0);
+      myNumElements = nelems;
+      setBuildCosts (myRoot);
    }
 
-   protected void updateRecursively (AABB node) {
+   /**
+    * Computes the SAH cost of the subtree rooted at <code>node</code>, and
+    * stores it, along with its normalized value, as the current and build
+    * costs of each node in the subtree.
+    */
+   private double setBuildCosts (AABB node) {
+      double cost = node.getSurfaceArea();
+      if (node.isLeaf()) {
+         cost *= node.myElements.length;
+      }
+      else {
+         AABB child = (AABB)node.myFirstChild;
+         while (child != null) {
+            cost += setBuildCosts (child);
+            child = (AABB)child.getNext();
+         }
+      }
+      double area = node.getSurfaceArea();
+      node.myCost = cost;
+      node.myBuildCost = (area > 0 ? cost/area : 0);
+      return cost;
+   }
+
+   /**
+    * Refits the bounds of each node in the subtree rooted at
+    * <code>node</code>, and returns the SAH cost of the subtree.
+    */
+   protected double updateRecursively (AABB node) {
       double margin = myMargin;
+      double cost;
       if (node.isLeaf()) {
          node.update(margin);
+         cost = node.getSurfaceArea()*node.myElements.length;
       }
       else {
+         // reset the bounds so that they can shrink as well as grow
+         node.myMin.set ( INF,  INF,  INF);
+         node.myMax.set (-INF, -INF, -INF);
+         cost = 0;
          AABB child = (AABB)node.myFirstChild;
          while (child != null) {
-            updateRecursively (child);
+            cost += updateRecursively (child);
             node.updateForAABB (child, margin);
             child = (AABB)child.getNext();
          }
+         cost += node.getSurfaceArea();
+      }
+      node.myCost = cost;
+      return cost;
+   }
+
+   /**
+    * Collects the nodes at depth <code>maxDepth</code>, together with any
+    * shallower leaf nodes, so that they can be updated in parallel.
+    */
+   private void collectSubtrees (
+      ArrayList<AABB> subtrees, AABB node, int depth, int maxDepth) {
+      if (depth == maxDepth || node.isLeaf()) {
+         subtrees.add (node);
+      }
+      else {
+         AABB child = (AABB)node.myFirstChild;
+         while (child != null) {
+            collectSubtrees (subtrees, child, depth+1, maxDepth);
+            child = (AABB)child.getNext();
+         }
+      }
+   }
+
+   /**
+    * Refits the nodes above depth <code>maxDepth</code>, once the subtrees
+    * collected by {@link #collectSubtrees} have been updated.
+    */
+   private double updateAboveDepth (AABB node, int depth, int maxDepth) {
+      if (depth == maxDepth || node.isLeaf()) {
+         return node.myCost;
+      }
+      double margin = myMargin;
+      node.myMin.set ( INF,  INF,  INF);
+      node.myMax.set (-INF, -INF, -INF);
+      double cost = 0;
+      AABB child = (AABB)node.myFirstChild;
+      while (child != null) {
+         cost += updateAboveDepth (child, depth+1, maxDepth);
+         node.updateForAABB (child, margin);
+         child = (AABB)child.getNext();
+      }
+      cost += node.getSurfaceArea();
+      node.myCost = cost;
+      return cost;
+   }
+
+   private void updateInParallel (ParallelLoop loop) {
+      int maxDepth = 0;
+      while ((1 << maxDepth) < SUBTREES_PER_THREAD*loop.numThreads()) {
+         maxDepth++;
+      }
+      final ArrayList<AABB> subtrees = new ArrayList<AABB>();
+      collectSubtrees (subtrees, myRoot, 0, maxDepth);
+      loop.run (subtrees.size(), 1, (worker, lo, hi) -> {
+            for (int i=lo; i<hi; i++) {
+               updateRecursively (subtrees.get(i));
+            }
+         });
+      updateAboveDepth (myRoot, 0, maxDepth);
+   }
+
+   /**
+    * Rebuilds the subtree rooted at <code>node</code> from the elements it
+    * contains. The node itself is retained, so that its parent does not
+    * need to be changed.
+    */
+   protected void rebuildSubtree (AABB node) {
+      ArrayList<Boundable> elems = new ArrayList<Boundable>();
+      getLeafElements (elems, node);
+      ElemDesc[] edescs = new ElemDesc[elems.size()];
+      for (int i=0; i<edescs.length; i++) {
+         edescs[i] = new ElemDesc (elems.get(i));
+      }
+      AABB newNode = buildNodesRecursively (edescs, edescs.length, 0);
+      node.myMin.set (newNode.myMin);
+      node.myMax.set (newNode.myMax);
+      node.myElements = newNode.myElements;
+      node.myFirstChild = newNode.myFirstChild;
+      node.myLastChild = newNode.myLastChild;
+      for (BVNode child=node.myFirstChild; child!=null; child=child.myNext) {
+         child.myParent = node;
+      }
+      setBuildCosts (node);
+      myNumSubtreeRebuilds++;
+      myNumRebuiltElements += edescs.length;
+   }
+
+   private void getLeafElements (ArrayList<Boundable> elems, BVNode node) {
+      if (node.isLeaf()) {
+         for (Boundable elem : node.myElements) {
+            elems.add (elem);
+         }
+      }
+      else {
+         for (BVNode child=node.myFirstChild; child!=null; child=child.myNext) {
+            getLeafElements (elems, child);
+         }
       }
    }
 
+   private boolean isDegraded (AABB node) {
+      double area = node.getSurfaceArea();
+      return (node.myBuildCost > 0 && area > 0 &&
+              node.myCost > myRebuildThreshold*node.myBuildCost*area);
+   }
+
+   /**
+    * Rebuilds the topmost degraded subtrees beneath <code>node</code>, and
+    * returns the number of subtrees rebuilt.
+    */
+   private int rebuildDegradedSubtrees (AABB node) {
+      if (node.isLeaf()) {
+         return 0;
+      }
+      else if (isDegraded (node)) {
+         rebuildSubtree (node);
+         return 1;
+      }
+      else {
+         int num = 0;
+         AABB child = (AABB)node.myFirstChild;
+         while (child != null) {
+            num += rebuildDegradedSubtrees (child);
+            child = (AABB)child.getNext();
+         }
+         if (num > 0) {
+            // rebuilt subtrees may have slightly different bounds
+            double margin = myMargin;
+            node.myMin.set ( INF,  INF,  INF);
+            node.myMax.set (-INF, -INF, -INF);
+            double cost = 0;
+            child = (AABB)node.myFirstChild;
+            while (child != null) {
+               node.updateForAABB (child, margin);
+               cost += child.myCost;
+               child = (AABB)child.getNext();
+            }
+            node.myCost = cost + node.getSurfaceArea();
+         }
+         return num;
+      }
+   }
+
+   private static ParallelLoop getLoop (int numThreads) {
+      synchronized (myLoops) {
+         ParallelLoop loop = myLoops.get (numThreads);
+         if (loop == null) {
+            loop = new ParallelLoop ("AABBTree.update", numThreads);
+            myLoops.put (numThreads, loop);
+         }
+         return loop;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>After the boxes are refit, any subtree which has degraded past the
+    * rebuild threshold is rebuilt. Trees with a large number of elements
+    * are refit in parallel, using up to {@link #getNumThreads} threads.
+    */
    public void update() {
-      updateRecursively (myRoot);
+      if (myRoot == null) {
+         return;
+      }
+      if (myNumThreads > 1 && myNumElements >= PARALLEL_MIN_ELEMENTS) {
+         updateInParallel (getLoop (myNumThreads));
+      }
+      else {
+         updateRecursively (myRoot);
+      }
+      myNumUpdates++;
+      if (myRebuildThreshold > 0 && rebuildDegradedSubtrees (myRoot) > 0) {
+         numberNodes (myRoot, 0);
+      }
+   }
+
+   /**
+    * Sets the rebuild threshold for this tree. When the tree is updated,
+    * a subtree is rebuilt if its SAH cost, normalized by its surface area,
+    * exceeds the normalized cost at the time it was built by more than this
+    * factor. A value {@code <= 0} disables rebuilding. The default value
+    * is {@link #DEFAULT_REBUILD_THRESHOLD}.
+    *
+    * @param thresh rebuild threshold
+    * @see #getRebuildThreshold
+    */
+   public void setRebuildThreshold (double thresh) {
+      myRebuildThreshold = thresh;
+   }
+
+   /**
+    * Returns the rebuild threshold for this tree.
+    *
+    * @return rebuild threshold
+    * @see #setRebuildThreshold
+    */
+   public double getRebuildThreshold() {
+      return myRebuildThreshold;
+   }
+
+   /**
+    * Returns the SAH cost of this tree, normalized by the surface area of
+    * the root node. This is the expected number of nodes and elements
+    * visited when locating a random point within the root box, and
+    * increases as the tree degrades.
+    *
+    * @return normalized SAH cost
+    */
+   public double getSahCost() {
+      if (myRoot == null) {
+         return 0;
+      }
+      double area = myRoot.getSurfaceArea();
+      return (area > 0 ? myRoot.myCost/area : 0);
+   }
+
+   /**
+    * Returns the number of times {@link #update} has been called since the
+    * tree was created or the statistics were last cleared.
+    *
+    * @return number of updates
+    */
+   public int getNumUpdates() {
+      return myNumUpdates;
+   }
+
+   /**
+    * Returns the number of subtrees rebuilt by {@link #update} since the
+    * tree was created or the statistics were last cleared.
+    *
+    * @return number of subtree rebuilds
+    */
+   public int getNumSubtreeRebuilds() {
+      return myNumSubtreeRebuilds;
+   }
+
+   /**
+    * Returns the total number of elements contained in the subtrees
+    * rebuilt by {@link #update} since the tree was created or the
+    * statistics were last cleared.
+    *
+    * @return number of rebuilt elements
+    */
+   public int getNumRebuiltElements() {
+      return myNumRebuiltElements;
+   }
+
+   /**
+    * Clears the update and rebuild statistics for this tree.
+    */
+   public void clearStatistics() {
+      myNumUpdates = 0;
+      myNumSubtreeRebuilds = 0;
+      myNumRebuiltElements = 0;
+   }
+
+   /**
+    * Sets the maximum number of threads used to update this tree.
+    *
+    * @param num maximum number of threads
+    * @see #getNumThreads
+    */
+   public void setNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      myNumThreads = num;
+   }
+
+   /**
+    * Returns the maximum number of threads used to update this tree.
+    *
+    * @return maximum number of threads
+    * @see #setNumThreads
+    */
+   public int getNumThreads() {
+      return myNumThreads;
+   }
+
+   /**
+    * Sets the default maximum number of threads used to update newly
+    * created trees. The initial value is the number of available
+    * processors.
+    *
+    * @param num default maximum number of threads
+    */
+   public static void setDefaultNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Returns the default maximum number of threads used to update newly
+    * created trees.
+    *
+    * @return default maximum number of threads
+    */
+   public static int getDefaultNumThreads() {
+      return myDefaultNumThreads;
    }
 
 }
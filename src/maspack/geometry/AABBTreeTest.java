@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.geometry;
+
+import java.util.HashSet;
+
+import maspack.matrix.*;
+import maspack.util.*;
+
+public class AABBTreeTest extends UnitTest {
+
+   private boolean contains (AABB node, AABB box) {
+      return (box.myMax.x <= node.myMax.x && box.myMin.x >= node.myMin.x &&
+              box.myMax.y <= node.myMax.y && box.myMin.y >= node.myMin.y &&
+              box.myMax.z <= node.myMax.z && box.myMin.z >= node.myMin.z);
+   }
+
+   private void checkContainment (AABB node) {
+      if (node.isLeaf()) {
+         if (!node.isContained (node.getElements(), 0)) {
+            throw new TestException (
+               "leaf node "+node.getNumber()+" does not contain its elements");
+         }
+      }
+      else {
+         for (BVNode child=node.getFirstChild(); child!=null;
+              child=child.getNext()) {
+            AABB box = (AABB)child;
+            if (child.getParent() != node) {
+               throw new TestException (
+                  "node "+child.getNumber()+" has incorrect parent");
+            }
+            if (!contains (node, box)) {
+               throw new TestException (
+                  "node "+node.getNumber()+" does not contain child "+
+                  child.getNumber());
+            }
+            checkContainment (box);
+         }
+      }
+   }
+
+   private void checkTree (AABBTree tree, PolygonalMesh mesh) {
+      checkContainment (tree.getRoot());
+      // each face should appear in exactly one leaf
+      HashSet<Boundable> elems = new HashSet<Boundable>();
+      int numElems = 0;
+      for (BVNode leaf : tree.getLeafNodes()) {
+         for (Boundable elem : leaf.getElements()) {
+            elems.add (elem);
+            numElems++;
+         }
+      }
+      if (numElems != mesh.numFaces() ||
+          !elems.containsAll (mesh.getFaces())) {
+         throw new TestException (
+            "tree leaves contain "+numElems+" elements, expected "+
+            mesh.numFaces()+" distinct faces");
+      }
+   }
+
+   private void checkEqualTrees (AABB node0, AABB node1) {
+      if (!node0.myMin.equals (node1.myMin) ||
+          !node0.myMax.equals (node1.myMax) ||
+          node0.myCost != node1.myCost) {
+         throw new TestException (
+            "node "+node0.getNumber()+" differs between trees");
+      }
+      BVNode child0 = node0.getFirstChild();
+      BVNode child1 = node1.getFirstChild();
+      while (child0 != null && child1 != null) {
+         checkEqualTrees ((AABB)child0, (AABB)child1);
+         child0 = child0.getNext();
+         child1 = child1.getNext();
+      }
+      if (child0 != null || child1 != null) {
+         throw new TestException (
+            "node "+node0.getNumber()+" has different children in trees");
+      }
+   }
+
+   private void perturbVertices (PolygonalMesh mesh, double mag) {
+      Vector3d del = new Vector3d();
+      for (Vertex3d vtx : mesh.getVertices()) {
+         del.setRandom();
+         vtx.pnt.scaledAdd (mag, del);
+      }
+   }
+
+   private void testParallelUpdate (PolygonalMesh mesh) {
+      int saveMin = AABBTree.PARALLEL_MIN_ELEMENTS;
+      AABBTree.PARALLEL_MIN_ELEMENTS = 0;
+      try {
+         AABBTree serial = new AABBTree (mesh);
+         AABBTree parallel = new AABBTree (mesh);
+         serial.setNumThreads (1);
+         parallel.setNumThreads (3);
+         for (int k=0; k<5; k++) {
+            perturbVertices (mesh, 0.1);
+            serial.update();
+            parallel.update();
+            checkEqualTrees (serial.getRoot(), parallel.getRoot());
+            checkTree (parallel, mesh);
+         }
+      }
+      finally {
+         AABBTree.PARALLEL_MIN_ELEMENTS = saveMin;
+      }
+   }
+
+   private void testRebuild (PolygonalMesh mesh) {
+      AABBTree tree = new AABBTree (mesh);
+      AABBTree refitOnly = new AABBTree (mesh);
+      refitOnly.setRebuildThreshold (0);
+
+      // small perturbations should not cause rebuilds
+      perturbVertices (mesh, 1e-4);
+      tree.update();
+      refitOnly.update();
+      if (tree.getNumSubtreeRebuilds() != 0) {
+         throw new TestException (
+            "small perturbation caused "+tree.getNumSubtreeRebuilds()+
+            " rebuilds");
+      }
+      checkTree (tree, mesh);
+
+      // scrambling the triangles should cause rebuilds and give a tree
+      // that is better than the refit tree
+      Vector3d del = new Vector3d();
+      for (Face face : mesh.getFaces()) {
+         del.setRandom();
+         HalfEdge he0 = face.firstHalfEdge();
+         HalfEdge he = he0;
+         do {
+            he.head.pnt.add (del);
+            he = he.getNext();
+         }
+         while (he != he0);
+      }
+      tree.update();
+      refitOnly.update();
+      checkTree (tree, mesh);
+      checkTree (refitOnly, mesh);
+      if (tree.getNumSubtreeRebuilds() == 0 ||
+          tree.getNumRebuiltElements() == 0) {
+         throw new TestException ("degraded tree was not rebuilt");
+      }
+      if (tree.getSahCost() >= refitOnly.getSahCost()) {
+         throw new TestException (
+            "rebuilt tree has SAH cost "+tree.getSahCost()+
+            ", refit tree has "+refitOnly.getSahCost());
+      }
+      if (tree.getNumUpdates() != 2 ||
+          refitOnly.getNumSubtreeRebuilds() != 0) {
+         throw new TestException ("incorrect update statistics");
+      }
+      tree.clearStatistics();
+      if (tree.getNumUpdates() != 0 || tree.getNumSubtreeRebuilds() != 0) {
+         throw new TestException ("statistics not cleared");
+      }
+   }
+
+   /**
+    * Creates a mesh of disconnected small triangles, so that the triangles
+    * can be moved independently.
+    */
+   private PolygonalMesh createTriangleSoup (int num, double size) {
+      PolygonalMesh mesh = new PolygonalMesh();
+      Point3d pnt = new Point3d();
+      Vector3d del = new Vector3d();
+      for (int i=0; i<num; i++) {
+         pnt.setRandom();
+         Vertex3d[] vtxs = new Vertex3d[3];
+         for (int k=0; k<3; k++) {
+            del.setRandom();
+            del.scaledAdd (size, del, pnt);
+            vtxs[k] = mesh.addVertex (new Point3d (del));
+         }
+         mesh.addFace (vtxs);
+      }
+      return mesh;
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+      testParallelUpdate (MeshFactory.createOctahedralSphere (1.0, 4));
+      testRebuild (createTriangleSoup (2000, 0.01));
+   }
+
+   public static void main (String[] args) {
+      AABBTreeTest tester = new AABBTreeTest();
+      tester.runtest();
+   }
+}
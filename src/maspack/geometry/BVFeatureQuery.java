@@ -9,6 +9,7 @@ package maspack.geometry;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Iterator;
 
@@ -28,9 +29,16 @@ public class BVFeatureQuery {
    PointVertexDistanceCalculator myPointVertexCalc;
    PointEdgeDistanceCalculator myPointEdgeCalc;
    LineFaceDistanceCalculator myLineFaceCalc;
+   PointTriangleDistanceCalculator myPointTriangleCalc;
+   LineTriangleDistanceCalculator myLineTriangleCalc;
    TriangleIntersector myIntersector;
    Vector3d myTmp1;
    Vector3d myTmp2;
+
+   // heap of node indices and distances for queries on flat trees
+   int[] myHeapNodes = new int[64];
+   double[] myHeapDists = new double[64];
+   int myHeapSize;
    
    public enum InsideQuery {
       INSIDE,
@@ -317,6 +325,177 @@ public class BVFeatureQuery {
       
    }
 
+   /**
+    * Returns the index of the nearest triangle of a compact triangular mesh
+    * to a point. This method uses the default bounding volume hierarchy
+    * produced by the mesh.
+    *
+    * @param nearPnt if not <code>null</code>, returns the nearest
+    * point on the triangle in world coordinates.
+    * @param uv if not <code>null</code>, returns the UV coordinates
+    * of the nearest triangle point. These are the barycentric coordinates
+    * with respect to the second and third vertices.
+    * @param mesh mesh containing the triangles.
+    * @param pnt point for which the nearest triangle should be found.
+    * @return index of the nearest triangle to the point, or -1
+    * if the mesh contains no triangles.
+    */
+   public int nearestTriangleToPoint (
+      Point3d nearPnt, Vector2d uv, CompactTriangleMesh mesh, Point3d pnt) {
+
+      if (mesh.numTriangles() == 0) {
+         return -1;
+      }
+      return nearestTriangleToPoint (nearPnt, uv, mesh.getBVTree(), pnt);
+   }
+
+   /**
+    * Returns the index of the nearest compact mesh triangle to a point, using
+    * a specified bounding volume hierarchy whose elements are instances of
+    * {@link CompactTriangleMesh.Triangle}.
+    *
+    * @param nearPnt if not <code>null</code>, returns the nearest
+    * point on the triangle in world coordinates.
+    * @param uv if not <code>null</code>, returns the UV coordinates
+    * of the nearest triangle point. These are the barycentric coordinates
+    * with respect to the second and third vertices.
+    * @param bvh bounding volume hierarchy containing the triangles.
+    * @param pnt point for which the nearest triangle should be found.
+    * @return index of the nearest triangle to the point, or -1
+    * if <code>bvh</code> contains no triangles.
+    */
+   public int nearestTriangleToPoint (
+      Point3d nearPnt, Vector2d uv, BVTree bvh, Point3d pnt) {
+
+      if (myPointTriangleCalc == null) {
+         myPointTriangleCalc = new PointTriangleDistanceCalculator();
+      }
+      myPointTriangleCalc.setPoint (pnt, bvh.getBvhToWorld());
+      Boundable nearest = nearestObject (bvh, myPointTriangleCalc);
+
+      if (nearest != null) {
+         myPointTriangleCalc.nearestDistance (nearest);
+         if (uv != null) {
+            uv.set (myPointTriangleCalc.myUv);
+         }
+         if (nearPnt != null) {
+            nearPnt.set (myPointTriangleCalc.myNearest);
+            nearPnt.transform (bvh.getBvhToWorld());
+         }
+         return ((CompactTriangleMesh.Triangle)nearest).getIndex();
+      }
+      else {
+         return -1;
+      }
+   }
+
+   /**
+    * Returns the index of the nearest triangle of a compact triangular mesh
+    * along a directed ray. This method uses the default bounding volume
+    * hierarchy produced by the mesh. Triangles in the negative ray direction
+    * are ignored. If no triangle is found, the results returned in
+    * <code>nearPnt</code> and <code>duv</code> are undefined.
+    *
+    * @param nearPnt if not <code>null</code>, returns the nearest
+    * point on the triangle in world coordinates.
+    * @param duv if not <code>null</code>, returns the distance of the point
+    * to the triangle (in <code>x</code>) and the UV coordinates of the nearest
+    * triangle point (in <code>y</code> and <code>z</code>).
+    * @param mesh mesh containing the triangles.
+    * @param origin originating point of the ray.
+    * @param dir direction of the ray.
+    * @return index of the nearest triangle along the ray, or -1 if no
+    * triangle is found.
+    */
+   public int nearestTriangleAlongRay (
+      Point3d nearPnt, Vector3d duv,
+      CompactTriangleMesh mesh, Point3d origin, Vector3d dir) {
+
+      return nearestTriangleAlongLine (
+         nearPnt, duv, mesh, origin, dir, 0, INF);
+   }
+
+   /**
+    * Returns the index of the nearest triangle of a compact triangular mesh
+    * to a point along a line. This method uses the default bounding volume
+    * hierarchy produced by the mesh. The search can be restricted to a line
+    * segment by restricting <code>min</code> and <code>max</code> to finite
+    * values. If no triangle is found, the results returned in
+    * <code>nearPnt</code> and <code>duv</code> are undefined.
+    *
+    * @param nearPnt if not <code>null</code>, returns the nearest
+    * point on the triangle in world coordinates.
+    * @param duv if not <code>null</code>, returns the distance of the point
+    * to the triangle (in <code>x</code>) and the UV coordinates of the nearest
+    * triangle point (in <code>y</code> and <code>z</code>).
+    * @param mesh mesh containing the triangles.
+    * @param origin originating point of the line
+    * @param dir direction of the line
+    * @param min minimum allowed distance along the line from
+    * <code>origin</code>.
+    * @param max maximum allowed distance along the line from
+    * <code>origin</code>.
+    * @return index of the nearest triangle along the line, or -1 if no
+    * triangle is found.
+    */
+   public int nearestTriangleAlongLine (
+      Point3d nearPnt, Vector3d duv, CompactTriangleMesh mesh,
+      Point3d origin, Vector3d dir, double min, double max) {
+
+      if (mesh.numTriangles() == 0) {
+         return -1;
+      }
+      return nearestTriangleAlongLine (
+         nearPnt, duv, mesh.getBVTree(), origin, dir, min, max);
+   }
+
+   /**
+    * Returns the index of the nearest compact mesh triangle to a point along a
+    * line, using a specified bounding volume hierarchy whose elements are
+    * instances of {@link CompactTriangleMesh.Triangle}. If no triangle is
+    * found, the results returned in <code>nearPnt</code> and
+    * <code>duv</code> are undefined.
+    *
+    * @param nearPnt if not <code>null</code>, returns the nearest
+    * point on the triangle in world coordinates.
+    * @param duv if not <code>null</code>, returns the distance of the point
+    * to the triangle (in <code>x</code>) and the UV coordinates of the nearest
+    * triangle point (in <code>y</code> and <code>z</code>).
+    * @param bvh bounding volume hierarchy containing the triangles.
+    * @param origin originating point of the line
+    * @param dir direction of the line
+    * @param min minimum allowed distance along the line from
+    * <code>origin</code>.
+    * @param max maximum allowed distance along the line from
+    * <code>origin</code>.
+    * @return index of the nearest triangle along the line, or -1 if no
+    * triangle is found.
+    */
+   public int nearestTriangleAlongLine (
+      Point3d nearPnt, Vector3d duv,
+      BVTree bvh, Point3d origin, Vector3d dir, double min, double max) {
+
+      if (myLineTriangleCalc == null) {
+         myLineTriangleCalc = new LineTriangleDistanceCalculator();
+      }
+      myLineTriangleCalc.setLine (origin, dir, min, max, bvh.getBvhToWorld());
+      Boundable nearest = nearestObject (bvh, myLineTriangleCalc);
+      if (nearest != null) {
+         myLineTriangleCalc.nearestDistance (nearest);
+         if (duv != null) {
+            duv.set (myLineTriangleCalc.muDuv);
+         }
+         if (nearPnt != null) {
+            nearPnt.scaledAdd (
+               myLineTriangleCalc.muDuv.x, dir, origin);
+         }
+         return ((CompactTriangleMesh.Triangle)nearest).getIndex();
+      }
+      else {
+         return -1;
+      }
+   }
+
    /**
     * Returns true if a point is on or inside an oriented triangular
     * mesh. "Oriented" means that all face normals are assumed to point
@@ -997,7 +1176,21 @@ public class BVFeatureQuery {
       public double nearestDistance();
    }
 
-   private class PointFaceDistanceCalculator implements ObjectDistanceCalculator {
+   /**
+    * Distance calculator for a query point, whose node distances are
+    * given by the distance from the point to the node.
+    */
+   private interface PointDistanceCalculator extends ObjectDistanceCalculator {
+
+      /**
+       * Returns the query point, in the coordinates of the bounding
+       * volume hierarchy.
+       */
+      public Point3d getPoint();
+   }
+
+   private class PointFaceDistanceCalculator
+      implements PointDistanceCalculator {
 
       Point3d myPnt;
       Point3d myNearest;
@@ -1038,6 +1231,10 @@ public class BVFeatureQuery {
          return node.distanceToPoint (myPnt);
       }
 
+      public Point3d getPoint() {
+         return myPnt;
+      }
+
       public double nearestDistance (Boundable e) {
          myFace = null;
          if (e instanceof Face) {
@@ -1074,7 +1271,7 @@ public class BVFeatureQuery {
    }
 
    private class PointVertexDistanceCalculator
-      implements ObjectDistanceCalculator {
+      implements PointDistanceCalculator {
 
       Point3d myPnt;
       Vertex3d myVertex;
@@ -1111,6 +1308,10 @@ public class BVFeatureQuery {
          return node.distanceToPoint (myPnt);
       }
 
+      public Point3d getPoint() {
+         return myPnt;
+      }
+
       public double nearestDistance (Boundable e) {
          if (e instanceof Vertex3d) {
             myVertex = (Vertex3d)e;
@@ -1167,7 +1368,7 @@ public class BVFeatureQuery {
    }
 
    private class PointEdgeDistanceCalculator
-      implements ObjectDistanceCalculator {
+      implements PointDistanceCalculator {
 
       Point3d myPnt;
       Boundable myEdge;
@@ -1203,6 +1404,10 @@ public class BVFeatureQuery {
          return node.distanceToPoint (myPnt);
       }
 
+      public Point3d getPoint() {
+         return myPnt;
+      }
+
       private double distanceToEdge (Point3d p0, Point3d p1) {
          double ux = p1.x - p0.x;
          double uy = p1.y - p0.y;
@@ -1298,7 +1503,8 @@ public class BVFeatureQuery {
       }
    }
    
-   private static class PointFeatureDistanceCalculator implements ObjectDistanceCalculator {
+   private static class PointFeatureDistanceCalculator
+      implements PointDistanceCalculator {
 
       Point3d myPnt;
       Point3d myNearest;
@@ -1334,6 +1540,10 @@ public class BVFeatureQuery {
          return node.distanceToPoint (myPnt);
       }
 
+      public Point3d getPoint() {
+         return myPnt;
+      }
+
       public double nearestDistance (Boundable e) {
          myFeature = null;
          Point3d nearest = new Point3d();
@@ -1472,6 +1682,182 @@ public class BVFeatureQuery {
          return myDist;
       }
    }
+
+   private class PointTriangleDistanceCalculator
+      implements PointDistanceCalculator {
+
+      Point3d myPnt;
+      Point3d myNearest;
+      Vector2d myUv;
+      Point3d myP0;
+      Point3d myP1;
+      Point3d myP2;
+      CompactTriangleMesh.Triangle myTri;
+      double myDist;
+
+      public PointTriangleDistanceCalculator () {
+         if (myIntersector == null) {
+            myIntersector = new TriangleIntersector();
+         }
+         myPnt = new Point3d();
+         myNearest = new Point3d();
+         myUv = new Vector2d();
+         myP0 = new Point3d();
+         myP1 = new Point3d();
+         myP2 = new Point3d();
+         reset();
+      }
+
+      @Override
+      public void reset() {
+         myTri = null;
+         myDist = Double.POSITIVE_INFINITY;
+      }
+
+      public void setPoint (Point3d pnt, RigidTransform3d XBvhToWorld) {
+         if (XBvhToWorld == RigidTransform3d.IDENTITY) {
+            myPnt.set (pnt);
+         }
+         else {
+            myPnt.inverseTransform (XBvhToWorld, pnt);
+         }
+      }
+
+      public double nearestDistance (BVNode node) {
+         return node.distanceToPoint (myPnt);
+      }
+
+      public Point3d getPoint() {
+         return myPnt;
+      }
+
+      public double nearestDistance (Boundable e) {
+         myTri = null;
+         if (e instanceof CompactTriangleMesh.Triangle) {
+            CompactTriangleMesh.Triangle tri = (CompactTriangleMesh.Triangle)e;
+            tri.getVertices (myP0, myP1, myP2);
+            myTri = tri;
+            myDist = myIntersector.nearestpoint (
+               myP0, myP1, myP2, myPnt, myNearest, myUv);
+            return myDist;
+         }
+         else {
+            return -1;
+         }
+      }
+
+      public CompactTriangleMesh.Triangle nearestObject () {
+         return myTri;
+      }
+
+      @Override
+      public double nearestDistance() {
+         return myDist;
+      }
+   }
+
+   private class LineTriangleDistanceCalculator
+      implements ObjectDistanceCalculator {
+
+      Point3d myOrigin;
+      Vector3d myDir;
+      double myMin;
+      double myMax;
+      Vector3d muDuv;
+      Point3d myP0;
+      Point3d myP1;
+      Point3d myP2;
+      CompactTriangleMesh.Triangle myTri;
+      double myDist;
+
+      public LineTriangleDistanceCalculator () {
+         if (myIntersector == null) {
+            myIntersector = new TriangleIntersector();
+         }
+         myOrigin = new Point3d();
+         myDir = new Vector3d();
+         muDuv = new Vector3d();
+         myP0 = new Point3d();
+         myP1 = new Point3d();
+         myP2 = new Point3d();
+         reset();
+      }
+
+      @Override
+      public void reset() {
+         myMin = 0;
+         myMax = INF;
+         myTri = null;
+         myDist = Double.POSITIVE_INFINITY;
+      }
+
+      public void setLine (
+         Point3d origin, Vector3d dir, double min, double max,
+         RigidTransform3d XBvhToWorld) {
+
+         if (XBvhToWorld == RigidTransform3d.IDENTITY) {
+            myOrigin.set (origin);
+            myDir.set (dir);
+         }
+         else {
+            myOrigin.inverseTransform (XBvhToWorld, origin);
+            myDir.inverseTransform (XBvhToWorld.R, dir);
+         }
+         myMin = min;
+         myMax = max;
+      }
+
+      public double nearestDistance (BVNode node) {
+         double d = node.distanceAlongLine (myOrigin, myDir, myMin, myMax);
+         if (d == INF) {
+            return -1;
+         }
+         else {
+            return d;
+         }
+      }
+
+      public double nearestDistance (Boundable e) {
+         myTri = null;
+         myDist = Double.POSITIVE_INFINITY;
+         if (e instanceof CompactTriangleMesh.Triangle) {
+            CompactTriangleMesh.Triangle tri = (CompactTriangleMesh.Triangle)e;
+            tri.getVertices (myP0, myP1, myP2);
+            int rcode = myIntersector.intersect (
+               myP0, myP1, myP2, myOrigin, myDir, muDuv);
+            if (rcode == 0) {
+               return -1;
+            }
+            else if (rcode == 1) {
+               double d = muDuv.x;
+               if (d > myMax || d < myMin) {
+                  return -1;
+               }
+               else {
+                  myTri = tri;
+                  myDist = Math.abs(d);
+                  return myDist;
+               }
+            }
+            else {
+               throw new InternalErrorException (
+                  "Triangle-ray intersector returns unexpected code " + rcode);
+            }
+         }
+         else {
+            return -1;
+         }
+      }
+
+      public CompactTriangleMesh.Triangle nearestObject() {
+         return myTri;
+      }
+
+      @Override
+      public double nearestDistance() {
+         return myDist;
+      }
+   }
    
    /**
     * Returns the nearest Object to a point, using a specified
@@ -1504,6 +1890,11 @@ public class BVFeatureQuery {
 
    public Boundable nearestObject (BVTree bvh, ObjectDistanceCalculator dcalc) {
 
+      if (bvh instanceof FlatAABBTree &&
+          dcalc instanceof PointDistanceCalculator) {
+         return nearestObject (
+            (FlatAABBTree)bvh, (PointDistanceCalculator)dcalc);
+      }
       double nearestDistance = INF;
       Boundable nearestFeature = null;
       dcalc.reset();
@@ -1550,6 +1941,99 @@ public class BVFeatureQuery {
       return nearestFeature;
    }
    
+   private void pushFlatNode (int node, double dist) {
+      if (myHeapSize == myHeapNodes.length) {
+         myHeapNodes = Arrays.copyOf (myHeapNodes, 2*myHeapSize);
+         myHeapDists = Arrays.copyOf (myHeapDists, 2*myHeapSize);
+      }
+      // sift up
+      int i = myHeapSize++;
+      while (i > 0) {
+         int parent = (i-1)/2;
+         if (myHeapDists[parent] <= dist) {
+            break;
+         }
+         myHeapNodes[i] = myHeapNodes[parent];
+         myHeapDists[i] = myHeapDists[parent];
+         i = parent;
+      }
+      myHeapNodes[i] = node;
+      myHeapDists[i] = dist;
+   }
+
+   private void popFlatNode () {
+      int node = myHeapNodes[--myHeapSize];
+      double dist = myHeapDists[myHeapSize];
+      // sift down
+      int i = 0;
+      int child;
+      while ((child = 2*i+1) < myHeapSize) {
+         if (child+1 < myHeapSize &&
+             myHeapDists[child+1] < myHeapDists[child]) {
+            child++;
+         }
+         if (dist <= myHeapDists[child]) {
+            break;
+         }
+         myHeapNodes[i] = myHeapNodes[child];
+         myHeapDists[i] = myHeapDists[child];
+         i = child;
+      }
+      myHeapNodes[i] = node;
+      myHeapDists[i] = dist;
+   }
+
+   /**
+    * Version of {@link #nearestObject(BVTree,ObjectDistanceCalculator)} that
+    * works directly on the arrays of a flat tree, using a heap of node
+    * indices in place of a priority queue of requests.
+    */
+   private Boundable nearestObject (
+      FlatAABBTree bvh, PointDistanceCalculator dcalc) {
+
+      double nearestDistance = INF;
+      Boundable nearestFeature = null;
+      dcalc.reset();
+      if (bvh.numNodes() == 0) {
+         return null;
+      }
+      Point3d pnt = dcalc.getPoint();
+      myHeapSize = 0;
+      pushFlatNode (0, bvh.distanceToPoint (0, pnt));
+      while (myHeapSize > 0) {
+         int node = myHeapNodes[0];
+         double dist = myHeapDists[0];
+         if (dist > nearestDistance) {
+            break;
+         }
+         popFlatNode();
+         Boundable[] elems = bvh.getElements (node);
+         if (elems != null) {
+            for (int i=0; i<elems.length; i++) {
+               double d = dcalc.nearestDistance (elems[i]);
+               if (d != -1 && d < nearestDistance) {
+                  nearestFeature = dcalc.nearestObject();
+                  nearestDistance = d;
+               }
+            }
+         }
+         else {
+            int end = bvh.getSkipIndex (node);
+            for (int c=node+1; c<end; c=bvh.getSkipIndex(c)) {
+               double d = bvh.distanceToPoint (c, pnt);
+               if (d < nearestDistance) {
+                  pushFlatNode (c, d);
+               }
+            }
+         }
+      }
+      // trigger storing of nearest feature
+      if (nearestFeature != null) {
+         dcalc.nearestDistance(nearestFeature);
+      }
+      return nearestFeature;
+   }
+   
    public BVNode nearestLeafToPoint(BVTree bvh, Point3d pnt) {
       
       double nearestDistance = INF;
@@ -517,6 +517,11 @@ public abstract class BVTree implements IsRenderable {
       return num;      
    }      
 
+   private static boolean isBoxTree (BVTree bvt) {
+      return (bvt instanceof AABBTree || bvt instanceof FlatAABBTree ||
+              bvt instanceof OBBTree);
+   }
+
    /**
     * Returns all intersecting pairs of leaf nodes between this tree and
     * another tree. The pairs are returned in two arrays of equal length.  The
@@ -535,10 +540,10 @@ public abstract class BVTree implements IsRenderable {
 
       BVNodeTester tester = null;
 
-      if ((!(this instanceof AABBTree) && !(this instanceof OBBTree)) ||
-          (!(bvt instanceof AABBTree) && !(bvt instanceof OBBTree))) {
+      if (!isBoxTree (this) || !isBoxTree (bvt)) {
          throw new IllegalArgumentException (
-            "Each bounding volume hierarchy must be an AABBTree or an OBBTree");
+            "Each bounding volume hierarchy must be an AABBTree, "+
+            "FlatAABBTree or OBBTree");
       }
       tester = new BVBoxNodeTester (this, bvt);
       recursivelyIntersectTree (
@@ -0,0 +1,744 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.geometry;
+
+import java.util.ArrayList;
+
+import maspack.matrix.Matrix3d;
+import maspack.matrix.Point3d;
+import maspack.matrix.RigidTransform3d;
+import maspack.matrix.Vector3d;
+import maspack.util.InternalErrorException;
+
+/**
+ * Compact, array-based representation of a triangular mesh. Vertex positions
+ * are stored in a single <code>double</code> array, triangles are stored as
+ * triples of vertex indices in a single <code>int</code> array, and
+ * adjacency information is stored using integer half-edge indices. This
+ * uses far less memory than {@link PolygonalMesh}, which allocates separate
+ * objects for each vertex, face and half-edge, and is better suited to large
+ * meshes that are mostly queried rather than edited.
+ *
+ * <p>The half-edges of triangle <code>t</code> have indices
+ * <code>3*t+k</code>, for <code>k</code> = 0, 1, 2, with half-edge
+ * <code>3*t+k</code> running from vertex <code>k</code> to vertex
+ * <code>(k+1)%3</code> of the triangle. As with {@link PolygonalMesh},
+ * triangle vertices are assumed to be arranged counter-clockwise about
+ * the outward normal.
+ *
+ * <p>A compact mesh can be created from, and converted back to, a triangular
+ * {@link PolygonalMesh}, with the ordering of the vertices and faces and the
+ * mesh-to-world transform preserved. Other mesh attributes, such as normals,
+ * colors and texture coordinates, are not stored.
+ */
+public class CompactTriangleMesh {
+
+   private static final double INF = Double.POSITIVE_INFINITY;
+
+   protected int myNumVertices;
+   protected int myNumTriangles;
+   // vertex coordinates, in mesh local coordinates
+   protected double[] myCoords;
+   // vertex indices for each triangle
+   protected int[] myTriIdxs;
+   // opposite half-edge for each half-edge, or -1 if none
+   protected int[] myOpposite;
+   // an outgoing half-edge for each vertex, or -1 if none
+   protected int[] myVertexHalfEdge;
+
+   protected RigidTransform3d myMeshToWorld = new RigidTransform3d();
+   protected String myName = null;
+
+   protected Triangle[] myTriangles;
+   protected BVTree myBVTree;
+
+   /**
+    * Lightweight handle to a single triangle of a compact mesh, which allows
+    * the triangle to be stored within a bounding volume hierarchy.
+    */
+   public static class Triangle implements Boundable {
+
+      CompactTriangleMesh myMesh;
+      int myIdx;
+
+      Triangle (CompactTriangleMesh mesh, int idx) {
+         myMesh = mesh;
+         myIdx = idx;
+      }
+
+      /**
+       * Returns the mesh containing this triangle.
+       *
+       * @return mesh containing this triangle
+       */
+      public CompactTriangleMesh getMesh() {
+         return myMesh;
+      }
+
+      /**
+       * Returns the index of this triangle within its mesh.
+       *
+       * @return triangle index
+       */
+      public int getIndex() {
+         return myIdx;
+      }
+
+      /**
+       * Returns the index of the <code>k</code>-th vertex of this triangle.
+       *
+       * @param k vertex number (0, 1, or 2)
+       * @return index of the vertex
+       */
+      public int getVertexIndex (int k) {
+         return myMesh.myTriIdxs[3*myIdx+k];
+      }
+
+      /**
+       * Returns the local positions of the vertices of this triangle.
+       *
+       * @param p0 returns the first vertex
+       * @param p1 returns the second vertex
+       * @param p2 returns the third vertex
+       */
+      public void getVertices (Point3d p0, Point3d p1, Point3d p2) {
+         int[] idxs = myMesh.myTriIdxs;
+         int base = 3*myIdx;
+         myMesh.getVertex (idxs[base  ], p0);
+         myMesh.getVertex (idxs[base+1], p1);
+         myMesh.getVertex (idxs[base+2], p2);
+      }
+
+      public int numPoints() {
+         return 3;
+      }
+
+      /**
+       * {@inheritDoc}
+       *
+       * <p>Since vertex positions are not stored as objects, a new point is
+       * created with each call.
+       */
+      public Point3d getPoint (int idx) {
+         Point3d pnt = new Point3d();
+         myMesh.getVertex (myMesh.myTriIdxs[3*myIdx+idx], pnt);
+         return pnt;
+      }
+
+      public void computeCentroid (Vector3d centroid) {
+         double[] c = myMesh.myCoords;
+         int[] idxs = myMesh.myTriIdxs;
+         int base = 3*myIdx;
+         int i0 = 3*idxs[base];
+         int i1 = 3*idxs[base+1];
+         int i2 = 3*idxs[base+2];
+         centroid.set (
+            (c[i0  ]+c[i1  ]+c[i2  ])/3,
+            (c[i0+1]+c[i1+1]+c[i2+1])/3,
+            (c[i0+2]+c[i1+2]+c[i2+2])/3);
+      }
+
+      public void updateBounds (Vector3d min, Vector3d max) {
+         double[] c = myMesh.myCoords;
+         int[] idxs = myMesh.myTriIdxs;
+         for (int k=0; k<3; k++) {
+            int i = 3*idxs[3*myIdx+k];
+            double x = c[i];
+            double y = c[i+1];
+            double z = c[i+2];
+            if (x > max.x) {
+               max.x = x;
+            }
+            if (x < min.x) {
+               min.x = x;
+            }
+            if (y > max.y) {
+               max.y = y;
+            }
+            if (y < min.y) {
+               min.y = y;
+            }
+            if (z > max.z) {
+               max.z = z;
+            }
+            if (z < min.z) {
+               min.z = z;
+            }
+         }
+      }
+
+      public double computeCovariance (Matrix3d C) {
+         Point3d p0 = new Point3d();
+         Point3d p1 = new Point3d();
+         Point3d p2 = new Point3d();
+         getVertices (p0, p1, p2);
+         C.setZero();
+         double area = CovarianceUtils.addTriangleCovariance (C, p0, p1, p2);
+         C.scale (1/12.0);
+         // C is symmetric, so set symmetric components
+         C.m10 = C.m01;
+         C.m20 = C.m02;
+         C.m21 = C.m12;
+         return area;
+      }
+   }
+
+   /**
+    * Creates a compact mesh from a triangular polygonal mesh. Vertex
+    * positions are copied in local mesh coordinates, and the mesh-to-world
+    * transform is copied as well.
+    *
+    * @param mesh mesh to copy
+    * @throws IllegalArgumentException if <code>mesh</code> is not triangular
+    */
+   public CompactTriangleMesh (PolygonalMesh mesh) {
+      if (!mesh.isTriangular()) {
+         throw new IllegalArgumentException ("mesh is not triangular");
+      }
+      ArrayList<Vertex3d> verts = mesh.getVertices();
+      ArrayList<Face> faces = mesh.getFaces();
+      int nv = verts.size();
+      int nt = faces.size();
+      double[] coords = new double[3*nv];
+      for (int i=0; i<nv; i++) {
+         Vertex3d vtx = verts.get(i);
+         if (vtx.getIndex() != i) {
+            throw new IllegalArgumentException (
+               "vertex "+i+" has inconsistent index "+vtx.getIndex());
+         }
+         Point3d pnt = vtx.pnt;
+         coords[3*i  ] = pnt.x;
+         coords[3*i+1] = pnt.y;
+         coords[3*i+2] = pnt.z;
+      }
+      int[] triIdxs = new int[3*nt];
+      for (int t=0; t<nt; t++) {
+         HalfEdge he0 = faces.get(t).firstHalfEdge();
+         HalfEdge he = he0;
+         for (int k=0; k<3; k++) {
+            triIdxs[3*t+k] = he.head.getIndex();
+            he = he.getNext();
+         }
+      }
+      set (coords, triIdxs);
+      myMeshToWorld.set (mesh.getMeshToWorld());
+      myName = mesh.getName();
+   }
+
+   /**
+    * Creates a compact mesh from vertex coordinates and triangle indices. The
+    * supplied arrays are used by reference.
+    *
+    * @param coords vertex coordinates, with the position of vertex
+    * <code>i</code> stored at locations <code>3*i</code> to
+    * <code>3*i+2</code>
+    * @param triIdxs triangle vertex indices, with the vertices of triangle
+    * <code>t</code> stored at locations <code>3*t</code> to
+    * <code>3*t+2</code>
+    */
+   public CompactTriangleMesh (double[] coords, int[] triIdxs) {
+      set (coords, triIdxs);
+   }
+
+   /**
+    * Sets the vertex coordinates and triangle indices for this mesh, and
+    * rebuilds the adjacency information. The supplied arrays are used by
+    * reference.
+    *
+    * @param coords vertex coordinates, of length 3 times the number of
+    * vertices
+    * @param triIdxs triangle vertex indices, of length 3 times the number
+    * of triangles
+    */
+   public void set (double[] coords, int[] triIdxs) {
+      if (coords.length%3 != 0) {
+         throw new IllegalArgumentException (
+            "coordinate array length "+coords.length+" not divisible by 3");
+      }
+      if (triIdxs.length%3 != 0) {
+         throw new IllegalArgumentException (
+            "index array length "+triIdxs.length+" not divisible by 3");
+      }
+      int nv = coords.length/3;
+      for (int i=0; i<triIdxs.length; i++) {
+         if (triIdxs[i] < 0 || triIdxs[i] >= nv) {
+            throw new IllegalArgumentException (
+               "triangle "+(i/3)+" has vertex index "+triIdxs[i]+
+               " out of range");
+         }
+      }
+      myCoords = coords;
+      myTriIdxs = triIdxs;
+      myNumVertices = nv;
+      myNumTriangles = triIdxs.length/3;
+      myTriangles = null;
+      myBVTree = null;
+      buildAdjacency();
+   }
+
+   /**
+    * Builds the opposite and vertex half-edge arrays. Half-edges are bucketed
+    * by tail vertex, using a compressed offset array, so that the opposite of
+    * a half-edge can be found by scanning the (usually small) bucket of its
+    * head vertex. Each half-edge is paired with the first unpaired half-edge
+    * running in the reverse direction, so non-manifold edges are paired
+    * in order of appearance.
+    */
+   private void buildAdjacency() {
+      int nh = 3*myNumTriangles;
+      int nv = myNumVertices;
+      myOpposite = new int[nh];
+      myVertexHalfEdge = new int[nv];
+
+      // offsets[i] to offsets[i+1] delimit the half-edges with tail i,
+      // stored in increasing order in tailEdges
+      int[] offsets = new int[nv+1];
+      for (int h=0; h<nh; h++) {
+         offsets[getTail(h)+1]++;
+      }
+      for (int i=0; i<nv; i++) {
+         offsets[i+1] += offsets[i];
+      }
+      int[] tailEdges = new int[nh];
+      int[] fill = new int[nv];
+      for (int h=0; h<nh; h++) {
+         int tail = getTail (h);
+         tailEdges[offsets[tail]+fill[tail]++] = h;
+      }
+      for (int i=0; i<nv; i++) {
+         myVertexHalfEdge[i] =
+            (offsets[i] < offsets[i+1] ? tailEdges[offsets[i]] : -1);
+      }
+      for (int h=0; h<nh; h++) {
+         myOpposite[h] = -1;
+      }
+      for (int h=0; h<nh; h++) {
+         if (myOpposite[h] != -1) {
+            continue;
+         }
+         int tail = getTail (h);
+         int head = getHead (h);
+         for (int k=offsets[head]; k<offsets[head+1]; k++) {
+            int g = tailEdges[k];
+            if (g != h && myOpposite[g] == -1 && getHead(g) == tail) {
+               myOpposite[h] = g;
+               myOpposite[g] = h;
+               break;
+            }
+         }
+      }
+   }
+
+   /**
+    * Creates a triangular polygonal mesh equivalent to this mesh, with the
+    * same vertex and face ordering and the same mesh-to-world transform.
+    *
+    * @return new polygonal mesh
+    */
+   public PolygonalMesh toPolygonalMesh() {
+      PolygonalMesh mesh = new PolygonalMesh();
+      double[] c = myCoords;
+      for (int i=0; i<myNumVertices; i++) {
+         mesh.addVertex (c[3*i], c[3*i+1], c[3*i+2]);
+      }
+      int[] idxs = new int[3];
+      for (int t=0; t<myNumTriangles; t++) {
+         idxs[0] = myTriIdxs[3*t];
+         idxs[1] = myTriIdxs[3*t+1];
+         idxs[2] = myTriIdxs[3*t+2];
+         mesh.addFace (idxs);
+      }
+      mesh.setMeshToWorld (myMeshToWorld);
+      mesh.setName (myName);
+      return mesh;
+   }
+
+   /**
+    * Returns the number of vertices in this mesh.
+    *
+    * @return number of vertices
+    */
+   public int numVertices() {
+      return myNumVertices;
+   }
+
+   /**
+    * Returns the number of triangles in this mesh.
+    *
+    * @return number of triangles
+    */
+   public int numTriangles() {
+      return myNumTriangles;
+   }
+
+   /**
+    * Returns the vertex coordinate array for this mesh. This is used by
+    * reference and should not be resized. If the coordinates are modified,
+    * {@link #notifyVertexPositionsModified} should be called afterward.
+    *
+    * @return vertex coordinate array
+    */
+   public double[] getCoords() {
+      return myCoords;
+   }
+
+   /**
+    * Returns the triangle index array for this mesh. This is used by
+    * reference and should not be modified.
+    *
+    * @return triangle index array
+    */
+   public int[] getTriangleIndices() {
+      return myTriIdxs;
+   }
+
+   /**
+    * Returns the opposite half-edge array for this mesh. This is used by
+    * reference and should not be modified. Boundary half-edges have an
+    * opposite value of -1.
+    *
+    * @return opposite half-edge array
+    */
+   public int[] getOppositeHalfEdges() {
+      return myOpposite;
+   }
+
+   /**
+    * Returns the local position of the <code>i</code>-th vertex.
+    *
+    * @param i vertex index
+    * @param pos returns the vertex position
+    */
+   public void getVertex (int i, Point3d pos) {
+      pos.set (myCoords[3*i], myCoords[3*i+1], myCoords[3*i+2]);
+   }
+
+   /**
+    * Sets the local position of the <code>i</code>-th vertex.
+    * {@link #notifyVertexPositionsModified} should be called
+    * after all positions have been set.
+    *
+    * @param i vertex index
+    * @param pos new vertex position
+    */
+   public void setVertex (int i, Point3d pos) {
+      myCoords[3*i  ] = pos.x;
+      myCoords[3*i+1] = pos.y;
+      myCoords[3*i+2] = pos.z;
+   }
+
+   /**
+    * Returns the world position of the <code>i</code>-th vertex.
+    *
+    * @param i vertex index
+    * @param pos returns the vertex position
+    */
+   public void getWorldVertex (int i, Point3d pos) {
+      getVertex (i, pos);
+      if (!myMeshToWorld.isIdentity()) {
+         pos.transform (myMeshToWorld);
+      }
+   }
+
+   /**
+    * Should be called after vertex positions have been modified, so
+    * that the bounding volume hierarchy can be updated.
+    */
+   public void notifyVertexPositionsModified() {
+      if (myBVTree != null) {
+         myBVTree.update();
+      }
+   }
+
+   /**
+    * Returns the index of the <code>k</code>-th vertex of triangle
+    * <code>t</code>.
+    *
+    * @param t triangle index
+    * @param k vertex number (0, 1, or 2)
+    * @return vertex index
+    */
+   public int getTriangleVertex (int t, int k) {
+      return myTriIdxs[3*t+k];
+   }
+
+   /**
+    * Returns the index of the vertex at the head of half-edge
+    * <code>h</code>.
+    *
+    * @param h half-edge index
+    * @return head vertex index
+    */
+   public int getHead (int h) {
+      return myTriIdxs[h%3 == 2 ? h-2 : h+1];
+   }
+
+   /**
+    * Returns the index of the vertex at the tail of half-edge
+    * <code>h</code>.
+    *
+    * @param h half-edge index
+    * @return tail vertex index
+    */
+   public int getTail (int h) {
+      return myTriIdxs[h];
+   }
+
+   /**
+    * Returns the next half-edge around the triangle containing half-edge
+    * <code>h</code>.
+    *
+    * @param h half-edge index
+    * @return next half-edge index
+    */
+   public int getNext (int h) {
+      return h%3 == 2 ? h-2 : h+1;
+   }
+
+   /**
+    * Returns the half-edge opposite to half-edge <code>h</code>, or -1 if
+    * <code>h</code> lies on the boundary.
+    *
+    * @param h half-edge index
+    * @return opposite half-edge index, or -1
+    */
+   public int getOpposite (int h) {
+      return myOpposite[h];
+   }
+
+   /**
+    * Returns an outgoing half-edge for the <code>i</code>-th vertex, or -1 if
+    * the vertex is not referenced by any triangle.
+    *
+    * @param i vertex index
+    * @return outgoing half-edge index, or -1
+    */
+   public int getVertexHalfEdge (int i) {
+      return myVertexHalfEdge[i];
+   }
+
+   /**
+    * Returns the triangle adjacent to triangle <code>t</code> across its
+    * <code>k</code>-th edge (which runs from vertex <code>k</code> to vertex
+    * <code>(k+1)%3</code>), or -1 if the edge lies on the boundary.
+    *
+    * @param t triangle index
+    * @param k edge number (0, 1, or 2)
+    * @return adjacent triangle index, or -1
+    */
+   public int getAdjacentTriangle (int t, int k) {
+      int opp = myOpposite[3*t+k];
+      return opp == -1 ? -1 : opp/3;
+   }
+
+   /**
+    * Returns <code>true</code> if every half-edge in this mesh has an
+    * opposite half-edge.
+    *
+    * @return <code>true</code> if this mesh is closed
+    */
+   public boolean isClosed() {
+      for (int h=0; h<myOpposite.length; h++) {
+         if (myOpposite[h] == -1) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Computes the normal of triangle <code>t</code>, in local coordinates,
+    * and returns its area.
+    *
+    * @param nrm returns the (unit) normal
+    * @param t triangle index
+    * @return area of the triangle
+    */
+   public double computeTriangleNormal (Vector3d nrm, int t) {
+      double[] c = myCoords;
+      int i0 = 3*myTriIdxs[3*t];
+      int i1 = 3*myTriIdxs[3*t+1];
+      int i2 = 3*myTriIdxs[3*t+2];
+      double ux = c[i1]-c[i0];
+      double uy = c[i1+1]-c[i0+1];
+      double uz = c[i1+2]-c[i0+2];
+      double vx = c[i2]-c[i0];
+      double vy = c[i2+1]-c[i0+1];
+      double vz = c[i2+2]-c[i0+2];
+      nrm.set (uy*vz-uz*vy, uz*vx-ux*vz, ux*vy-uy*vx);
+      double mag = nrm.norm();
+      if (mag != 0) {
+         nrm.scale (1/mag);
+      }
+      return mag/2;
+   }
+
+   /**
+    * Computes the total surface area of this mesh.
+    *
+    * @return surface area
+    */
+   public double computeArea() {
+      Vector3d nrm = new Vector3d();
+      double area = 0;
+      for (int t=0; t<myNumTriangles; t++) {
+         area += computeTriangleNormal (nrm, t);
+      }
+      return area;
+   }
+
+   /**
+    * Updates the local axis-aligned bounds of this mesh.
+    *
+    * @param min minimum values to be updated
+    * @param max maximum values to be updated
+    */
+   public void updateBounds (Vector3d min, Vector3d max) {
+      double[] c = myCoords;
+      for (int i=0; i<3*myNumVertices; i+=3) {
+         double x = c[i];
+         double y = c[i+1];
+         double z = c[i+2];
+         if (x > max.x) {
+            max.x = x;
+         }
+         if (x < min.x) {
+            min.x = x;
+         }
+         if (y > max.y) {
+            max.y = y;
+         }
+         if (y < min.y) {
+            min.y = y;
+         }
+         if (z > max.z) {
+            max.z = z;
+         }
+         if (z < min.z) {
+            min.z = z;
+         }
+      }
+   }
+
+   /**
+    * Returns the radius of the smallest sphere, centered on the center of
+    * the axis-aligned bounds, that encloses this mesh.
+    *
+    * @return bounding radius
+    */
+   public double computeRadius() {
+      Vector3d min = new Vector3d (INF, INF, INF);
+      Vector3d max = new Vector3d (-INF, -INF, -INF);
+      updateBounds (min, max);
+      if (myNumVertices == 0) {
+         return 0;
+      }
+      Vector3d diag = new Vector3d();
+      diag.sub (max, min);
+      return diag.norm()/2;
+   }
+
+   /**
+    * Returns the mesh-to-world transform for this mesh. This should not be
+    * modified.
+    *
+    * @return mesh-to-world transform
+    */
+   public RigidTransform3d getMeshToWorld() {
+      return myMeshToWorld;
+   }
+
+   /**
+    * Sets the mesh-to-world transform for this mesh.
+    *
+    * @param X new mesh-to-world transform
+    */
+   public void setMeshToWorld (RigidTransform3d X) {
+      myMeshToWorld.set (X);
+      if (myBVTree != null) {
+         myBVTree.setBvhToWorld (myMeshToWorld);
+      }
+   }
+
+   public String getName() {
+      return myName;
+   }
+
+   public void setName (String name) {
+      myName = name;
+   }
+
+   /**
+    * Returns Boundable handles for each of the triangles of this mesh,
+    * which can be used to build bounding volume hierarchies. The handles are
+    * created on demand and cached.
+    *
+    * @return triangle handles, indexed by triangle
+    */
+   public Triangle[] getTriangles() {
+      if (myTriangles == null) {
+         Triangle[] tris = new Triangle[myNumTriangles];
+         for (int t=0; t<myNumTriangles; t++) {
+            tris[t] = new Triangle (this, t);
+         }
+         myTriangles = tris;
+      }
+      return myTriangles;
+   }
+
+   /**
+    * Returns an axis-aligned bounding volume hierarchy for the triangles of
+    * this mesh, creating it if necessary. The leaf elements of the hierarchy
+    * are instances of {@link Triangle}.
+    *
+    * @return bounding volume hierarchy for this mesh
+    */
+   public BVTree getBVTree() {
+      if (myBVTree == null) {
+         myBVTree = createBVTree (new AABBTree(), 2);
+      }
+      return myBVTree;
+   }
+
+   /**
+    * Builds a bounding volume hierarchy for the triangles of this mesh,
+    * using a supplied tree instance (such as an {@link AABBTree} or
+    * {@link OBBTree}). The tree's transform is set to the mesh-to-world
+    * transform.
+    *
+    * @param tree tree to build
+    * @param maxLeafElems maximum number of triangles per leaf node
+    * @return <code>tree</code>
+    */
+   public BVTree createBVTree (BVTree tree, int maxLeafElems) {
+      if (myNumTriangles == 0) {
+         throw new IllegalStateException ("mesh has no triangles");
+      }
+      tree.setMaxLeafElements (maxLeafElems);
+      tree.setMargin (1e-8*computeRadius());
+      Triangle[] tris = getTriangles();
+      tree.build (tris, tris.length);
+      tree.numberNodes();
+      tree.setBvhToWorld (myMeshToWorld);
+      return tree;
+   }
+
+   /**
+    * Returns the triangle index associated with a leaf element of a
+    * bounding volume hierarchy built for this mesh.
+    *
+    * @param elem leaf element
+    * @return index of the corresponding triangle
+    */
+   public int getTriangleIndex (Boundable elem) {
+      if (!(elem instanceof Triangle) || ((Triangle)elem).myMesh != this) {
+         throw new InternalErrorException (
+            "element "+elem+" is not a triangle of this mesh");
+      }
+      return ((Triangle)elem).myIdx;
+   }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.geometry;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import maspack.geometry.io.*;
+import maspack.geometry.io.MeshWriter.DataFormat;
+import maspack.matrix.*;
+import maspack.render.RenderableUtils;
+import maspack.util.*;
+
+public class CompactTriangleMeshTest extends UnitTest {
+
+   private void checkConversion (PolygonalMesh mesh) {
+      CompactTriangleMesh cmesh = new CompactTriangleMesh (mesh);
+      if (cmesh.numVertices() != mesh.numVertices() ||
+          cmesh.numTriangles() != mesh.numFaces()) {
+         throw new TestException (
+            "compact mesh has "+cmesh.numVertices()+" vertices and "+
+            cmesh.numTriangles()+" triangles, expected "+mesh.numVertices()+
+            " and "+mesh.numFaces());
+      }
+      // normals, colors and texture coordinates are not preserved, so
+      // compare only the vertices and faces
+      PolygonalMesh check = cmesh.toPolygonalMesh();
+      for (int i=0; i<mesh.numVertices(); i++) {
+         checkEquals (
+            "vertex "+i, check.getVertex(i).getPosition(),
+            mesh.getVertex(i).getPosition());
+      }
+      for (int i=0; i<mesh.numFaces(); i++) {
+         if (!ArraySupport.equals (
+                check.getFace(i).getVertexIndices(),
+                mesh.getFace(i).getVertexIndices())) {
+            throw new TestException (
+               "converted face "+i+" differs from original");
+         }
+      }
+      if (!check.getMeshToWorld().equals (mesh.getMeshToWorld())) {
+         throw new TestException ("mesh-to-world transform not preserved");
+      }
+      // check adjacency against the half-edge structure of the mesh
+      ArrayList<Face> faces = mesh.getFaces();
+      for (int t=0; t<faces.size(); t++) {
+         HalfEdge he = faces.get(t).firstHalfEdge();
+         for (int k=0; k<3; k++) {
+            HalfEdge next = he.getNext();
+            int h = 3*t+k;
+            if (cmesh.getTail(h) != he.head.getIndex() ||
+                cmesh.getHead(h) != next.head.getIndex()) {
+               throw new TestException (
+                  "half-edge "+h+" has inconsistent vertices");
+            }
+            // half-edge h runs along 'next' in the polygonal mesh
+            HalfEdge opp = next.opposite;
+            int oppTri = (opp == null ? -1 : opp.getFace().getIndex());
+            if (cmesh.getAdjacentTriangle (t, k) != oppTri) {
+               throw new TestException (
+                  "triangle "+t+", edge "+k+": adjacent triangle is "+
+                  cmesh.getAdjacentTriangle (t, k)+", expected "+oppTri);
+            }
+            he = next;
+         }
+      }
+      if (cmesh.isClosed() != mesh.isClosed()) {
+         throw new TestException (
+            "isClosed() is "+cmesh.isClosed()+", expected "+mesh.isClosed());
+      }
+      double area = mesh.computeArea();
+      checkEquals ("area", cmesh.computeArea(), area, 1e-12*area);
+   }
+
+   private void checkNonManifold() {
+      // three triangles share the edge (0,1): triangles 0 and 2 traverse it
+      // from 0 to 1, and triangle 1 from 1 to 0
+      double[] coords = new double[] {
+         0, 0, 0,  1, 0, 0,  0, 1, 0,  0, -1, 0,  0, 0, 1 };
+      int[] idxs = new int[] {
+         0, 1, 2,   1, 0, 3,   0, 1, 4 };
+      CompactTriangleMesh cmesh = new CompactTriangleMesh (coords, idxs);
+      for (int h=0; h<3*cmesh.numTriangles(); h++) {
+         int opp = cmesh.getOpposite (h);
+         if (opp != -1 &&
+             (cmesh.getOpposite (opp) != h ||
+              cmesh.getTail (opp) != cmesh.getHead (h) ||
+              cmesh.getHead (opp) != cmesh.getTail (h))) {
+            throw new TestException (
+               "half-edge "+h+" has inconsistent opposite "+opp);
+         }
+      }
+      // the first half-edge along (0,1) is paired, the last one is not
+      if (cmesh.getOpposite (0) != 3 || cmesh.getOpposite (6) != -1) {
+         throw new TestException (
+            "non-manifold edge paired as "+cmesh.getOpposite (0)+", "+
+            cmesh.getOpposite (6)+", expected 3, -1");
+      }
+      if (cmesh.isClosed()) {
+         throw new TestException ("non-manifold mesh reported as closed");
+      }
+   }
+
+   private void checkQueries (PolygonalMesh mesh, int npnts) {
+      CompactTriangleMesh cmesh = new CompactTriangleMesh (mesh);
+      BVFeatureQuery query = new BVFeatureQuery();
+      double rad = RenderableUtils.getRadius (mesh);
+
+      Point3d pnt = new Point3d();
+      Point3d near = new Point3d();
+      Point3d nearChk = new Point3d();
+      Vector2d uv = new Vector2d();
+      Vector2d uvChk = new Vector2d();
+      Vector3d dir = new Vector3d();
+      Vector3d duv = new Vector3d();
+      Vector3d duvChk = new Vector3d();
+      for (int i=0; i<npnts; i++) {
+         pnt.setRandom();
+         pnt.scale (2*rad);
+         pnt.add (mesh.getMeshToWorld().p);
+
+         Face face = query.nearestFaceToPoint (nearChk, uvChk, mesh, pnt);
+         int tidx = query.nearestTriangleToPoint (near, uv, cmesh, pnt);
+         if (tidx == -1) {
+            throw new TestException ("no nearest triangle found");
+         }
+         // faces may differ if two are equidistant, so compare distances
+         if (tidx != face.getIndex()) {
+            checkEquals (
+               "nearest distance", near.distance(pnt),
+               nearChk.distance(pnt), 1e-12*rad);
+         }
+         else {
+            checkEquals ("nearest point", near, nearChk, 1e-12*rad);
+            checkEquals ("nearest uv", uv, uvChk, 1e-12);
+         }
+
+         dir.setRandom();
+         face = query.nearestFaceAlongRay (nearChk, duvChk, mesh, pnt, dir);
+         tidx = query.nearestTriangleAlongRay (near, duv, cmesh, pnt, dir);
+         if ((face == null) != (tidx == -1)) {
+            throw new TestException (
+               "ray intersection found by only one of the two queries");
+         }
+         if (face != null) {
+            checkEquals (
+               "ray distance", duv.x, duvChk.x, 1e-12*rad);
+            checkEquals ("ray point", near, nearChk, 1e-12*rad);
+         }
+      }
+   }
+
+   private void write (MeshWriterBase writer, Object mesh)
+      throws IOException {
+      if (mesh instanceof CompactTriangleMesh) {
+         writer.writeMesh ((CompactTriangleMesh)mesh);
+      }
+      else {
+         writer.writeMesh ((MeshBase)mesh);
+      }
+      writer.close();
+   }
+
+   private byte[] writeOff (Object mesh) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      write (new OffWriter (bos), mesh);
+      return bos.toByteArray();
+   }
+
+   private byte[] writePly (Object mesh, DataFormat fmt) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      PlyWriter writer = new PlyWriter (bos);
+      writer.setDataFormat (fmt);
+      writer.setWriteNormals (0);
+      write (writer, mesh);
+      return bos.toByteArray();
+   }
+
+   private String writeStl (Object mesh) throws IOException {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      write (new StlWriter (bos), mesh);
+      // remove facet normals, which may be computed slightly differently
+      StringBuilder sb = new StringBuilder();
+      for (String line : bos.toString().split ("\n")) {
+         if (!line.startsWith ("facet normal")) {
+            sb.append (line);
+            sb.append ('\n');
+         }
+      }
+      return sb.toString();
+   }
+
+   private void checkBytes (String name, byte[] bytes, byte[] check) {
+      if (!java.util.Arrays.equals (bytes, check)) {
+         throw new TestException (
+            name+" output for compact mesh differs from polygonal mesh");
+      }
+   }
+
+   private void checkWriters (PolygonalMesh mesh) throws IOException {
+      CompactTriangleMesh cmesh = new CompactTriangleMesh (mesh);
+      checkBytes ("OFF", writeOff (cmesh), writeOff (mesh));
+      for (DataFormat fmt : DataFormat.values()) {
+         checkBytes ("PLY "+fmt, writePly (cmesh, fmt), writePly (mesh, fmt));
+      }
+      if (!writeStl(cmesh).equals (writeStl(mesh))) {
+         throw new TestException (
+            "STL output for compact mesh differs from polygonal mesh");
+      }
+   }
+
+   public void test() throws IOException {
+      RandomGenerator.setSeed (0x1234);
+
+      PolygonalMesh sphere = MeshFactory.createOctahedralSphere (2.0, 3);
+      PolygonalMesh box = MeshFactory.createBox (1.0, 2.0, 3.0);
+      PolygonalMesh plane = MeshFactory.createPlane (2.0, 3.0, 4, 5);
+      RigidTransform3d X = new RigidTransform3d();
+      X.setRandom();
+      box.setMeshToWorld (X);
+
+      checkConversion (sphere);
+      checkConversion (box);
+      checkConversion (plane);
+      checkNonManifold();
+
+      checkQueries (sphere, 200);
+      checkQueries (box, 200);
+      checkQueries (plane, 200);
+
+      checkWriters (sphere);
+      checkWriters (plane);
+   }
+
+   public static void main (String[] args) {
+      CompactTriangleMeshTest tester = new CompactTriangleMeshTest();
+      tester.runtest();
+   }
+}
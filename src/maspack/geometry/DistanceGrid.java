@@ -18,6 +18,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 
+import maspack.concurrency.ParallelLoop;
 import maspack.matrix.*;
 import maspack.matrix.Vector3d;
 import maspack.matrix.Vector3i;
@@ -159,6 +160,21 @@ public class DistanceGrid implements Renderable, Scannable {
 
    protected static boolean storeQuadCoefs = true;
 
+   /**
+    * Minimum number of grid vertices for which distances computed from
+    * features will be computed in parallel.
+    */
+   protected static int PARALLEL_MIN_VERTICES = 32768;
+
+   // minimum number of vertices processed by each worker during one
+   // wavefront step of a parallel sweep
+   private static final int SWEEP_MIN_CHUNK = 256;
+
+   private static int myDefaultNumThreads =
+      Runtime.getRuntime().availableProcessors();
+
+   protected int myNumThreads = myDefaultNumThreads;
+
    /**
     * Special distance value indicating that a query point is outside the grid.
     */
@@ -1000,6 +1016,58 @@ public class DistanceGrid implements Renderable, Scannable {
       }
    }
 
+   /**
+    * Sets the default number of threads used by new grids to compute
+    * distances from features.
+    *
+    * @param num default number of threads
+    */
+   public static void setDefaultNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Queries the default number of threads used by new grids to compute
+    * distances from features. This is initialized to the number of available
+    * processors.
+    *
+    * @return default number of threads
+    */
+   public static int getDefaultNumThreads() {
+      return myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used by this grid to compute distances from
+    * features. If greater than one, and the grid is sufficiently large, the
+    * distances near the features, and the sweeps that propagate them
+    * throughout the grid, are computed in parallel. The parallel computation
+    * produces the same distances as the serial one.
+    *
+    * @param num number of threads
+    */
+   public void setNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      myNumThreads = num;
+   }
+
+   /**
+    * Queries the number of threads used by this grid to compute distances
+    * from features.
+    *
+    * @return number of threads
+    */
+   public int getNumThreads() {
+      return myNumThreads;
+   }
+
    void calculatePhi (
       List<? extends Feature> features, boolean signed) {
       
@@ -1113,6 +1181,74 @@ public class DistanceGrid implements Renderable, Scannable {
             zIntersectCount[i] = 0;
          }
       }
+      ParallelLoop loop = null;
+      if (myNumThreads > 1 && numv >= PARALLEL_MIN_VERTICES &&
+          canComputeInParallel (features)) {
+         loop = new ParallelLoop ("DistanceGrid", myNumThreads);
+      }
+      try {
+         if (loop != null) {
+            computeNearDistances (
+               loop, phi, closestFeatureIdxs, zIntersectCount, features, maxDist);
+         }
+         else {
+            computeNearDistances (
+               phi, closestFeatureIdxs, zIntersectCount, features, maxDist);
+         }
+
+         // Done all triangles.
+         // Sweep, propagating values throughout the grid volume.
+         for (int pass = 0; pass < 2; pass++) {
+            sweep(loop, phi, +1, +1, +1, closestFeatureIdxs, features);
+            sweep(loop, phi, -1, -1, -1, closestFeatureIdxs, features);
+            sweep(loop, phi, +1, +1, -1, closestFeatureIdxs, features);
+            sweep(loop, phi, -1, -1, +1, closestFeatureIdxs, features);
+            sweep(loop, phi, +1, -1, +1, closestFeatureIdxs, features);
+            sweep(loop, phi, -1, +1, -1, closestFeatureIdxs, features);
+            sweep(loop, phi, +1, -1, -1, closestFeatureIdxs, features);
+            sweep(loop, phi, -1, +1, +1, closestFeatureIdxs, features);
+         }
+      }
+      finally {
+         if (loop != null) {
+            loop.dispose();
+         }
+      }
+
+      if (signed) {
+         // This is a ray-casting implementation to find the sign of each
+         // vertex in the grid.
+         for (int xi = 0; xi < myNx; xi++) {
+            for (int yj = 0; yj < myNy; yj++) {
+               int total_count = 0;
+               //Count the intersections of the x axis
+               for (int zk = 0; zk < myNz; zk++) {
+                  int index = xyzIndicesToVertex (xi, yj, zk);
+                  total_count += zIntersectCount [index];
+                  
+                  // If parity of intersections so far is odd, we are inside the 
+                  // mesh.
+                  if (total_count % 2 == 1) {
+                     phi[index] =- phi[index];
+                  }
+               }
+            }
+         }         
+      }
+   }
+
+   /**
+    * Computes exact distances for the grid vertices near each feature, and,
+    * if <code>zIntersectCount</code> is non-<code>null</code>, counts the
+    * intersections of the features with rays cast along the z axis.
+    */
+   private void computeNearDistances (
+      double[] phi, int[] closestFeatureIdxs, int[] zIntersectCount,
+      Feature[] features, double maxDist) {
+
+      boolean signed = (zIntersectCount != null);
+      int numv = phi.length;
+
       Point3d featPnt    = new Point3d();
       Point3d gridPnt    = new Point3d();
       Vector3i gridMinOld   = new Vector3i();
@@ -1216,42 +1352,178 @@ public class DistanceGrid implements Renderable, Scannable {
             } // y 
          }
       }
+   }
 
-      // Done all triangles.
-      // Sweep, propagating values throughout the grid volume.
-      for (int pass = 0; pass < 2; pass++) {
-         sweep(phi, +1, +1, +1, closestFeatureIdxs, features);
-         sweep(phi, -1, -1, -1, closestFeatureIdxs, features);
-         sweep(phi, +1, +1, -1, closestFeatureIdxs, features);
-         sweep(phi, -1, -1, +1, closestFeatureIdxs, features);
-         sweep(phi, +1, -1, +1, closestFeatureIdxs, features);
-         sweep(phi, -1, +1, -1, closestFeatureIdxs, features);
-         sweep(phi, +1, -1, -1, closestFeatureIdxs, features);
-         sweep(phi, -1, +1, +1, closestFeatureIdxs, features);
+   /**
+    * Returns <code>true</code> if distances to a set of features can be
+    * computed in parallel. This requires that the nearest point computations
+    * of the features do not modify the features, which is not true for
+    * non-triangular faces.
+    */
+   private boolean canComputeInParallel (Feature[] features) {
+      for (Feature feat : features) {
+         if (feat instanceof Face && !((Face)feat).isTriangle()) {
+            return false;
+         }
       }
+      return true;
+   }
 
-      if (signed) {
-         // This is a ray-casting implementation to find the sign of each
-         // vertex in the grid.
-         for (int xi = 0; xi < myNx; xi++) {
-            for (int yj = 0; yj < myNy; yj++) {
-               int total_count = 0;
-               //Count the intersections of the x axis
-               for (int zk = 0; zk < myNz; zk++) {
-                  int index = xyzIndicesToVertex (xi, yj, zk);
-                  total_count += zIntersectCount [index];
-                  
-                  // If parity of intersections so far is odd, we are inside the 
-                  // mesh.
-                  if (total_count % 2 == 1) {
-                     phi[index] =- phi[index];
+   /**
+    * Parallel version of {@link
+    * #computeNearDistances(double[],int[],int[],Feature[],double)}. The
+    * vertex distances are computed by assigning z planes of the grid to
+    * workers, and the ray intersections are counted by assigning y rows of
+    * the grid to workers, so that no two workers update the same vertex.
+    * Since the features are processed in the same order for each vertex, the
+    * results are identical to those of the serial version.
+    */
+   private void computeNearDistances (
+      ParallelLoop loop, final double[] phi, final int[] closestFeatureIdxs,
+      final int[] zIntersectCount, final Feature[] features,
+      final double maxDist) {
+
+      final int numf = features.length;
+      final int nw = loop.numThreads();
+      // vertex bounds of each feature, and z bounds in grid coordinates
+      final int[] bounds = new int[6*numf];
+      final double[] zbounds = new double[2*numf];
+
+      if (zIntersectCount != null) {
+         for (int t=0; t<numf; t++) {
+            if (!(features[t] instanceof Face)) {
+               throw new IllegalArgumentException (
+                  "Signed grid can only be created if all features are Faces");
+            }
+         }
+      }
+
+      loop.run (numf, (worker, lo, hi) -> {
+         Point3d gridPnt = new Point3d();
+         for (int t=lo; t<hi; t++) {
+            Feature feature = features[t];
+            int bidx = 6*t;
+            bounds[bidx  ] = myNx+1;
+            bounds[bidx+1] = myNy+1;
+            bounds[bidx+2] = myNz+1;
+            bounds[bidx+3] = -1;
+            bounds[bidx+4] = -1;
+            bounds[bidx+5] = -1;
+            double maxz = -INF;
+            double minz = INF;
+            for (int i=0; i<feature.numPoints(); i++) {
+               myGridToLocal.inverseTransformPnt (
+                  gridPnt, feature.getPoint(i));
+               updateVertexBounds (bounds, bidx, gridPnt);
+               if (gridPnt.z < minz) {
+                  minz = gridPnt.z;
+               }
+               if (gridPnt.z > maxz) {
+                  maxz = gridPnt.z;
+               }
+            }
+            zbounds[2*t  ] = minz;
+            zbounds[2*t+1] = maxz;
+         }
+      });
+
+      // Each worker handles the z planes congruent to its index modulo the
+      // number of workers, which balances the load when the features are
+      // concentrated in part of the grid.
+      loop.run (nw, (worker, lo, hi) -> {
+         Point3d nearPntLoc = new Point3d();
+         Point3d featPntLoc = new Point3d();
+         for (int w=lo; w<hi; w++) {
+            for (int t=0; t<numf; t++) {
+               Feature feature = features[t];
+               int bidx = 6*t;
+               int zmin = bounds[bidx+2];
+               int zmax = bounds[bidx+5];
+               // first z plane >= zmin assigned to this worker
+               int zk = zmin + ((w - zmin%nw) + nw)%nw;
+               for ( ; zk <= zmax; zk += nw) {
+                  for (int yj = bounds[bidx+1]; yj <= bounds[bidx+4]; yj++) {
+                     for (int xi = bounds[bidx]; xi <= bounds[bidx+3]; xi++) {
+                        featPntLoc.set (xi, yj, zk);
+                        myGridToLocal.transformPnt (featPntLoc, featPntLoc);
+                        feature.nearestPoint (nearPntLoc, featPntLoc);
+                        double distance = featPntLoc.distance (nearPntLoc);
+                        int index = xyzIndicesToVertex (xi, yj, zk);
+                        if (distance < phi[index]) {
+                           phi[index] = distance;
+                           if (closestFeatureIdxs != null) {
+                              closestFeatureIdxs [index] = t;
+                           }
+                        }
+                     }
                   }
                }
             }
-         }         
+         }
+      });
+
+      if (zIntersectCount != null) {
+         // Ray-casts from bottom x-y plane, upwards, counting intersections,
+         // with each worker handling the y rows congruent to its index.
+         loop.run (nw, (worker, lo, hi) -> {
+            Point3d gridPnt = new Point3d();
+            Point3d bot = new Point3d();
+            Point3d top = new Point3d();
+            Point3d ipnt = new Point3d();
+            for (int w=lo; w<hi; w++) {
+               for (int t=0; t<numf; t++) {
+                  Face face = (Face)features[t];
+                  int bidx = 6*t;
+                  double minz = zbounds[2*t];
+                  double maxz = zbounds[2*t+1];
+                  if (maxz < 0) {
+                     continue;
+                  }
+                  int ymin = bounds[bidx+1];
+                  int yj = ymin + ((w - ymin%nw) + nw)%nw;
+                  for ( ; yj <= bounds[bidx+4]; yj += nw) {
+                     for (int xi = bounds[bidx]; xi <= bounds[bidx+3]; xi++) {
+                        bot.set (xi, yj, minz-1);
+                        myGridToLocal.transformPnt (bot, bot);
+                        top.set (xi, yj, maxz+1);
+                        myGridToLocal.transformPnt (top, top);
+                        int res = RobustPreds.intersectSegmentTriangle (
+                           ipnt, bot, top, face, maxDist, /*worldCoords=*/false);
+                        if (res > 0) {
+                           myGridToLocal.inverseTransformPnt (gridPnt, ipnt);
+                           int zInterval =
+                              clip((int)Math.ceil(gridPnt.z), 0, myNz-1);
+                           ++zIntersectCount [
+                              xyzIndicesToVertex (xi, yj, zInterval)];
+                        }
+                     }
+                  }
+               }
+            }
+         });
       }
    }
 
+   /**
+    * Updates the vertex bounds of a feature, stored in <code>bounds</code>
+    * starting at <code>bidx</code>, to include the vertices adjacent to a
+    * feature point given in grid coordinates.
+    */
+   private void updateVertexBounds (int[] bounds, int bidx, Point3d gridPnt) {
+      int lox = clip((int)gridPnt.x, 0, myNx-1);
+      int loy = clip((int)gridPnt.y, 0, myNy-1);
+      int loz = clip((int)gridPnt.z, 0, myNz-1);
+      int hix = clip((int)(gridPnt.x+1), 0, myNx-1);
+      int hiy = clip((int)(gridPnt.y+1), 0, myNy-1);
+      int hiz = clip((int)(gridPnt.z+1), 0, myNz-1);
+      bounds[bidx  ] = Math.min (bounds[bidx  ], lox);
+      bounds[bidx+1] = Math.min (bounds[bidx+1], loy);
+      bounds[bidx+2] = Math.min (bounds[bidx+2], loz);
+      bounds[bidx+3] = Math.max (bounds[bidx+3], hix);
+      bounds[bidx+4] = Math.max (bounds[bidx+4], hiy);
+      bounds[bidx+5] = Math.max (bounds[bidx+5], hiz);
+   }
+
    /** 
     * Calculates the normal at a vertex on the grid, using numeric
     * differentiation.
@@ -1863,6 +2135,16 @@ public class DistanceGrid implements Renderable, Scannable {
 
       Vector3d pgrid = new Vector3d();
       quadGridToX.inverseTransformPnt (pgrid, ploc);
+      return getQuadCellCoords (coords, vidx, pgrid);
+   }
+
+   /**
+    * Version of {@link #getQuadCellCoords(Vector3d,Vector3i,Point3d,
+    * VectorTransformer3d)} for a point <code>pgrid</code> that is already
+    * in quad grid coordinates.
+    */
+   private int getQuadCellCoords (
+      Vector3d coords, Vector3i vidx, Vector3d pgrid) {
 
       int xi, yj, zk;
 
@@ -2263,6 +2545,86 @@ public class DistanceGrid implements Renderable, Scannable {
       }
    }
 
+   /**
+    * Sweeps across the entire grid, propagating distance values, using
+    * a parallel loop if <code>loop</code> is non-<code>null</code>.
+    */
+   private void sweep (
+      ParallelLoop loop, double[] phi, int dx, int dy, int dz,
+      int[] featIdxs, Feature[] features) {
+      if (loop != null) {
+         sweepParallel (loop, phi, dx, dy, dz, featIdxs, features);
+      }
+      else {
+         sweep (phi, dx, dy, dz, featIdxs, features);
+      }
+   }
+
+   /**
+    * Parallel version of {@link #sweep(double[],int,int,int,int[],Feature[])
+    * sweep}. Each vertex in a sweep depends only on neighbours that precede
+    * it along all three sweep directions. Vertices are therefore processed
+    * in wavefronts, consisting of the diagonal planes on which the sum of the
+    * vertex indices (measured along the sweep directions) is constant, with
+    * the vertices of each wavefront being processed in parallel. This
+    * produces the same result as the serial sweep.
+    */
+   protected void sweepParallel (
+      ParallelLoop loop, final double[] phi, final int dx, final int dy,
+      final int dz, final int[] featIdxs, final Feature[] features) {
+
+      // sweep index ranges are [0, mx], [0, my], [0, mz]
+      final int mx = myNx-2;
+      final int my = myNy-2;
+      final int mz = myNz-2;
+      if (mx < 0 || my < 0 || mz < 0) {
+         return;
+      }
+      int nw = loop.numThreads();
+      final Point3d[] pcs = new Point3d[nw];
+      final Point3d[] p1s = new Point3d[nw];
+      for (int w=0; w<nw; w++) {
+         pcs[w] = new Point3d();
+         p1s[w] = new Point3d();
+      }
+      // minimum number of z planes per worker, based on the maximum
+      // number of vertices in each wavefront row
+      int minChunk = Math.max (1, SWEEP_MIN_CHUNK/(Math.min(mx,my)+1));
+      for (int level=0; level<=mx+my+mz; level++) {
+         final int lev = level;
+         final int uz0 = Math.max (0, level-mx-my);
+         int uz1 = Math.min (mz, level);
+         loop.run (uz1-uz0+1, minChunk, (worker, lo, hi) -> {
+            Point3d pc = pcs[worker];
+            Point3d p1 = p1s[worker];
+            for (int uz=uz0+lo; uz<uz0+hi; uz++) {
+               int z = (dz > 0 ? uz+1 : mz-uz);
+               int rem = lev-uz;
+               int uy1 = Math.min (my, rem);
+               for (int uy=Math.max(0,rem-mx); uy<=uy1; uy++) {
+                  int y = (dy > 0 ? uy+1 : my-uy);
+                  int ux = rem-uy;
+                  int x = (dx > 0 ? ux+1 : mx-ux);
+                  checkNeighbouringVertex (
+                     phi, x, y, z, x-dx,    y   , z, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z,    x, y-dy   , z, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z, x-dx, y-dy   , z, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z,    x,    y, z-dz, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z, x-dx,    y, z-dz, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z,    x, y-dy, z-dz, pc, p1, features, featIdxs);
+                  checkNeighbouringVertex (
+                     phi, x, y, z, x-dx, y-dy, z-dz, pc, p1, features, featIdxs);
+               }
+            }
+         });
+      }
+   }
+
    /**
     * Creates a new render object for rendering the points and normals
     * of this grid.
@@ -3737,6 +4099,111 @@ public class DistanceGrid implements Renderable, Scannable {
       return computeQuadDistance (a, dx, dy, dz);
    }
 
+   /**
+    * Batch version of {@link #getQuadDistanceAndGradient}, which computes
+    * the quadratically interpolated distance, gradient and gradient
+    * derivative for a set of points. The points and results are stored in
+    * packed arrays, which avoids the per-point object allocation and method
+    * overhead of the single-point method. If <code>TLW</code> is
+    * non-<code>null</code>, the points are given in a world frame and are
+    * transformed into local coordinates using its inverse, and the
+    * gradients and their derivatives are rotated back into world
+    * coordinates. Otherwise, points and results are in local coordinates.
+    * For points that lie outside the grid volume, the distance is set to
+    * {@link #OUTSIDE_GRID} and the gradient values are left unchanged.
+    *
+    * @param dists returns the interpolated distance for each point
+    * @param grads if non-<code>null</code>, returns the gradients, three
+    * values per point
+    * @param dgrads if non-<code>null</code>, returns the derivatives of the
+    * gradients, as nine values per point in row-major order
+    * @param pnts coordinates of the points, three values per point
+    * @param num number of points
+    * @param TLW if non-<code>null</code>, transform from local to world
+    * coordinates
+    */
+   public void getQuadDistancesAndGradients (
+      double[] dists, double[] grads, double[] dgrads,
+      double[] pnts, int num, RigidTransform3d TLW) {
+
+      VectorTransformer3d quadGridToX = myQuadGridToLocal;
+      Point3d ploc = new Point3d();
+      Vector3d pgrid = new Vector3d();
+      Vector3d coords = new Vector3d();
+      Vector3d grad = new Vector3d();
+      Vector3d tmp = new Vector3d();
+      Matrix3d dgrad = (dgrads != null ? new Matrix3d() : null);
+      Vector3i vidx = null;
+      double[] acomp = null;
+      if (storeQuadCoefs) {
+         updateQuadCoefsIfNecessary();
+      }
+      else {
+         vidx = new Vector3i();
+         acomp = new double[10];
+      }
+      for (int k=0; k<num; k++) {
+         int k3 = 3*k;
+         if (TLW != null) {
+            // inverse rigid transform, done inline to avoid temporaries
+            RotationMatrix3d R = TLW.R;
+            double x = pnts[k3  ] - TLW.p.x;
+            double y = pnts[k3+1] - TLW.p.y;
+            double z = pnts[k3+2] - TLW.p.z;
+            ploc.x = R.m00*x + R.m10*y + R.m20*z;
+            ploc.y = R.m01*x + R.m11*y + R.m21*z;
+            ploc.z = R.m02*x + R.m12*y + R.m22*z;
+         }
+         else {
+            ploc.set (pnts[k3], pnts[k3+1], pnts[k3+2]);
+         }
+         quadGridToX.inverseTransformPnt (pgrid, ploc);
+         int voff = getQuadCellCoords (coords, vidx, pgrid);
+         if (voff == -1) {
+            dists[k] = OUTSIDE_GRID;
+            continue;
+         }
+         double dx = coords.x;
+         double dy = coords.y;
+         double dz = coords.z;
+         double[] a;
+         if (storeQuadCoefs) {
+            a = myQuadCoefs[6*voff + TetID.findSubTetIdx (dx, dy, dz)];
+         }
+         else {
+            a = acomp;
+            computeQuadCoefs (
+               a, new TetDesc (vidx, TetID.findSubTet (dx, dy, dz)));
+         }
+         if (grads != null) {
+            computeQuadGradient (grad, a, dx, dy, dz, quadGridToX);
+            if (TLW != null) {
+               grad.transform (TLW.R);
+            }
+            grads[k3  ] = grad.x;
+            grads[k3+1] = grad.y;
+            grads[k3+2] = grad.z;
+         }
+         if (dgrads != null) {
+            computeQuadHessian (dgrad, a, quadGridToX, tmp);
+            if (TLW != null) {
+               dgrad.transform (TLW.R);
+            }
+            int k9 = 9*k;
+            dgrads[k9  ] = dgrad.m00;
+            dgrads[k9+1] = dgrad.m01;
+            dgrads[k9+2] = dgrad.m02;
+            dgrads[k9+3] = dgrad.m10;
+            dgrads[k9+4] = dgrad.m11;
+            dgrads[k9+5] = dgrad.m12;
+            dgrads[k9+6] = dgrad.m20;
+            dgrads[k9+7] = dgrad.m21;
+            dgrads[k9+8] = dgrad.m22;
+         }
+         dists[k] = computeQuadDistance (a, dx, dy, dz);
+      }
+   }
+
    /** 
     * Calculates the distance and gradient at an arbitrary point in
     * world coordinates using quadratic interpolation, as described
@@ -3862,6 +4329,12 @@ public class DistanceGrid implements Renderable, Scannable {
 
    void computeQuadHessian (
       Matrix3d dgrad, double[] a, VectorTransformer3d quadGridToX) {
+      computeQuadHessian (dgrad, a, quadGridToX, new Vector3d());
+   }
+
+   private void computeQuadHessian (
+      Matrix3d dgrad, double[] a, VectorTransformer3d quadGridToX,
+      Vector3d tmp) {
 
       // Hessian is computed in cell coordinates and converted to
       // local coordinates using
@@ -3880,8 +4353,6 @@ public class DistanceGrid implements Renderable, Scannable {
       //   d c^2    [                  ]
       //            [  a4    a3   2 a2 ]
 
-      Vector3d tmp = new Vector3d();
-
       // compute from right to left:
 
       // derivative of grad x
@@ -3959,6 +4430,20 @@ public class DistanceGrid implements Renderable, Scannable {
       return calc.findQuadSurfaceTangent (pt, p0, pa, nrm);
    }
 
+   /**
+    * Computes the data used for quadratic interpolation, including the
+    * tables used by {@link #findQuadSurfaceTangent findQuadSurfaceTangent()},
+    * if it has not already been computed. Since this data is otherwise
+    * computed on demand, this method should be called before the grid is
+    * queried by several threads at once.
+    */
+   public void updateQuadDataIfNecessary() {
+      if (storeQuadCoefs) {
+         updateQuadCoefsIfNecessary();
+      }
+      new DistanceGridSurfCalc(this).createTablesIfNecessary();
+   }
+
    /**
     * Experimental method. Find the intersection point <code>pi</code> between
     * the quadratic zero surface and a ray <code>(p0, pa)</code> lying in the
@@ -478,6 +478,19 @@ public class DistanceGridSurfCalc {
       }
    }
 
+   /**
+    * Creates the connectivity and barycentric tables shared by all
+    * instances, if they have not already been created.
+    */
+   void createTablesIfNecessary() {
+      synchronized (DistanceGridSurfCalc.class) {
+         createConnectivityIfNecessary();
+         if (myTetBarycentricMats == null) {
+            createTetBarycentricMats();
+         }
+      }
+   }
+
    void printConnectivity() {
       
       System.out.println ("Nodes:");
@@ -1,6 +1,7 @@
 package maspack.geometry;
 
 import java.io.*;
+import java.util.Arrays;
 
 import maspack.matrix.*;
 import maspack.util.*;
@@ -367,6 +368,78 @@ public class DistanceGridTest extends UnitTest {
       return gchk;
    }
 
+   /**
+    * Checks that getQuadDistancesAndGradients() gives the same results as
+    * getQuadDistanceAndGradient(), for points in both local and world
+    * coordinates. Some of the points lie outside the grid.
+    */
+   private void testBatchQuadQueries (
+      DistanceGrid grid, RigidTransform3d TLW) {
+
+      Vector3d widths = new Vector3d();
+      Vector3d center = new Vector3d();
+      grid.getWidths (widths);
+      grid.getCenter (center);
+
+      int num = 200;
+      double[] pnts = new double[3*num];
+      double[] wpnts = new double[3*num];
+      for (int k=0; k<num; k++) {
+         Point3d q = new Point3d (
+            RandomGenerator.nextDouble (-0.1, 1.1)*widths.x,
+            RandomGenerator.nextDouble (-0.1, 1.1)*widths.y,
+            RandomGenerator.nextDouble (-0.1, 1.1)*widths.z);
+         q.add (center);
+         q.scaledAdd (-0.5, widths);
+         pnts[3*k  ] = q.x;
+         pnts[3*k+1] = q.y;
+         pnts[3*k+2] = q.z;
+         q.transform (TLW);
+         wpnts[3*k  ] = q.x;
+         wpnts[3*k+1] = q.y;
+         wpnts[3*k+2] = q.z;
+      }
+      double[] dists = new double[num];
+      double[] grads = new double[3*num];
+      double[] dgrads = new double[9*num];
+      double[] wdists = new double[num];
+      double[] wgrads = new double[3*num];
+      double[] wdgrads = new double[9*num];
+      grid.getQuadDistancesAndGradients (
+         dists, grads, dgrads, pnts, num, null);
+      grid.getQuadDistancesAndGradients (
+         wdists, wgrads, wdgrads, wpnts, num, TLW);
+
+      for (int k=0; k<num; k++) {
+         Point3d q = new Point3d (pnts[3*k], pnts[3*k+1], pnts[3*k+2]);
+         Vector3d grad = new Vector3d();
+         Matrix3d dgrad = new Matrix3d();
+         double d = grid.getQuadDistanceAndGradient (grad, dgrad, q);
+         checkEquals ("batch quad distance", dists[k], d, 0);
+         if (d == DistanceGrid.OUTSIDE_GRID) {
+            checkEquals ("batch world quad distance", wdists[k], d, 0);
+            continue;
+         }
+         checkEquals ("batch world quad distance", wdists[k], d, 1e-12);
+         Vector3d gchk = new Vector3d();
+         Matrix3d Dgchk = new Matrix3d();
+         gchk.set (grads, 3*k);
+         Dgchk.set (Arrays.copyOfRange (dgrads, 9*k, 9*k+9));
+         checkEquals ("batch quad gradient", gchk, grad, 0);
+         checkEquals ("batch quad gradient derivative", Dgchk, dgrad, 0);
+
+         grad.transform (TLW.R);
+         dgrad.transform (TLW.R);
+         gchk.set (wgrads, 3*k);
+         Dgchk.set (Arrays.copyOfRange (wdgrads, 9*k, 9*k+9));
+         checkEquals (
+            "batch world quad gradient", gchk, grad, grad.norm()*1e-12);
+         checkEquals (
+            "batch world quad gradient derivative",
+            Dgchk, dgrad, dgrad.frobeniusNorm()*1e-12);
+      }
+   }
+
    private void testScanWrite (DistanceGrid grid) {
       StringWriter sw = new StringWriter();
       IndentingPrintWriter pw = new IndentingPrintWriter (sw);
@@ -511,6 +584,35 @@ public class DistanceGridTest extends UnitTest {
 
    }
 
+   /**
+    * Checks that distances computed in parallel are identical to those
+    * computed serially.
+    */
+   private void testParallelBuild (
+      PolygonalMesh mesh, int maxRes, boolean signed) {
+
+      DistanceGrid serial = new DistanceGrid (new Vector3i (1, 1, 1));
+      serial.setNumThreads (1);
+      serial.computeFromFeatures (mesh.getFaces(), 0.1, null, maxRes, signed);
+      for (int nthreads : new int[] { 2, 3, 4 }) {
+         DistanceGrid grid = new DistanceGrid (new Vector3i (1, 1, 1));
+         grid.setNumThreads (nthreads);
+         grid.computeFromFeatures (
+            mesh.getFaces(), 0.1, null, maxRes, signed);
+         if (!java.util.Arrays.equals (grid.myPhi, serial.myPhi)) {
+            throw new TestException (
+               "distances computed with "+nthreads+
+               " threads differ from serial computation");
+         }
+         if (!java.util.Arrays.equals (
+                grid.myClosestFeatureIdxs, serial.myClosestFeatureIdxs)) {
+            throw new TestException (
+               "nearest features computed with "+nthreads+
+               " threads differ from serial computation");
+         }
+      }
+   }
+
    public void test() {
       double EPS = 1e-14;
 
@@ -526,6 +628,9 @@ public class DistanceGridTest extends UnitTest {
 
       torusT.transform(TGL);
 
+      testParallelBuild (torusT, 64, /*signed=*/false);
+      testParallelBuild (torusT, 64, /*signed=*/true);
+
       Vector3i resolution = new Vector3i (20, 20, 10);
 
       DistanceGrid grid =
@@ -712,7 +817,8 @@ public class DistanceGridTest extends UnitTest {
       }
 
       testScanWrite (gridT);
-
+      testBatchQuadQueries (grid, TLW);
+      testBatchQuadQueries (gridT, TLW);
    }
 
    public static void main (String[] args) {
@@ -0,0 +1,471 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.geometry;
+
+import java.util.ArrayList;
+
+import maspack.matrix.*;
+
+/**
+ * Axis-aligned bounding box hierarchy whose nodes are stored in flat arrays
+ * instead of as separate {@link BVNode} objects. Nodes are identified by
+ * their index in depth-first order, so that the first child of an internal
+ * node <code>i</code> is <code>i+1</code>, and the bounds of node
+ * <code>i</code> are stored in a packed array at locations
+ * <code>6*i</code> (minimum x, y, z) through <code>6*i+5</code> (maximum x,
+ * y, z). Each node also stores a skip index giving the first node after its
+ * subtree, which is also the index of its next sibling, if any.
+ *
+ * <p>This layout allows tree traversals, and in particular the
+ * tree-against-tree traversals used for collision detection, to be done
+ * without chasing pointers. {@link #intersectTree(FlatAABBTree,PairCallback)}
+ * reports overlapping leaf pairs to a callback without allocating storage.
+ *
+ * <p>The tree can be used anywhere a {@link BVTree} is expected. Methods
+ * which require node objects, such as {@link #getRoot}, use a hierarchy of
+ * {@link AABB} nodes that mirrors the flat arrays and is created and updated
+ * on demand.
+ */
+public class FlatAABBTree extends BVTree {
+
+   /**
+    * Called by {@link FlatAABBTree#intersectTree(FlatAABBTree,PairCallback)}
+    * for each pair of overlapping leaf nodes.
+    */
+   public interface PairCallback {
+      /**
+       * Processes a pair of overlapping leaf nodes.
+       *
+       * @param node0 index of the leaf node in the first tree
+       * @param node1 index of the leaf node in the second tree
+       */
+      public void processPair (int node0, int node1);
+   }
+
+   protected int myNumNodes;
+   // minimum and maximum bounds for each node, 6 values per node
+   protected double[] myBounds;
+   // for each node, index of the first node following its subtree
+   protected int[] mySkip;
+   // for each node, its elements if it is a leaf, or null otherwise
+   protected Boundable[][] myLeafElems;
+
+   // node objects mirroring the flat tree, created on demand
+   private AABB[] myNodes;
+   private boolean myNodesValid = false;
+
+   public FlatAABBTree () {
+   }
+
+   public FlatAABBTree (MeshBase mesh, int maxLeafElems, double margin) {
+      setMaxLeafElementsForMesh (mesh, maxLeafElems);
+      setMarginForMesh (mesh, margin);
+      build (mesh);
+   }
+
+   public FlatAABBTree (MeshBase mesh, int maxLeafElems) {
+      this (mesh, maxLeafElems, -1);
+   }
+
+   public FlatAABBTree (MeshBase mesh) {
+      this (mesh, 2, -1);
+   }
+
+   /**
+    * Creates a flat tree with the same structure, bounds, margin and leaf
+    * elements as an existing AABB tree.
+    *
+    * @param tree tree to copy
+    */
+   public FlatAABBTree (AABBTree tree) {
+      setMaxLeafElements (tree.getMaxLeafElements());
+      setMargin (tree.getMargin());
+      setBvhToWorld (tree.getBvhToWorld());
+      flatten (tree.getRoot());
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>The tree is built by the same method as {@link AABBTree}, and
+    * so has the same structure.
+    */
+   public void build (Boundable[] elems, int num) {
+      AABBTree tree = new AABBTree();
+      tree.setMaxLeafElements (myMaxLeafElements);
+      tree.setMargin (myMargin);
+      tree.build (elems, num);
+      flatten (tree.getRoot());
+   }
+
+   private void flatten (AABB root) {
+      myNumNodes = (root != null ? numNodes (root) : 0);
+      myBounds = new double[6*myNumNodes];
+      mySkip = new int[myNumNodes];
+      myLeafElems = new Boundable[myNumNodes][];
+      if (root != null) {
+         flattenRecursively (root, 0);
+      }
+      myNodes = null;
+      myNodesValid = false;
+   }
+
+   private int flattenRecursively (AABB node, int idx) {
+      int i = idx++;
+      setBounds (i, node.myMin, node.myMax);
+      if (node.isLeaf()) {
+         myLeafElems[i] = node.getElements();
+      }
+      else {
+         for (BVNode c=node.myFirstChild; c!=null; c=c.myNext) {
+            idx = flattenRecursively ((AABB)c, idx);
+         }
+      }
+      mySkip[i] = idx;
+      return idx;
+   }
+
+   private void setBounds (int node, Point3d min, Point3d max) {
+      int k = 6*node;
+      myBounds[k++] = min.x;
+      myBounds[k++] = min.y;
+      myBounds[k++] = min.z;
+      myBounds[k++] = max.x;
+      myBounds[k++] = max.y;
+      myBounds[k  ] = max.z;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int numNodes() {
+      return myNumNodes;
+   }
+
+   /**
+    * Returns true if a specified node is a leaf node.
+    *
+    * @param node node index
+    * @return true if the node is a leaf
+    */
+   public boolean isLeaf (int node) {
+      return myLeafElems[node] != null;
+   }
+
+   /**
+    * Returns the elements contained by a specified leaf node, or
+    * <code>null</code> if the node is not a leaf.
+    *
+    * @param node node index
+    * @return elements contained by the node
+    */
+   public Boundable[] getElements (int node) {
+      return myLeafElems[node];
+   }
+
+   /**
+    * Returns the index of the first node following the subtree of a
+    * specified node. The children of an internal node <code>i</code> can
+    * therefore be traversed using
+    * <pre>
+    * for (int c=i+1; c&lt;tree.getSkipIndex(i); c=tree.getSkipIndex(c)) {
+    *    ...
+    * }
+    * </pre>
+    *
+    * @param node node index
+    * @return index of the node following the node's subtree
+    */
+   public int getSkipIndex (int node) {
+      return mySkip[node];
+   }
+
+   /**
+    * Returns the minimum and maximum bounds of a specified node.
+    *
+    * @param min returns the minimum bounds
+    * @param max returns the maximum bounds
+    * @param node node index
+    */
+   public void getBounds (Vector3d min, Vector3d max, int node) {
+      int k = 6*node;
+      min.set (myBounds[k], myBounds[k+1], myBounds[k+2]);
+      max.set (myBounds[k+3], myBounds[k+4], myBounds[k+5]);
+   }
+
+   /**
+    * Returns the distance of a point to a specified node, or 0 if the point
+    * is on or inside it.
+    *
+    * @param node node index
+    * @param pnt point to compute distance for (tree coordinates)
+    * @return distance from the point to the node
+    */
+   public double distanceToPoint (int node, Point3d pnt) {
+      double[] b = myBounds;
+      int k = 6*node;
+      double dx, dy, dz;
+      if ((dx = b[k  ]-pnt.x) < 0 && (dx = pnt.x-b[k+3]) < 0) {
+         dx = 0;
+      }
+      if ((dy = b[k+1]-pnt.y) < 0 && (dy = pnt.y-b[k+4]) < 0) {
+         dy = 0;
+      }
+      if ((dz = b[k+2]-pnt.z) < 0 && (dz = pnt.z-b[k+5]) < 0) {
+         dz = 0;
+      }
+      return Math.sqrt (dx*dx + dy*dy + dz*dz);
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>The bounds are refit by a single reverse pass through the node
+    * arrays, in which each node's children are visited before the node
+    * itself.
+    */
+   public void update() {
+      double[] b = myBounds;
+      double margin = myMargin;
+      Point3d min = new Point3d();
+      Point3d max = new Point3d();
+      for (int i=myNumNodes-1; i>=0; i--) {
+         int k = 6*i;
+         Boundable[] elems = myLeafElems[i];
+         if (elems != null) {
+            min.set (INF, INF, INF);
+            max.set (-INF, -INF, -INF);
+            for (int j=0; j<elems.length; j++) {
+               elems[j].updateBounds (min, max);
+            }
+            b[k  ] = min.x-margin;
+            b[k+1] = min.y-margin;
+            b[k+2] = min.z-margin;
+            b[k+3] = max.x+margin;
+            b[k+4] = max.y+margin;
+            b[k+5] = max.z+margin;
+         }
+         else {
+            double minx = INF, miny = INF, minz = INF;
+            double maxx = -INF, maxy = -INF, maxz = -INF;
+            for (int c=i+1; c<mySkip[i]; c=mySkip[c]) {
+               int kc = 6*c;
+               if (b[kc  ] < minx) minx = b[kc  ];
+               if (b[kc+1] < miny) miny = b[kc+1];
+               if (b[kc+2] < minz) minz = b[kc+2];
+               if (b[kc+3] > maxx) maxx = b[kc+3];
+               if (b[kc+4] > maxy) maxy = b[kc+4];
+               if (b[kc+5] > maxz) maxz = b[kc+5];
+            }
+            b[k  ] = minx-margin;
+            b[k+1] = miny-margin;
+            b[k+2] = minz-margin;
+            b[k+3] = maxx+margin;
+            b[k+4] = maxy+margin;
+            b[k+5] = maxz+margin;
+         }
+      }
+      myNodesValid = false;
+   }
+
+   /**
+    * Returns the node object mirroring a specified node, creating or
+    * updating the mirror hierarchy if necessary.
+    *
+    * @param node node index
+    * @return corresponding node object
+    */
+   public synchronized AABB getNode (int node) {
+      if (myNodes == null) {
+         myNodes = new AABB[myNumNodes];
+         for (int i=0; i<myNumNodes; i++) {
+            AABB aabb = new AABB();
+            aabb.setNumber (i);
+            aabb.setElements (myLeafElems[i]);
+            myNodes[i] = aabb;
+         }
+         for (int i=0; i<myNumNodes; i++) {
+            for (int c=i+1; c<mySkip[i]; c=mySkip[c]) {
+               myNodes[i].addChild (myNodes[c]);
+            }
+         }
+         myNodesValid = false;
+      }
+      if (!myNodesValid) {
+         for (int i=0; i<myNumNodes; i++) {
+            int k = 6*i;
+            AABB aabb = myNodes[i];
+            aabb.myMin.set (myBounds[k  ], myBounds[k+1], myBounds[k+2]);
+            aabb.myMax.set (myBounds[k+3], myBounds[k+4], myBounds[k+5]);
+         }
+         myNodesValid = true;
+      }
+      return myNodes[node];
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>The returned node belongs to a hierarchy of node objects which
+    * mirrors the flat arrays and is updated on demand.
+    */
+   public AABB getRoot() {
+      return (myNumNodes > 0 ? getNode (0) : null);
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * <p>If <code>bvt</code> is also a <code>FlatAABBTree</code>, the
+    * traversal is done using the flat arrays, and only the leaf nodes are
+    * taken from the mirror hierarchy.
+    */
+   public void intersectTree (
+      final ArrayList<BVNode> nodes1, final ArrayList<BVNode> nodes2,
+      BVTree bvt, RigidTransform3d X21) {
+
+      if (bvt instanceof FlatAABBTree) {
+         final FlatAABBTree tree2 = (FlatAABBTree)bvt;
+         intersectTree (tree2, X21, (node1, node2) -> {
+               nodes1.add (getNode (node1));
+               nodes2.add (tree2.getNode (node2));
+            });
+      }
+      else {
+         super.intersectTree (nodes1, nodes2, bvt, X21);
+      }
+   }
+
+   /**
+    * Finds all pairs of overlapping leaf nodes between this tree and
+    * another flat tree, and passes them to a callback. The relative
+    * coordinate frames of each tree (as specified by {@link #getBvhToWorld})
+    * are taken into account. The pairs are found in the same order as by
+    * {@link BVTree#intersectTree(ArrayList,ArrayList,BVTree)}.
+    *
+    * @param tree2 other tree to intersect with
+    * @param callback called for each overlapping leaf pair
+    */
+   public void intersectTree (FlatAABBTree tree2, PairCallback callback) {
+      RigidTransform3d X21 = new RigidTransform3d();
+      X21.mulInverseLeft (myBvhToWorld, tree2.myBvhToWorld);
+      intersectTree (tree2, X21, callback);
+   }
+
+   /**
+    * Finds all pairs of overlapping leaf nodes between this tree and
+    * another flat tree, and passes them to a callback. The relative
+    * coordinate transform between the trees is specified explicitly.
+    *
+    * @param tree2 other tree to intersect with
+    * @param X21 transform from the coordinate frame of the other tree to
+    * that of this tree.
+    * @param callback called for each overlapping leaf pair
+    */
+   public void intersectTree (
+      FlatAABBTree tree2, RigidTransform3d X21, PairCallback callback) {
+      if (myNumNodes > 0 && tree2.myNumNodes > 0) {
+         new PairTraversal (this, tree2, X21, callback).intersect (0, 0);
+      }
+   }
+
+   /**
+    * Traverses two flat trees to find overlapping leaf pairs. Holds the
+    * workspace for the box tests, so that the traversal itself does not
+    * allocate storage.
+    */
+   private static class PairTraversal {
+
+      double[] myBounds1;
+      int[] mySkip1;
+      Boundable[][] myLeafElems1;
+      double[] myBounds2;
+      int[] mySkip2;
+      Boundable[][] myLeafElems2;
+      RigidTransform3d myX21;
+      PairCallback myCallback;
+
+      Vector3d myHw1 = new Vector3d();
+      Vector3d myHw2 = new Vector3d();
+      Vector3d myPd = new Vector3d();
+      Vector3d myC2 = new Vector3d();
+
+      PairTraversal (
+         FlatAABBTree tree1, FlatAABBTree tree2,
+         RigidTransform3d X21, PairCallback callback) {
+         myBounds1 = tree1.myBounds;
+         mySkip1 = tree1.mySkip;
+         myLeafElems1 = tree1.myLeafElems;
+         myBounds2 = tree2.myBounds;
+         mySkip2 = tree2.mySkip;
+         myLeafElems2 = tree2.myLeafElems;
+         myX21 = X21;
+         myCallback = callback;
+      }
+
+      boolean isDisjoint (int node1, int node2) {
+         double[] b1 = myBounds1;
+         double[] b2 = myBounds2;
+         int k1 = 6*node1;
+         int k2 = 6*node2;
+         if (myX21 == RigidTransform3d.IDENTITY) {
+            return (
+               b1[k1+3] < b2[k2  ] || b1[k1  ] > b2[k2+3] ||
+               b1[k1+4] < b2[k2+1] || b1[k1+1] > b2[k2+4] ||
+               b1[k1+5] < b2[k2+2] || b1[k1+2] > b2[k2+5]);
+         }
+         else {
+            myHw1.set (
+               (b1[k1+3]-b1[k1  ])/2,
+               (b1[k1+4]-b1[k1+1])/2,
+               (b1[k1+5]-b1[k1+2])/2);
+            myHw2.set (
+               (b2[k2+3]-b2[k2  ])/2,
+               (b2[k2+4]-b2[k2+1])/2,
+               (b2[k2+5]-b2[k2+2])/2);
+            myC2.set (
+               (b2[k2+3]+b2[k2  ])/2,
+               (b2[k2+4]+b2[k2+1])/2,
+               (b2[k2+5]+b2[k2+2])/2);
+            myPd.transform (myX21.R, myC2);
+            myPd.add (myX21.p);
+            myPd.x -= (b1[k1+3]+b1[k1  ])/2;
+            myPd.y -= (b1[k1+4]+b1[k1+1])/2;
+            myPd.z -= (b1[k1+5]+b1[k1+2])/2;
+            return BVBoxNodeTester.isDisjoint (myHw1, myHw2, myX21.R, myPd);
+         }
+      }
+
+      void intersect (int node1, int node2) {
+         if (isDisjoint (node1, node2)) {
+            return;
+         }
+         boolean leaf1 = (myLeafElems1[node1] != null);
+         boolean leaf2 = (myLeafElems2[node2] != null);
+         if (leaf1 && leaf2) {
+            myCallback.processPair (node1, node2);
+         }
+         else if (leaf1) {
+            for (int c2=node2+1; c2<mySkip2[node2]; c2=mySkip2[c2]) {
+               intersect (node1, c2);
+            }
+         }
+         else if (leaf2) {
+            for (int c1=node1+1; c1<mySkip1[node1]; c1=mySkip1[c1]) {
+               intersect (c1, node2);
+            }
+         }
+         else {
+            for (int c1=node1+1; c1<mySkip1[node1]; c1=mySkip1[c1]) {
+               for (int c2=node2+1; c2<mySkip2[node2]; c2=mySkip2[c2]) {
+                  intersect (c1, c2);
+               }
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import maspack.collision.IntersectionContour;
+import maspack.collision.SurfaceMeshIntersector;
+import maspack.matrix.*;
+import maspack.util.*;
+
+public class FlatAABBTreeTest extends UnitTest {
+
+   private int checkEqualNodes (FlatAABBTree flat, AABB node, int idx) {
+      Point3d min = new Point3d();
+      Point3d max = new Point3d();
+      flat.getBounds (min, max, idx);
+      if (!min.equals (node.myMin) || !max.equals (node.myMax)) {
+         throw new TestException ("bounds differ for node "+idx);
+      }
+      if (node.isLeaf() != flat.isLeaf (idx) ||
+          (node.isLeaf() &&
+           !Arrays.equals (node.getElements(), flat.getElements (idx)))) {
+         throw new TestException ("leaf structure differs for node "+idx);
+      }
+      int c = idx+1;
+      for (BVNode child=node.getFirstChild(); child!=null;
+           child=child.getNext()) {
+         if (c >= flat.getSkipIndex (idx)) {
+            throw new TestException ("missing children for node "+idx);
+         }
+         if (checkEqualNodes (flat, (AABB)child, c) != flat.getSkipIndex(c)) {
+            throw new TestException ("incorrect skip index for node "+c);
+         }
+         c = flat.getSkipIndex (c);
+      }
+      if (c != flat.getSkipIndex (idx)) {
+         throw new TestException ("extra children for node "+idx);
+      }
+      return flat.getSkipIndex (idx);
+   }
+
+   private void checkEqualTrees (FlatAABBTree flat, AABBTree tree) {
+      if (flat.numNodes() != tree.numNodes()) {
+         throw new TestException (
+            "flat tree has "+flat.numNodes()+" nodes, expected "+
+            tree.numNodes());
+      }
+      checkEqualNodes (flat, tree.getRoot(), 0);
+      // mirror nodes should match as well
+      checkEqualNodes (flat, flat.getRoot(), 0);
+   }
+
+   private void perturbVertices (PolygonalMesh mesh, double mag) {
+      Vector3d del = new Vector3d();
+      for (Vertex3d vtx : mesh.getVertices()) {
+         del.setRandom();
+         vtx.pnt.scaledAdd (mag, del);
+      }
+   }
+
+   private void checkIntersectTree (
+      FlatAABBTree flat0, FlatAABBTree flat1,
+      AABBTree tree0, AABBTree tree1) {
+
+      ArrayList<BVNode> nodes0 = new ArrayList<BVNode>();
+      ArrayList<BVNode> nodes1 = new ArrayList<BVNode>();
+      ArrayList<BVNode> chk0 = new ArrayList<BVNode>();
+      ArrayList<BVNode> chk1 = new ArrayList<BVNode>();
+      flat0.intersectTree (nodes0, nodes1, flat1);
+      tree0.intersectTree (chk0, chk1, tree1);
+      if (nodes0.size() != chk0.size()) {
+         throw new TestException (
+            "flat trees give "+nodes0.size()+" leaf pairs, expected "+
+            chk0.size());
+      }
+      for (int i=0; i<nodes0.size(); i++) {
+         if (!Arrays.equals (
+                nodes0.get(i).getElements(), chk0.get(i).getElements()) ||
+             !Arrays.equals (
+                nodes1.get(i).getElements(), chk1.get(i).getElements())) {
+            throw new TestException ("leaf pair "+i+" differs");
+         }
+      }
+      // mixed flat and node-based trees should give the same pairs
+      nodes0.clear();
+      nodes1.clear();
+      tree0.intersectTree (nodes0, nodes1, flat1);
+      if (nodes0.size() != chk0.size()) {
+         throw new TestException (
+            "mixed trees give "+nodes0.size()+" leaf pairs, expected "+
+            chk0.size());
+      }
+      // callback should give the same pairs
+      int[] cnt = new int[1];
+      flat0.intersectTree (flat1, (node0, node1) -> {
+            if (!Arrays.equals (
+                   flat0.getElements(node0), chk0.get(cnt[0]).getElements()) ||
+                !Arrays.equals (
+                   flat1.getElements(node1), chk1.get(cnt[0]).getElements())) {
+               throw new TestException (
+                  "callback leaf pair "+cnt[0]+" differs");
+            }
+            cnt[0]++;
+         });
+      if (cnt[0] != chk0.size()) {
+         throw new TestException (
+            "callback gives "+cnt[0]+" leaf pairs, expected "+chk0.size());
+      }
+   }
+
+   private void checkNearestFaces (
+      FlatAABBTree flat, AABBTree tree, double rad, int npnts) {
+      BVFeatureQuery query = new BVFeatureQuery();
+      Point3d pnt = new Point3d();
+      Point3d near = new Point3d();
+      Point3d nearChk = new Point3d();
+      Vector2d uv = new Vector2d();
+      Vector2d uvChk = new Vector2d();
+      for (int i=0; i<npnts; i++) {
+         pnt.setRandom();
+         pnt.scale (2*rad);
+         Face face = query.nearestFaceToPoint (near, uv, flat, pnt);
+         Face chk = query.nearestFaceToPoint (nearChk, uvChk, tree, pnt);
+         if (face != chk) {
+            // faces may differ if two are equidistant
+            checkEquals (
+               "nearest distance", near.distance (pnt),
+               nearChk.distance (pnt), 1e-12*rad);
+         }
+         else {
+            checkEquals ("nearest point", near, nearChk, 1e-12*rad);
+         }
+      }
+   }
+
+   private void checkIntersector (PolygonalMesh mesh0, PolygonalMesh mesh1) {
+      SurfaceMeshIntersector intersector = new SurfaceMeshIntersector();
+      mesh0.setUseFlatBVTree (false);
+      mesh1.setUseFlatBVTree (false);
+      ArrayList<IntersectionContour> chk =
+         intersector.findContours (mesh0, mesh1);
+      mesh0.setUseFlatBVTree (true);
+      mesh1.setUseFlatBVTree (true);
+      if (!(mesh0.getBVTree() instanceof FlatAABBTree)) {
+         throw new TestException ("mesh is not using a flat tree");
+      }
+      ArrayList<IntersectionContour> contours =
+         intersector.findContours (mesh0, mesh1);
+      if (contours.size() != chk.size() || chk.size() == 0) {
+         throw new TestException (
+            "found "+contours.size()+" contours, expected "+chk.size());
+      }
+      for (int i=0; i<chk.size(); i++) {
+         if (contours.get(i).size() != chk.get(i).size()) {
+            throw new TestException (
+               "contour "+i+" has "+contours.get(i).size()+
+               " points, expected "+chk.get(i).size());
+         }
+      }
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+
+      PolygonalMesh mesh0 = MeshFactory.createOctahedralSphere (1.0, 4);
+      PolygonalMesh mesh1 = MeshFactory.createBox (1.5, 1.0, 0.5);
+      mesh1.triangulate();
+
+      FlatAABBTree flat0 = new FlatAABBTree (mesh0);
+      AABBTree tree0 = new AABBTree (mesh0);
+      tree0.setRebuildThreshold (0);
+      checkEqualTrees (flat0, tree0);
+      perturbVertices (mesh0, 0.01);
+      flat0.update();
+      tree0.update();
+      checkEqualTrees (flat0, tree0);
+
+      FlatAABBTree flat1 = new FlatAABBTree (mesh1);
+      AABBTree tree1 = new AABBTree (mesh1);
+      checkIntersectTree (flat0, flat1, tree0, tree1);
+      for (int k=0; k<5; k++) {
+         RigidTransform3d X = new RigidTransform3d();
+         X.setRandom();
+         X.p.scale (0.5);
+         flat1.setBvhToWorld (X);
+         tree1.setBvhToWorld (X);
+         checkIntersectTree (flat0, flat1, tree0, tree1);
+      }
+      checkNearestFaces (flat0, tree0, 1.0, 200);
+
+      mesh0 = MeshFactory.createOctahedralSphere (1.0, 3);
+      RigidTransform3d X = new RigidTransform3d (0.3, 0.2, 0.1, 0.1, 0.2, 0.3);
+      mesh1.setMeshToWorld (X);
+      checkIntersector (mesh0, mesh1);
+   }
+
+   public static void main (String[] args) {
+      FlatAABBTreeTest tester = new FlatAABBTreeTest();
+      tester.runtest();
+   }
+}
@@ -21,6 +21,10 @@ public abstract class MeshRendererBase {
    private RenderObject myRob;
    private RobSignature mySignature;
 
+   // scratch buffers used to pass packed attribute values to the render object
+   private float[] myFloatBuf = new float[0];
+   private byte[] myByteBuf = new byte[0];
+
    protected class RobSignature {
       MeshBase mesh;
       int version;
@@ -67,61 +71,101 @@ public abstract class MeshRendererBase {
       }
    }      
 
-   protected void addPositions (RenderObject r, MeshBase mesh) {
+   /**
+    * Returns a scratch float array with at least the specified size, for
+    * use in packing attribute values.
+    */
+   protected float[] getFloatBuffer (int size) {
+      if (myFloatBuf.length < size) {
+         myFloatBuf = new float[size];
+      }
+      return myFloatBuf;
+   }
+
+   /**
+    * Returns a scratch byte array with at least the specified size, for use
+    * in packing color values.
+    */
+   protected byte[] getByteBuffer (int size) {
+      if (myByteBuf.length < size) {
+         myByteBuf = new byte[size];
+      }
+      return myByteBuf;
+   }
+
+   protected float[] packPositions (MeshBase mesh) {
       boolean useRenderData = mesh.isRenderBuffered() && !mesh.isFixed();
-      for (int i=0; i<mesh.numVertices(); i++) {
+      int numv = mesh.numVertices();
+      float[] buf = getFloatBuffer (3*numv);
+      int k = 0;
+      for (int i=0; i<numv; i++) {
          Vertex3d vtx = mesh.getVertex(i);
          Point3d pos = useRenderData ? vtx.myRenderPnt : vtx.pnt;
-         r.addPosition((float)pos.x, (float)pos.y, (float)pos.z);
+         buf[k++] = (float)pos.x;
+         buf[k++] = (float)pos.y;
+         buf[k++] = (float)pos.z;
+      }
+      return buf;
+   }
+
+   protected float[] packVectors (ArrayList<? extends Vector3d> vecs) {
+      float[] buf = getFloatBuffer (3*vecs.size());
+      int k = 0;
+      for (int i=0; i<vecs.size(); i++) {
+         Vector3d vec = vecs.get(i);
+         buf[k++] = (float)vec.x;
+         buf[k++] = (float)vec.y;
+         buf[k++] = (float)vec.z;
       }
+      return buf;
+   }
+
+   protected byte[] packColors (ArrayList<float[]> colors) {
+      byte[] buf = getByteBuffer (4*colors.size());
+      int k = 0;
+      for (int i=0; i<colors.size(); i++) {
+         float[] color = colors.get(i);
+         buf[k++] = (byte)(255*color[0]);
+         buf[k++] = (byte)(255*color[1]);
+         buf[k++] = (byte)(255*color[2]);
+         buf[k++] = (byte)(255*(color.length > 3 ? color[3] : 1f));
+      }
+      return buf;
+   }
+
+   protected void addPositions (RenderObject r, MeshBase mesh) {
+      r.addPositions (packPositions (mesh), 0, mesh.numVertices());
    }
 
    protected void addNormals (RenderObject r, MeshBase mesh) {
       if (mesh.hasNormals()) {
          ArrayList<Vector3d> nrms = mesh.getNormals();
-         for (int i=0; i<nrms.size(); i++) {
-            Vector3d nrm = nrms.get(i);
-            r.addNormal((float)nrm.x, (float)nrm.y, (float)nrm.z);
-         }
+         r.addNormals (packVectors (nrms), 0, nrms.size());
       }
    }
 
    protected void addColors (RenderObject r, MeshBase mesh) {
       if (mesh.hasColors()) {
          ArrayList<float[]> colors = mesh.getColors();
-         for (int i=0; i<colors.size(); i++) {
-            r.addColor(colors.get(i));
-         }
+         r.addColors (packColors (colors), 0, colors.size());
       }
    }
 
    protected void updatePositions (RenderObject r, MeshBase mesh) {
-      boolean useRenderData = mesh.isRenderBuffered() && !mesh.isFixed();
-      int numv = mesh.numVertices();
-      for (int i=0; i<numv; i++) {
-         Vertex3d vtx = mesh.getVertex(i);
-         Point3d pos = useRenderData ? vtx.myRenderPnt : vtx.pnt;
-         r.setPosition(i, (float)pos.x, (float)pos.y, (float)pos.z);
-      }
+      r.setPositions (0, packPositions (mesh), 0, mesh.numVertices());
    }
 
    protected void updateNormals (RenderObject r, MeshBase mesh) {
       if (mesh.hasNormals()) {
          ArrayList<Vector3d> nrms = mesh.getNormals();
-         for (int i=0; i<nrms.size(); i++) {
-            Vector3d nrm = nrms.get(i);
-            r.setNormal(i, (float)nrm.x, (float)nrm.y, (float)nrm.z);
-         }
+         r.setNormals (0, packVectors (nrms), 0, nrms.size());
       }
    }
 
    protected void updateColors (RenderObject r, MeshBase mesh) {
       if (mesh.hasColors()) {
          ArrayList<float[]> colors = mesh.getColors();
-         for (int i=0; i<colors.size(); i++) {
-            float[] color = colors.get(i);
-            r.setColor (i, color[0], color[1], color[2], color[3]);
-         }
+         r.setColors (0, packColors (colors), 0, colors.size());
       }
    }
 
@@ -148,6 +192,7 @@ public abstract class MeshRendererBase {
    protected RenderObject buildRenderObject (MeshBase mesh, RenderProps props) {
 
       RenderObject r = new RenderObject();
+      r.setPackedStorage (true);
       addPositions (r, mesh);
       addNormals (r, mesh);
       addColors (r, mesh);
@@ -72,6 +72,7 @@ public class PolygonalMesh extends MeshBase {
    //private boolean bvHierarchyValid = false;
    private BVTree myBVTree = null;
    private boolean myBVTreeUpdated = false;
+   private boolean myUseFlatBVTree = false;
 
    private boolean cachedClosed = false;
    private boolean cachedClosedValid = false;
@@ -3532,9 +3533,40 @@ public class PolygonalMesh extends MeshBase {
       return (new RigidTransform3d(cov, R));
    }
 
+   /**
+    * Sets whether the bounding volume hierarchy returned by {@link
+    * #getBVTree} should be a {@link FlatAABBTree}, whose nodes are stored in
+    * flat arrays. Otherwise, the hierarchy is an {@link OBBTree} for fixed
+    * meshes and an {@link AABBTree} for non-fixed ones. Changing this
+    * setting clears the current hierarchy.
+    *
+    * @param enable if <code>true</code>, use a flat hierarchy
+    * @see #getUseFlatBVTree
+    */
+   public void setUseFlatBVTree (boolean enable) {
+      if (enable != myUseFlatBVTree) {
+         myUseFlatBVTree = enable;
+         myBVTree = null;
+      }
+   }
+
+   /**
+    * Queries whether the bounding volume hierarchy returned by {@link
+    * #getBVTree} is a {@link FlatAABBTree}.
+    *
+    * @return <code>true</code> if a flat hierarchy is used
+    * @see #setUseFlatBVTree
+    */
+   public boolean getUseFlatBVTree() {
+      return myUseFlatBVTree;
+   }
+
    public BVTree getBVTree() {
       if (myBVTree == null) {
-         if (isFixed) {
+         if (myUseFlatBVTree) {
+            myBVTree = new FlatAABBTree (this);
+         }
+         else if (isFixed) {
             myBVTree = new OBBTree (this, 2);
          }
          else {
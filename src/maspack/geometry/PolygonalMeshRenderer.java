@@ -115,10 +115,12 @@ public class PolygonalMeshRenderer extends MeshRendererBase {
       }
    }
 
-   protected void addFaceNormals (RenderObject r, PolygonalMesh mesh) {
+   protected float[] packFaceNormals (PolygonalMesh mesh) {
       boolean useRenderData = mesh.isRenderBuffered() && !mesh.isFixed();
       updateFaceNormals (mesh);
       ArrayList<Face> faces = mesh.getFaces();
+      float[] buf = getFloatBuffer (3*faces.size());
+      int k = 0;
       for (int i=0; i<faces.size(); i++) {
          Vector3d nrm;
          if (useRenderData) {
@@ -127,24 +129,21 @@ public class PolygonalMeshRenderer extends MeshRendererBase {
          else {
             nrm = faces.get(i).getNormal();
          }
-         r.addNormal((float)nrm.x, (float)nrm.y, (float)nrm.z);
+         buf[k++] = (float)nrm.x;
+         buf[k++] = (float)nrm.y;
+         buf[k++] = (float)nrm.z;
       }
+      return buf;
+   }
+
+   protected void addFaceNormals (RenderObject r, PolygonalMesh mesh) {
+      float[] buf = packFaceNormals (mesh);
+      r.addNormals (buf, 0, mesh.numFaces());
    }  
 
    protected void updateFaceNormals (RenderObject r, PolygonalMesh mesh) {
-      boolean useRenderData = mesh.isRenderBuffered() && !mesh.isFixed();
-      updateFaceNormals (mesh);
-      ArrayList<Face> faces = mesh.getFaces();
-      for (int i=0; i<faces.size(); i++) {
-         Vector3d nrm;
-         if (useRenderData) {
-            nrm = faces.get(i).getRenderNormal();
-         }
-         else {
-            nrm = faces.get(i).getNormal();
-         }
-         r.setNormal (i, (float)nrm.x, (float)nrm.y, (float)nrm.z);
-      }
+      float[] buf = packFaceNormals (mesh);
+      r.setNormals (0, buf, 0, mesh.numFaces());
    }
 
    @Override
@@ -154,6 +153,7 @@ public class PolygonalMeshRenderer extends MeshRendererBase {
       boolean useVertexNormals = props.getShading() != Shading.FLAT;
 
       RenderObject r = new RenderObject();
+      r.setPackedStorage (true);
       addPositions (r, pmesh);
       if (useVertexNormals) {
          addNormals (r, pmesh);
@@ -42,7 +42,7 @@ import maspack.util.InternalErrorException;
  * a native code library.
  */
 public class RobustPreds {
-   private static boolean nativeSupportLoaded = false;
+   private static volatile boolean nativeSupportLoaded = false;
 
    private static double DOUBLE_PREC = 2e-16;
    private static double ORIENT_EPS = (7+56*DOUBLE_PREC)*DOUBLE_PREC;
@@ -113,12 +113,16 @@ public class RobustPreds {
       double c2x, double c2y, double c2z, double d0x, double d0y, double d0z,
       double d1x, double d1y, double d1z, double d2x, double d2y, double d2z);
 
-   static void initialize() {
+   static synchronized void initialize() {
+      if (nativeSupportLoaded) {
+         // already initialized by another thread
+         return;
+      }
       // try loading in the native code
       try {
          NativeLibraryManager.load ("RobustPreds.1.1");
-         nativeSupportLoaded = true;
          jniInit (new Point3d()); // cache the x,y,z fieldIDs
+         nativeSupportLoaded = true;
       }
       catch (UnsatisfiedLinkError e) {
          System.out.println (
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 
+import maspack.geometry.CompactTriangleMesh;
 import maspack.geometry.MeshBase;
 import maspack.geometry.io.PlyWriter.DataType;
 import maspack.util.ClassFinder;
@@ -122,6 +123,15 @@ public class GenericMeshWriter implements MeshWriter {
       myWriter.writeMesh (mesh);
    }
 
+   public void writeMesh (CompactTriangleMesh mesh) throws IOException {
+      if (myWriter instanceof MeshWriterBase) {
+         ((MeshWriterBase)myWriter).writeMesh (mesh);
+      }
+      else {
+         myWriter.writeMesh (mesh.toPolygonalMesh());
+      }
+   }
+
    public void close() {
       myWriter.close();
    }
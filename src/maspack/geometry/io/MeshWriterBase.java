@@ -3,6 +3,7 @@ package maspack.geometry.io;
 import java.io.*;
 
 import maspack.util.NumberFormat;
+import maspack.geometry.CompactTriangleMesh;
 import maspack.geometry.MeshBase;
 
 public abstract class MeshWriterBase implements MeshWriter {
@@ -40,6 +41,17 @@ public abstract class MeshWriterBase implements MeshWriter {
 //      throws IOException;      
    
    public abstract void writeMesh (MeshBase mesh) throws IOException;
+
+   /**
+    * Writes a compact triangular mesh. The default implementation converts
+    * the mesh to a {@link maspack.geometry.PolygonalMesh} and writes that;
+    * subclasses may override this to write the mesh arrays directly.
+    *
+    * @param mesh mesh to write
+    */
+   public void writeMesh (CompactTriangleMesh mesh) throws IOException {
+      writeMesh (mesh.toPolygonalMesh());
+   }
    
    public void setFormat(String fmtStr) {
       if (fmtStr == null) {
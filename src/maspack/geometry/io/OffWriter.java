@@ -7,6 +7,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 
+import maspack.geometry.CompactTriangleMesh;
 import maspack.geometry.Face;
 import maspack.geometry.MeshBase;
 import maspack.geometry.PolygonalMesh;
@@ -79,6 +80,28 @@ public class OffWriter extends MeshWriterBase {
       }
    }
 
+   public void writeMesh (CompactTriangleMesh mesh) throws IOException {
+      
+      PrintWriter pw = new PrintWriter (
+         new BufferedWriter (new OutputStreamWriter (myOstream)));
+
+      pw.println("OFF");
+      pw.printf("%d %d %d\n", mesh.numVertices(), mesh.numTriangles(), 0);
+      pw.flush();
+
+      double[] coords = mesh.getCoords();
+      for (int i=0; i<mesh.numVertices(); i++) {
+         pw.println(myFmt.format(coords[3*i]) + " " + 
+                    myFmt.format(coords[3*i+1]) + " " +
+                    myFmt.format(coords[3*i+2]));
+      }
+      int[] idxs = mesh.getTriangleIndices();
+      for (int t=0; t<mesh.numTriangles(); t++) {
+         pw.println("3 " + idxs[3*t] + " " + idxs[3*t+1] + " " + idxs[3*t+2]);
+      }
+      pw.flush();
+   }
+
    @Override
    public void writeMesh (MeshBase mesh)
       throws IOException {
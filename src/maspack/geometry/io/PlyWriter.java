@@ -239,6 +239,59 @@ public class PlyWriter extends MeshWriterBase {
       }
    }
 
+   public void writeMesh (CompactTriangleMesh mesh) throws IOException {
+      
+      PrintWriter pw = new PrintWriter (
+         new BufferedWriter (new OutputStreamWriter (myOstream)));
+
+      String dsize = getFloatType().toString().toLowerCase();
+
+      pw.println("ply");
+      pw.println("format " + myDataFormat.toString().toLowerCase() + " 1.0");
+      pw.println("element vertex " + mesh.numVertices());
+      
+      pw.println("property "+dsize+" x");
+      pw.println("property "+dsize+" y");
+      pw.println("property "+dsize+" z");
+      pw.println("element face " + mesh.numTriangles());
+      pw.println("property list uchar int vertex_indices");
+      pw.println("end_header");
+      pw.flush();
+
+      double[] coords = mesh.getCoords();
+      int[] idxs = mesh.getTriangleIndices();
+      int nv = mesh.numVertices();
+      int nt = mesh.numTriangles();
+      if (myDataFormat == DataFormat.ASCII) {
+         for (int i=0; i<nv; i++) {
+            pw.println(myFmt.format(coords[3*i]) + " " + 
+                       myFmt.format(coords[3*i+1]) + " " +
+                       myFmt.format(coords[3*i+2]));
+         }
+         for (int t=0; t<nt; t++) {
+            pw.println("3 "+idxs[3*t]+" "+idxs[3*t+1]+" "+idxs[3*t+2]);
+         }
+         pw.flush();
+      }
+      else {
+         BinaryOutputStream bos =
+            new BinaryOutputStream (new BufferedOutputStream (myOstream));
+         if (myDataFormat == DataFormat.BINARY_LITTLE_ENDIAN) {
+            bos.setLittleEndian (true);
+         }
+         for (int k=0; k<3*nv; k++) {
+            writeNumber (bos, coords[k]);
+         }
+         for (int t=0; t<nt; t++) {
+            bos.writeByte (3);
+            bos.writeInt (idxs[3*t]);
+            bos.writeInt (idxs[3*t+1]);
+            bos.writeInt (idxs[3*t+2]);
+         }
+         bos.flush();
+      }
+   }
+
    @Override
    public void writeMesh (MeshBase mesh)
       throws IOException {
@@ -7,6 +7,7 @@ import java.io.PrintWriter;
 import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
 
+import maspack.geometry.CompactTriangleMesh;
 import maspack.geometry.Face;
 import maspack.geometry.MeshBase;
 import maspack.geometry.PointMesh;
@@ -74,6 +75,40 @@ public class StlWriter extends MeshWriterBase {
       pw.close();
    }
 
+   public void writeMesh (CompactTriangleMesh mesh) throws IOException {
+      
+      NumberFormat fmt = myFmt;
+      
+      PrintWriter pw = 
+         new PrintWriter (
+            new BufferedWriter (new OutputStreamWriter(myOstream))); 
+      
+      String name = mesh.getName();
+      if (name == null) {
+         name = "";
+      }
+      
+      pw.println("solid " + name);
+
+      Vector3d n = new Vector3d();
+      Point3d pos = new Point3d();
+      for (int t=0; t<mesh.numTriangles(); t++) {
+         mesh.computeTriangleNormal (n, t);
+         pw.println("facet normal " + fmt.format((float)n.x) + " " 
+            + fmt.format((float)n.y) + " " + fmt.format((float)n.z));
+         pw.println("  outer loop");
+         for (int i=0; i<3; i++) {
+            mesh.getVertex (mesh.getTriangleVertex (t, i), pos);
+            pw.println("    vertex " + fmt.format((float)pos.x) + " "
+               + fmt.format((float)pos.y) + " " + fmt.format((float)pos.z));
+         }   
+         pw.println("  endloop");
+         pw.println("endfacet");
+      }
+      pw.println("endsolid " + name);
+      pw.close();
+   }
+
    @Override
    public void writeMesh (MeshBase mesh)
       throws IOException {
@@ -0,0 +1,475 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.matrix;
+
+import maspack.matrix.Matrix.Partition;
+
+/**
+ * Packed block compressed row storage for a {@link SparseBlockMatrix} whose
+ * block structure has stopped changing. The block values are stored
+ * contiguously in a single <code>double</code> array, in row-major order
+ * within each block and in column order within each block row, and the block
+ * locations are described by primitive index arrays. Matrix-vector products
+ * and the extraction of CRS values can then stream through memory instead of
+ * following the linked block lists of the original matrix.
+ *
+ * <p>The packed storage is a snapshot of the matrix. After the values of the
+ * original blocks have been modified, the snapshot should be refreshed using
+ * {@link #updateValues}, which does not allocate memory. If the block
+ * structure of the matrix changes, as indicated by {@link #isCurrent}
+ * returning <code>false</code>, the storage must be rebuilt using {@link
+ * #pack}. {@link #update} does whichever of these is necessary.
+ */
+public class PackedBlockCRS implements LinearTransformNd {
+
+   private SparseBlockMatrix myMatrix;
+   private int myStructureVersion;
+
+   private int myNumRows;
+   private int myNumCols;
+   private int myNumBlockRows;
+   private int myNumBlocks;
+
+   private int[] myRowOffs;     // element row offset for each block row
+   private int[] myRowBlks;     // index of first block in each block row
+   private int[] myBlkCols;     // block column of each block
+   private int[] myBlkColOffs;  // element column offset of each block
+   private int[] myBlkNumCols;  // number of columns in each block
+   private int[] myValOffs;     // offset of each block within myVals
+   private double[] myVals;
+   private MatrixBlock[] myBlocks;
+
+   // map from CRS value locations to myVals, built on demand
+   private int[] myCRSMap;
+   private Partition myCRSMapPartition = Partition.None;
+
+   /**
+    * Creates packed storage for the specified matrix.
+    *
+    * @param M matrix to pack
+    */
+   public PackedBlockCRS (SparseBlockMatrix M) {
+      pack (M);
+   }
+
+   /**
+    * Rebuilds this storage from the block structure and values of a matrix.
+    *
+    * @param M matrix to pack
+    */
+   public void pack (SparseBlockMatrix M) {
+      myMatrix = M;
+      myStructureVersion = M.getStructureVersion();
+      myNumRows = M.rowSize();
+      myNumCols = M.colSize();
+      myNumBlockRows = M.numBlockRows();
+      myNumBlocks = M.numBlocks();
+
+      myRowOffs = new int[myNumBlockRows+1];
+      myRowBlks = new int[myNumBlockRows+1];
+      myBlkCols = new int[myNumBlocks];
+      myBlkColOffs = new int[myNumBlocks];
+      myBlkNumCols = new int[myNumBlocks];
+      myValOffs = new int[myNumBlocks+1];
+      myBlocks = new MatrixBlock[myNumBlocks];
+
+      int k = 0;
+      int voff = 0;
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         myRowOffs[bi] = M.getBlockRowOffset (bi);
+         myRowBlks[bi] = k;
+         for (MatrixBlock blk=M.firstBlockInRow(bi); blk!=null; blk=blk.next()) {
+            int bj = blk.getBlockCol();
+            myBlocks[k] = blk;
+            myBlkCols[k] = bj;
+            myBlkColOffs[k] = M.getBlockColOffset (bj);
+            myBlkNumCols[k] = blk.colSize();
+            myValOffs[k] = voff;
+            voff += blk.rowSize()*blk.colSize();
+            k++;
+         }
+      }
+      myRowOffs[myNumBlockRows] = myNumRows;
+      myRowBlks[myNumBlockRows] = k;
+      myValOffs[k] = voff;
+      myVals = new double[voff];
+      myCRSMap = null;
+      myCRSMapPartition = Partition.None;
+      updateValues();
+   }
+
+   /**
+    * Queries whether the block structure of the packed matrix is unchanged
+    * since this storage was built.
+    *
+    * @return <code>true</code> if this storage matches the matrix structure
+    */
+   public boolean isCurrent() {
+      return myMatrix.getStructureVersion() == myStructureVersion;
+   }
+
+   /**
+    * Queries whether this storage was built from a specific matrix and still
+    * matches its block structure.
+    *
+    * @param M matrix to check
+    * @return <code>true</code> if this storage is current for <code>M</code>
+    */
+   public boolean isCurrent (SparseBlockMatrix M) {
+      return myMatrix == M && isCurrent();
+   }
+
+   /**
+    * Returns the matrix from which this storage was built.
+    *
+    * @return packed matrix
+    */
+   public SparseBlockMatrix getMatrix() {
+      return myMatrix;
+   }
+
+   /**
+    * Updates this storage from the original matrix, rebuilding it if the
+    * block structure has changed and otherwise just copying the values.
+    */
+   public void update() {
+      if (!isCurrent()) {
+         pack (myMatrix);
+      }
+      else {
+         updateValues();
+      }
+   }
+
+   /**
+    * Copies the current block values of the original matrix into this
+    * storage. The block structure must not have changed.
+    */
+   public void updateValues() {
+      double[] vals = myVals;
+      for (int k=0; k<myNumBlocks; k++) {
+         MatrixBlock blk = myBlocks[k];
+         int off = myValOffs[k];
+         if (blk instanceof Matrix3x3Block) {
+            Matrix3x3Block b = (Matrix3x3Block)blk;
+            vals[off  ] = b.m00; vals[off+1] = b.m01; vals[off+2] = b.m02;
+            vals[off+3] = b.m10; vals[off+4] = b.m11; vals[off+5] = b.m12;
+            vals[off+6] = b.m20; vals[off+7] = b.m21; vals[off+8] = b.m22;
+         }
+         else {
+            int nr = blk.rowSize();
+            int nc = myBlkNumCols[k];
+            for (int i=0; i<nr; i++) {
+               for (int j=0; j<nc; j++) {
+                  vals[off++] = blk.get (i, j);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int rowSize() {
+      return myNumRows;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int colSize() {
+      return myNumCols;
+   }
+
+   /**
+    * Returns the number of blocks in this storage.
+    *
+    * @return number of blocks
+    */
+   public int numBlocks() {
+      return myNumBlocks;
+   }
+
+   /**
+    * Returns the array containing the packed block values. Values for
+    * block <code>k</code> are stored in row-major order starting at
+    * {@link #getValueOffset getValueOffset(k)}.
+    *
+    * @return packed values (not a copy)
+    */
+   public double[] getValues() {
+      return myVals;
+   }
+
+   /**
+    * Returns the offset of the values for a specific block within the array
+    * returned by {@link #getValues}.
+    *
+    * @param k block index, in block-row order
+    * @return value offset for the block
+    */
+   public int getValueOffset (int k) {
+      return myValOffs[k];
+   }
+
+   /**
+    * Computes <code>vr = M v1</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param vr result vector
+    * @param v1 vector to multiply
+    */
+   public void mul (VectorNd vr, VectorNd v1) {
+      if (v1.size() != myNumCols) {
+         throw new ImproperSizeException (
+            "v1 size "+v1.size()+" incompatible with matrix column size "+
+            myNumCols);
+      }
+      if (vr == v1) {
+         throw new IllegalArgumentException ("vr and v1 must be different");
+      }
+      if (vr.size() != myNumRows) {
+         vr.setSize (myNumRows);
+      }
+      mul (vr.getBuffer(), v1.getBuffer());
+   }
+
+   /**
+    * Computes <code>res = M vec</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param res result array, of length at least equal to the row size
+    * @param vec array to multiply, of length at least equal to the column size
+    */
+   public void mul (double[] res, double[] vec) {
+      for (int i=0; i<myNumRows; i++) {
+         res[i] = 0;
+      }
+      mulAdd (res, vec);
+   }
+
+   /**
+    * Computes <code>res += M vec</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param res result array, of length at least equal to the row size
+    * @param vec array to multiply, of length at least equal to the column size
+    */
+   public void mulAdd (double[] res, double[] vec) {
+      double[] vals = myVals;
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int r0 = myRowOffs[bi];
+         int nr = myRowOffs[bi+1]-r0;
+         for (int k=myRowBlks[bi]; k<myRowBlks[bi+1]; k++) {
+            int c0 = myBlkColOffs[k];
+            int nc = myBlkNumCols[k];
+            int off = myValOffs[k];
+            if (nr == 3 && nc == 3) {
+               double x0 = vec[c0], x1 = vec[c0+1], x2 = vec[c0+2];
+               res[r0  ] += vals[off  ]*x0 + vals[off+1]*x1 + vals[off+2]*x2;
+               res[r0+1] += vals[off+3]*x0 + vals[off+4]*x1 + vals[off+5]*x2;
+               res[r0+2] += vals[off+6]*x0 + vals[off+7]*x1 + vals[off+8]*x2;
+            }
+            else {
+               for (int i=0; i<nr; i++) {
+                  double sum = 0;
+                  for (int j=0; j<nc; j++) {
+                     sum += vals[off++]*vec[c0+j];
+                  }
+                  res[r0+i] += sum;
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Computes <code>vr = M^T v1</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param vr result vector
+    * @param v1 vector to multiply
+    */
+   public void mulTranspose (VectorNd vr, VectorNd v1) {
+      if (v1.size() != myNumRows) {
+         throw new ImproperSizeException (
+            "v1 size "+v1.size()+" incompatible with matrix row size "+
+            myNumRows);
+      }
+      if (vr == v1) {
+         throw new IllegalArgumentException ("vr and v1 must be different");
+      }
+      if (vr.size() != myNumCols) {
+         vr.setSize (myNumCols);
+      }
+      mulTranspose (vr.getBuffer(), v1.getBuffer());
+   }
+
+   /**
+    * Computes <code>res = M^T vec</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param res result array, of length at least equal to the column size
+    * @param vec array to multiply, of length at least equal to the row size
+    */
+   public void mulTranspose (double[] res, double[] vec) {
+      for (int j=0; j<myNumCols; j++) {
+         res[j] = 0;
+      }
+      mulTransposeAdd (res, vec);
+   }
+
+   /**
+    * Computes <code>res += M^T vec</code>, where <code>M</code> is the packed
+    * matrix.
+    *
+    * @param res result array, of length at least equal to the column size
+    * @param vec array to multiply, of length at least equal to the row size
+    */
+   public void mulTransposeAdd (double[] res, double[] vec) {
+      double[] vals = myVals;
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int r0 = myRowOffs[bi];
+         int nr = myRowOffs[bi+1]-r0;
+         for (int k=myRowBlks[bi]; k<myRowBlks[bi+1]; k++) {
+            int c0 = myBlkColOffs[k];
+            int nc = myBlkNumCols[k];
+            int off = myValOffs[k];
+            if (nr == 3 && nc == 3) {
+               double y0 = vec[r0], y1 = vec[r0+1], y2 = vec[r0+2];
+               res[c0  ] += vals[off  ]*y0 + vals[off+3]*y1 + vals[off+6]*y2;
+               res[c0+1] += vals[off+1]*y0 + vals[off+4]*y1 + vals[off+7]*y2;
+               res[c0+2] += vals[off+2]*y0 + vals[off+5]*y1 + vals[off+8]*y2;
+            }
+            else {
+               for (int i=0; i<nr; i++) {
+                  double y = vec[r0+i];
+                  for (int j=0; j<nc; j++) {
+                     res[c0+j] += vals[off++]*y;
+                  }
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Builds the map from CRS value locations to packed value locations. The
+    * CRS sparsity of each block is obtained from the block itself, so that
+    * blocks which store only some of their entries (such as diagonal blocks)
+    * produce the same CRS structure as the original matrix.
+    */
+   private void buildCRSMap (Partition part) {
+      int[] rowCnts = new int[myNumRows+1];
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         for (int k=myRowBlks[bi]; k<myRowBlks[bi+1]; k++) {
+            Partition blkPart = blockPartition (bi, myBlkCols[k], part);
+            if (blkPart != null) {
+               myBlocks[k].addNumNonZerosByRow (rowCnts, myRowOffs[bi], blkPart);
+            }
+         }
+      }
+      int nnz = 0;
+      for (int i=0; i<myNumRows; i++) {
+         int cnt = rowCnts[i];
+         rowCnts[i] = nnz;
+         nnz += cnt;
+      }
+      int[] colIdxs = new int[nnz];
+      int[] map = new int[nnz];
+      int maxRows = 0;
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         maxRows = Math.max (maxRows, myRowOffs[bi+1]-myRowOffs[bi]);
+      }
+      int[] offsets = new int[maxRows];
+      for (int bi=0; bi<myNumBlockRows; bi++) {
+         int r0 = myRowOffs[bi];
+         int nr = myRowOffs[bi+1]-r0;
+         for (int k=myRowBlks[bi]; k<myRowBlks[bi+1]; k++) {
+            Partition blkPart = blockPartition (bi, myBlkCols[k], part);
+            if (blkPart == null) {
+               continue;
+            }
+            for (int i=0; i<nr; i++) {
+               offsets[i] = rowCnts[r0+i];
+            }
+            // collect the local column indices of this block
+            myBlocks[k].getBlockCRSIndices (colIdxs, 0, offsets, blkPart);
+            int nc = myBlkNumCols[k];
+            for (int i=0; i<nr; i++) {
+               for (int l=rowCnts[r0+i]; l<offsets[i]; l++) {
+                  map[l] = myValOffs[k] + i*nc + colIdxs[l];
+               }
+               rowCnts[r0+i] = offsets[i];
+            }
+         }
+      }
+      myCRSMap = map;
+      myCRSMapPartition = part;
+   }
+
+   private Partition blockPartition (int bi, int bj, Partition part) {
+      if (part == Partition.UpperTriangular) {
+         if (bj == bi) {
+            return part;
+         }
+         else if (bj > bi) {
+            return Partition.Full;
+         }
+         else {
+            return null;
+         }
+      }
+      else if (part == Partition.Full) {
+         return Partition.Full;
+      }
+      else {
+         throw new UnsupportedOperationException (
+            "Matrix partition " + part + " not supported");
+      }
+   }
+
+   /**
+    * Returns the number of non-zero values that will be returned by
+    * {@link #getCRSValues} for the specified partition.
+    *
+    * @param part matrix partition; must be either {@link Partition#Full
+    * Full} or {@link Partition#UpperTriangular UpperTriangular}
+    * @return number of non-zero values
+    */
+   public int numNonZeroVals (Partition part) {
+      if (myCRSMap == null || myCRSMapPartition != part) {
+         buildCRSMap (part);
+      }
+      return myCRSMap.length;
+   }
+
+   /**
+    * Gets the compressed row storage (CRS) values for the packed matrix. The
+    * values are identical, and in the same order, as those returned by
+    * {@link SparseBlockMatrix#getCRSValues(double[],Partition,int,int)} for
+    * the entire original matrix. Apart from the first call for a given
+    * partition, this method does not allocate memory.
+    *
+    * @param vals returns the value of each non-zero element
+    * @param part matrix partition; must be either {@link Partition#Full
+    * Full} or {@link Partition#UpperTriangular UpperTriangular}
+    * @return number of non-zero values
+    */
+   public int getCRSValues (double[] vals, Partition part) {
+      if (myCRSMap == null || myCRSMapPartition != part) {
+         buildCRSMap (part);
+      }
+      int[] map = myCRSMap;
+      double[] pvals = myVals;
+      for (int l=0; l<map.length; l++) {
+         vals[l] = pvals[map[l]];
+      }
+      return map.length;
+   }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.matrix;
+
+import maspack.matrix.Matrix.Partition;
+import maspack.util.*;
+
+public class PackedBlockCRSTest extends UnitTest {
+
+   private SparseBlockMatrix createRandom (int[] sizes, double density) {
+      SparseBlockMatrix M = new SparseBlockMatrix (sizes, sizes);
+      for (int bi=0; bi<sizes.length; bi++) {
+         for (int bj=0; bj<sizes.length; bj++) {
+            if (bi == bj || RandomGenerator.nextDouble (0, 1) < density) {
+               MatrixBlock blk;
+               if (bi == bj && sizes[bi] == 3 && bi%2 == 0) {
+                  // exercise blocks that store only some of their entries
+                  blk = new Matrix3x3DiagBlock();
+                  ((Matrix3x3DiagBlock)blk).set (
+                     RandomGenerator.nextDouble (1, 2),
+                     RandomGenerator.nextDouble (1, 2),
+                     RandomGenerator.nextDouble (1, 2));
+               }
+               else {
+                  blk = MatrixBlockBase.alloc (sizes[bi], sizes[bj]);
+                  MatrixNd MX = new MatrixNd (sizes[bi], sizes[bj]);
+                  MX.setRandom();
+                  blk.set (MX);
+               }
+               M.addBlock (bi, bj, blk);
+            }
+         }
+      }
+      return M;
+   }
+
+   private void checkPacked (PackedBlockCRS P, SparseBlockMatrix M) {
+      if (!P.isCurrent (M)) {
+         throw new TestException ("packed storage is not current");
+      }
+      VectorNd x = new VectorNd (M.colSize());
+      VectorNd y = new VectorNd (M.rowSize());
+      x.setRandom();
+      y.setRandom();
+
+      VectorNd chk = new VectorNd (M.rowSize());
+      VectorNd res = new VectorNd (M.rowSize());
+      M.mul (chk, x);
+      P.mul (res, x);
+      checkEquals ("mul", res, chk, 1e-12);
+
+      chk = new VectorNd (M.colSize());
+      res = new VectorNd (M.colSize());
+      M.mulTranspose (chk, y);
+      P.mulTranspose (res, y);
+      checkEquals ("mulTranspose", res, chk, 1e-12);
+
+      Partition[] parts = new Partition[] {
+         Partition.Full, Partition.UpperTriangular };
+      for (Partition part : parts) {
+         int nnz = M.numNonZeroVals (part, M.rowSize(), M.colSize());
+         if (P.numNonZeroVals (part) != nnz) {
+            throw new TestException (
+               part+" number of non-zeros is "+P.numNonZeroVals (part)+
+               ", expected "+nnz);
+         }
+         double[] valsChk = new double[nnz];
+         double[] vals = new double[nnz];
+         M.getCRSValues (valsChk, part, M.rowSize(), M.colSize());
+         P.getCRSValues (vals, part);
+         for (int k=0; k<nnz; k++) {
+            if (vals[k] != valsChk[k]) {
+               throw new TestException (
+                  part+" CRS value "+k+" is "+vals[k]+
+                  ", expected "+valsChk[k]);
+            }
+         }
+      }
+   }
+
+   private void testRandom (int[] sizes, double density) {
+      SparseBlockMatrix M = createRandom (sizes, density);
+      PackedBlockCRS P = new PackedBlockCRS (M);
+      checkPacked (P, M);
+
+      // change values only
+      M.scale (2.5);
+      P.updateValues();
+      checkPacked (P, M);
+
+      // change the structure
+      int nb = sizes.length;
+      if (M.getBlock (0, nb-1) == null) {
+         M.addBlock (0, nb-1, MatrixBlockBase.alloc (sizes[0], sizes[nb-1]));
+      }
+      else {
+         M.removeBlock (0, nb-1);
+      }
+      if (P.isCurrent()) {
+         throw new TestException (
+            "packed storage still current after structure change");
+      }
+      P.update();
+      checkPacked (P, M);
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+      testRandom (new int[] { 3 }, 0.5);
+      testRandom (new int[] { 3, 3, 3, 3 }, 0.5);
+      testRandom (new int[] { 3, 6, 3, 2, 1, 3, 6, 3 }, 0.3);
+      testRandom (new int[] { 6, 3, 3, 6, 4, 3, 3, 1, 3, 3 }, 0.2);
+   }
+
+   public static void main (String[] args) {
+      PackedBlockCRSTest tester = new PackedBlockCRSTest();
+      tester.runtest();
+   }
+}
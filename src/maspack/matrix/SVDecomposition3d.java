@@ -31,6 +31,7 @@ public class SVDecomposition3d {
    private Matrix3d U_;
    private Matrix3d V_;
    private Matrix3d B;
+   private Vector3d mySig = new Vector3d(); // singular values for polar decomp
 
    protected double S;
    protected double C;
@@ -1414,7 +1415,7 @@ public class SVDecomposition3d {
    public void polarDecomposition (
       Matrix3dBase R, Matrix3d P, Matrix3dBase F) {
 
-      Vector3d sig = new Vector3d();
+      Vector3d sig = mySig;
       if (!doPolarDecomposition (R, sig, F)) {
          if (P != null) {
             P.set (F);
@@ -1441,7 +1442,7 @@ public class SVDecomposition3d {
    public void polarDecomposition (
       Matrix3dBase R, SymmetricMatrix3d P, Matrix3dBase F) {
 
-      Vector3d sig = new Vector3d();
+      Vector3d sig = mySig;
       if (doPolarDecomposition (R, sig, F)) {
          if (P != null) {
             // place the symmetric part in P
@@ -1461,7 +1462,7 @@ public class SVDecomposition3d {
    public void leftPolarDecomposition (
       Matrix3d P, Matrix3dBase R, Matrix3dBase F) {
 
-      Vector3d sig = new Vector3d();
+      Vector3d sig = mySig;
       if (!doPolarDecomposition (R, sig, F)) {
          if (P != null) {
             P.set (F);
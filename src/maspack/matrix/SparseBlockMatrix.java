@@ -53,6 +53,9 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
 
    protected boolean myVerticallyLinkedP = false;
 
+   // incremented whenever the block structure changes
+   protected int myStructureVersion = 0;
+
    public enum PrintFormat {
       MatrixMarket, CRS, CCS,
    }
@@ -82,6 +85,20 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
    private void invalidateRowColIndices() {
       myRowIndicesPartition = Partition.None;
       myColIndicesPartition = Partition.None;
+      myStructureVersion++;
+   }
+
+   /**
+    * Returns a version number for the block structure of this matrix. This
+    * number is incremented whenever blocks, block rows or block columns are
+    * added or removed, and can be used to determine whether structural
+    * information derived from the matrix, such as a {@link PackedBlockCRS},
+    * is still valid.
+    *
+    * @return structure version number
+    */
+   public int getStructureVersion() {
+      return myStructureVersion;
    }
 
    public void setRowCapacity (int newCap) {
@@ -105,6 +122,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       myNumRows += size;
 
       myNumBlockRows++;
+      myStructureVersion++;
    }
 
    public void addRows (int[] sizes, int num) {
@@ -120,6 +138,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       }
       myNumRows += nrows;
       myNumBlockRows += num;
+      myStructureVersion++;
    }
 
    public void setColCapacity (int newCap) {
@@ -144,6 +163,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       }
       myNumCols += size;
       myNumBlockCols++;
+      myStructureVersion++;
    }
 
    public void addCols (int[] sizes, int num) {
@@ -161,6 +181,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       }
       myNumCols += ncols;
       myNumBlockCols += num;
+      myStructureVersion++;
    }
 
    public SparseBlockMatrix() {
@@ -190,6 +211,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
          myNumCols += colSizes[i];
       }
       myColOffsets[myNumBlockCols] = myNumCols;
+      myStructureVersion++;
          //      }
       myRows = new MatrixBlockRowList[myNumBlockRows];
       for (int i = 0; i < myNumBlockRows; i++) {
@@ -1465,6 +1487,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       myRowIndicesNumBlkRows = -1;
       myRowIndicesNumBlkCols = -1;
       myRowIndices = null;
+      myStructureVersion++;
 
       myColIndicesPartition = Partition.None;
       myColIndicesNumBlkRows = -1;
@@ -1580,6 +1603,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       myRowIndicesNumBlkRows = -1;
       myRowIndicesNumBlkCols = -1;
       myRowIndices = null;
+      myStructureVersion++;
 
       myColIndicesPartition = Partition.None;
       myColIndicesNumBlkRows = -1;
@@ -1858,6 +1882,7 @@ public class SparseBlockMatrix extends SparseMatrixBase implements Clonable {
       myRowIndicesNumBlkRows = -1;
       myRowIndicesNumBlkCols = -1;
       myRowIndices = null;
+      myStructureVersion++;
 
       myColIndicesPartition = Partition.None;
       myColIndicesNumBlkRows = -1;
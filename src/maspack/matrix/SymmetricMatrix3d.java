@@ -1189,13 +1189,20 @@ public class SymmetricMatrix3d extends Matrix3dBase {
       }
    }
 
-   Matrix3d T = new Matrix3d();
-   SVDecomposition3d svd = new SVDecomposition3d();
+   // workspace for getEigenValues, allocated on demand so that creating
+   // symmetric matrices remains inexpensive
+   Matrix3d T;
+   SVDecomposition3d svd;
 
    public void getEigenValues (Vector3d eig, Matrix3dBase U) {
 
       double SS, CC, CS;
 
+      if (T == null) {
+         T = new Matrix3d();
+         svd = new SVDecomposition3d();
+      }
+
       svd.givens (m01, m02);
       CC = svd.C * svd.C;
       CS = svd.C * svd.S;
@@ -95,6 +95,13 @@ public class GL2Viewer extends GLViewer implements HasProperties {
    private Vector3d utmp = new Vector3d();
    private Vector3d vtmp = new Vector3d();
    private float[] ctmp = new float[3];
+   // storage for reading vertex attributes without allocation when
+   // render objects use packed storage
+   private float[] myVertexPos0 = new float[3];
+   private float[] myVertexPos1 = new float[3];
+   private float[] myVertexNrm = new float[3];
+   private byte[] myVertexClr0 = new byte[4];
+   private byte[] myVertexClr1 = new byte[4];
    // buffers to store certain line styles
    double[] cosBuff = {1, 0, -1, 0, 1};
    double[] sinBuff = {0, 1, 0, -1, 0};
@@ -2851,15 +2858,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          for (int j=0; j<triangleStride; ++j) {
             int vidx = tris[idx+j];
             if (useColors) {
-               setVertexColor (gl, robj.getVertexColor(vidx), useHSV);
+               setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
             }
             if (robj.hasNormals ()) {
-               gl.glNormal3fv(robj.getVertexNormal(vidx), 0);
+               gl.glNormal3fv(robj.getVertexNormal(vidx, myVertexNrm), 0);
             }
             if (useTextures) {
                gl.glTexCoord2fv (robj.getVertexTextureCoord (vidx), 0);
             }
-            gl.glVertex3fv(robj.getVertexPosition(vidx), 0);
+            gl.glVertex3fv(robj.getVertexPosition(vidx, myVertexPos0), 0);
          }
       }
       gl.glEnd();
@@ -3170,15 +3177,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
             for (int j=0; j<2; j++) {
                int vidx = lines[baseIdx+j];
                if (!selecting && useColors) {
-                  setVertexColor (gl, robj.getVertexColor (vidx), useHSV);
+                  setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
                }
                if (robj.hasNormals()) {
-                  gl.glNormal3fv(robj.getVertexNormal(vidx), 0);
+                  gl.glNormal3fv(robj.getVertexNormal(vidx, myVertexNrm), 0);
                }
                if (robj.hasTextureCoords ()) {
                   gl.glTexCoord2fv(robj.getVertexTextureCoord (vidx), 0);
                }
-               gl.glVertex3fv(robj.getVertexPosition(vidx), 0);
+               gl.glVertex3fv(robj.getVertexPosition(vidx, myVertexPos0), 0);
             }
          }
          
@@ -3267,10 +3274,10 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     byte[] c0 = robj.getVertexColor(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
-                     byte[] c1 = robj.getVertexColor(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     byte[] c0 = robj.getVertexColor(vidx1, myVertexClr0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
+                     byte[] c1 = robj.getVertexColor(vidx2, myVertexClr1);
                      drawColoredCylinder(
                         gl, mySurfaceResolution, rad, rad, 
                         p0, c0, p1, c1, true, useHSV);
@@ -3280,8 +3287,8 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
                      drawCylinder(
                         gl, mySurfaceResolution, rad, rad, p0, p1, true);
                   }
@@ -3294,10 +3301,10 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     byte[] c0 = robj.getVertexColor(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
-                     byte[] c1 = robj.getVertexColor(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     byte[] c0 = robj.getVertexColor(vidx1, myVertexClr0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
+                     byte[] c1 = robj.getVertexColor(vidx2, myVertexClr1);
                      drawColoredSpindle(
                         gl, mySurfaceResolution, rad, 
                         p0, c0, p1, c1, isHSVColorInterpolationEnabled());
@@ -3307,8 +3314,8 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
                      drawSpindle(gl, mySurfaceResolution, rad, p0, p1);
                   }
                }
@@ -3321,10 +3328,10 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     byte[] c0 = robj.getVertexColor(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
-                     byte[] c1 = robj.getVertexColor(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     byte[] c0 = robj.getVertexColor(vidx1, myVertexClr0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
+                     byte[] c1 = robj.getVertexColor(vidx2, myVertexClr1);
                      drawColoredArrow(
                         gl, mySurfaceResolution, rad, arad, aheight, 
                         p0, c0, p1, c1, isHSVColorInterpolationEnabled(), true);
@@ -3334,8 +3341,8 @@ public class GL2Viewer extends GLViewer implements HasProperties {
                      int baseIdx = lineStride*(i+offset);
                      int vidx1 = lines[baseIdx];
                      int vidx2 = lines[baseIdx+1];
-                     float[] p0 = robj.getVertexPosition(vidx1);
-                     float[] p1 = robj.getVertexPosition(vidx2);
+                     float[] p0 = robj.getVertexPosition(vidx1, myVertexPos0);
+                     float[] p1 = robj.getVertexPosition(vidx2, myVertexPos1);
                      drawArrow(
                         gl, mySurfaceResolution, rad, arad, aheight, 
                         p0, p1, true);
@@ -3452,15 +3459,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          for (int i=0; i<count; ++i) {
             int vidx = points[i+offset];
             if (!selecting && robj.hasColors() && hasVertexColoring()) {
-               setVertexColor (gl, robj.getVertexColor(vidx), useHSV);
+               setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
             }
             if (robj.hasNormals()) {
-               gl.glNormal3fv(robj.getVertexNormal(vidx),0);
+               gl.glNormal3fv(robj.getVertexNormal(vidx, myVertexNrm),0);
             }
             if (robj.hasTextureCoords ()) {
                gl.glTexCoord2fv(robj.getVertexTextureCoord(vidx),0);
             }
-            gl.glVertex3fv(robj.getVertexPosition(vidx), 0);
+            gl.glVertex3fv(robj.getVertexPosition(vidx, myVertexPos0), 0);
          }
 
          robj.readUnlock ();
@@ -3562,10 +3569,10 @@ public class GL2Viewer extends GLViewer implements HasProperties {
             }
             int vidx = points[i+offset];
             if (!selecting && useColors) {
-               setVertexColor (gl, robj.getVertexColor (vidx), useHSV);
+               setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
             }
             // position
-            float [] p = robj.getPosition(vidx);
+            float [] p = robj.getPosition(vidx, myVertexPos0);
 
             // location and scale
             gl.glPushMatrix();
@@ -3710,15 +3717,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          int baseIdx = 0; 
          for (int i=0; i<vertexCount; ++i) {
             if (!selecting && useColors) {
-               setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset]), useHSV);
+               setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset], myVertexClr0), useHSV);
             }
             if (robj.hasNormals()) {
-               gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset]),0);
+               gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset], myVertexNrm),0);
             }
             if (robj.hasTextureCoords ()) {
                gl.glTexCoord2fv (robj.getTextureCoord (verts[baseIdx+texcoordOffset]), 0);
             }
-            gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset]), 0);
+            gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset], myVertexPos0), 0);
 
             baseIdx += vertexStride;
          }
@@ -3889,15 +3896,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          for (int i=0; i<count; ++i) {
             int baseIdx = idxs.get (i+offset)*vertexStride;
             if (!selecting && useColors) {
-               setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset]), useHSV);
+               setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset], myVertexClr0), useHSV);
             }
             if (robj.hasNormals()) {
-               gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset]),0);
+               gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset], myVertexNrm),0);
             }
             if (robj.hasTextureCoords ()) {
                gl.glTexCoord2fv (robj.getTextureCoord (verts[baseIdx+texcoordOffset]), 0);
             }
-            gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset]), 0);
+            gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset], myVertexPos0), 0);
          }
 
          robj.readUnlock (); // prevent writes
@@ -3990,15 +3997,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
       for (int i=0; i<vertexCount; ++i) {
          int baseIdx = idxs[i]*vertexStride;
          if (!selecting && useColors) {
-            setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset]), useHSV);
+            setVertexColor (gl, robj.getColor (verts[baseIdx+colorOffset], myVertexClr0), useHSV);
          }
          if (robj.hasNormals()) {
-            gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset]),0);
+            gl.glNormal3fv(robj.getNormal(verts[baseIdx+normalOffset], myVertexNrm),0);
          }
          if (robj.hasTextureCoords ()) {
             gl.glTexCoord2fv (robj.getTextureCoord (verts[baseIdx+texcoordOffset]), 0);
          }
-         gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset]), 0);
+         gl.glVertex3fv(robj.getPosition(verts[baseIdx+positionOffset], myVertexPos0), 0);
       }
 
       robj.readUnlock (); // prevent writes
@@ -4063,15 +4070,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          for (int j=0; j<pointStride; ++j) {
             int vidx = points[idx+j];
             if (useColors) {
-               setVertexColor (gl, robj.getVertexColor(vidx), useHSV);
+               setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
             }
             if (robj.hasNormals ()) {
-               gl.glNormal3fv(robj.getVertexNormal(vidx), 0);
+               gl.glNormal3fv(robj.getVertexNormal(vidx, myVertexNrm), 0);
             }
             if (useTextures) {
                gl.glTexCoord2fv (robj.getVertexTextureCoord (vidx), 0);
             }
-            gl.glVertex3fv(robj.getVertexPosition(vidx), 0);
+            gl.glVertex3fv(robj.getVertexPosition(vidx, myVertexPos0), 0);
          }
       }
       gl.glEnd();
@@ -4220,15 +4227,15 @@ public class GL2Viewer extends GLViewer implements HasProperties {
          for (int j=0; j<lineStride; ++j) {
             int vidx = lines[idx+j];
             if (useColors) {
-               setVertexColor (gl, robj.getVertexColor(vidx), useHSV);
+               setVertexColor (gl, robj.getVertexColor(vidx, myVertexClr0), useHSV);
             }
             if (robj.hasNormals ()) {
-               gl.glNormal3fv(robj.getVertexNormal(vidx), 0);
+               gl.glNormal3fv(robj.getVertexNormal(vidx, myVertexNrm), 0);
             }
             if (useTextures) {
                gl.glTexCoord2fv (robj.getVertexTextureCoord (vidx), 0);
             }
-            gl.glVertex3fv(robj.getVertexPosition(vidx), 0);
+            gl.glVertex3fv(robj.getVertexPosition(vidx, myVertexPos0), 0);
          }
       }
       gl.glEnd();
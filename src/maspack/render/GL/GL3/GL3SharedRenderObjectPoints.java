@@ -92,6 +92,10 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
    protected void updateDynamicVertices(GL3 gl, RenderObject robj, int updateMask, boolean replace) {
 
       ByteBuffer buff = null;
+      // storage for attributes of render objects with packed storage
+      float[] ptmp = new float[3];
+      float[] ntmp = new float[3];
+      byte[] ctmp = new byte[4];
       if (replace) {
          buff = BufferUtilities.newNativeByteBuffer (vbos[DYNAMIC_VBO_IDX].getSize ());
          // buff = vbos[DYNAMIC_VBO_IDX].mapNewBuffer (gl);
@@ -110,7 +114,7 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
             int lidx = 0;
             for (int l = 0; l<pointCount; ++l) {
                int vidx = points[lidx];
-               float[] pos = robj.getVertexPosition (vidx);
+               float[] pos = robj.getVertexPosition (vidx, ptmp);
                buff.position (bidx);
                positionPutter.putPosition(buff, pos);
                bidx += positionInfo.stride;
@@ -130,7 +134,7 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
             int lidx = 0;
             for (int l = 0; l<pointCount; ++l) {
                int vidx = points[lidx];
-               float[] pos = robj.getVertexNormal (vidx);
+               float[] pos = robj.getVertexNormal (vidx, ntmp);
                buff.position (bidx);
                normalPutter.putNormal(buff, pos);
                bidx += normalInfo.stride;
@@ -150,7 +154,7 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
             int lidx = 0;
             for (int l = 0; l<pointCount; ++l) {
                int vidx = points[lidx];
-               byte[] pos = robj.getVertexColor (vidx);
+               byte[] pos = robj.getVertexColor (vidx, ctmp);
                buff.position (bidx);
                colorPutter.putColor(buff, pos);
                bidx += colorInfo.stride;
@@ -226,6 +230,10 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
 
       // create buffers for VBOs
       ByteBuffer[] buffs = new ByteBuffer[2];
+      // storage for attributes of render objects with packed storage
+      float[] ptmp = new float[3];
+      float[] ntmp = new float[3];
+      byte[] ctmp = new byte[4];
 
       if (staticVertexSize > 0) {
          buffs[STATIC_VBO_IDX] = BufferUtilities.newNativeByteBuffer(nVertices*staticVertexSize);
@@ -246,21 +254,21 @@ public class GL3SharedRenderObjectPoints extends GL3SharedRenderObjectBase {
             int vidx = points[lidx];
             // position
             if (positionInfo != null) {
-               float[] pos = robj.getVertexPosition(vidx);
+               float[] pos = robj.getVertexPosition(vidx, ptmp);
                positionPutter.putPosition(buffs[positionInfo.vboIndex], 
                   positionInfo.offset+pidx*positionInfo.stride, pos);
             }
 
             // normal
             if (normalInfo != null) {
-               float[] nrm = robj.getVertexNormal(vidx);
+               float[] nrm = robj.getVertexNormal(vidx, ntmp);
                normalPutter.putNormal(buffs[normalInfo.vboIndex], 
                   normalInfo.offset+pidx*normalInfo.stride, nrm);
             }
 
             // color
             if (colorInfo != null) {
-               byte[] color = robj.getVertexColor(vidx);
+               byte[] color = robj.getVertexColor(vidx, ctmp);
                colorPutter.putColor(buffs[colorInfo.vboIndex], 
                   colorInfo.offset+pidx*colorInfo.stride, color);
             }
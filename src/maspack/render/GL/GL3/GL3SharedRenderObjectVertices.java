@@ -39,6 +39,9 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
       robj.readLock (); {
          int vertStride = robj.getVertexStride ();
          int[] verts = robj.getVertexBuffer ();
+         float[] pdata = robj.getPositionData();
+         float[] ndata = robj.getNormalData();
+         byte[] cdata = robj.getColorData();
 
          ByteBuffer buff = null;
          if (replace) {
@@ -54,9 +57,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
             
 
             for (int i=0; i<positionInfo.count; ++i) {
-               float[] pos = robj.getPosition (verts[pidx]);
                buff.position (bidx);
-               positionPutter.putPosition(buff, pos);
+               if (pdata != null) {
+                  positionPutter.putPosition(buff, pdata, 3*verts[pidx]);
+               }
+               else {
+                  positionPutter.putPosition(buff, robj.getPosition (verts[pidx]));
+               }
 
                pidx += vertStride;
                bidx += positionInfo.stride;
@@ -69,9 +76,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
             int pidx = robj.getVertexNormalOffset();
 
             for (int i=0; i<normalInfo.count; ++i) {
-               float[] pos = robj.getNormal (verts[pidx]);
                buff.position (bidx);
-               normalPutter.putNormal(buff, pos);
+               if (ndata != null) {
+                  normalPutter.putNormal(buff, ndata, 3*verts[pidx]);
+               }
+               else {
+                  normalPutter.putNormal(buff, robj.getNormal (verts[pidx]));
+               }
 
                pidx += vertStride;
                bidx += normalInfo.stride;
@@ -84,9 +95,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
             int pidx = robj.getVertexColorOffset();
 
             for (int i=0; i<colorInfo.count; ++i) {
-               byte[] pos = robj.getColor (verts[pidx]);
                buff.position (bidx);
-               colorPutter.putColor(buff, pos);
+               if (cdata != null) {
+                  colorPutter.putColor(buff, cdata, 4*verts[pidx]);
+               }
+               else {
+                  colorPutter.putColor(buff, robj.getColor (verts[pidx]));
+               }
 
                pidx += vertStride;
                bidx += colorInfo.stride;
@@ -157,6 +172,9 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
 
       int vertStride = robj.getVertexStride ();
       int[] verts = robj.getVertexBuffer ();
+      float[] pdata = robj.getPositionData();
+      float[] ndata = robj.getNormalData();
+      byte[] cdata = robj.getColorData();
 
       // fill vertex buffers      
       if ( positionInfo != null ) {
@@ -165,9 +183,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
          ByteBuffer buff = buffs[positionInfo.vboIndex];
 
          for (int i=0; i<positionInfo.count; ++i) {
-            float[] pos = robj.getPosition (verts[pidx]);
             buff.position (bidx);
-            positionPutter.putPosition(buff, pos);
+            if (pdata != null) {
+               positionPutter.putPosition(buff, pdata, 3*verts[pidx]);
+            }
+            else {
+               positionPutter.putPosition(buff, robj.getPosition (verts[pidx]));
+            }
 
             pidx += vertStride;
             bidx += positionInfo.stride;
@@ -181,9 +203,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
          ByteBuffer buff = buffs[normalInfo.vboIndex];
 
          for (int i=0; i<normalInfo.count; ++i) {
-            float[] pos = robj.getNormal (verts[pidx]);
             buff.position (bidx);
-            normalPutter.putNormal(buff, pos);
+            if (ndata != null) {
+               normalPutter.putNormal(buff, ndata, 3*verts[pidx]);
+            }
+            else {
+               normalPutter.putNormal(buff, robj.getNormal (verts[pidx]));
+            }
 
             pidx += vertStride;
             bidx += normalInfo.stride;
@@ -197,9 +223,13 @@ public class GL3SharedRenderObjectVertices extends GL3SharedRenderObjectBase {
          ByteBuffer buff = buffs[colorInfo.vboIndex];
 
          for (int i=0; i<colorInfo.count; ++i) {
-            byte[] pos = robj.getColor (verts[pidx]);
             buff.position (bidx);
-            colorPutter.putColor(buff, pos);
+            if (cdata != null) {
+               colorPutter.putColor(buff, cdata, 4*verts[pidx]);
+            }
+            else {
+               colorPutter.putColor(buff, robj.getColor (verts[pidx]));
+            }
 
             pidx += vertStride;
             bidx += colorInfo.stride;
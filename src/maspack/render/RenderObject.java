@@ -336,6 +336,13 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    ArrayList<byte[]> colors;
    ArrayList<float[]> texcoords;
 
+   // packed storage for positions, normals and colors, used in place
+   // of the lists above when packedStorage is true
+   boolean packedStorage;
+   float[] positionData;
+   float[] normalData;
+   byte[] colorData;
+
    int currentPositionIdx;
    int currentNormalIdx;
    int currentColorIdx;
@@ -461,13 +468,116 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    //=========================================================================
    // Positions, Normals, Colors, Textures
    //=========================================================================
+
+   private static float[] growFloats (float[] data, int size) {
+      if (data == null) {
+         return new float[Math.max (size, 12)];
+      }
+      else if (data.length < size) {
+         return Arrays.copyOf (data, Math.max (size, 2*data.length));
+      }
+      return data;
+   }
+
+   private static byte[] growBytes (byte[] data, int size) {
+      if (data == null) {
+         return new byte[Math.max (size, 16)];
+      }
+      else if (data.length < size) {
+         return Arrays.copyOf (data, Math.max (size, 2*data.length));
+      }
+      return data;
+   }
+
+   /**
+    * Enables or disables packed storage for positions, normals and colors.
+    * With packed storage, these attributes are stored in contiguous arrays
+    * (three floats per position or normal, and four bytes per color)
+    * instead of in one small array per attribute. This greatly reduces the
+    * number of objects required for large deforming meshes, and allows
+    * attributes to be updated in bulk using methods such as {@link
+    * #setPositions(int,float[],int,int)}.
+    *
+    * <p>In packed mode, attributes are always copied: methods that normally
+    * add or set attributes by reference copy the supplied values instead,
+    * and methods such as {@link #getPosition(int)} return copies. The packed
+    * arrays themselves can be accessed using {@link #getPositionData},
+    * {@link #getNormalData} and {@link #getColorData}. Any existing
+    * attributes are converted when the mode changes.
+    *
+    * @param enable if <code>true</code>, enables packed storage
+    */
+   public void setPackedStorage (boolean enable) {
+      writeLock();
+      if (enable != packedStorage && positions != null) {
+         if (enable) {
+            int np = stateInfo.numPositions;
+            positionData = growFloats (null, 3*np);
+            for (int i=0; i<np; i++) {
+               System.arraycopy (positions.get(i), 0, positionData, 3*i, 3);
+            }
+            int nn = stateInfo.numNormals;
+            normalData = growFloats (null, 3*nn);
+            for (int i=0; i<nn; i++) {
+               System.arraycopy (normals.get(i), 0, normalData, 3*i, 3);
+            }
+            int nc = stateInfo.numColors;
+            colorData = growBytes (null, 4*nc);
+            for (int i=0; i<nc; i++) {
+               System.arraycopy (colors.get(i), 0, colorData, 4*i, 4);
+            }
+            positions = new ArrayList<>();
+            normals = new ArrayList<>();
+            colors = new ArrayList<>();
+         }
+         else {
+            positions = new ArrayList<>(stateInfo.numPositions);
+            for (int i=0; i<stateInfo.numPositions; i++) {
+               positions.add (Arrays.copyOfRange (positionData, 3*i, 3*i+3));
+            }
+            normals = new ArrayList<>(stateInfo.numNormals);
+            for (int i=0; i<stateInfo.numNormals; i++) {
+               normals.add (Arrays.copyOfRange (normalData, 3*i, 3*i+3));
+            }
+            colors = new ArrayList<>(stateInfo.numColors);
+            for (int i=0; i<stateInfo.numColors; i++) {
+               colors.add (Arrays.copyOfRange (colorData, 4*i, 4*i+4));
+            }
+            positionData = null;
+            normalData = null;
+            colorData = null;
+         }
+         notifyPositionsModifiedInternal();
+         notifyNormalsModifiedInternal();
+         notifyColorsModifiedInternal();
+      }
+      packedStorage = enable;
+      writeUnlock();
+   }
+
+   /**
+    * Queries whether packed storage is enabled for positions, normals and
+    * colors.
+    *
+    * @return <code>true</code> if packed storage is enabled
+    * @see #setPackedStorage
+    */
+   public boolean isPackedStorage() {
+      return packedStorage;
+   }
+
    /**
     * Hint for ensuring sufficient storage for positions
     * @param cap capacity
     */
    public void ensurePositionCapacity(int cap) {
       writeLock();
-      positions.ensureCapacity (cap);
+      if (packedStorage) {
+         positionData = growFloats (positionData, 3*cap);
+      }
+      else {
+         positions.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -479,14 +589,18 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the position added
     */
    public int addPosition (float px, float py, float pz) {
-      return addPosition (new float[]{px,py,pz});
+      writeLock();
+      int pidx = addPositionInternal (px, py, pz);
+      writeUnlock();
+      return pidx;
    }
    
    /**
     * Adds a position by reference.  If the position is modified outside of
     * this render object, then you must manually flag the change using {@link
     * #notifyPositionsModified()}.  Otherwise, renderers are free to assume the
-    * positions have not changed.
+    * positions have not changed. If packed storage is enabled, the position
+    * is copied instead.
     * @param xyz position vector
     * @return an index referring to the added position
     */
@@ -498,6 +612,9 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    }
    
    private int addPositionInternal (float[] xyz) {
+      if (packedStorage) {
+         return addPositionInternal (xyz[0], xyz[1], xyz[2]);
+      }
       int pidx = stateInfo.numPositions;
       positions.add (xyz);
       stateInfo.numPositions++;
@@ -506,14 +623,60 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       return pidx;      
    }
 
+   private int addPositionInternal (float px, float py, float pz) {
+      if (!packedStorage) {
+         return addPositionInternal (new float[] {px, py, pz});
+      }
+      int pidx = stateInfo.numPositions;
+      positionData = growFloats (positionData, 3*(pidx+1));
+      int k = 3*pidx;
+      positionData[k++] = px;
+      positionData[k++] = py;
+      positionData[k  ] = pz;
+      stateInfo.numPositions++;
+      currentPositionIdx = pidx;
+      notifyPositionsModifiedInternal ();
+      return pidx;
+   }
+
    /**
     * Adds an indexable 3D position
     * @param pos coordinates of the position
     * @return the index of the position added
     */
    public int addPosition(Vector3d pos) {
-      return addPosition (
-         new float[]{(float)pos.x, (float)pos.y, (float)pos.z});
+      return addPosition ((float)pos.x, (float)pos.y, (float)pos.z);
+   }
+
+   /**
+    * Adds <code>num</code> positions whose coordinates are stored
+    * contiguously in <code>xyz</code>, starting at <code>off</code>.
+    * The values are always copied.
+    *
+    * @param xyz coordinate values
+    * @param off offset of the first coordinate value in <code>xyz</code>
+    * @param num number of positions to add
+    * @return the index of the first position added
+    */
+   public int addPositions (float[] xyz, int off, int num) {
+      writeLock();
+      int pidx = stateInfo.numPositions;
+      if (packedStorage) {
+         positionData = growFloats (positionData, 3*(pidx+num));
+         System.arraycopy (xyz, off, positionData, 3*pidx, 3*num);
+         stateInfo.numPositions += num;
+         currentPositionIdx = pidx+num-1;
+         notifyPositionsModifiedInternal ();
+      }
+      else {
+         positions.ensureCapacity (pidx+num);
+         for (int i=0; i<num; i++) {
+            addPositionInternal (Arrays.copyOfRange (xyz, off, off+3));
+            off += 3;
+         }
+      }
+      writeUnlock();
+      return pidx;
    }      
 
    /**
@@ -523,7 +686,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentPosition(int pidx) {
       if (pidx >= 0) {
-         if (pidx >= positions.size()) {
+         if (pidx >= stateInfo.numPositions) {
             throw new IllegalArgumentException (
                "Position "+pidx+" is not defined");
          }
@@ -552,7 +715,18 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @param pz z coordinate
     */
    public void setPosition(int pidx, float px, float py, float pz) {
-      setPosition (pidx, new float[]{px,py,pz});
+      writeLock();
+      if (packedStorage) {
+         int k = 3*pidx;
+         positionData[k++] = px;
+         positionData[k++] = py;
+         positionData[k  ] = pz;
+      }
+      else {
+         positions.set (pidx, new float[]{px,py,pz});
+      }
+      notifyPositionsModifiedInternal ();
+      writeUnlock();
    }
    
    /**
@@ -561,19 +735,51 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @param pos new position coordinates
     */
    public void setPosition(int pidx, Vector3d pos) {
-      setPosition (pidx, new float[]{(float)pos.x, (float)pos.y, (float)pos.z});
+      setPosition (pidx, (float)pos.x, (float)pos.y, (float)pos.z);
    }
    
    /**
     * Updates the values of the position with index pidx, to the provide
-    * values by reference.  
+    * values by reference. If packed storage is enabled, the values
+    * are copied instead.
     * 
     * @param pidx position to modify
     * @param pos new position values by reference
     */
    public void setPosition(int pidx, float[] pos) {
       writeLock();
-      positions.set(pidx, pos);
+      if (packedStorage) {
+         System.arraycopy (pos, 0, positionData, 3*pidx, 3);
+      }
+      else {
+         positions.set(pidx, pos);
+      }
+      notifyPositionsModifiedInternal ();
+      writeUnlock();
+   }
+
+   /**
+    * Updates the values of <code>num</code> positions, starting at index
+    * <code>pidx</code>, from coordinates stored contiguously in
+    * <code>xyz</code> starting at <code>off</code>. The values are always
+    * copied. With packed storage, this is a single array copy.
+    *
+    * @param pidx index of the first position to modify
+    * @param xyz new coordinate values
+    * @param off offset of the first coordinate value in <code>xyz</code>
+    * @param num number of positions to modify
+    */
+   public void setPositions (int pidx, float[] xyz, int off, int num) {
+      writeLock();
+      if (packedStorage) {
+         System.arraycopy (xyz, off, positionData, 3*pidx, 3*num);
+      }
+      else {
+         for (int i=0; i<num; i++) {
+            positions.set (pidx+i, Arrays.copyOfRange (xyz, off, off+3));
+            off += 3;
+         }
+      }
       notifyPositionsModifiedInternal ();
       writeUnlock();
    }
@@ -585,7 +791,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (positions == null) {
          return false;
       }
-      return (positions.size () > 0);
+      return (stateInfo.numPositions > 0);
    }
 
    /**
@@ -597,7 +803,9 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
 
    /**
     * Retrieves the position at the supplied index.  If the returned position
-    * is modified, then {@link #notifyPositionsModified()} must be manually called.
+    * is modified, then {@link #notifyPositionsModified()} must be manually
+    * called. If packed storage is enabled, a copy of the position is
+    * returned instead.
     * @param pidx position index
     * @return position {x,y,z}
     */
@@ -611,9 +819,47 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (pidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         return Arrays.copyOfRange (positionData, 3*pidx, 3*pidx+3);
+      }
       return positions.get(pidx);
    }
 
+   /**
+    * Retrieves the position at the supplied index without allocating a copy
+    * when packed storage is enabled. In that case the position is copied
+    * into <code>pos</code>, which is returned; otherwise the stored position
+    * is returned by reference.
+    *
+    * @param pidx position index
+    * @param pos storage for the position, of length at least 3
+    * @return position {x,y,z}
+    */
+   public float[] getPosition(int pidx, float[] pos) {
+      if (pidx < 0) {
+         return null;
+      }
+      if (packedStorage) {
+         System.arraycopy (positionData, 3*pidx, pos, 0, 3);
+         return pos;
+      }
+      return positions.get(pidx);
+   }
+
+   /**
+    * Returns the array containing the packed position coordinates, or
+    * <code>null</code> if packed storage is not enabled. The coordinates of
+    * position <code>i</code> are stored at locations <code>3*i</code>
+    * through <code>3*i+2</code>. The array may be reallocated when positions
+    * are added. If its contents are modified, then {@link
+    * #notifyPositionsModified()} must be called.
+    *
+    * @return packed position array
+    */
+   public float[] getPositionData() {
+      return packedStorage ? positionData : null;
+   }
+
    /**
     * Retrieves the full list of positions.  This list should not
     * be modified.
@@ -622,6 +868,13 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public List<float[]> getPositions() {
       if (hasPositions()) {
+         if (packedStorage) {
+            ArrayList<float[]> list = new ArrayList<>(stateInfo.numPositions);
+            for (int i=0; i<stateInfo.numPositions; i++) {
+               list.add (getPositionInternal (i));
+            }
+            return Collections.unmodifiableList(list);
+         }
          return Collections.unmodifiableList(positions);
       }
       return null;
@@ -659,7 +912,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensureNormalCapacity(int cap) {
       writeLock();
-      normals.ensureCapacity (cap);
+      if (packedStorage) {
+         normalData = growFloats (normalData, 3*cap);
+      }
+      else {
+         normals.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -671,7 +929,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the normal added
     */
    public int addNormal(float nx, float ny, float nz) {
-      return addNormal(new float[]{nx,ny,nz});
+      writeLock();
+      int nidx = addNormalInternal (nx, ny, nz);
+      writeUnlock();
+      return nidx;
    }
    
    /**
@@ -679,18 +940,43 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * is modified outside of this render object, this object
     * must be notified with {@link #notifyNormalsModified()}.
     * Otherwise, renders are free to assume there has been
-    * no change.
+    * no change. If packed storage is enabled, the normal is
+    * copied instead.
     * @param nrm the normal to add
     * @return the index of the normal added
     */
    public int addNormal(float[] nrm) {
       writeLock();
+      int nidx = addNormalInternal (nrm);
+      writeUnlock();
+      return nidx;
+   }
+
+   private int addNormalInternal (float[] nrm) {
+      if (packedStorage) {
+         return addNormalInternal (nrm[0], nrm[1], nrm[2]);
+      }
       int nidx = stateInfo.numNormals;
       normals.add (nrm);
       stateInfo.numNormals++;
       currentNormalIdx = nidx;
       notifyNormalsModifiedInternal();
-      writeUnlock();
+      return nidx;
+   }
+
+   private int addNormalInternal (float nx, float ny, float nz) {
+      if (!packedStorage) {
+         return addNormalInternal (new float[] {nx, ny, nz});
+      }
+      int nidx = stateInfo.numNormals;
+      normalData = growFloats (normalData, 3*(nidx+1));
+      int k = 3*nidx;
+      normalData[k++] = nx;
+      normalData[k++] = ny;
+      normalData[k  ] = nz;
+      stateInfo.numNormals++;
+      currentNormalIdx = nidx;
+      notifyNormalsModifiedInternal();
       return nidx;
    }
 
@@ -700,8 +986,38 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the normal added
     */
    public int addNormal(Vector3d nrm) {
-      return addNormal (
-         new float[]{(float)nrm.x, (float)nrm.y, (float)nrm.z});
+      return addNormal ((float)nrm.x, (float)nrm.y, (float)nrm.z);
+   }
+
+   /**
+    * Adds <code>num</code> normals whose components are stored
+    * contiguously in <code>nrms</code>, starting at <code>off</code>.
+    * The values are always copied.
+    *
+    * @param nrms normal components
+    * @param off offset of the first component in <code>nrms</code>
+    * @param num number of normals to add
+    * @return the index of the first normal added
+    */
+   public int addNormals (float[] nrms, int off, int num) {
+      writeLock();
+      int nidx = stateInfo.numNormals;
+      if (packedStorage) {
+         normalData = growFloats (normalData, 3*(nidx+num));
+         System.arraycopy (nrms, off, normalData, 3*nidx, 3*num);
+         stateInfo.numNormals += num;
+         currentNormalIdx = nidx+num-1;
+         notifyNormalsModifiedInternal ();
+      }
+      else {
+         normals.ensureCapacity (nidx+num);
+         for (int i=0; i<num; i++) {
+            addNormalInternal (Arrays.copyOfRange (nrms, off, off+3));
+            off += 3;
+         }
+      }
+      writeUnlock();
+      return nidx;
    }   
    
    /**
@@ -711,7 +1027,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentNormal(int nidx) {
       if (nidx >= 0) {
-         if (nidx >= normals.size()) {
+         if (nidx >= stateInfo.numNormals) {
             throw new IllegalArgumentException (
                "Normal "+nidx+" is not defined");
          }
@@ -740,7 +1056,18 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @param nz z component
     */
    public void setNormal(int nidx, float nx, float ny, float nz) {
-      setNormal(nidx, new float[]{nx,ny,nz});
+      writeLock();
+      if (packedStorage) {
+         int k = 3*nidx;
+         normalData[k++] = nx;
+         normalData[k++] = ny;
+         normalData[k  ] = nz;
+      }
+      else {
+         normals.set (nidx, new float[]{nx,ny,nz});
+      }
+      notifyNormalsModifiedInternal();
+      writeUnlock();
    }
    
    /**
@@ -749,17 +1076,49 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @param nrm new normal coordinates
     */
    public void setNormal(int nidx, Vector3d nrm) {
-      setNormal(nidx, new float[]{(float)nrm.x, (float)nrm.y, (float)nrm.z});
+      setNormal(nidx, (float)nrm.x, (float)nrm.y, (float)nrm.z);
    }
    
    /**
-    * Updates the new normal, by reference, with index nidx.
+    * Updates the new normal, by reference, with index nidx. If packed
+    * storage is enabled, the values are copied instead.
     * @param nidx normal to modify
     * @param nrm the new normal
     */
    public void setNormal(int nidx, float[] nrm) {
       writeLock();
-      normals.set(nidx, nrm);
+      if (packedStorage) {
+         System.arraycopy (nrm, 0, normalData, 3*nidx, 3);
+      }
+      else {
+         normals.set(nidx, nrm);
+      }
+      notifyNormalsModifiedInternal();
+      writeUnlock();
+   }
+
+   /**
+    * Updates the values of <code>num</code> normals, starting at index
+    * <code>nidx</code>, from components stored contiguously in
+    * <code>nrms</code> starting at <code>off</code>. The values are always
+    * copied.
+    *
+    * @param nidx index of the first normal to modify
+    * @param nrms new normal components
+    * @param off offset of the first component in <code>nrms</code>
+    * @param num number of normals to modify
+    */
+   public void setNormals (int nidx, float[] nrms, int off, int num) {
+      writeLock();
+      if (packedStorage) {
+         System.arraycopy (nrms, off, normalData, 3*nidx, 3*num);
+      }
+      else {
+         for (int i=0; i<num; i++) {
+            normals.set (nidx+i, Arrays.copyOfRange (nrms, off, off+3));
+            off += 3;
+         }
+      }
       notifyNormalsModifiedInternal();
       writeUnlock();
    }
@@ -771,7 +1130,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (normals == null) {
          return false;
       }
-      return (normals.size () > 0);
+      return (stateInfo.numNormals > 0);
    }
 
    /**
@@ -784,7 +1143,8 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
    /**
     * Retrieves the normal at the supplied index.  If the returned
     * normal is modified, then {@link #notifyNormalsModified()} must
-    * be called.
+    * be called. If packed storage is enabled, a copy of the normal is
+    * returned instead.
     * @param nidx normal index
     * @return normal {x,y,z}
     */
@@ -797,10 +1157,47 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (nidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         return Arrays.copyOfRange (normalData, 3*nidx, 3*nidx+3);
+      }
       float[] nrm = normals.get(nidx);
       return nrm;
    }
 
+   /**
+    * Retrieves the normal at the supplied index without allocating a copy
+    * when packed storage is enabled, as described for {@link
+    * #getPosition(int,float[])}.
+    *
+    * @param nidx normal index
+    * @param nrm storage for the normal, of length at least 3
+    * @return normal {x,y,z}
+    */
+   public float[] getNormal(int nidx, float[] nrm) {
+      if (nidx < 0) {
+         return null;
+      }
+      if (packedStorage) {
+         System.arraycopy (normalData, 3*nidx, nrm, 0, 3);
+         return nrm;
+      }
+      return normals.get(nidx);
+   }
+
+   /**
+    * Returns the array containing the packed normal components, or
+    * <code>null</code> if packed storage is not enabled. The components of
+    * normal <code>i</code> are stored at locations <code>3*i</code> through
+    * <code>3*i+2</code>. The array may be reallocated when normals are
+    * added. If its contents are modified, then {@link
+    * #notifyNormalsModified()} must be called.
+    *
+    * @return packed normal array
+    */
+   public float[] getNormalData() {
+      return packedStorage ? normalData : null;
+   }
+
    /**
     * Retrieves the full list of normals.  If the contents
     * of this list are modified, the method {@link #notifyNormalsModified()}
@@ -810,6 +1207,13 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public List<float[]> getNormals() {
       if (hasNormals()) {
+         if (packedStorage) {
+            ArrayList<float[]> list = new ArrayList<>(stateInfo.numNormals);
+            for (int i=0; i<stateInfo.numNormals; i++) {
+               list.add (getNormalInternal (i));
+            }
+            return Collections.unmodifiableList(list);
+         }
          return Collections.unmodifiableList(normals);
       }
       return null;
@@ -851,7 +1255,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void ensureColorCapacity(int cap) {
       writeLock();
-      colors.ensureCapacity (cap);
+      if (packedStorage) {
+         colorData = growBytes (colorData, 4*cap);
+      }
+      else {
+         colors.ensureCapacity (cap);
+      }
       writeUnlock();
    }
 
@@ -864,7 +1273,10 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the color added
     */
    public int addColor(byte r, byte g, byte b, byte a) {
-      return addColor(new byte[]{r,g,b,a});
+      writeLock();
+      int cidx = addColorInternal (r, g, b, a);
+      writeUnlock();
+      return cidx;
    }
    
    /**
@@ -876,7 +1288,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the color added
     */
    public int addColor(int r, int g, int b, int a) {
-      return addColor(new byte[]{(byte)r,(byte)g,(byte)b,(byte)a});
+      return addColor((byte)r,(byte)g,(byte)b,(byte)a);
    }
    
    /**
@@ -888,8 +1300,8 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return the index of the color added
     */
    public int addColor(float r, float g, float b, float a) {
-      return addColor(new byte[]{
-         (byte)(255*r),(byte)(255*g),(byte)(255*b),(byte)(255*a)});
+      return addColor(
+         (byte)(255*r),(byte)(255*g),(byte)(255*b),(byte)(255*a));
    }
 
    /**
@@ -902,8 +1314,8 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (rgba.length > 3) {
          alpha = rgba[3];
       }
-      return addColor(new byte[]{
-         (byte)(255*rgba[0]),(byte)(255*rgba[1]),(byte)(255*rgba[2]),(byte)(255*alpha)});
+      return addColor(
+         (byte)(255*rgba[0]),(byte)(255*rgba[1]),(byte)(255*rgba[2]),(byte)(255*alpha));
    }
    
    /**
@@ -912,26 +1324,82 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public int addColor(Color color) {
       return addColor(
-         new byte[]{
-                    (byte)color.getRed(), (byte)color.getGreen(), 
-                    (byte)color.getBlue(), (byte)color.getAlpha()});
+         (byte)color.getRed(), (byte)color.getGreen(),
+         (byte)color.getBlue(), (byte)color.getAlpha());
    }
    
    /**
     * Adds an indexable color by reference.  If the color is modified
     * outside of this object, then {@link #notifyColorsModified()} must
     * be called.  Otherwise, renderers are free to assume the render object
-    * has not changed.
+    * has not changed. If packed storage is enabled, the color is copied
+    * instead.
     * @param rgba {red, green, blue, alpha}
     * @return the index of the color added
     */
    public int addColor(byte[] rgba) {
       writeLock();
+      int cidx = addColorInternal (rgba);
+      writeUnlock();
+      return cidx;
+   }
+
+   private int addColorInternal (byte[] rgba) {
+      if (packedStorage) {
+         return addColorInternal (rgba[0], rgba[1], rgba[2], rgba[3]);
+      }
       int cidx = stateInfo.numColors;
       colors.add (rgba);
       stateInfo.numColors++;
       currentColorIdx = cidx;
       notifyColorsModifiedInternal ();
+      return cidx;
+   }
+
+   private int addColorInternal (byte r, byte g, byte b, byte a) {
+      if (!packedStorage) {
+         return addColorInternal (new byte[] {r, g, b, a});
+      }
+      int cidx = stateInfo.numColors;
+      colorData = growBytes (colorData, 4*(cidx+1));
+      int k = 4*cidx;
+      colorData[k++] = r;
+      colorData[k++] = g;
+      colorData[k++] = b;
+      colorData[k  ] = a;
+      stateInfo.numColors++;
+      currentColorIdx = cidx;
+      notifyColorsModifiedInternal ();
+      return cidx;
+   }
+
+   /**
+    * Adds <code>num</code> colors whose RGBA values are stored
+    * contiguously in <code>rgba</code>, starting at <code>off</code>.
+    * The values are always copied.
+    *
+    * @param rgba color values
+    * @param off offset of the first value in <code>rgba</code>
+    * @param num number of colors to add
+    * @return the index of the first color added
+    */
+   public int addColors (byte[] rgba, int off, int num) {
+      writeLock();
+      int cidx = stateInfo.numColors;
+      if (packedStorage) {
+         colorData = growBytes (colorData, 4*(cidx+num));
+         System.arraycopy (rgba, off, colorData, 4*cidx, 4*num);
+         stateInfo.numColors += num;
+         currentColorIdx = cidx+num-1;
+         notifyColorsModifiedInternal ();
+      }
+      else {
+         colors.ensureCapacity (cidx+num);
+         for (int i=0; i<num; i++) {
+            addColorInternal (Arrays.copyOfRange (rgba, off, off+4));
+            off += 4;
+         }
+      }
       writeUnlock();
       return cidx;
    }
@@ -954,7 +1422,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setCurrentColor(int cidx) {
       if (cidx >= 0) {
-         if (cidx >= colors.size()) {
+         if (cidx >= stateInfo.numColors) {
             throw new IllegalArgumentException (
                "Color "+cidx+" is not defined");
          }
@@ -984,7 +1452,19 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @param a alpha
     */
    public void setColor(int cidx, byte r, byte g, byte b, byte a) {
-      setColor(cidx, new byte[]{r,g,b,a});
+      writeLock();
+      if (packedStorage) {
+         int k = 4*cidx;
+         colorData[k++] = r;
+         colorData[k++] = g;
+         colorData[k++] = b;
+         colorData[k  ] = a;
+      }
+      else {
+         colors.set (cidx, new byte[]{r,g,b,a});
+      }
+      notifyColorsModifiedInternal();
+      writeUnlock();
    }
 
    /**
@@ -1018,19 +1498,50 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     */
    public void setColor(int cidx, Color color) {
       setColor(cidx, 
-         new byte[]{
-                    (byte)color.getRed(), (byte)color.getGreen(), 
-                    (byte)color.getBlue(), (byte)color.getAlpha()});
+         (byte)color.getRed(), (byte)color.getGreen(),
+         (byte)color.getBlue(), (byte)color.getAlpha());
    }
    
    /**
     * Updates the values of the color, by reference, with index cidx.
+    * If packed storage is enabled, the values are copied instead.
     * @param cidx color to modify
     * @param rgba {red, green, blue, alpha}
     */
    public void setColor(int cidx, byte[] rgba) {
       writeLock();
-      colors.set(cidx, rgba);
+      if (packedStorage) {
+         System.arraycopy (rgba, 0, colorData, 4*cidx, 4);
+      }
+      else {
+         colors.set(cidx, rgba);
+      }
+      notifyColorsModifiedInternal();
+      writeUnlock();
+   }
+
+   /**
+    * Updates the values of <code>num</code> colors, starting at index
+    * <code>cidx</code>, from RGBA values stored contiguously in
+    * <code>rgba</code> starting at <code>off</code>. The values are always
+    * copied.
+    *
+    * @param cidx index of the first color to modify
+    * @param rgba new color values
+    * @param off offset of the first value in <code>rgba</code>
+    * @param num number of colors to modify
+    */
+   public void setColors (int cidx, byte[] rgba, int off, int num) {
+      writeLock();
+      if (packedStorage) {
+         System.arraycopy (rgba, off, colorData, 4*cidx, 4*num);
+      }
+      else {
+         for (int i=0; i<num; i++) {
+            colors.set (cidx+i, Arrays.copyOfRange (rgba, off, off+4));
+            off += 4;
+         }
+      }
       notifyColorsModifiedInternal();
       writeUnlock();
    }
@@ -1042,7 +1553,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (colors == null) {
          return false;
       }
-      return (colors.size () > 0);
+      return (stateInfo.numColors > 0);
    }
 
    /**
@@ -1054,7 +1565,9 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
 
    /**
     * Retrieves the color at the supplied index.  If the returned color
-    * is modified, then {@link #notifyColorsModified()} must be manually called.
+    * is modified, then {@link #notifyColorsModified()} must be manually
+    * called. If packed storage is enabled, a copy of the color is
+    * returned instead.
     * @param cidx color index
     * @return color {red, green, blue, alpha}
     */
@@ -1067,9 +1580,46 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       if (cidx < 0) {
          return null;
       }
+      if (packedStorage) {
+         return Arrays.copyOfRange (colorData, 4*cidx, 4*cidx+4);
+      }
       return colors.get(cidx);
    }
 
+   /**
+    * Retrieves the color at the supplied index without allocating a copy
+    * when packed storage is enabled, as described for {@link
+    * #getPosition(int,float[])}.
+    *
+    * @param cidx color index
+    * @param clr storage for the color, of length at least 4
+    * @return color {r,g,b,a}
+    */
+   public byte[] getColor(int cidx, byte[] clr) {
+      if (cidx < 0) {
+         return null;
+      }
+      if (packedStorage) {
+         System.arraycopy (colorData, 4*cidx, clr, 0, 4);
+         return clr;
+      }
+      return colors.get(cidx);
+   }
+
+   /**
+    * Returns the array containing the packed color values, or
+    * <code>null</code> if packed storage is not enabled. The RGBA values of
+    * color <code>i</code> are stored at locations <code>4*i</code> through
+    * <code>4*i+3</code>. The array may be reallocated when colors are added.
+    * If its contents are modified, then {@link #notifyColorsModified()}
+    * must be called.
+    *
+    * @return packed color array
+    */
+   public byte[] getColorData() {
+      return packedStorage ? colorData : null;
+   }
+
    /**
     * Retrieves the full list of Colors.  This list should not
     * be modified.  
@@ -1077,6 +1627,13 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return list of colors.
     */
    public List<byte[]> getColors() {
+      if (packedStorage) {
+         ArrayList<byte[]> list = new ArrayList<>(stateInfo.numColors);
+         for (int i=0; i<stateInfo.numColors; i++) {
+            list.add (getColorInternal (i));
+         }
+         return Collections.unmodifiableList(list);
+      }
       return Collections.unmodifiableList(colors);
    }
 
@@ -1491,7 +2048,12 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return vertex index
     */
    public int vertex(float px, float py, float pz) {
-      return vertex(new float[] {px,py,pz});
+      writeLock();
+      int pIdx = addPositionInternal(px, py, pz);
+      int vidx = addVertexInternal(
+         pIdx, currentNormalIdx, currentColorIdx, currentTextureIdx);
+      writeUnlock();
+      return vidx;
    }
    
    /**
@@ -1502,7 +2064,7 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
     * @return vertex index
     */
    public int vertex(Vector3d pos) {
-      return vertex(new float[] {(float)pos.x, (float)pos.y, (float)pos.z});
+      return vertex((float)pos.x, (float)pos.y, (float)pos.z);
    }
    
    private int vertexInternal(float[] xyz) {
@@ -1621,6 +2183,60 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       return tex;
    }
 
+   /**
+    * Returns the position of the supplied vertex without allocating a copy
+    * when packed storage is enabled, as described for {@link
+    * #getPosition(int,float[])}.
+    *
+    * @param vidx vertex index
+    * @param pos storage for the position, of length at least 3
+    * @return position {x,y,z}, or <code>null</code> if the vertices have
+    * no positions
+    */
+   public float[] getVertexPosition(int vidx, float[] pos) {
+      if (vertexPositionOffset < 0) {
+         return null;
+      }
+      int idx = vertices[vidx*vertexStride+vertexPositionOffset];
+      return getPosition (idx, pos);
+   }
+
+   /**
+    * Returns the normal of the supplied vertex without allocating a copy
+    * when packed storage is enabled, as described for {@link
+    * #getPosition(int,float[])}.
+    *
+    * @param vidx vertex index
+    * @param nrm storage for the normal, of length at least 3
+    * @return normal {x,y,z}, or <code>null</code> if the vertices have
+    * no normals
+    */
+   public float[] getVertexNormal(int vidx, float[] nrm) {
+      if (vertexNormalOffset < 0) {
+         return null;
+      }
+      int idx = vertices[vidx*vertexStride+vertexNormalOffset];
+      return getNormal (idx, nrm);
+   }
+
+   /**
+    * Returns the color of the supplied vertex without allocating a copy
+    * when packed storage is enabled, as described for {@link
+    * #getPosition(int,float[])}.
+    *
+    * @param vidx vertex index
+    * @param clr storage for the color, of length at least 4
+    * @return color {r,g,b,a}, or <code>null</code> if the vertices have
+    * no colors
+    */
+   public byte[] getVertexColor(int vidx, byte[] clr) {
+      if (vertexColorOffset < 0) {
+         return null;
+      }
+      int idx = vertices[vidx*vertexStride+vertexColorOffset];
+      return getColor (idx, clr);
+   }
+
    /**
     * Raw pointer to vertex data (mainly used by renderers).
     * Offsets and strides for various attributes can be
@@ -2701,6 +3317,9 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       normals = new ArrayList<> ();
       colors = new ArrayList<> ();
       texcoords = new ArrayList<> ();
+      positionData = null;
+      normalData = null;
+      colorData = null;
 
       positionsModified = true;
       normalsModified = true;
@@ -2808,6 +3427,9 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
       normals = null;
       colors = null;
       texcoords = null;
+      positionData = null;
+      normalData = null;
+      colorData = null;
 
       vertices = null;
       
@@ -2867,6 +3489,17 @@ public class RenderObject implements Versioned, DisposeObservable, Disposable {
          r.texcoords = null;
       }
 
+      r.packedStorage = packedStorage;
+      if (positionData != null) {
+         r.positionData = Arrays.copyOf (positionData, positionData.length);
+      }
+      if (normalData != null) {
+         r.normalData = Arrays.copyOf (normalData, normalData.length);
+      }
+      if (colorData != null) {
+         r.colorData = Arrays.copyOf (colorData, colorData.length);
+      }
+
       r.stateInfo = stateInfo.clone();
 
       r.currentPositionIdx = currentPositionIdx;
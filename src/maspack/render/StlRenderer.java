@@ -279,6 +279,11 @@ public class StlRenderer implements Renderer {
    private LinkedList<Matrix3d> modelNormalMatrixStack;   // linked to model matrix
    
    protected Vector3d zDir = new Vector3d();     // used for determining zOrder
+   // storage for reading vertex positions without allocation when render
+   // objects use packed storage
+   private float[] myVertexPos0 = new float[3];
+   private float[] myVertexPos1 = new float[3];
+   private float[] myVertexPos2 = new float[3];
 
    protected static final float DEFAULT_DEPTH_OFFSET_INTERVAL = 1e-5f; // prevent z-fighting
    private static final Point3d DEFAULT_VIEWER_CENTER = new Point3d();
@@ -1068,9 +1073,9 @@ public class StlRenderer implements Renderer {
             int triStride = robj.getTriangleStride();
             
             for (int i=0; i<triStride*ntris; i += triStride) {
-               float[] v0 = robj.getVertexPosition(tris[i]);
-               float[] v1 = robj.getVertexPosition(tris[i+1]);
-               float[] v2 = robj.getVertexPosition(tris[i+2]);
+               float[] v0 = robj.getVertexPosition(tris[i], myVertexPos0);
+               float[] v1 = robj.getVertexPosition(tris[i+1], myVertexPos1);
+               float[] v2 = robj.getVertexPosition(tris[i+2], myVertexPos2);
                
                // scale radially based on z
                p0 = toPoint(v0);
@@ -1721,9 +1726,9 @@ public class StlRenderer implements Renderer {
             int triStride = robj.getTriangleStride();
             
             for (int i=triStride*offset; i<triStride*count; i += triStride) {
-               float[] v0 = robj.getVertexPosition(tris[i]);
-               float[] v1 = robj.getVertexPosition(tris[i+1]);
-               float[] v2 = robj.getVertexPosition(tris[i+2]);
+               float[] v0 = robj.getVertexPosition(tris[i], myVertexPos0);
+               float[] v1 = robj.getVertexPosition(tris[i+1], myVertexPos1);
+               float[] v2 = robj.getVertexPosition(tris[i+2], myVertexPos2);
                
                p0.transform(modelMatrix, toVector(v0));
                p1.transform(modelMatrix, toVector(v1));
@@ -1772,8 +1777,8 @@ public class StlRenderer implements Renderer {
                int lineStride = robj.getLineStride();
 
                for (int i=lineStride*offset; i<lineStride*count; i += lineStride) {
-                  float[] v0 = robj.getVertexPosition(lines[i]);
-                  float[] v1 = robj.getVertexPosition(lines[i+1]);
+                  float[] v0 = robj.getVertexPosition(lines[i], myVertexPos0);
+                  float[] v1 = robj.getVertexPosition(lines[i+1], myVertexPos1);
 
                   drawCylinder(v0, v1, rad, true);
                }
@@ -1787,8 +1792,8 @@ public class StlRenderer implements Renderer {
                int lineStride = robj.getLineStride();
 
                for (int i=lineStride*offset; i<lineStride*count; i += lineStride) {
-                  float[] v0 = robj.getVertexPosition(lines[i]);
-                  float[] v1 = robj.getVertexPosition(lines[i+1]);
+                  float[] v0 = robj.getVertexPosition(lines[i], myVertexPos0);
+                  float[] v1 = robj.getVertexPosition(lines[i+1], myVertexPos1);
 
                   drawArrow(v0, v1, rad, true);
                }
@@ -1802,8 +1807,8 @@ public class StlRenderer implements Renderer {
                int lineStride = robj.getLineStride();
 
                for (int i=lineStride*offset; i<lineStride*count; i += lineStride) {
-                  float[] v0 = robj.getVertexPosition(lines[i]);
-                  float[] v1 = robj.getVertexPosition(lines[i+1]);
+                  float[] v0 = robj.getVertexPosition(lines[i], myVertexPos0);
+                  float[] v1 = robj.getVertexPosition(lines[i+1], myVertexPos1);
 
                   drawSpindle(v0, v1, rad);
                }
@@ -1852,7 +1857,7 @@ public class StlRenderer implements Renderer {
                int pointStride = robj.getPointStride();
 
                for (int i=pointStride*offset; i<pointStride*count; i += pointStride) {
-                  float[] v0 = robj.getVertexPosition(points[i]);
+                  float[] v0 = robj.getVertexPosition(points[i], myVertexPos0);
                   drawCube(v0, 2*rad);
                }
             }
@@ -1865,7 +1870,7 @@ public class StlRenderer implements Renderer {
                int pointStride = robj.getPointStride();
 
                for (int i=pointStride*offset; i<pointStride*count; i += pointStride) {
-                  float[] v0 = robj.getVertexPosition(points[i]);
+                  float[] v0 = robj.getVertexPosition(points[i], myVertexPos0);
                   drawSphere(v0, rad);
                }
             }
@@ -1897,15 +1902,15 @@ public class StlRenderer implements Renderer {
                   
                   // add triangle triples
                   for (int i=0; i<robj.numVertices(); i+=3) {
-                     float[] tmp = robj.getVertexPosition(i);
+                     float[] tmp = robj.getVertexPosition(i, myVertexPos0);
                      p0.set(tmp[0], tmp[1], tmp[2]);
                      p0.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(i+1);
+                     tmp = robj.getVertexPosition(i+1, myVertexPos1);
                      p1.set(tmp[0], tmp[1], tmp[2]);
                      p1.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(i+2);
+                     tmp = robj.getVertexPosition(i+2, myVertexPos2);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
@@ -1933,18 +1938,18 @@ public class StlRenderer implements Renderer {
                try {
                   
                   // add pairs of triangles
-                  float[] tmp = robj.getVertexPosition(0);
+                  float[] tmp = robj.getVertexPosition(0, myVertexPos0);
                   p0.set(tmp[0], tmp[1], tmp[2]);
                   p0.transform(modelMatrix);
                   
-                  tmp = robj.getVertexPosition(1);
+                  tmp = robj.getVertexPosition(1, myVertexPos0);
                   p2.set(tmp[0], tmp[1], tmp[2]);
                   p2.transform(modelMatrix);
                   
                   for (int i=2; i<robj.numVertices(); ++i) {
                      p1 = p2;
                      
-                     tmp = robj.getVertexPosition(i);
+                     tmp = robj.getVertexPosition(i, myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
@@ -1975,11 +1980,11 @@ public class StlRenderer implements Renderer {
                   int vEnd = robj.numVertices()-1;
                   
                   // add pairs of triangles
-                  float[] tmp = robj.getVertexPosition(0);
+                  float[] tmp = robj.getVertexPosition(0, myVertexPos0);
                   p2.set(tmp[0], tmp[1], tmp[2]);
                   p2.transform(modelMatrix);
                   
-                  tmp = robj.getVertexPosition(1);
+                  tmp = robj.getVertexPosition(1, myVertexPos0);
                   p3.set(tmp[0], tmp[1], tmp[2]);
                   p3.transform(modelMatrix);
                   
@@ -1987,11 +1992,11 @@ public class StlRenderer implements Renderer {
                      p0 = p2;
                      p1 = p3;
                      
-                     tmp = robj.getVertexPosition(i);
+                     tmp = robj.getVertexPosition(i, myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(i+1);
+                     tmp = robj.getVertexPosition(i+1, myVertexPos1);
                      p3.set(tmp[0], tmp[1], tmp[2]);
                      p3.transform(modelMatrix);
                      
@@ -2004,7 +2009,7 @@ public class StlRenderer implements Renderer {
                   if (i > 2 && i % 2 == 0) {
                      p0 = p2;
                      p1 = p3;
-                     tmp = robj.getVertexPosition(vEnd);
+                     tmp = robj.getVertexPosition(vEnd, myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
@@ -2054,15 +2059,15 @@ public class StlRenderer implements Renderer {
                   
                   // add triangle triples
                   for (int i=0; i<count; i+=3) {
-                     float[] tmp = robj.getVertexPosition(idxs.get(offset+i));
+                     float[] tmp = robj.getVertexPosition(idxs.get(offset+i), myVertexPos0);
                      p0.set(tmp[0], tmp[1], tmp[2]);
                      p0.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(idxs.get(offset+i+1));
+                     tmp = robj.getVertexPosition(idxs.get(offset+i+1), myVertexPos1);
                      p1.set(tmp[0], tmp[1], tmp[2]);
                      p1.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(idxs.get(offset+i+2));
+                     tmp = robj.getVertexPosition(idxs.get(offset+i+2), myVertexPos2);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
@@ -2090,18 +2095,18 @@ public class StlRenderer implements Renderer {
                try {
                   
                   // add pairs of triangles
-                  float[] tmp = robj.getVertexPosition(idxs.get(offset));
+                  float[] tmp = robj.getVertexPosition(idxs.get(offset), myVertexPos0);
                   p0.set(tmp[0], tmp[1], tmp[2]);
                   p0.transform(modelMatrix);
                   
-                  tmp = robj.getVertexPosition(idxs.get(offset+1));
+                  tmp = robj.getVertexPosition(idxs.get(offset+1), myVertexPos1);
                   p2.set(tmp[0], tmp[1], tmp[2]);
                   p2.transform(modelMatrix);
                   
                   for (int i=2; i<count; ++i) {
                      p1 = p2;
                      
-                     tmp = robj.getVertexPosition(idxs.get(offset+i));
+                     tmp = robj.getVertexPosition(idxs.get(offset+i), myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
@@ -2132,11 +2137,11 @@ public class StlRenderer implements Renderer {
                   int vEnd = offset+count-1;
                   
                   // add pairs of triangles
-                  float[] tmp = robj.getVertexPosition(idxs.get(vStart));
+                  float[] tmp = robj.getVertexPosition(idxs.get(vStart), myVertexPos0);
                   p2.set(tmp[0], tmp[1], tmp[2]);
                   p2.transform(modelMatrix);
                   
-                  tmp = robj.getVertexPosition(idxs.get(vStart+1));
+                  tmp = robj.getVertexPosition(idxs.get(vStart+1), myVertexPos1);
                   p3.set(tmp[0], tmp[1], tmp[2]);
                   p3.transform(modelMatrix);
                   
@@ -2144,11 +2149,11 @@ public class StlRenderer implements Renderer {
                      p0 = p2;
                      p1 = p3;
                      
-                     tmp = robj.getVertexPosition(idxs.get(i));
+                     tmp = robj.getVertexPosition(idxs.get(i), myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
-                     tmp = robj.getVertexPosition(idxs.get(i+1));
+                     tmp = robj.getVertexPosition(idxs.get(i+1), myVertexPos1);
                      p3.set(tmp[0], tmp[1], tmp[2]);
                      p3.transform(modelMatrix);
                      
@@ -2161,7 +2166,7 @@ public class StlRenderer implements Renderer {
                   if (i > 2 && i % 2 == 0) {
                      p0 = p2;
                      p1 = p3;
-                     tmp = robj.getVertexPosition(idxs.get(vEnd));
+                     tmp = robj.getVertexPosition(idxs.get(vEnd), myVertexPos0);
                      p2.set(tmp[0], tmp[1], tmp[2]);
                      p2.transform(modelMatrix);
                      
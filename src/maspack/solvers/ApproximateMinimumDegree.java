@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.solvers;
+
+import java.util.Arrays;
+
+/**
+ * Computes a fill-reducing elimination ordering for a symmetric sparse matrix
+ * using an approximate minimum degree algorithm. The matrix is described by
+ * the adjacency graph of its off-diagonal non-zeros, and elimination is
+ * simulated using a quotient graph, in which eliminated nodes become
+ * <i>elements</i> whose variable lists represent the fill they create. As in
+ * the AMD algorithm of Amestoy, Davis and Duff, node degrees are not computed
+ * exactly, but are bounded above using the sizes of the adjacent elements
+ * outside the most recently created element.
+ *
+ * <p>Nodes may be weighted, so that each node can represent a group of
+ * indistinguishable matrix rows (such as the degrees of freedom of a single
+ * point or rigid body), and degrees are then computed in terms of the total
+ * weight of the adjacent nodes.
+ *
+ * <p>Nodes may also be <i>delayed</i>, meaning that they will not be
+ * eliminated until at least one of their neighbors has been eliminated (or
+ * only delayed nodes remain). This is used for rows whose diagonal entries
+ * are zero, such as the constraint rows of a KKT system, so that the
+ * diagonal entry has been filled in by the time the row is eliminated.
+ */
+public class ApproximateMinimumDegree {
+
+   private static final int WAITING = 0;  // delayed variable not yet queued
+   private static final int QUEUED = 1;   // variable available for elimination
+   private static final int ELEMENT = 2;  // eliminated node, now an element
+   private static final int ABSORBED = 3; // element absorbed by another
+
+   private int myNumNodes;
+   private int[] myWeights;
+   private int[] myStatus;
+
+   // quotient graph: variable and element neighbors for each variable,
+   // and variable lists for each element
+   private int[][] myVarAdj;
+   private int[] myVarAdjLen;
+   private int[][] myElemAdj;
+   private int[] myElemAdjLen;
+   private int[][] myElemVars;
+   private int[] myElemWeight;
+
+   // degree lists
+   private int[] myDegree;
+   private int[] myHead;
+   private int[] myNext;
+   private int[] myPrev;
+   private int myMinDegree;
+
+   // workspace
+   private int[] myMark;
+   private int myTag;
+   private int[] myExtWeight;
+   private int[] myExtMark;
+   private int myExtTag;
+   private int[] myLp;
+
+   private ApproximateMinimumDegree() {
+   }
+
+   /**
+    * Computes an elimination ordering for the graph of a symmetric sparse
+    * matrix. The adjacency structure is given in compressed form, with the
+    * neighbors of node <code>i</code> located in <code>adj</code> between
+    * <code>adjPtr[i]</code> and <code>adjPtr[i+1]</code>. The structure must
+    * be symmetric and must not contain self-edges.
+    *
+    * @param n number of nodes
+    * @param adjPtr offsets of each node's neighbors within <code>adj</code>
+    * @param adj node neighbors
+    * @param weights if non-<code>null</code>, gives a positive weight for
+    * each node. Otherwise, all nodes are given a weight of one.
+    * @param delayed if non-<code>null</code>, identifies nodes which should
+    * not be eliminated until one of their neighbors has been eliminated.
+    * @return array of length <code>n</code> giving the nodes in elimination
+    * order
+    */
+   public static int[] computeOrdering (
+      int n, int[] adjPtr, int[] adj, int[] weights, boolean[] delayed) {
+      ApproximateMinimumDegree amd = new ApproximateMinimumDegree();
+      return amd.order (n, adjPtr, adj, weights, delayed);
+   }
+
+   private void initialize (
+      int n, int[] adjPtr, int[] adj, int[] weights, boolean[] delayed) {
+      myNumNodes = n;
+      myWeights = new int[n];
+      int totalWeight = 0;
+      for (int i=0; i<n; i++) {
+         myWeights[i] = (weights != null ? weights[i] : 1);
+         if (myWeights[i] <= 0) {
+            throw new IllegalArgumentException (
+               "weight for node "+i+" is not positive");
+         }
+         totalWeight += myWeights[i];
+      }
+      myStatus = new int[n];
+      myVarAdj = new int[n][];
+      myVarAdjLen = new int[n];
+      myElemAdj = new int[n][];
+      myElemAdjLen = new int[n];
+      myElemVars = new int[n][];
+      myElemWeight = new int[n];
+      myDegree = new int[n];
+      myHead = new int[totalWeight+1];
+      Arrays.fill (myHead, -1);
+      myNext = new int[n];
+      myPrev = new int[n];
+      myMinDegree = totalWeight+1;
+      myMark = new int[n];
+      myTag = 0;
+      myExtWeight = new int[n];
+      myExtMark = new int[n];
+      myExtTag = 0;
+      myLp = new int[n];
+
+      for (int i=0; i<n; i++) {
+         int len = adjPtr[i+1]-adjPtr[i];
+         myVarAdj[i] = Arrays.copyOfRange (adj, adjPtr[i], adjPtr[i+1]);
+         myVarAdjLen[i] = len;
+         myElemAdj[i] = new int[2];
+         int deg = 0;
+         for (int k=adjPtr[i]; k<adjPtr[i+1]; k++) {
+            if (adj[k] == i) {
+               throw new IllegalArgumentException (
+                  "adjacency structure contains a self-edge for node "+i);
+            }
+            deg += myWeights[adj[k]];
+         }
+         myDegree[i] = deg;
+         if (delayed != null && delayed[i]) {
+            myStatus[i] = WAITING;
+         }
+         else {
+            myStatus[i] = QUEUED;
+            insertDegree (i, deg);
+         }
+      }
+   }
+
+   private void insertDegree (int i, int deg) {
+      int h = myHead[deg];
+      myNext[i] = h;
+      myPrev[i] = -1;
+      if (h != -1) {
+         myPrev[h] = i;
+      }
+      myHead[deg] = i;
+      if (deg < myMinDegree) {
+         myMinDegree = deg;
+      }
+   }
+
+   private void removeDegree (int i) {
+      int nxt = myNext[i];
+      int prv = myPrev[i];
+      if (nxt != -1) {
+         myPrev[nxt] = prv;
+      }
+      if (prv != -1) {
+         myNext[prv] = nxt;
+      }
+      else {
+         myHead[myDegree[i]] = nxt;
+      }
+   }
+
+   private int findMinDegreeNode() {
+      while (myMinDegree < myHead.length) {
+         int i = myHead[myMinDegree];
+         if (i != -1) {
+            return i;
+         }
+         myMinDegree++;
+      }
+      return -1;
+   }
+
+   private int[] order (
+      int n, int[] adjPtr, int[] adj, int[] weights, boolean[] delayed) {
+
+      initialize (n, adjPtr, adj, weights, delayed);
+      int[] order = new int[n];
+      int remainingWeight = myHead.length-1;
+      int k = 0;
+      while (k < n) {
+         int p = findMinDegreeNode();
+         if (p == -1) {
+            // only delayed nodes with no eliminated neighbors remain
+            for (int i=0; i<n; i++) {
+               if (myStatus[i] == WAITING) {
+                  myStatus[i] = QUEUED;
+                  insertDegree (i, myDegree[i]);
+               }
+            }
+            continue;
+         }
+         removeDegree (p);
+         order[k++] = p;
+         remainingWeight -= myWeights[p];
+         eliminate (p, remainingWeight);
+      }
+      return order;
+   }
+
+   private boolean isVariable (int j) {
+      return myStatus[j] == QUEUED || myStatus[j] == WAITING;
+   }
+
+   private void eliminate (int p, int remainingWeight) {
+      myStatus[p] = ELEMENT;
+      int tag = ++myTag;
+      myMark[p] = tag;
+
+      // form the variable list Lp of the new element p, from the variable
+      // neighbors of p and the variables of the elements adjacent to p,
+      // which are then absorbed into p.
+      int[] lp = myLp;
+      int nlp = 0;
+      int lpWeight = 0;
+      int[] vadj = myVarAdj[p];
+      for (int t=0; t<myVarAdjLen[p]; t++) {
+         int j = vadj[t];
+         if (isVariable(j) && myMark[j] != tag) {
+            myMark[j] = tag;
+            lp[nlp++] = j;
+            lpWeight += myWeights[j];
+         }
+      }
+      int[] eadj = myElemAdj[p];
+      for (int t=0; t<myElemAdjLen[p]; t++) {
+         int e = eadj[t];
+         if (myStatus[e] == ELEMENT) {
+            int[] evars = myElemVars[e];
+            for (int u=0; u<evars.length; u++) {
+               int j = evars[u];
+               if (isVariable(j) && myMark[j] != tag) {
+                  myMark[j] = tag;
+                  lp[nlp++] = j;
+                  lpWeight += myWeights[j];
+               }
+            }
+            myStatus[e] = ABSORBED;
+            myElemVars[e] = null;
+         }
+      }
+      myElemVars[p] = Arrays.copyOf (lp, nlp);
+      myElemWeight[p] = lpWeight;
+      myVarAdj[p] = null;
+      myElemAdj[p] = null;
+
+      // update the quotient graph for each variable in Lp
+      for (int t=0; t<nlp; t++) {
+         int i = lp[t];
+         if (myStatus[i] == QUEUED) {
+            removeDegree (i);
+         }
+         // remove absorbed elements and add p
+         int[] el = myElemAdj[i];
+         int ne = 0;
+         for (int u=0; u<myElemAdjLen[i]; u++) {
+            if (myStatus[el[u]] == ELEMENT) {
+               el[ne++] = el[u];
+            }
+         }
+         if (ne == el.length) {
+            el = Arrays.copyOf (el, 2*ne+2);
+            myElemAdj[i] = el;
+         }
+         el[ne++] = p;
+         myElemAdjLen[i] = ne;
+         // remove variables now covered by element p, including p itself
+         int[] vl = myVarAdj[i];
+         int nv = 0;
+         for (int u=0; u<myVarAdjLen[i]; u++) {
+            int j = vl[u];
+            if (isVariable(j) && myMark[j] != tag) {
+               vl[nv++] = j;
+            }
+         }
+         myVarAdjLen[i] = nv;
+      }
+
+      // compute the weight of each element adjacent to Lp that lies
+      // outside of Lp
+      int etag = ++myExtTag;
+      for (int t=0; t<nlp; t++) {
+         int i = lp[t];
+         int[] el = myElemAdj[i];
+         for (int u=0; u<myElemAdjLen[i]; u++) {
+            int e = el[u];
+            if (e != p) {
+               if (myExtMark[e] != etag) {
+                  myExtMark[e] = etag;
+                  myExtWeight[e] = myElemWeight[e];
+               }
+               myExtWeight[e] -= myWeights[i];
+            }
+         }
+      }
+
+      // compute approximate degrees and requeue the variables
+      for (int t=0; t<nlp; t++) {
+         int i = lp[t];
+         int deg = lpWeight - myWeights[i];
+         int[] vl = myVarAdj[i];
+         for (int u=0; u<myVarAdjLen[i]; u++) {
+            deg += myWeights[vl[u]];
+         }
+         int[] el = myElemAdj[i];
+         for (int u=0; u<myElemAdjLen[i]; u++) {
+            int e = el[u];
+            if (e != p && myStatus[e] == ELEMENT) {
+               if (myExtWeight[e] > 0) {
+                  deg += myExtWeight[e];
+               }
+               else {
+                  // element lies entirely within Lp and can be absorbed
+                  myStatus[e] = ABSORBED;
+                  myElemVars[e] = null;
+               }
+            }
+         }
+         deg = Math.max (0, Math.min (deg, remainingWeight-myWeights[i]));
+         myDegree[i] = deg;
+         // a delayed variable becomes available once a neighbor is eliminated
+         myStatus[i] = QUEUED;
+         insertDegree (i, deg);
+      }
+   }
+}
@@ -33,6 +33,7 @@ public class KKTSolver {
    SparseBlockMatrix myGT;
    UmfpackSolver myUmfpack;
    PardisoSolver myPardiso;
+   SparseLDLTSolver myLDLT;
    DirectSolver myMatrixSolver;
    boolean myIndices1Based = false;
    boolean myLastSolveWasIterative = false;
@@ -54,6 +55,32 @@ public class KKTSolver {
    VectorNd myMGx = new VectorNd();
    VectorNd myMGy = new VectorNd();
 
+   // Structure of the system most recently passed to the direct solver's
+   // symbolic analysis. This analysis is reused if a subsequent system has
+   // the same size M and a structure that is contained within it, with any
+   // unused trailing constraint rows decoupled using a unit diagonal.
+   boolean myAnalysisReuseEnabled = true;
+   int myAnaSize = -1;
+   int myAnaSizeM = -1;
+   int myAnaNumVals = 0;
+   boolean myAnaSymmetric = false;
+   int[] myAnaRowOffs = new int[0];
+   int[] myAnaColIdxs = new int[0];
+   double[] myAnaVals = new double[0];
+   int[] myValueMap = null;
+   int[] myValueMapBuf = new int[0];
+   VectorNd myPadx = new VectorNd();
+   VectorNd myPadb = new VectorNd();
+
+   // an analysis is not reused if the current system would fill less than
+   // this fraction of its non-zeros
+   private static final double MIN_REUSE_FILL = 0.75;
+
+   // analysis statistics
+   int myAnalyzeCnt = 0;
+   int myReusedAnalysisCnt = 0;
+   double myAnalyzeTimeMsec = 0;
+
    MatrixNd myLcpM = new MatrixNd();
    VectorNd myQ = new VectorNd();
    VectorNd myZ = new VectorNd();
@@ -94,17 +121,59 @@ public class KKTSolver {
       NUMERIC_ERROR
    };
 
+   /**
+    * Identifies the direct solver used to factor the KKT system.
+    */
+   public enum SolverType {
+      /**
+       * Native Pardiso solver.
+       */
+      PARDISO,
+      /**
+       * Pure Java supernodal LDL^T solver, {@link SparseLDLTSolver}. This
+       * requires that M is symmetric.
+       */
+      SPARSE_LDLT
+   };
+
+   /**
+    * Creates a new KKTSolver. Pardiso will be used if it is available;
+    * otherwise, {@link SparseLDLTSolver} will be used.
+    */
    public KKTSolver() {
+      this (PardisoSolver.isAvailable() ?
+            SolverType.PARDISO : SolverType.SPARSE_LDLT);
+   }
+
+   /**
+    * Creates a new KKTSolver that uses a specific type of direct solver.
+    *
+    * @param type type of direct solver to use
+    */
+   public KKTSolver (SolverType type) {
       if (myUseUmfpack) {
          myUmfpack = new UmfpackSolver();
          myMatrixSolver = myUmfpack;
       }
+      else if (type == SolverType.SPARSE_LDLT) {
+         myLDLT = new SparseLDLTSolver();
+         myMatrixSolver = myLDLT;
+      }
       else {
          myPardiso = new PardisoSolver();
          myMatrixSolver = myPardiso;
       }
    }
 
+   /**
+    * Returns the type of direct solver used by this KKTSolver.
+    *
+    * @return direct solver type
+    */
+   public SolverType getSolverType() {
+      return myLDLT != null ? SolverType.SPARSE_LDLT : SolverType.PARDISO;
+   }
+
    /**
     * Performs symbolic analysis on the equality portion of the KKT system
     * defined by M and G. This step must be called before any calls are made to
@@ -189,19 +258,40 @@ public class KKTSolver {
             myRowOffs[i]++;
          }
          myIndices1Based = true;
-         if ((myTypeM & Matrix.SYMMETRIC) != 0) {
-            // even if myTypeM is SPD, the KKT system won't be, so
-            // we need a symmetric solve regardless
-            myPardiso.analyze (
-               myVals, myColIdxs, myRowOffs, sizeMG, Matrix.SYMMETRIC);
+         boolean symmetric = ((myTypeM & Matrix.SYMMETRIC) != 0);
+         myAnalyzeCnt++;
+         if (canReuseAnalysis (sizeMG, numVals, symmetric)) {
+            myReusedAnalysisCnt++;
          }
          else {
-            myPardiso.analyze (
-               myVals, myColIdxs, myRowOffs, sizeMG, Matrix.INDEFINITE);
-         }
-         if (myPardiso.getState() == PardisoSolver.UNSET) {
-            throw new NumericalException (
-               "Pardiso: unable to analyze matrix: "+myPardiso.getErrorMessage());
+            long t0 = System.nanoTime();
+            myAnaSize = -1;
+            if (myLDLT != null) {
+               if (!symmetric) {
+                  throw new IllegalArgumentException (
+                     "SparseLDLTSolver requires M to be symmetric");
+               }
+               myLDLT.analyze (
+                  myVals, myColIdxs, myRowOffs, sizeMG, Matrix.SYMMETRIC);
+            }
+            else if (symmetric) {
+               // even if myTypeM is SPD, the KKT system won't be, so
+               // we need a symmetric solve regardless
+               myPardiso.analyze (
+                  myVals, myColIdxs, myRowOffs, sizeMG, Matrix.SYMMETRIC);
+            }
+            else {
+               myPardiso.analyze (
+                  myVals, myColIdxs, myRowOffs, sizeMG, Matrix.INDEFINITE);
+            }
+            if (myPardiso != null &&
+                myPardiso.getState() == PardisoSolver.UNSET) {
+               throw new NumericalException (
+                  "Pardiso: unable to analyze matrix: "+
+                  myPardiso.getErrorMessage());
+            }
+            saveAnalyzedStructure (sizeMG, numVals, symmetric);
+            myAnalyzeTimeMsec += (System.nanoTime() - t0) * 1e-6;
          }
       }
       myMDiagonalP = (M instanceof VectorNd);
@@ -212,6 +302,193 @@ public class KKTSolver {
       myState = State.ANALYZED;
    }
 
+   /**
+    * Checks whether the symbolic analysis for the most recently analyzed
+    * structure can be reused for the (1-based) CRS structure currently
+    * stored in myRowOffs and myColIdxs. If the structures are not identical,
+    * but the current structure is contained within the analyzed one, then
+    * myValueMap is set to map the current values into the analyzed structure.
+    */
+   private boolean canReuseAnalysis (
+      int sizeMG, int numVals, boolean symmetric) {
+
+      if (!myAnalysisReuseEnabled || myAnaSize == -1 ||
+          mySizeM != myAnaSizeM || sizeMG > myAnaSize ||
+          symmetric != myAnaSymmetric) {
+         return false;
+      }
+      if (sizeMG == myAnaSize && numVals == myAnaNumVals) {
+         boolean identical = true;
+         for (int i=0; i<=sizeMG && identical; i++) {
+            identical = (myRowOffs[i] == myAnaRowOffs[i]);
+         }
+         for (int k=0; k<numVals && identical; k++) {
+            identical = (myColIdxs[k] == myAnaColIdxs[k]);
+         }
+         if (identical) {
+            myValueMap = null;
+            return true;
+         }
+      }
+      if (numVals < MIN_REUSE_FILL*myAnaNumVals) {
+         return false;
+      }
+      if (myValueMapBuf.length < numVals) {
+         myValueMapBuf = new int[numVals];
+      }
+      int[] map = myValueMapBuf;
+      for (int i=0; i<sizeMG; i++) {
+         int ka = myAnaRowOffs[i]-1;
+         int kaEnd = myAnaRowOffs[i+1]-1;
+         for (int k=myRowOffs[i]-1; k<myRowOffs[i+1]-1; k++) {
+            int j = myColIdxs[k];
+            while (ka < kaEnd && myAnaColIdxs[ka] < j) {
+               ka++;
+            }
+            if (ka == kaEnd || myAnaColIdxs[ka] != j) {
+               return false;
+            }
+            map[k] = ka++;
+         }
+      }
+      myValueMap = map;
+      return true;
+   }
+
+   private void saveAnalyzedStructure (
+      int sizeMG, int numVals, boolean symmetric) {
+      myAnaSize = sizeMG;
+      myAnaSizeM = mySizeM;
+      myAnaNumVals = numVals;
+      myAnaSymmetric = symmetric;
+      myAnaRowOffs = Arrays.copyOf (myRowOffs, sizeMG+1);
+      myAnaColIdxs = Arrays.copyOf (myColIdxs, numVals);
+      if (myAnaVals.length < numVals) {
+         myAnaVals = new double[numVals];
+      }
+      myValueMap = null;
+   }
+
+   /**
+    * Returns the values to be supplied to the direct solver, arranged
+    * according to the structure used for the symbolic analysis.
+    */
+   private double[] getAnalyzedValues() {
+      if (myValueMap == null) {
+         return myVals;
+      }
+      double[] vals = myAnaVals;
+      Arrays.fill (vals, 0, myAnaNumVals, 0);
+      for (int k=0; k<myNumVals; k++) {
+         vals[myValueMap[k]] = myVals[k];
+      }
+      // decouple unused rows by giving them a unit diagonal
+      for (int i=mySizeM+myNumG; i<myAnaSize; i++) {
+         for (int k=myAnaRowOffs[i]-1; k<myAnaRowOffs[i+1]-1; k++) {
+            if (myAnaColIdxs[k] == i+1) {
+               vals[k] = 1;
+               break;
+            }
+         }
+      }
+      return vals;
+   }
+
+   /**
+    * Solves the factored system, padding the solution and right hand side
+    * if the analyzed system is larger than the current one.
+    */
+   private void directSolve (VectorNd x, VectorNd b) {
+      int sizeMG = mySizeM+myNumG;
+      if (myUseUmfpack || myAnaSize == sizeMG) {
+         myMatrixSolver.solve (x, b);
+      }
+      else {
+         myPadx.setSize (myAnaSize);
+         myPadb.setSize (myAnaSize);
+         double[] pbuf = myPadb.getBuffer();
+         double[] buf = b.getBuffer();
+         for (int i=0; i<sizeMG; i++) {
+            pbuf[i] = buf[i];
+         }
+         for (int i=sizeMG; i<myAnaSize; i++) {
+            pbuf[i] = 0;
+         }
+         myMatrixSolver.solve (myPadx, myPadb);
+         pbuf = myPadx.getBuffer();
+         buf = x.getBuffer();
+         for (int i=0; i<sizeMG; i++) {
+            buf[i] = pbuf[i];
+         }
+      }
+   }
+
+   /**
+    * Enables or disables reuse of the direct solver's symbolic analysis. If
+    * enabled (the default), then when {@link #analyze analyze} is called
+    * for a system whose structure is the same as, or is contained within,
+    * the structure most recently analyzed, the previous analysis is
+    * retained. This is useful when constraints change between steps while
+    * the structure of M remains the same.
+    *
+    * @param enable if <code>true</code>, enables analysis reuse
+    */
+   public void setAnalysisReuse (boolean enable) {
+      myAnalysisReuseEnabled = enable;
+   }
+
+   /**
+    * Queries whether reuse of the direct solver's symbolic analysis is
+    * enabled.
+    *
+    * @return <code>true</code> if analysis reuse is enabled
+    * @see #setAnalysisReuse
+    */
+   public boolean getAnalysisReuse() {
+      return myAnalysisReuseEnabled;
+   }
+
+   /**
+    * Returns the number of times {@link #analyze analyze} has been called
+    * since this solver was created or its statistics were last reset.
+    *
+    * @return number of analyze calls
+    */
+   public int getNumAnalyzeCalls() {
+      return myAnalyzeCnt;
+   }
+
+   /**
+    * Returns the number of analyze calls for which a previous symbolic
+    * analysis was reused, since this solver was created or its statistics
+    * were last reset.
+    *
+    * @return number of reused analyses
+    */
+   public int getNumReusedAnalyses() {
+      return myReusedAnalysisCnt;
+   }
+
+   /**
+    * Returns the total time, in msec, spent performing symbolic analysis in
+    * the direct solver since this solver was created or its statistics were
+    * last reset.
+    *
+    * @return total analysis time
+    */
+   public double getAnalysisTimeMsec() {
+      return myAnalyzeTimeMsec;
+   }
+
+   /**
+    * Resets the analysis statistics.
+    */
+   public void resetAnalysisStatistics() {
+      myAnalyzeCnt = 0;
+      myReusedAnalysisCnt = 0;
+      myAnalyzeTimeMsec = 0;
+   }
+
    private void getCRSRowOffsets (Object M, int sizeM, SparseBlockMatrix GT) {
       // start by finding the number of non-zeros in each row, and
       // accumulate this into myLocalOffs
@@ -549,6 +826,131 @@ public class KKTSolver {
       return dosolve (vel, lam, the, null, bm, bg, bn, null, null);
    }
 
+   /**
+    * Solves the equality and inequality parts of a factored system for
+    * multiple right-hand sides, which are given by the columns of
+    * <code>bm</code>. The constraint offsets <code>bg</code> and
+    * <code>bn</code> are the same for all right-hand sides. Column
+    * <code>j</code> of <code>vel</code>, <code>lam</code>, and
+    * <code>the</code> returns the solution for column <code>j</code> of
+    * <code>bm</code>. The current factorization is used for all
+    * columns.
+    *
+    * <p>If there are no unilateral constraints, or <code>the</code> and
+    * <code>bn</code> are <code>null</code>, only the equality part of the
+    * system is solved. In that case, if the solver type is {@link
+    * SolverType#SPARSE_LDLT}, all the columns are solved together using
+    * {@link SparseLDLTSolver#solve(MatrixNd,MatrixNd)}, which performs
+    * blocked substitutions and can use multiple threads. Otherwise, the
+    * columns are solved one at a time.
+    *
+    * @param vel returns the velocity solutions. Will be sized to
+    * the size of M times the number of right-hand sides.
+    * @param lam returns the bilateral impulses. Will be sized to
+    * the number of bilateral constraints times the number of
+    * right-hand sides.
+    * @param the if non-null, returns the unilateral impulses. Will be
+    * sized to the number of unilateral constraints times the number of
+    * right-hand sides.
+    * @param bm right-hand sides, one per column
+    * @param bg bilateral constraint offsets
+    * @param bn unilateral constraint offsets
+    * @return {@link Status#SOLVED} if all solves succeeded, or the status
+    * of the first failed solve otherwise.
+    */
+   public Status solve (
+      MatrixNd vel, MatrixNd lam, MatrixNd the, MatrixNd bm, VectorNd bg,
+      VectorNd bn) {
+
+      if (myState != State.FACTORED) {
+         throw new ImproperStateException ("Factor has not been called");
+      }
+      if (bm.rowSize() != mySizeM) {
+         throw new IllegalArgumentException (
+            "row size of bm incompatible with factored M size of " + mySizeM);
+      }
+      if (bg.size() != myNumG) {
+         throw new IllegalArgumentException (
+            "bg size " + bg.size() + " incompatible with factored GT size "
+            + myNumG);
+      }
+      if ((the == null) != (bn == null)) {
+         throw new IllegalArgumentException (
+            "'the' and 'bn' must both be null or non-null");
+      }
+      int ncols = bm.colSize();
+      boolean solveLCP = (myNumN > 0 && the != null);
+      vel.setSize (mySizeM, ncols);
+      lam.setSize (myNumG, ncols);
+      if (the != null) {
+         the.setSize (myNumN, ncols);
+      }
+      myLastSolveWasIterative = false;
+      if (!solveLCP && myLDLT != null && !myUseUmfpack) {
+         solveMG (vel, lam, bm, bg);
+         return Status.SOLVED;
+      }
+      VectorNd velj = new VectorNd (mySizeM);
+      VectorNd lamj = new VectorNd (myNumG);
+      VectorNd thej = new VectorNd (myNumN);
+      VectorNd bmj = new VectorNd (mySizeM);
+      Status status = Status.SOLVED;
+      for (int j=0; j<ncols; j++) {
+         bm.getColumn (j, bmj);
+         if (solveLCP) {
+            Status s = dosolve (velj, lamj, thej, null, bmj, bg, bn, null, null);
+            if (s != Status.SOLVED && status == Status.SOLVED) {
+               status = s;
+            }
+            the.setColumn (j, thej);
+         }
+         else {
+            // equality constraints only, so we can call solveMG directly
+            solveMG (velj, lamj, bmj, bg);
+         }
+         vel.setColumn (j, velj);
+         lam.setColumn (j, lamj);
+      }
+      return status;
+   }
+
+   /**
+    * Solves the equality part of the system for all the columns of
+    * <code>bm</code> at once, using the blocked solve of the
+    * SparseLDLTSolver. The right-hand sides are padded to the analyzed
+    * size, and the signs of the bilateral impulses are negated as
+    * described for {@link #solveMG(VectorNd,VectorNd,VectorNd,VectorNd)}.
+    */
+   private void solveMG (
+      MatrixNd vel, MatrixNd lam, MatrixNd bm, VectorNd bg) {
+
+      int ncols = bm.colSize();
+      MatrixNd B = new MatrixNd (myAnaSize, ncols);
+      MatrixNd X = new MatrixNd (myAnaSize, ncols);
+      for (int i=0; i<mySizeM; i++) {
+         for (int j=0; j<ncols; j++) {
+            B.set (i, j, bm.get (i, j));
+         }
+      }
+      for (int i=0; i<myNumG; i++) {
+         double bgi = bg.get (i);
+         for (int j=0; j<ncols; j++) {
+            B.set (mySizeM+i, j, bgi);
+         }
+      }
+      myLDLT.solve (X, B);
+      for (int i=0; i<mySizeM; i++) {
+         for (int j=0; j<ncols; j++) {
+            vel.set (i, j, X.get (i, j));
+         }
+      }
+      for (int i=0; i<myNumG; i++) {
+         for (int j=0; j<ncols; j++) {
+            lam.set (i, j, -X.get (mySizeM+i, j));
+         }
+      }
+   }
+
    public double residual (
       SparseBlockMatrix M, int sizeM, SparseBlockMatrix GT, VectorNd Rg,
       SparseBlockMatrix NT, VectorNd Rn,
@@ -678,7 +1080,8 @@ public class KKTSolver {
       myNumD = 0;
       myDT = null;
       
-      if (!myUseUmfpack && myDirectCnt > 0 &&
+      if (myPardiso != null && myDirectCnt > 0 &&
+          myAnaSize == mySizeM+myNumG &&
           (myIterativeCnt == 0 || myIterativeCnt+1 < estimateOptimalCount())) {
          long t0 = System.nanoTime();
          getCRSValues (M, sizeM, myNumVals, GT, Rg);
@@ -696,7 +1099,8 @@ public class KKTSolver {
             xbuf[i + mySizeM] = bbuf[i];
          }
 
-         iterStatus = myPardiso.iterativeSolve (myVals, ybuf, xbuf, tolExp);
+         iterStatus = myPardiso.iterativeSolve (
+            getAnalyzedValues(), ybuf, xbuf, tolExp);
 
          if (iterStatus > 0) {
             bbuf = vel.getBuffer();
@@ -1283,8 +1687,8 @@ public class KKTSolver {
     * This requires negating the value of lam from the original solve
     */
    public void solveMG (VectorNd x, VectorNd b) {
-      myMatrixSolver.solve (x, b);
-      if (computeResidualMG) {
+      directSolve (x, b);
+      if (computeResidualMG && myPardiso != null && myValueMap == null) {
          double res = 
             myPardiso.residual (
                myRowOffs, myColIdxs, myVals, mySizeM+myNumG, 
@@ -1329,7 +1733,7 @@ public class KKTSolver {
       for (int i = 0; i < myNumG; i++) {
          xbuf[i + mySizeM] = bbuf[i];
       }
-      myMatrixSolver.solve (myMGy, myMGx);
+      directSolve (myMGy, myMGx);
       bbuf = xm.getBuffer();
       for (int i = 0; i < mySizeM; i++) {
          bbuf[i] = ybuf[i];
@@ -1356,11 +1760,14 @@ public class KKTSolver {
                "Umfpack: Matrix is near singular, solve could fail");
          }
       }
+      else if (myLDLT != null) {
+         myLDLT.factor (getAnalyzedValues());
+      }
       else {
-         myPardiso.factor (myVals);
+         myPardiso.factor (getAnalyzedValues());
          if (myPardiso.getState() != PardisoSolver.FACTORED) {
             throw new NumericalException (
-               "Pardiso: unable to factor matrix: size="+(mySizeM+myNumG)+
+               "Pardiso: unable to factor matrix: size="+myAnaSize+
                ", nnz=" + myNumVals + ", error=" + myPardiso.getErrorMessage());
          }
       }
@@ -1370,6 +1777,9 @@ public class KKTSolver {
    }
 
    public int getNumNonZerosInFactors() {
+      if (myLDLT != null) {
+         return myLDLT.getNumNonZerosInFactors();
+      }
       return myPardiso.getNumNonZerosInFactors();
    }
 
@@ -1382,6 +1792,7 @@ public class KKTSolver {
          myMatrixSolver.dispose();
          myMatrixSolver = null;
          myPardiso = null;
+         myLDLT = null;
          myUmfpack = null;
       }
    }
@@ -199,6 +199,116 @@ public class KKTSolverTest {
       // }
    }
 
+   private SparseBlockMatrix createConstraints (
+      int[] rowBlks, int colSize) {
+      SparseBlockMatrix GT = new SparseBlockMatrix (
+         new int[] { 6, 6, 6 }, new int[0]);
+      for (int bj=0; bj<rowBlks.length; bj++) {
+         GT.addCol (colSize);
+         MatrixNdBlock blk = new MatrixNdBlock (6, colSize);
+         blk.setRandom();
+         GT.addBlock (rowBlks[bj], bj, blk);
+      }
+      return GT;
+   }
+
+   private void solveAndCheckMG (
+      KKTSolver solver, SparseBlockMatrix M, SparseBlockMatrix GT,
+      int expectedReuseCnt) {
+      int sizeM = M.rowSize();
+      int numG = GT.colSize();
+      VectorNd Rg = new VectorNd (numG);
+      VectorNd bm = new VectorNd (sizeM);
+      VectorNd bg = new VectorNd (numG);
+      VectorNd vel = new VectorNd (sizeM);
+      VectorNd lam = new VectorNd (numG);
+      Rg.setRandom (0, 0.01);
+      bm.setRandom();
+      bg.setRandom();
+
+      solver.analyze (M, sizeM, GT, Rg, Matrix.SYMMETRIC);
+      if (solver.getNumReusedAnalyses() != expectedReuseCnt) {
+         throw new TestException (
+            "number of reused analyses is "+solver.getNumReusedAnalyses()+
+            ", expected "+expectedReuseCnt);
+      }
+      solver.factor (M, sizeM, GT, Rg);
+      Status status = solver.solve (vel, lam, bm, bg);
+      if (status != Status.SOLVED) {
+         throw new TestException ("Could not solve system, status " + status);
+      }
+      if (checkSolve (M, sizeM, GT, null, vel, lam, null, bm, null) > 1e-8) {
+         throw new TestException ("bm residual exceeds tolerance");
+      }
+      checkComplementarity (
+         GT, null, null, Rg, null, bg, null, null, null, vel, lam, null, null);
+
+      // solve for several right-hand sides at once, one of which is bm
+      int ncols = 5;
+      MatrixNd BM = new MatrixNd (sizeM, ncols);
+      BM.setRandom();
+      BM.setColumn (2, bm);
+      MatrixNd VEL = new MatrixNd();
+      MatrixNd LAM = new MatrixNd();
+      solver.solve (VEL, LAM, null, BM, bg, null);
+      VectorNd velj = new VectorNd (sizeM);
+      VectorNd lamj = new VectorNd (numG);
+      VectorNd bmj = new VectorNd (sizeM);
+      for (int j=0; j<ncols; j++) {
+         BM.getColumn (j, bmj);
+         solver.solve (velj, lamj, bmj, bg);
+         VEL.getColumn (j, vel);
+         LAM.getColumn (j, lam);
+         checkResult ("vel column "+j, vel, velj);
+         checkResult ("lam column "+j, lam, lamj);
+      }
+   }
+
+   /**
+    * Checks that the symbolic analysis is reused when the structure of the
+    * constraints is unchanged or is contained within the analyzed structure,
+    * and that the resulting solutions are correct.
+    */
+   public void testAnalysisReuse() {
+      SparseBlockMatrix M =
+         new SparseBlockMatrix (new int[] { 6, 6, 6 }, new int[] { 6, 6, 6 });
+      for (int bi=0; bi<3; bi++) {
+         MatrixNdBlock blk = new MatrixNdBlock (6, 6);
+         blk.setRandom();
+         blk.mulTranspose (blk);
+         for (int i=0; i<6; i++) {
+            blk.add (i, i, 6);
+         }
+         M.addBlock (bi, bi, blk);
+      }
+      MatrixNdBlock blk01 = new MatrixNdBlock (6, 6);
+      blk01.setRandom();
+      MatrixNdBlock blk10 = new MatrixNdBlock (6, 6);
+      blk10.transpose (blk01);
+      M.addBlock (0, 1, blk01);
+      M.addBlock (1, 0, blk10);
+
+      KKTSolver solver = new KKTSolver (KKTSolver.SolverType.SPARSE_LDLT);
+      solveAndCheckMG (solver, M, createConstraints (new int[] {0,1,2}, 2), 0);
+      // same structure
+      solveAndCheckMG (solver, M, createConstraints (new int[] {0,1,2}, 2), 1);
+      // fewer constraints, with structure contained in the original
+      solveAndCheckMG (solver, M, createConstraints (new int[] {0,1}, 2), 2);
+      solveAndCheckMG (solver, M, createConstraints (new int[] {0}, 2), 3);
+      // different structure requires a new analysis
+      solveAndCheckMG (solver, M, createConstraints (new int[] {2,0,1}, 2), 3);
+      solveAndCheckMG (solver, M, createConstraints (new int[] {2,0}, 2), 4);
+
+      solver.setAnalysisReuse (false);
+      solveAndCheckMG (solver, M, createConstraints (new int[] {2,0,1}, 2), 4);
+      if (solver.getNumAnalyzeCalls() != 7) {
+         throw new TestException (
+            "number of analyze calls is "+solver.getNumAnalyzeCalls()+
+            ", expected 7");
+      }
+      solver.dispose();
+   }
+
    private void checkComplementarity (
       SparseBlockMatrix GT, SparseBlockMatrix NT, SparseBlockMatrix DT,
       VectorNd Rg, VectorNd Rn, VectorNd bg, VectorNd bn, VectorNd bd,
@@ -576,6 +686,7 @@ public class KKTSolverTest {
       PardisoSolver.printThreadInfo = false;
       try {
          //tester.test();
+         tester.testAnalysisReuse();
          //tester.testFromFile ("blockCollide3.txt");
          tester.testFromFile ("MLCPtest.txt");
       }
@@ -0,0 +1,1724 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.solvers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import maspack.concurrency.ParallelLoop;
+import maspack.matrix.ImproperStateException;
+import maspack.matrix.Matrix;
+import maspack.matrix.Matrix.Partition;
+import maspack.matrix.MatrixNd;
+import maspack.matrix.NumericalException;
+import maspack.matrix.VectorNd;
+import maspack.util.InternalErrorException;
+
+/**
+ * Pure Java sparse direct solver for symmetric matrices, which computes a
+ * supernodal L D L^T factorization using the multifrontal method. It
+ * requires no native libraries and can therefore be used wherever {@link
+ * PardisoSolver} is unavailable.
+ *
+ * <p>Analysis computes a fill-reducing ordering, using {@link
+ * ApproximateMinimumDegree} on a compressed graph in which rows with
+ * identical structure (such as the degrees of freedom of a single point or
+ * body) are merged, followed by a post-ordering of the elimination tree.
+ * It then determines the supernodes and their row structures, together
+ * with all the index maps needed for numeric assembly. This symbolic
+ * information depends only on the sparsity structure and is reused by all
+ * subsequent factorizations, which perform no symbolic work.
+ *
+ * <p>Numeric factorization processes the supernodal elimination tree level
+ * by level, starting at the leaves. Supernodes on the same level are
+ * independent and are factored concurrently when more than one thread is
+ * specified; for levels containing only a single supernode (typically near
+ * the root, where the supernodes are largest), the dense update of the
+ * frontal matrix is itself divided among the threads. The results do not
+ * depend on the number of threads. The leading columns of each frontal
+ * matrix are factored in panels, and the dense updates are computed in
+ * small register blocks, which substantially reduces memory traffic for
+ * the large supernodes that dominate the factorization time. Update matrix
+ * storage is reused between supernodes and between factorizations.
+ *
+ * <p>Symmetric indefinite matrices are handled without pivoting. Rows whose
+ * diagonal is zero (or very small) at analysis time, such as the constraint
+ * rows of KKT systems, are ordered after at least one of their neighbors, so
+ * that their pivots are filled in before being used. Pivots that are still
+ * too small are perturbed, as is done by Pardiso, and the solution is then
+ * improved using iterative refinement.
+ */
+public class SparseLDLTSolver implements DirectSolver {
+
+   /**
+    * Indicates that no matrix has been analyzed.
+    */
+   public static final int UNSET = 0;
+
+   /**
+    * Indicates that a matrix has been analyzed but not yet factored.
+    */
+   public static final int ANALYZED = 1;
+
+   /**
+    * Indicates that a matrix has been factored.
+    */
+   public static final int FACTORED = 2;
+
+   // relative tolerance used to identify zero diagonals at analysis time
+   private static final double DELAY_TOL = 1e-8;
+
+   // minimum number of frontal columns processed by each thread
+   private static final int MIN_COLUMN_CHUNK = 16;
+   // number of leading frontal columns factored together as a panel
+   private static final int PANEL_SIZE = 32;
+   // maximum number of right-hand sides processed together by a blocked
+   // solve
+   private static final int RHS_BLOCK_SIZE = 16;
+
+   private static int myDefaultNumThreads = 1;
+
+   private int myState = UNSET;
+   private int myType;
+   private int mySize;
+   private Matrix myMatrix;
+
+   // upper triangular CRS structure (0-based) and most recent values
+   private int myNumVals;
+   private int[] myRowOffs;
+   private int[] myColIdxs;
+   private double[] myVals;
+
+   // permutation: row k of the permuted matrix is row myPerm[k]
+   private int[] myPerm;
+   private int[] myIperm;
+
+   // supernodes
+   private int myNumSupernodes;
+   private int[] mySuperCols;      // first column of each supernode
+   private int[][] mySuperRows;    // row structure of each supernode
+   private int[] myChildPtr;       // children of each supernode ...
+   private int[] myChildren;       // ... in compressed form
+   private int[][] myRelMaps;      // locations of update rows in the parent
+   private int[] myAsmPtr;         // matrix values assembled into each ...
+   private int[] myAsmSrc;         // ... supernode: source value index
+   private int[] myAsmDst;         // ... and destination in the factor
+   private int[] myLevelPtr;       // supernodes in each level of the tree
+   private int[] myLevelNodes;
+
+   // numeric factorization
+   private double[][] myL;         // dense column-major factor columns
+   private double[] myD;           // diagonal
+   private double[][] myUpdates;   // update matrices passed to parents
+   // free update matrix buffers, indexed by the base 2 logarithm of their
+   // length
+   private ArrayList<ArrayList<double[]>> myFreeBuffers =
+      new ArrayList<ArrayList<double[]>>();
+   private int[] myPerturbedCnts;
+   private double[] myPivotTols;
+   private int myNumPerturbedPivots;
+   private int myNumNegEigenvalues;
+
+   // solve workspace
+   private double[] myY;
+   private double[] myRes;
+   private double[] myDx;
+
+   private int myPivotPerturbation = 8;
+   private int myMaxRefinementSteps = 2;
+   private int myNumRefinementSteps = 0;
+
+   private int myNumThreads;
+   private ParallelLoop myLoop;
+
+   /**
+    * Creates a new SparseLDLTSolver, using the default number of threads.
+    */
+   public SparseLDLTSolver() {
+      myNumThreads = myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the default number of threads used by newly created solvers.
+    *
+    * @param num default number of threads
+    */
+   public static void setDefaultNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      myDefaultNumThreads = num;
+   }
+
+   /**
+    * Returns the default number of threads used by newly created solvers.
+    *
+    * @return default number of threads
+    */
+   public static int getDefaultNumThreads() {
+      return myDefaultNumThreads;
+   }
+
+   /**
+    * Sets the number of threads used for numeric factorization, and for
+    * solving multiple right-hand sides with {@link #solve(MatrixNd,MatrixNd)}.
+    *
+    * @param num number of threads
+    */
+   public void setNumThreads (int num) {
+      if (num < 1) {
+         throw new IllegalArgumentException (
+            "number of threads must be positive; got " + num);
+      }
+      if (num != myNumThreads) {
+         if (myLoop != null) {
+            myLoop.dispose();
+            myLoop = null;
+         }
+         myNumThreads = num;
+      }
+   }
+
+   /**
+    * Returns the number of threads used for numeric factorization, and for
+    * solving multiple right-hand sides.
+    *
+    * @return number of threads
+    */
+   public int getNumThreads() {
+      return myNumThreads;
+   }
+
+   /**
+    * Sets the pivot perturbation. Pivots whose magnitude is less than
+    * <code>10^(-n)</code> times the largest value in the corresponding
+    * matrix row are replaced by this amount. The default value is 8.
+    *
+    * @param n negative exponent of the pivot perturbation
+    */
+   public void setPivotPerturbation (int n) {
+      myPivotPerturbation = n;
+   }
+
+   /**
+    * Returns the pivot perturbation exponent.
+    *
+    * @return negative exponent of the pivot perturbation
+    * @see #setPivotPerturbation
+    */
+   public int getPivotPerturbation() {
+      return myPivotPerturbation;
+   }
+
+   /**
+    * Sets the maximum number of iterative refinement steps performed by
+    * {@link #solve(double[],double[]) solve} when the most recent
+    * factorization required pivot perturbation. The default value is 2.
+    *
+    * @param nsteps maximum number of refinement steps
+    */
+   public void setMaxRefinementSteps (int nsteps) {
+      myMaxRefinementSteps = nsteps;
+   }
+
+   /**
+    * Returns the maximum number of iterative refinement steps.
+    *
+    * @return maximum number of refinement steps
+    */
+   public int getMaxRefinementSteps() {
+      return myMaxRefinementSteps;
+   }
+
+   /**
+    * Returns the number of iterative refinement steps performed by the
+    * most recent solve.
+    *
+    * @return number of refinement steps
+    */
+   public int getNumRefinementSteps() {
+      return myNumRefinementSteps;
+   }
+
+   /**
+    * Returns the current state of this solver, which is either {@link
+    * #UNSET UNSET}, {@link #ANALYZED ANALYZED}, or {@link #FACTORED
+    * FACTORED}.
+    *
+    * @return solver state
+    */
+   public int getState() {
+      return myState;
+   }
+
+   /**
+    * Returns the size of the most recently analyzed matrix.
+    *
+    * @return matrix size
+    */
+   public int getSize() {
+      return mySize;
+   }
+
+   /**
+    * Returns the number of supernodes found by the most recent analysis.
+    *
+    * @return number of supernodes
+    */
+   public int getNumSupernodes() {
+      return myNumSupernodes;
+   }
+
+   /**
+    * Returns the number of non-zero elements in the factor L, including
+    * the diagonal.
+    *
+    * @return number of non-zeros in the factor
+    */
+   public int getNumNonZerosInFactors() {
+      long nnz = 0;
+      for (int s=0; s<myNumSupernodes; s++) {
+         long w = mySuperCols[s+1]-mySuperCols[s];
+         long m = mySuperRows[s].length;
+         nnz += w*m - w*(w-1)/2;
+      }
+      return (int)Math.min (nnz, Integer.MAX_VALUE);
+   }
+
+   /**
+    * Returns the number of negative pivots in the most recent
+    * factorization, which gives the number of negative eigenvalues.
+    *
+    * @return number of negative eigenvalues
+    */
+   public int getNumNegEigenvalues() {
+      return myNumNegEigenvalues;
+   }
+
+   /**
+    * Returns the number of positive pivots in the most recent
+    * factorization, which gives the number of positive eigenvalues.
+    *
+    * @return number of positive eigenvalues
+    */
+   public int getNumPosEigenvalues() {
+      return myState == FACTORED ? mySize-myNumNegEigenvalues : 0;
+   }
+
+   /**
+    * Returns the number of pivots that were perturbed in the most
+    * recent factorization.
+    *
+    * @return number of perturbed pivots
+    */
+   public int getNumPerturbedPivots() {
+      return myNumPerturbedPivots;
+   }
+
+   private ParallelLoop getLoop() {
+      if (myLoop == null) {
+         myLoop = new ParallelLoop ("SparseLDLTSolver", myNumThreads);
+      }
+      return myLoop;
+   }
+
+   /**
+    * Sets the matrix associated with this solver and performs symbolic
+    * analysis on it. If <code>size</code> is less than the matrix size,
+    * the analysis is done on the principal submatrix defined by the first
+    * <code>size</code> rows and columns. This solver retains a pointer to
+    * <code>M</code>, whose values are used by {@link #factor()}.
+    *
+    * @param M matrix to analyze
+    * @param size size of the matrix to analyze
+    * @param type matrix type, which must include
+    * {@link Matrix#SYMMETRIC SYMMETRIC}
+    * @throws IllegalArgumentException if the matrix is not square,
+    * <code>size</code> is out of bounds, or the matrix is not symmetric
+    */
+   public void analyze (Matrix M, int size, int type) {
+      if (M.rowSize() != M.colSize()) {
+         throw new IllegalArgumentException ("Matrix is not square");
+      }
+      if (size < 0 || size > M.rowSize()) {
+         throw new IllegalArgumentException (
+            "Requested size " + size + " is out of bounds");
+      }
+      checkType (type);
+      int numVals = M.numNonZeroVals (Partition.UpperTriangular, size, size);
+      int[] colIdxs = new int[numVals];
+      int[] rowOffs = new int[size+1];
+      double[] vals = new double[numVals];
+      M.getCRSIndices (colIdxs, rowOffs, Partition.UpperTriangular, size, size);
+      M.getCRSValues (vals, Partition.UpperTriangular, size, size);
+      analyze (vals, colIdxs, rowOffs, size, type);
+      myMatrix = M;
+   }
+
+   private void checkType (int type) {
+      if ((type & Matrix.SYMMETRIC) == 0) {
+         throw new IllegalArgumentException (
+            "SparseLDLTSolver only supports symmetric matrices");
+      }
+   }
+
+   /**
+    * Sets the matrix associated with this solver and performs symbolic
+    * analysis on it. The upper triangular part of the matrix is described
+    * using compressed row storage (CRS), with 1-based indices as for {@link
+    * PardisoSolver#analyze(double[],int[],int[],int,int)}. The values are
+    * used to identify rows whose diagonal is zero, and are otherwise not
+    * used. It is not possible to call {@link #factor()} after calling
+    * this version of <code>analyze</code>.
+    *
+    * @param vals values of the non-zero matrix elements
+    * @param colIdxs 1-based column indices of the non-zero matrix elements
+    * @param rowOffs 1-based row start offsets into <code>vals</code> and
+    * <code>colIdxs</code>
+    * @param size size of the matrix
+    * @param type matrix type, which must include
+    * {@link Matrix#SYMMETRIC SYMMETRIC}
+    * @throws IllegalArgumentException if the CRS data structures are
+    * inconsistent or do not describe an upper triangular matrix, or if
+    * the matrix is not symmetric
+    */
+   public void analyze (
+      double[] vals, int[] colIdxs, int[] rowOffs, int size, int type) {
+
+      checkType (type);
+      if (size < 0 || rowOffs.length < size+1) {
+         throw new IllegalArgumentException (
+            "size " + size + " incompatible with rowOffs length " +
+            rowOffs.length);
+      }
+      int numVals = rowOffs[size]-1;
+      if (numVals < 0 || colIdxs.length < numVals || vals.length < numVals) {
+         throw new IllegalArgumentException (
+            "Insufficient space in colIdxs or vals for " + numVals +
+            " values");
+      }
+      myState = UNSET;
+      myMatrix = null;
+      mySize = size;
+      myType = type;
+      myNumVals = numVals;
+      myRowOffs = new int[size+1];
+      myColIdxs = new int[numVals];
+      myVals = Arrays.copyOf (vals, numVals);
+      for (int i=0; i<size; i++) {
+         int start = rowOffs[i]-1;
+         int end = rowOffs[i+1]-1;
+         if (start > end) {
+            throw new IllegalArgumentException (
+               "rowOffs not monotonic at row "+i);
+         }
+         myRowOffs[i] = start;
+         for (int k=start; k<end; k++) {
+            int j = colIdxs[k]-1;
+            if (j < i || j >= size) {
+               throw new IllegalArgumentException (
+                  "Column index "+(j+1)+" at row "+(i+1)+
+                  " is not in the upper triangle");
+            }
+            myColIdxs[k] = j;
+         }
+      }
+      myRowOffs[size] = numVals;
+
+      computeOrdering();
+      computeSymbolicFactorization();
+
+      myL = new double[myNumSupernodes][];
+      for (int s=0; s<myNumSupernodes; s++) {
+         int w = mySuperCols[s+1]-mySuperCols[s];
+         myL[s] = new double[mySuperRows[s].length*w];
+      }
+      myD = new double[size];
+      myUpdates = new double[myNumSupernodes][];
+      myFreeBuffers.clear();
+      myPerturbedCnts = new int[myNumSupernodes];
+      myPivotTols = new double[size];
+      myY = new double[size];
+      myRes = new double[size];
+      myDx = new double[size];
+      myNumPerturbedPivots = 0;
+      myNumNegEigenvalues = 0;
+      myState = ANALYZED;
+   }
+
+   /**
+    * Builds the full adjacency structure (without the diagonal) of the
+    * analyzed matrix.
+    */
+   private int[] buildAdjacency (int[] adjPtr) {
+      int n = mySize;
+      for (int i=0; i<n; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            if (j != i) {
+               adjPtr[i+1]++;
+               adjPtr[j+1]++;
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         adjPtr[i+1] += adjPtr[i];
+      }
+      int[] adj = new int[adjPtr[n]];
+      int[] fill = Arrays.copyOf (adjPtr, n);
+      for (int i=0; i<n; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            if (j != i) {
+               adj[fill[i]++] = j;
+               adj[fill[j]++] = i;
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         Arrays.sort (adj, adjPtr[i], adjPtr[i+1]);
+      }
+      return adj;
+   }
+
+   /**
+    * Identifies rows whose diagonal is zero or very small relative to
+    * the off-diagonal values, and which should be eliminated only after
+    * some of their neighbors.
+    */
+   private boolean[] findDelayedRows() {
+      int n = mySize;
+      boolean[] delayed = new boolean[n];
+      if ((myType & Matrix.POSITIVE_DEFINITE) != 0) {
+         return delayed;
+      }
+      double[] diag = new double[n];
+      double[] offMax = new double[n];
+      for (int i=0; i<n; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            double a = Math.abs (myVals[k]);
+            if (j == i) {
+               diag[i] = a;
+            }
+            else {
+               offMax[i] = Math.max (offMax[i], a);
+               offMax[j] = Math.max (offMax[j], a);
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         delayed[i] = (diag[i] <= DELAY_TOL*offMax[i]);
+      }
+      return delayed;
+   }
+
+   private boolean haveSameClosedAdjacency (
+      int i, int j, int[] adjPtr, int[] adj) {
+      // compares adj(i) + {i} with adj(j) + {j}, both of which are sorted
+      int ki = adjPtr[i];
+      int kj = adjPtr[j];
+      int endi = adjPtr[i+1];
+      int endj = adjPtr[j+1];
+      boolean addedi = false;
+      boolean addedj = false;
+      while (true) {
+         int vi, vj;
+         if (!addedi && (ki == endi || adj[ki] > i)) {
+            vi = i;
+            addedi = true;
+         }
+         else if (ki < endi) {
+            vi = adj[ki++];
+         }
+         else {
+            vi = -1;
+         }
+         if (!addedj && (kj == endj || adj[kj] > j)) {
+            vj = j;
+            addedj = true;
+         }
+         else if (kj < endj) {
+            vj = adj[kj++];
+         }
+         else {
+            vj = -1;
+         }
+         if (vi != vj) {
+            return false;
+         }
+         else if (vi == -1) {
+            return true;
+         }
+      }
+   }
+
+   /**
+    * Computes the fill-reducing permutation. Rows with identical structure
+    * are first merged into weighted groups, the groups are ordered using
+    * approximate minimum degree, and the result is post-ordered.
+    */
+   private void computeOrdering() {
+      int n = mySize;
+      int[] adjPtr = new int[n+1];
+      int[] adj = buildAdjacency (adjPtr);
+      boolean[] delayed = findDelayedRows();
+
+      // merge rows with identical closed adjacency into groups
+      long[] hash = new long[n];
+      for (int i=0; i<n; i++) {
+         long h = i;
+         for (int k=adjPtr[i]; k<adjPtr[i+1]; k++) {
+            h += adj[k];
+         }
+         hash[i] = h;
+      }
+      int[] group = new int[n];
+      Arrays.fill (group, -1);
+      int[] groupPtr = new int[n+1];
+      int[] members = new int[n];
+      int ngroups = 0;
+      int nmembers = 0;
+      for (int i=0; i<n; i++) {
+         if (group[i] != -1) {
+            continue;
+         }
+         group[i] = ngroups;
+         groupPtr[ngroups] = nmembers;
+         members[nmembers++] = i;
+         int deg = adjPtr[i+1]-adjPtr[i];
+         for (int k=adjPtr[i]; k<adjPtr[i+1]; k++) {
+            int j = adj[k];
+            if (j > i && group[j] == -1 && hash[j] == hash[i] &&
+                adjPtr[j+1]-adjPtr[j] == deg && delayed[j] == delayed[i] &&
+                haveSameClosedAdjacency (i, j, adjPtr, adj)) {
+               group[j] = ngroups;
+               members[nmembers++] = j;
+            }
+         }
+         ngroups++;
+      }
+      groupPtr[ngroups] = nmembers;
+
+      // build the adjacency structure of the groups
+      int[] gadjPtr = new int[ngroups+1];
+      int[] gweights = new int[ngroups];
+      boolean[] gdelayed = new boolean[ngroups];
+      int[] mark = new int[ngroups];
+      Arrays.fill (mark, -1);
+      int[] gadj = new int[adj.length];
+      int ng = 0;
+      for (int g=0; g<ngroups; g++) {
+         int rep = members[groupPtr[g]];
+         gadjPtr[g] = ng;
+         gweights[g] = groupPtr[g+1]-groupPtr[g];
+         gdelayed[g] = delayed[rep];
+         mark[g] = g;
+         for (int k=adjPtr[rep]; k<adjPtr[rep+1]; k++) {
+            int h = group[adj[k]];
+            if (mark[h] != g) {
+               mark[h] = g;
+               gadj[ng++] = h;
+            }
+         }
+      }
+      gadjPtr[ngroups] = ng;
+
+      int[] gorder = ApproximateMinimumDegree.computeOrdering (
+         ngroups, gadjPtr, gadj, gweights, gdelayed);
+
+      int[] perm = new int[n];
+      int k = 0;
+      for (int t=0; t<ngroups; t++) {
+         int g = gorder[t];
+         for (int u=groupPtr[g]; u<groupPtr[g+1]; u++) {
+            perm[k++] = members[u];
+         }
+      }
+      setPermutation (perm);
+
+      // post-order the elimination tree, so that supernodes are contiguous
+      int[] parent = computeEtree();
+      int[] post = postorder (parent);
+      int[] newPerm = new int[n];
+      for (k=0; k<n; k++) {
+         newPerm[k] = myPerm[post[k]];
+      }
+      setPermutation (newPerm);
+   }
+
+   private void setPermutation (int[] perm) {
+      myPerm = perm;
+      myIperm = new int[perm.length];
+      for (int k=0; k<perm.length; k++) {
+         myIperm[perm[k]] = k;
+      }
+   }
+
+   /**
+    * Builds the lower triangular structure of the permuted matrix, with
+    * either the column indices of each row (if <code>byRow</code> is
+    * <code>true</code>) or the row indices of each column. If
+    * <code>src</code> is non-<code>null</code>, it returns the index
+    * of the corresponding value in the original CRS storage.
+    */
+   private int[] buildPermutedLower (
+      int[] ptr, int[] src, boolean byRow, boolean includeDiagonal) {
+      int n = mySize;
+      Arrays.fill (ptr, 0);
+      for (int i=0; i<n; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            if (j != i || includeDiagonal) {
+               int pi = myIperm[i];
+               int pj = myIperm[j];
+               int idx = byRow ? Math.max (pi, pj) : Math.min (pi, pj);
+               ptr[idx+1]++;
+            }
+         }
+      }
+      for (int i=0; i<n; i++) {
+         ptr[i+1] += ptr[i];
+      }
+      int[] idxs = new int[ptr[n]];
+      int[] fill = Arrays.copyOf (ptr, n);
+      for (int i=0; i<n; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            if (j != i || includeDiagonal) {
+               int pi = myIperm[i];
+               int pj = myIperm[j];
+               int r = Math.max (pi, pj);
+               int c = Math.min (pi, pj);
+               int loc = fill[byRow ? r : c]++;
+               idxs[loc] = (byRow ? c : r);
+               if (src != null) {
+                  src[loc] = k;
+               }
+            }
+         }
+      }
+      return idxs;
+   }
+
+   /**
+    * Computes the elimination tree of the permuted matrix.
+    */
+   private int[] computeEtree() {
+      int n = mySize;
+      int[] rowPtr = new int[n+1];
+      int[] rowIdxs = buildPermutedLower (rowPtr, null, true, false);
+      return computeEtree (rowPtr, rowIdxs);
+   }
+
+   private int[] computeEtree (int[] rowPtr, int[] rowIdxs) {
+      int n = mySize;
+      int[] parent = new int[n];
+      int[] ancestor = new int[n];
+      for (int k=0; k<n; k++) {
+         parent[k] = -1;
+         ancestor[k] = -1;
+         for (int t=rowPtr[k]; t<rowPtr[k+1]; t++) {
+            int r = rowIdxs[t];
+            while (r != -1 && r < k) {
+               int next = ancestor[r];
+               ancestor[r] = k;
+               if (next == -1) {
+                  parent[r] = k;
+               }
+               r = next;
+            }
+         }
+      }
+      return parent;
+   }
+
+   private int[] postorder (int[] parent) {
+      int n = parent.length;
+      int[] head = new int[n];
+      int[] next = new int[n];
+      Arrays.fill (head, -1);
+      // add children in reverse so that they are visited in increasing order
+      for (int j=n-1; j>=0; j--) {
+         if (parent[j] != -1) {
+            next[j] = head[parent[j]];
+            head[parent[j]] = j;
+         }
+      }
+      int[] post = new int[n];
+      int[] stack = new int[n];
+      int k = 0;
+      for (int j=0; j<n; j++) {
+         if (parent[j] != -1) {
+            continue;
+         }
+         int top = 0;
+         stack[0] = j;
+         while (top >= 0) {
+            int p = stack[top];
+            int c = head[p];
+            if (c == -1) {
+               top--;
+               post[k++] = p;
+            }
+            else {
+               head[p] = next[c];
+               stack[++top] = c;
+            }
+         }
+      }
+      return post;
+   }
+
+   /**
+    * Computes the supernodes, their row structures, and the index maps
+    * used for numeric assembly.
+    */
+   private void computeSymbolicFactorization() {
+      int n = mySize;
+      int[] rowPtr = new int[n+1];
+      int[] rowIdxs = buildPermutedLower (rowPtr, null, true, false);
+      int[] parent = computeEtree (rowPtr, rowIdxs);
+
+      // column counts (excluding the diagonal), using row subtrees
+      int[] cnts = new int[n];
+      int[] mark = new int[n];
+      Arrays.fill (mark, -1);
+      for (int k=0; k<n; k++) {
+         mark[k] = k;
+         for (int t=rowPtr[k]; t<rowPtr[k+1]; t++) {
+            int j = rowIdxs[t];
+            while (mark[j] != k) {
+               cnts[j]++;
+               mark[j] = k;
+               j = parent[j];
+            }
+         }
+      }
+      int[] numChildren = new int[n];
+      for (int j=0; j<n; j++) {
+         if (parent[j] != -1) {
+            numChildren[parent[j]]++;
+         }
+      }
+
+      // fundamental supernodes
+      int[] superCols = new int[n+1];
+      int[] colToSuper = new int[n];
+      int ns = 0;
+      for (int j=0; j<n; j++) {
+         if (j == 0 || parent[j-1] != j || cnts[j-1] != cnts[j]+1 ||
+             numChildren[j] != 1) {
+            superCols[ns++] = j;
+         }
+         colToSuper[j] = ns-1;
+      }
+      superCols[ns] = n;
+      myNumSupernodes = ns;
+      mySuperCols = Arrays.copyOf (superCols, ns+1);
+
+      // lower triangular columns of the permuted matrix, with sources
+      int[] colPtr = new int[n+1];
+      int[] colSrc = new int[myNumVals];
+      int[] colRows = buildPermutedLower (colPtr, colSrc, false, true);
+
+      // row structures and the supernodal tree
+      mySuperRows = new int[ns][];
+      int[] superParent = new int[ns];
+      int[] childHead = new int[ns];
+      int[] childNext = new int[ns];
+      Arrays.fill (childHead, -1);
+      Arrays.fill (mark, -1);
+      int[] rows = new int[n];
+      for (int s=0; s<ns; s++) {
+         int f = mySuperCols[s];
+         int l = mySuperCols[s+1];
+         int m = 0;
+         for (int j=f; j<l; j++) {
+            rows[m++] = j;
+            mark[j] = s;
+         }
+         for (int j=f; j<l; j++) {
+            for (int t=colPtr[j]; t<colPtr[j+1]; t++) {
+               int i = colRows[t];
+               if (mark[i] != s) {
+                  mark[i] = s;
+                  rows[m++] = i;
+               }
+            }
+         }
+         for (int c=childHead[s]; c!=-1; c=childNext[c]) {
+            int[] crows = mySuperRows[c];
+            int cw = mySuperCols[c+1]-mySuperCols[c];
+            for (int t=cw; t<crows.length; t++) {
+               int i = crows[t];
+               if (mark[i] != s) {
+                  mark[i] = s;
+                  rows[m++] = i;
+               }
+            }
+         }
+         Arrays.sort (rows, l-f, m);
+         if (m != cnts[f]+1) {
+            throw new InternalErrorException (
+               "Supernode "+s+" has "+m+" rows; expected "+(cnts[f]+1));
+         }
+         mySuperRows[s] = Arrays.copyOf (rows, m);
+         int p = parent[l-1];
+         if (p == -1) {
+            superParent[s] = -1;
+         }
+         else {
+            int sp = colToSuper[p];
+            superParent[s] = sp;
+            // insert s at the end of the child list, so that children
+            // are stored in increasing order
+            childNext[s] = -1;
+            if (childHead[sp] == -1) {
+               childHead[sp] = s;
+            }
+            else {
+               int c = childHead[sp];
+               while (childNext[c] != -1) {
+                  c = childNext[c];
+               }
+               childNext[c] = s;
+            }
+         }
+      }
+
+      // compressed child lists
+      myChildPtr = new int[ns+1];
+      myChildren = new int[ns];
+      int nc = 0;
+      for (int s=0; s<ns; s++) {
+         myChildPtr[s] = nc;
+         for (int c=childHead[s]; c!=-1; c=childNext[c]) {
+            myChildren[nc++] = c;
+         }
+      }
+      myChildPtr[ns] = nc;
+
+      // assembly maps for matrix values and child update matrices
+      int[] pos = rows; // reuse as position map
+      myAsmPtr = new int[ns+1];
+      myAsmSrc = new int[myNumVals];
+      myAsmDst = new int[myNumVals];
+      myRelMaps = new int[ns][];
+      int na = 0;
+      for (int s=0; s<ns; s++) {
+         int f = mySuperCols[s];
+         int l = mySuperCols[s+1];
+         int[] srows = mySuperRows[s];
+         int m = srows.length;
+         for (int t=0; t<m; t++) {
+            pos[srows[t]] = t;
+         }
+         myAsmPtr[s] = na;
+         for (int j=f; j<l; j++) {
+            for (int t=colPtr[j]; t<colPtr[j+1]; t++) {
+               myAsmSrc[na] = colSrc[t];
+               myAsmDst[na] = pos[colRows[t]] + (j-f)*m;
+               na++;
+            }
+         }
+         for (int k=myChildPtr[s]; k<myChildPtr[s+1]; k++) {
+            int c = myChildren[k];
+            int[] crows = mySuperRows[c];
+            int cw = mySuperCols[c+1]-mySuperCols[c];
+            int[] map = new int[crows.length-cw];
+            for (int t=0; t<map.length; t++) {
+               map[t] = pos[crows[t+cw]];
+            }
+            myRelMaps[c] = map;
+         }
+      }
+      myAsmPtr[ns] = na;
+
+      // levels of the supernodal tree, with leaves at level 0
+      int[] level = new int[ns];
+      int maxLevel = 0;
+      for (int s=0; s<ns; s++) {
+         int lev = 0;
+         for (int k=myChildPtr[s]; k<myChildPtr[s+1]; k++) {
+            lev = Math.max (lev, level[myChildren[k]]+1);
+         }
+         level[s] = lev;
+         maxLevel = Math.max (maxLevel, lev);
+      }
+      myLevelPtr = new int[maxLevel+2];
+      for (int s=0; s<ns; s++) {
+         myLevelPtr[level[s]+1]++;
+      }
+      for (int lev=0; lev<=maxLevel; lev++) {
+         myLevelPtr[lev+1] += myLevelPtr[lev];
+      }
+      myLevelNodes = new int[ns];
+      int[] fill = Arrays.copyOf (myLevelPtr, maxLevel+1);
+      for (int s=0; s<ns; s++) {
+         myLevelNodes[fill[level[s]]++] = s;
+      }
+   }
+
+   /**
+    * Performs a numeric factorization of the matrix supplied by a previous
+    * call to {@link #analyze(Matrix,int,int) analyze(Matrix,int,int)},
+    * using its current values.
+    *
+    * @throws ImproperStateException if no matrix was supplied by
+    * <code>analyze(Matrix,int,int)</code>
+    * @throws NumericalException if the matrix contains non-finite values
+    */
+   public void factor() {
+      if (myMatrix == null) {
+         throw new ImproperStateException (
+            "analyze(Matrix) or analyzeAndFactor(Matrix) not previously called");
+      }
+      myMatrix.getCRSValues (
+         myVals, Partition.UpperTriangular, mySize, mySize);
+      factor (myVals);
+   }
+
+   /**
+    * Performs a numeric factorization of the most recently analyzed matrix,
+    * using the supplied values, which must be arranged in the same CRS
+    * structure that was supplied to <code>analyze</code>.
+    *
+    * @param vals non-zero matrix element values
+    * @throws ImproperStateException if no matrix has been analyzed
+    * @throws IllegalArgumentException if there are too few values
+    * @throws NumericalException if the matrix contains non-finite values
+    */
+   public void factor (final double[] vals) {
+      if (myState == UNSET) {
+         throw new ImproperStateException ("No matrix currently set");
+      }
+      if (vals.length < myNumVals) {
+         throw new IllegalArgumentException (
+            "Not enough values: vals.length=" + vals.length +
+            ", expected number is " + myNumVals);
+      }
+      myState = ANALYZED;
+      if (vals != myVals) {
+         System.arraycopy (vals, 0, myVals, 0, myNumVals);
+      }
+      // pivot tolerances are relative to the largest value in each row
+      double[] tols = myPivotTols;
+      Arrays.fill (tols, 0);
+      for (int i=0; i<mySize; i++) {
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            double a = Math.abs (vals[k]);
+            if (!(a <= Double.MAX_VALUE)) {
+               throw new NumericalException (
+                  "SparseLDLTSolver: matrix contains non-finite values");
+            }
+            int pi = myIperm[i];
+            int pj = myIperm[myColIdxs[k]];
+            tols[pi] = Math.max (tols[pi], a);
+            tols[pj] = Math.max (tols[pj], a);
+         }
+      }
+      double eps = Math.pow (10, -myPivotPerturbation);
+      for (int k=0; k<mySize; k++) {
+         tols[k] = (tols[k] > 0 ? tols[k]*eps : eps);
+      }
+
+      int numLevels = myLevelPtr.length-1;
+      for (int lev=0; lev<numLevels; lev++) {
+         final int lo = myLevelPtr[lev];
+         int num = myLevelPtr[lev+1]-lo;
+         if (myNumThreads == 1) {
+            for (int k=0; k<num; k++) {
+               factorSupernode (myLevelNodes[lo+k], vals, null);
+            }
+         }
+         else if (num == 1) {
+            factorSupernode (myLevelNodes[lo], vals, getLoop());
+         }
+         else {
+            getLoop().run (num, new ParallelLoop.Body() {
+                  public void run (int worker, int klo, int khi) {
+                     for (int k=klo; k<khi; k++) {
+                        factorSupernode (myLevelNodes[lo+k], vals, null);
+                     }
+                  }
+               });
+         }
+      }
+      int nump = 0;
+      for (int s=0; s<myNumSupernodes; s++) {
+         nump += myPerturbedCnts[s];
+      }
+      int numneg = 0;
+      for (int k=0; k<mySize; k++) {
+         double d = myD[k];
+         if (d < 0) {
+            numneg++;
+         }
+         else if (!(d <= Double.MAX_VALUE)) {
+            throw new NumericalException (
+               "SparseLDLTSolver: non-finite pivot at row " + myPerm[k]);
+         }
+      }
+      myNumPerturbedPivots = nump;
+      myNumNegEigenvalues = numneg;
+      myState = FACTORED;
+   }
+
+   /**
+    * Returns a buffer whose length is at least <code>size</code>, taken
+    * from the free buffers if possible. Buffer lengths are powers of 2, so
+    * that buffers released by one supernode can be reused by others of
+    * similar size. Since update matrices are released once they have been
+    * added into the parent, the buffers allocated by the first factorization
+    * are sufficient for all subsequent ones. Synchronized because supernodes
+    * on the same level are factored concurrently.
+    */
+   private synchronized double[] acquireBuffer (int size) {
+      int k = 32-Integer.numberOfLeadingZeros (Math.max (size, 1)-1);
+      while (myFreeBuffers.size() <= k) {
+         myFreeBuffers.add (new ArrayList<double[]>());
+      }
+      ArrayList<double[]> free = myFreeBuffers.get (k);
+      int num = free.size();
+      return (num > 0 ? free.remove (num-1) : new double[1<<k]);
+   }
+
+   /**
+    * Returns a buffer obtained from {@link #acquireBuffer} to the free
+    * buffers.
+    */
+   private synchronized void releaseBuffer (double[] buf) {
+      myFreeBuffers.get (Integer.numberOfTrailingZeros (buf.length)).add (buf);
+   }
+
+   /**
+    * Forms the frontal matrix for supernode s from the matrix values and
+    * the update matrices of its children, factors its leading columns,
+    * and computes the update matrix for its parent.
+    */
+   private void factorSupernode (
+      int s, double[] vals, ParallelLoop loop) {
+
+      final int f = mySuperCols[s];
+      final int w = mySuperCols[s+1]-f;
+      final int m = mySuperRows[s].length;
+      final int mu = m-w;
+      final double[] L = myL[s];
+      final double[] D = myD;
+      Arrays.fill (L, 0);
+      final double[] U = (mu > 0 ? acquireBuffer (mu*mu) : null);
+      if (U != null) {
+         Arrays.fill (U, 0, mu*mu, 0);
+      }
+
+      // assemble matrix values
+      for (int t=myAsmPtr[s]; t<myAsmPtr[s+1]; t++) {
+         L[myAsmDst[t]] += vals[myAsmSrc[t]];
+      }
+      // extend-add the children's update matrices
+      for (int k=myChildPtr[s]; k<myChildPtr[s+1]; k++) {
+         int c = myChildren[k];
+         double[] Uc = myUpdates[c];
+         int[] map = myRelMaps[c];
+         int muc = map.length;
+         for (int b=0; b<muc; b++) {
+            int pb = map[b];
+            int ub = b*muc;
+            if (pb < w) {
+               int lb = pb*m;
+               for (int a=b; a<muc; a++) {
+                  L[map[a]+lb] += Uc[a+ub];
+               }
+            }
+            else {
+               int lb = (pb-w)*mu - w;
+               for (int a=b; a<muc; a++) {
+                  U[map[a]+lb] += Uc[a+ub];
+               }
+            }
+         }
+         myUpdates[c] = null;
+         releaseBuffer (Uc);
+      }
+
+      // factor the leading w columns, in panels of PANEL_SIZE columns. Each
+      // panel is factored column by column, after which its contribution
+      // is subtracted from the remaining leading columns
+      int nump = 0;
+      for (int jb=0; jb<w; jb+=PANEL_SIZE) {
+         final int je = Math.min (jb+PANEL_SIZE, w);
+         for (int j=jb; j<je; j++) {
+            int cj = j*m;
+            double d = L[j+cj];
+            double eps = myPivotTols[f+j];
+            if (Math.abs (d) < eps) {
+               d = (d < 0 ? -eps : eps);
+               nump++;
+            }
+            D[f+j] = d;
+            for (int k=j+1; k<je; k++) {
+               double t = L[k+cj]/d;
+               if (t != 0) {
+                  int ck = k*m;
+                  for (int i=k; i<m; i++) {
+                     L[i+ck] -= t*L[i+cj];
+                  }
+               }
+            }
+            double dinv = 1/d;
+            for (int i=j+1; i<m; i++) {
+               L[i+cj] *= dinv;
+            }
+         }
+         if (je < w) {
+            final int j0 = jb;
+            if (loop != null && w-je >= 2*MIN_COLUMN_CHUNK) {
+               loop.run (w-je, MIN_COLUMN_CHUNK, new ParallelLoop.Body() {
+                     public void run (int worker, int lo, int hi) {
+                        updateColumns (
+                           L, D, f, m, j0, je, 0, L, 0, m, je+lo, je+hi);
+                     }
+                  });
+            }
+            else {
+               updateColumns (L, D, f, m, j0, je, 0, L, 0, m, je, w);
+            }
+         }
+      }
+      myPerturbedCnts[s] = nump;
+
+      // compute the update matrix
+      if (mu > 0) {
+         if (loop != null && mu >= 2*MIN_COLUMN_CHUNK) {
+            loop.run (mu, MIN_COLUMN_CHUNK, new ParallelLoop.Body() {
+                  public void run (int worker, int lo, int hi) {
+                     updateColumns (L, D, f, m, 0, w, w, U, -w, mu, lo, hi);
+                  }
+               });
+         }
+         else {
+            updateColumns (L, D, f, m, 0, w, w, U, -w, mu, 0, mu);
+         }
+      }
+      myUpdates[s] = U;
+   }
+
+   /**
+    * Subtracts the contribution of the factored columns [j0, j1) of L from
+    * columns [lo, hi) of the lower triangle of a target matrix T. Target
+    * column b, which corresponds to row r0+b of L, is stored in T starting
+    * at toff+b*tstride, and receives
+    * <pre>
+    *   T(i,b) -= sum_j L(r0+b,j) D(j) L(i,j),   r0+b &lt;= i &lt; m
+    * </pre>
+    * This is used both for the remaining leading columns of a frontal matrix
+    * (T = L, r0 = 0) and for its update matrix (T = U, r0 = w).
+    *
+    * <p>Target columns are processed four at a time, and the columns of L
+    * four at a time, so that each entry of T is loaded and stored once for
+    * every 16 multiply-adds, with the corresponding entries of L D held in
+    * local variables. The operations applied to each entry of T do not
+    * depend on lo and hi, so that results are independent of how the
+    * columns are divided among threads.
+    */
+   private static void updateColumns (
+      double[] L, double[] D, int f, int m, int j0, int j1, int r0,
+      double[] T, int toff, int tstride, int lo, int hi) {
+
+      int b = lo;
+      for ( ; b+3<hi; b+=4) {
+         int r = r0+b;
+         int u0 = toff + b*tstride;
+         int u1 = u0+tstride;
+         int u2 = u1+tstride;
+         int u3 = u2+tstride;
+         int j = j0;
+         for ( ; j+3<j1; j+=4) {
+            int c0 = j*m;
+            int c1 = c0+m;
+            int c2 = c1+m;
+            int c3 = c2+m;
+            double d0 = D[f+j];
+            double d1 = D[f+j+1];
+            double d2 = D[f+j+2];
+            double d3 = D[f+j+3];
+            // t<col><k> = L(r+col,j+k) D(j+k)
+            double t00 = d0*L[r+c0], t01 = d1*L[r+c1];
+            double t02 = d2*L[r+c2], t03 = d3*L[r+c3];
+            double t10 = d0*L[r+1+c0], t11 = d1*L[r+1+c1];
+            double t12 = d2*L[r+1+c2], t13 = d3*L[r+1+c3];
+            double t20 = d0*L[r+2+c0], t21 = d1*L[r+2+c1];
+            double t22 = d2*L[r+2+c2], t23 = d3*L[r+2+c3];
+            double t30 = d0*L[r+3+c0], t31 = d1*L[r+3+c1];
+            double t32 = d2*L[r+3+c2], t33 = d3*L[r+3+c3];
+            // leading triangle
+            for (int i=r; i<r+3; i++) {
+               double l0 = L[i+c0];
+               double l1 = L[i+c1];
+               double l2 = L[i+c2];
+               double l3 = L[i+c3];
+               T[i+u0] -= t00*l0 + t01*l1 + t02*l2 + t03*l3;
+               if (i > r) {
+                  T[i+u1] -= t10*l0 + t11*l1 + t12*l2 + t13*l3;
+               }
+               if (i > r+1) {
+                  T[i+u2] -= t20*l0 + t21*l1 + t22*l2 + t23*l3;
+               }
+            }
+            for (int i=r+3; i<m; i++) {
+               double l0 = L[i+c0];
+               double l1 = L[i+c1];
+               double l2 = L[i+c2];
+               double l3 = L[i+c3];
+               T[i+u0] -= t00*l0 + t01*l1 + t02*l2 + t03*l3;
+               T[i+u1] -= t10*l0 + t11*l1 + t12*l2 + t13*l3;
+               T[i+u2] -= t20*l0 + t21*l1 + t22*l2 + t23*l3;
+               T[i+u3] -= t30*l0 + t31*l1 + t32*l2 + t33*l3;
+            }
+         }
+         for ( ; j<j1; j++) {
+            int cj = j*m;
+            double d = D[f+j];
+            double t0 = d*L[r+cj];
+            double t1 = d*L[r+1+cj];
+            double t2 = d*L[r+2+cj];
+            double t3 = d*L[r+3+cj];
+            T[r+u0] -= t0*L[r+cj];
+            T[r+1+u0] -= t0*L[r+1+cj];
+            T[r+1+u1] -= t1*L[r+1+cj];
+            T[r+2+u0] -= t0*L[r+2+cj];
+            T[r+2+u1] -= t1*L[r+2+cj];
+            T[r+2+u2] -= t2*L[r+2+cj];
+            for (int i=r+3; i<m; i++) {
+               double l = L[i+cj];
+               T[i+u0] -= t0*l;
+               T[i+u1] -= t1*l;
+               T[i+u2] -= t2*l;
+               T[i+u3] -= t3*l;
+            }
+         }
+      }
+      // remaining target columns, using the same operations per entry
+      for ( ; b<hi; b++) {
+         int r = r0+b;
+         int ub = toff + b*tstride;
+         int j = j0;
+         for ( ; j+3<j1; j+=4) {
+            int c0 = j*m;
+            int c1 = c0+m;
+            int c2 = c1+m;
+            int c3 = c2+m;
+            double t0 = D[f+j]*L[r+c0];
+            double t1 = D[f+j+1]*L[r+c1];
+            double t2 = D[f+j+2]*L[r+c2];
+            double t3 = D[f+j+3]*L[r+c3];
+            for (int i=r; i<m; i++) {
+               T[i+ub] -= t0*L[i+c0] + t1*L[i+c1] + t2*L[i+c2] + t3*L[i+c3];
+            }
+         }
+         for ( ; j<j1; j++) {
+            int cj = j*m;
+            double t = D[f+j]*L[r+cj];
+            for (int i=r; i<m; i++) {
+               T[i+ub] -= t*L[i+cj];
+            }
+         }
+      }
+   }
+
+   /**
+    * Convenience method that analyzes and factors a symmetric matrix.
+    * This is equivalent to
+    * <pre>
+    *   analyze (M, M.rowSize(), Matrix.SYMMETRIC)
+    *   factor()
+    * </pre>
+    *
+    * @param M matrix to factor
+    */
+   public void analyzeAndFactor (Matrix M) {
+      analyze (M, M.rowSize(), Matrix.SYMMETRIC);
+      factor();
+   }
+
+   private void checkFactored() {
+      if (myState != FACTORED) {
+         throw new ImproperStateException ("Matrix not factored");
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void solve (VectorNd x, VectorNd b) {
+      if (x.size() < mySize || b.size() < mySize) {
+         throw new IllegalArgumentException (
+            "x and b sizes must be at least " + mySize);
+      }
+      solve (x.getBuffer(), b.getBuffer());
+   }
+
+   /**
+    * Solves the factored matrix for x, given a right-hand side b. If the
+    * factorization required perturbed pivots, the solution is improved
+    * using iterative refinement.
+    *
+    * @param x returns the solution value
+    * @param b supplies the right-hand side
+    * @throws ImproperStateException if the matrix has not been factored
+    */
+   public void solve (double[] x, double[] b) {
+      checkFactored();
+      if (x.length < mySize || b.length < mySize) {
+         throw new IllegalArgumentException (
+            "x and b lengths must be at least " + mySize);
+      }
+      myNumRefinementSteps = 0;
+      if (myNumPerturbedPivots == 0 || myMaxRefinementSteps <= 0) {
+         solveDirect (x, b);
+         return;
+      }
+      if (x == b) {
+         b = Arrays.copyOf (b, mySize);
+      }
+      solveDirect (x, b);
+      double bnorm = 0;
+      for (int i=0; i<mySize; i++) {
+         bnorm = Math.max (bnorm, Math.abs (b[i]));
+      }
+      double[] res = myRes;
+      double[] dx = myDx;
+      for (int step=0; step<myMaxRefinementSteps; step++) {
+         computeResidual (res, x, b);
+         double rnorm = 0;
+         for (int i=0; i<mySize; i++) {
+            rnorm = Math.max (rnorm, Math.abs (res[i]));
+         }
+         if (rnorm <= 1e-15*bnorm) {
+            break;
+         }
+         solveDirect (dx, res);
+         for (int i=0; i<mySize; i++) {
+            x[i] += dx[i];
+         }
+         myNumRefinementSteps++;
+      }
+   }
+
+   /**
+    * Computes res = b - A x using the values of the most recent
+    * factorization.
+    */
+   private void computeResidual (double[] res, double[] x, double[] b) {
+      for (int i=0; i<mySize; i++) {
+         res[i] = b[i];
+      }
+      for (int i=0; i<mySize; i++) {
+         double xi = x[i];
+         double sum = 0;
+         for (int k=myRowOffs[i]; k<myRowOffs[i+1]; k++) {
+            int j = myColIdxs[k];
+            double a = myVals[k];
+            sum += a*x[j];
+            if (j != i) {
+               res[j] -= a*xi;
+            }
+         }
+         res[i] -= sum;
+      }
+   }
+
+   private void solveDirect (double[] x, double[] b) {
+      double[] y = myY;
+      for (int k=0; k<mySize; k++) {
+         y[k] = b[myPerm[k]];
+      }
+      int ns = myNumSupernodes;
+      // forward substitution with L
+      for (int s=0; s<ns; s++) {
+         int f = mySuperCols[s];
+         int w = mySuperCols[s+1]-f;
+         int[] rows = mySuperRows[s];
+         int m = rows.length;
+         double[] L = myL[s];
+         for (int j=0; j<w; j++) {
+            double yj = y[f+j];
+            if (yj != 0) {
+               int cj = j*m;
+               for (int i=j+1; i<m; i++) {
+                  y[rows[i]] -= L[i+cj]*yj;
+               }
+            }
+         }
+      }
+      // diagonal
+      for (int k=0; k<mySize; k++) {
+         y[k] /= myD[k];
+      }
+      // backward substitution with L^T
+      for (int s=ns-1; s>=0; s--) {
+         int f = mySuperCols[s];
+         int w = mySuperCols[s+1]-f;
+         int[] rows = mySuperRows[s];
+         int m = rows.length;
+         double[] L = myL[s];
+         for (int j=w-1; j>=0; j--) {
+            int cj = j*m;
+            double sum = y[f+j];
+            for (int i=j+1; i<m; i++) {
+               sum -= L[i+cj]*y[rows[i]];
+            }
+            y[f+j] = sum;
+         }
+      }
+      for (int k=0; k<mySize; k++) {
+         x[myPerm[k]] = y[k];
+      }
+   }
+
+   /**
+    * Solves the factored matrix for multiple right-hand sides, given by the
+    * columns of <code>B</code>, and returns the solutions in the
+    * corresponding columns of <code>X</code>. The results are the same as
+    * those obtained by calling {@link #solve(double[],double[])} for each
+    * column. However, the columns are processed in blocks, with the forward
+    * and backward substitutions applying each factor entry to all the
+    * columns of a block at once, which is considerably faster than solving
+    * the columns one at a time. If more than one thread is specified,
+    * different blocks are solved concurrently.
+    *
+    * @param X returns the solutions. Will be resized to the matrix size
+    * times the number of right-hand sides.
+    * @param B supplies the right-hand sides. Its row size must equal the
+    * matrix size.
+    * @throws ImproperStateException if the matrix has not been factored
+    */
+   public void solve (final MatrixNd X, final MatrixNd B) {
+      checkFactored();
+      if (B.rowSize() != mySize) {
+         throw new IllegalArgumentException (
+            "B row size " + B.rowSize() + " != matrix size " + mySize);
+      }
+      if (X == B) {
+         throw new IllegalArgumentException ("X and B must be different");
+      }
+      int nrhs = B.colSize();
+      X.setSize (mySize, nrhs);
+      int nblks = (nrhs + RHS_BLOCK_SIZE - 1)/RHS_BLOCK_SIZE;
+      if (myNumThreads > 1 && nblks > 1) {
+         getLoop().run (nblks, new ParallelLoop.Body() {
+               public void run (int worker, int lo, int hi) {
+                  solveBlocks (X, B, lo, hi);
+               }
+            });
+      }
+      else {
+         solveBlocks (X, B, 0, nblks);
+      }
+   }
+
+   /**
+    * Solves the right-hand side blocks [lo, hi) for {@link
+    * #solve(MatrixNd,MatrixNd)}, using storage local to this call so that
+    * different blocks can be solved concurrently.
+    */
+   private void solveBlocks (MatrixNd X, MatrixNd B, int lo, int hi) {
+      int nrhs = B.colSize();
+      int n = mySize;
+      double[] y = new double[n*RHS_BLOCK_SIZE];
+      double[][] xcols = new double[RHS_BLOCK_SIZE][n];
+      double[][] bcols = new double[RHS_BLOCK_SIZE][n];
+      double[][] rcols = null;
+      double[][] dcols = null;
+      boolean refine = (myNumPerturbedPivots > 0 && myMaxRefinementSteps > 0);
+      if (refine) {
+         rcols = new double[RHS_BLOCK_SIZE][];
+         dcols = new double[RHS_BLOCK_SIZE][];
+      }
+      for (int blk=lo; blk<hi; blk++) {
+         int c0 = blk*RHS_BLOCK_SIZE;
+         int nc = Math.min (RHS_BLOCK_SIZE, nrhs-c0);
+         for (int r=0; r<nc; r++) {
+            double[] bcol = bcols[r];
+            for (int i=0; i<n; i++) {
+               bcol[i] = B.get (i, c0+r);
+            }
+         }
+         solveDirect (xcols, bcols, nc, y);
+         if (refine) {
+            refineSolutions (xcols, bcols, nc, y, rcols, dcols);
+         }
+         for (int r=0; r<nc; r++) {
+            double[] xcol = xcols[r];
+            for (int i=0; i<n; i++) {
+               X.set (i, c0+r, xcol[i]);
+            }
+         }
+      }
+   }
+
+   /**
+    * Applies iterative refinement to each of the first <code>nc</code>
+    * solutions in <code>xcols</code>, using the same convergence test as
+    * {@link #solve(double[],double[])}. Unconverged columns are corrected
+    * together using a blocked solve.
+    */
+   private void refineSolutions (
+      double[][] xcols, double[][] bcols, int nc, double[] y,
+      double[][] rcols, double[][] dcols) {
+
+      int n = mySize;
+      double[] bnorms = new double[nc];
+      boolean[] converged = new boolean[nc];
+      for (int r=0; r<nc; r++) {
+         for (int i=0; i<n; i++) {
+            bnorms[r] = Math.max (bnorms[r], Math.abs (bcols[r][i]));
+         }
+      }
+      double[][] res = new double[nc][n];
+      double[][] dx = new double[nc][n];
+      int[] active = new int[nc];
+      for (int step=0; step<myMaxRefinementSteps; step++) {
+         int na = 0;
+         for (int r=0; r<nc; r++) {
+            if (!converged[r]) {
+               computeResidual (res[r], xcols[r], bcols[r]);
+               double rnorm = 0;
+               for (int i=0; i<n; i++) {
+                  rnorm = Math.max (rnorm, Math.abs (res[r][i]));
+               }
+               if (rnorm <= 1e-15*bnorms[r]) {
+                  converged[r] = true;
+               }
+               else {
+                  rcols[na] = res[r];
+                  dcols[na] = dx[r];
+                  active[na++] = r;
+               }
+            }
+         }
+         if (na == 0) {
+            break;
+         }
+         solveDirect (dcols, rcols, na, y);
+         for (int k=0; k<na; k++) {
+            double[] x = xcols[active[k]];
+            double[] d = dcols[k];
+            for (int i=0; i<n; i++) {
+               x[i] += d[i];
+            }
+         }
+      }
+   }
+
+   /**
+    * Blocked version of {@link #solveDirect(double[],double[])}, which
+    * solves for <code>nc</code> right-hand sides at once. The right-hand
+    * sides are interleaved in <code>y</code>, so that entry
+    * <code>k*nc+r</code> holds row <code>k</code> for right-hand side
+    * <code>r</code>. The operations for each right-hand side are the same,
+    * and are performed in the same order, as in the unblocked solve.
+    */
+   private void solveDirect (
+      double[][] xcols, double[][] bcols, int nc, double[] y) {
+
+      int n = mySize;
+      for (int k=0; k<n; k++) {
+         int pk = myPerm[k];
+         int yk = k*nc;
+         for (int r=0; r<nc; r++) {
+            y[yk+r] = bcols[r][pk];
+         }
+      }
+      int ns = myNumSupernodes;
+      // forward substitution with L
+      for (int s=0; s<ns; s++) {
+         int f = mySuperCols[s];
+         int w = mySuperCols[s+1]-f;
+         int[] rows = mySuperRows[s];
+         int m = rows.length;
+         double[] L = myL[s];
+         for (int j=0; j<w; j++) {
+            int cj = j*m;
+            int yj = (f+j)*nc;
+            for (int i=j+1; i<m; i++) {
+               double lij = L[i+cj];
+               if (lij != 0) {
+                  int yi = rows[i]*nc;
+                  for (int r=0; r<nc; r++) {
+                     y[yi+r] -= lij*y[yj+r];
+                  }
+               }
+            }
+         }
+      }
+      // diagonal
+      for (int k=0; k<n; k++) {
+         double d = myD[k];
+         int yk = k*nc;
+         for (int r=0; r<nc; r++) {
+            y[yk+r] /= d;
+         }
+      }
+      // backward substitution with L^T
+      for (int s=ns-1; s>=0; s--) {
+         int f = mySuperCols[s];
+         int w = mySuperCols[s+1]-f;
+         int[] rows = mySuperRows[s];
+         int m = rows.length;
+         double[] L = myL[s];
+         for (int j=w-1; j>=0; j--) {
+            int cj = j*m;
+            int yj = (f+j)*nc;
+            for (int i=j+1; i<m; i++) {
+               double lij = L[i+cj];
+               if (lij != 0) {
+                  int yi = rows[i]*nc;
+                  for (int r=0; r<nc; r++) {
+                     y[yj+r] -= lij*y[yi+r];
+                  }
+               }
+            }
+         }
+      }
+      for (int k=0; k<n; k++) {
+         int pk = myPerm[k];
+         int yk = k*nc;
+         for (int r=0; r<nc; r++) {
+            xcols[r][pk] = y[yk+r];
+         }
+      }
+   }
+
+   /**
+    * Factors the matrix and then solves it. Auto-iterative solving is not
+    * supported, and so <code>tolExp</code> is ignored.
+    */
+   public void autoFactorAndSolve (VectorNd x, VectorNd b, int tolExp) {
+      factor();
+      solve (x, b);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean hasAutoIterativeSolving() {
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void dispose() {
+      if (myLoop != null) {
+         myLoop.dispose();
+         myLoop = null;
+      }
+   }
+}
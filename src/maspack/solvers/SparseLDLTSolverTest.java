@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.solvers;
+
+import maspack.matrix.*;
+import maspack.matrix.Matrix.Partition;
+import maspack.util.*;
+
+public class SparseLDLTSolverTest extends UnitTest {
+
+   /**
+    * Creates a random symmetric positive definite block matrix whose block
+    * structure resembles that of a mesh, with each block row coupled to a
+    * few nearby block rows.
+    */
+   private SparseBlockMatrix createSPDMatrix (int nblks, int bsize) {
+      int[] sizes = new int[nblks];
+      for (int i=0; i<nblks; i++) {
+         sizes[i] = bsize;
+      }
+      SparseBlockMatrix S = new SparseBlockMatrix (sizes);
+      for (int bi=0; bi<nblks; bi++) {
+         for (int k=1; k<=3; k++) {
+            int bj = (k == 3 ? RandomGenerator.nextInt (0, nblks-1) : bi+k);
+            if (bj < nblks && bj != bi && S.getBlock (bi, bj) == null) {
+               MatrixNdBlock blk = new MatrixNdBlock (bsize, bsize);
+               blk.setRandom();
+               S.addBlock (bi, bj, blk);
+               MatrixNdBlock blkT = new MatrixNdBlock (bsize, bsize);
+               blkT.transpose (blk);
+               S.addBlock (bj, bi, blkT);
+            }
+         }
+      }
+      // make the matrix diagonally dominant
+      for (int bi=0; bi<nblks; bi++) {
+         int nb = 0;
+         for (MatrixBlock b=S.firstBlockInRow(bi); b!=null; b=b.next()) {
+            nb++;
+         }
+         MatrixNdBlock blk = new MatrixNdBlock (bsize, bsize);
+         blk.setRandom();
+         MatrixNd T = new MatrixNd (blk);
+         T.transpose();
+         blk.add (T);
+         for (int i=0; i<bsize; i++) {
+            blk.add (i, i, bsize*(nb+1));
+         }
+         S.addBlock (bi, bi, blk);
+      }
+      return S;
+   }
+
+   /**
+    * Creates the KKT matrix [ M G^T ; G -R ] for a random SPD matrix M and
+    * a random constraint matrix G.
+    */
+   private SparseBlockMatrix createKKTMatrix (
+      SparseBlockMatrix M, int ncons, double compliance) {
+      int nblks = M.numBlockRows();
+      int[] sizes = new int[nblks+ncons];
+      for (int i=0; i<nblks; i++) {
+         sizes[i] = M.getBlockRowSize(i);
+      }
+      for (int i=0; i<ncons; i++) {
+         sizes[nblks+i] = 1;
+      }
+      SparseBlockMatrix K = new SparseBlockMatrix (sizes);
+      for (int bi=0; bi<nblks; bi++) {
+         for (MatrixBlock blk=M.firstBlockInRow(bi); blk!=null;
+              blk=blk.next()) {
+            K.addBlock (bi, blk.getBlockCol(), blk.clone());
+         }
+      }
+      for (int c=0; c<ncons; c++) {
+         int bc = nblks+c;
+         for (int k=0; k<2; k++) {
+            int bj = RandomGenerator.nextInt (0, nblks-1);
+            if (K.getBlock (bc, bj) == null) {
+               int nc = sizes[bj];
+               MatrixNdBlock blk = new MatrixNdBlock (1, nc);
+               blk.setRandom();
+               K.addBlock (bc, bj, blk);
+               MatrixNdBlock blkT = new MatrixNdBlock (nc, 1);
+               blkT.transpose (blk);
+               K.addBlock (bj, bc, blkT);
+            }
+         }
+         MatrixNdBlock diag = new MatrixNdBlock (1, 1);
+         diag.set (0, 0, -compliance);
+         K.addBlock (bc, bc, diag);
+      }
+      return K;
+   }
+
+   private void checkSolve (SparseLDLTSolver solver, Matrix A, double tol) {
+      int n = A.rowSize();
+      VectorNd b = new VectorNd (n);
+      VectorNd x = new VectorNd (n);
+      VectorNd r = new VectorNd (n);
+      b.setRandom();
+      solver.solve (x, b);
+      A.mul (r, x);
+      r.sub (b);
+      double err = r.norm()/b.norm();
+      if (err > tol) {
+         throw new TestException (
+            "relative residual is "+err+", tolerance is "+tol);
+      }
+   }
+
+   private void checkEigenvalueCounts (
+      SparseLDLTSolver solver, int numPos, int numNeg) {
+      if (solver.getNumNegEigenvalues() != numNeg ||
+          solver.getNumPosEigenvalues() != numPos) {
+         throw new TestException (
+            "Eigenvalue counts are "+solver.getNumPosEigenvalues()+"/"+
+            solver.getNumNegEigenvalues()+", expected "+numPos+"/"+numNeg);
+      }
+   }
+
+   private void testSPD (int nblks, int bsize) {
+      SparseBlockMatrix S = createSPDMatrix (nblks, bsize);
+      SparseLDLTSolver solver = new SparseLDLTSolver();
+      solver.analyze (S, S.rowSize(), Matrix.SPD);
+      solver.factor();
+      checkSolve (solver, S, 1e-12);
+      checkEigenvalueCounts (solver, S.rowSize(), 0);
+
+      // refactor using the same analysis and new values
+      S.scale (2.0);
+      solver.factor();
+      checkSolve (solver, S, 1e-12);
+      solver.dispose();
+   }
+
+   private void testKKT (int nblks, int ncons, double compliance) {
+      SparseBlockMatrix M = createSPDMatrix (nblks, 3);
+      SparseBlockMatrix K = createKKTMatrix (M, ncons, compliance);
+      SparseLDLTSolver solver = new SparseLDLTSolver();
+      solver.analyze (K, K.rowSize(), Matrix.SYMMETRIC);
+      solver.factor();
+      checkSolve (solver, K, 1e-10);
+      checkEigenvalueCounts (solver, M.rowSize(), ncons);
+      solver.dispose();
+   }
+
+   private void testCRSInterface (int nblks) {
+      SparseBlockMatrix S = createSPDMatrix (nblks, 3);
+      int size = S.rowSize();
+      int nnz = S.numNonZeroVals (Partition.UpperTriangular, size, size);
+      int[] colIdxs = new int[nnz];
+      int[] rowOffs = new int[size+1];
+      double[] vals = new double[nnz];
+      S.getCRSIndices (colIdxs, rowOffs, Partition.UpperTriangular);
+      S.getCRSValues (vals, Partition.UpperTriangular);
+
+      SparseLDLTSolver solver = new SparseLDLTSolver();
+      solver.analyze (vals, colIdxs, rowOffs, size, Matrix.SYMMETRIC);
+      solver.factor (vals);
+      checkSolve (solver, S, 1e-12);
+      solver.dispose();
+   }
+
+   private void testThreads (int nblks, int ncons) {
+      SparseBlockMatrix M = createSPDMatrix (nblks, 3);
+      SparseBlockMatrix K = createKKTMatrix (M, ncons, 0);
+      int n = K.rowSize();
+      VectorNd b = new VectorNd (n);
+      b.setRandom();
+
+      SparseLDLTSolver solver = new SparseLDLTSolver();
+      solver.analyze (K, n, Matrix.SYMMETRIC);
+      solver.factor();
+      VectorNd xchk = new VectorNd (n);
+      solver.solve (xchk, b);
+
+      int[] nthreads = new int[] { 2, 4 };
+      for (int num : nthreads) {
+         solver.setNumThreads (num);
+         solver.factor();
+         VectorNd x = new VectorNd (n);
+         solver.solve (x, b);
+         if (!x.equals (xchk)) {
+            throw new TestException (
+               "solution with "+num+" threads differs from single thread");
+         }
+      }
+      solver.dispose();
+   }
+
+   /**
+    * Checks that solving for multiple right-hand sides gives the same
+    * results as solving for each right-hand side separately.
+    */
+   private void testMultipleRhs (int nblks, int ncons, int nrhs) {
+      SparseBlockMatrix M = createSPDMatrix (nblks, 3);
+      SparseBlockMatrix K = createKKTMatrix (M, ncons, 0);
+      int n = K.rowSize();
+      MatrixNd B = new MatrixNd (n, nrhs);
+      B.setRandom();
+
+      SparseLDLTSolver solver = new SparseLDLTSolver();
+      solver.analyze (K, n, Matrix.SYMMETRIC);
+      solver.factor();
+      MatrixNd Xchk = new MatrixNd (n, nrhs);
+      VectorNd b = new VectorNd (n);
+      VectorNd x = new VectorNd (n);
+      for (int j=0; j<nrhs; j++) {
+         B.getColumn (j, b);
+         solver.solve (x, b);
+         Xchk.setColumn (j, x);
+      }
+      for (int num : new int[] { 1, 3 }) {
+         solver.setNumThreads (num);
+         MatrixNd X = new MatrixNd ();
+         solver.solve (X, B);
+         if (!X.epsilonEquals (Xchk, 1e-12*Xchk.frobeniusNorm())) {
+            throw new TestException (
+               "multiple right-hand side solution with "+num+
+               " threads differs from single solves");
+         }
+      }
+      solver.dispose();
+   }
+
+   public void test() {
+      RandomGenerator.setSeed (0x1234);
+      testSPD (1, 3);
+      testSPD (10, 3);
+      testSPD (200, 3);
+      testSPD (100, 6);
+      testKKT (10, 4, 0);
+      testKKT (200, 50, 0);
+      testKKT (200, 50, 1e-6);
+      testCRSInterface (100);
+      testThreads (400, 100);
+      testMultipleRhs (10, 4, 1);
+      testMultipleRhs (200, 50, 37);
+   }
+
+   public static void main (String[] args) {
+      SparseLDLTSolverTest tester = new SparseLDLTSolverTest();
+      tester.runtest();
+   }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.util;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A ReaderTokenizer that replays a token stream which was previously
+ * recorded by a {@link RecordingTokenizer} and saved in binary form.
+ *
+ * <p>The binary file stores the tokens in packed typed arrays (token kinds,
+ * line numbers, floating point values, integer values, characters and string
+ * table indices), which are memory-mapped when the tokenizer is created.
+ * Replaying the tokens therefore requires no character scanning or number
+ * parsing, which makes loading large text files (such as ArtiSynth
+ * <code>.art</code> files with many nodes and elements) considerably faster.
+ * Since the file contains the tokens that were actually read from the
+ * original input, it can be used in place of that input by any code that
+ * reads it through the standard ReaderTokenizer methods, regardless of how
+ * the tokenizer settings were changed while the input was being read.
+ *
+ * <p>The header records the length and modification time of the source
+ * file, so that {@link #isCurrent isCurrent} can be used to determine
+ * whether a binary file is still valid for its source.
+ */
+public class BinaryTokenizer extends ReaderTokenizer {
+
+   static final int MAGIC = 0x41525442; // "ARTB"
+   static final int VERSION = 1;
+
+   // token kinds, stored in the low bits of each kind byte
+   static final int KIND_EOF = 0;
+   static final int KIND_EOL = 1;
+   static final int KIND_WORD = 2;
+   static final int KIND_NUMBER = 3;
+   static final int KIND_CHAR = 4;
+   static final int KIND_MASK = 0x0f;
+
+   // flags stored in the high bits of each kind byte
+   static final int INTEGER_FLAG = 0x10;
+   static final int HEX_FLAG = 0x20;
+   static final int STRING_FLAG = 0x40;
+
+   private ByteBuffer myKinds;
+   private IntBuffer myLines;
+   private DoubleBuffer myDoubles;
+   private LongBuffer myLongs;
+   private CharBuffer myChars;
+   private IntBuffer myStringIdxs;
+   private String[] myStrings;
+
+   private int myNumTokens;
+   private int myTokenIdx;
+   private int myLine = 1;
+   private boolean myPushedBack = false;
+   private boolean myIsInteger = false;
+   private boolean myIsHex = false;
+
+   private long mySourceLength;
+   private long mySourceModified;
+
+   /**
+    * Creates a new BinaryTokenizer which replays the tokens stored in the
+    * specified file. The file is memory-mapped.
+    *
+    * @param file binary token file
+    * @throws IOException if the file cannot be read or is not a binary
+    * token file
+    */
+   public BinaryTokenizer (File file) throws IOException {
+      super (null);
+      ByteBuffer buf;
+      try (FileInputStream in = new FileInputStream (file)) {
+         FileChannel channel = in.getChannel();
+         buf = channel.map (FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buf.remaining() < 8 || buf.getInt() != MAGIC) {
+         throw new IOException (file + " is not a binary token file");
+      }
+      int version = buf.getInt();
+      if (version != VERSION) {
+         throw new IOException (
+            "binary token file " + file + " has unsupported version " +
+            version);
+      }
+      mySourceLength = buf.getLong();
+      mySourceModified = buf.getLong();
+      myNumTokens = buf.getInt();
+      int ndoubles = buf.getInt();
+      int nlongs = buf.getInt();
+      int nchars = buf.getInt();
+      int nstringIdxs = buf.getInt();
+
+      myKinds = region (buf, myNumTokens);
+      myLines = region (buf, 4*myNumTokens).asIntBuffer();
+      myDoubles = region (buf, 8*ndoubles).asDoubleBuffer();
+      myLongs = region (buf, 8*nlongs).asLongBuffer();
+      myChars = region (buf, 2*nchars).asCharBuffer();
+      myStringIdxs = region (buf, 4*nstringIdxs).asIntBuffer();
+
+      myStrings = new String[buf.getInt()];
+      for (int i=0; i<myStrings.length; i++) {
+         byte[] bytes = new byte[buf.getInt()];
+         buf.get (bytes);
+         myStrings[i] = new String (bytes, StandardCharsets.UTF_8);
+      }
+      setResourceName (file.toString());
+   }
+
+   private static ByteBuffer region (ByteBuffer buf, int nbytes) {
+      ByteBuffer reg = buf.slice();
+      reg.limit (nbytes);
+      buf.position (buf.position() + nbytes);
+      return reg;
+   }
+
+   /**
+    * Returns true if the specified file starts with the header of a binary
+    * token file.
+    *
+    * @param file file to check
+    * @return true if <code>file</code> is a binary token file
+    */
+   public static boolean isBinaryTokenFile (File file) {
+      if (!file.isFile() || file.length() < 8) {
+         return false;
+      }
+      try (DataInputStream in =
+              new DataInputStream (new FileInputStream (file))) {
+         return in.readInt() == MAGIC;
+      }
+      catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Returns true if <code>binFile</code> is a binary token file that was
+    * recorded from the current contents of <code>srcFile</code>, as
+    * determined by the source length and modification time stored in its
+    * header.
+    *
+    * @param binFile binary token file
+    * @param srcFile source file from which the tokens were recorded
+    * @return true if <code>binFile</code> is valid for <code>srcFile</code>
+    */
+   public static boolean isCurrent (File binFile, File srcFile) {
+      if (!binFile.isFile() || !srcFile.isFile()) {
+         return false;
+      }
+      try (DataInputStream in =
+              new DataInputStream (new FileInputStream (binFile))) {
+         return (in.readInt() == MAGIC &&
+                 in.readInt() == VERSION &&
+                 in.readLong() == srcFile.length() &&
+                 in.readLong() == srcFile.lastModified());
+      }
+      catch (IOException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Returns the length of the source file from which the tokens were
+    * recorded.
+    *
+    * @return source file length
+    */
+   public long getSourceLength() {
+      return mySourceLength;
+   }
+
+   /**
+    * Returns the modification time of the source file from which the tokens
+    * were recorded.
+    *
+    * @return source file modification time
+    */
+   public long getSourceModified() {
+      return mySourceModified;
+   }
+
+   /**
+    * Returns the total number of tokens stored in this tokenizer's file.
+    *
+    * @return number of stored tokens
+    */
+   public int numTokens() {
+      return myNumTokens;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int nextToken() throws IOException {
+      if (myPushedBack) {
+         myPushedBack = false;
+         return ttype;
+      }
+      myIsInteger = false;
+      myIsHex = false;
+      sval = null;
+      if (myKinds == null || myTokenIdx >= myNumTokens) {
+         return ttype = TT_EOF;
+      }
+      int kind = myKinds.get();
+      myLine = myLines.get();
+      myTokenIdx++;
+      if ((kind & STRING_FLAG) != 0) {
+         sval = myStrings[myStringIdxs.get()];
+      }
+      switch (kind & KIND_MASK) {
+         case KIND_EOF: {
+            ttype = TT_EOF;
+            break;
+         }
+         case KIND_EOL: {
+            ttype = TT_EOL;
+            break;
+         }
+         case KIND_WORD: {
+            ttype = TT_WORD;
+            break;
+         }
+         case KIND_NUMBER: {
+            ttype = TT_NUMBER;
+            if ((kind & INTEGER_FLAG) != 0) {
+               myIsInteger = true;
+               myIsHex = ((kind & HEX_FLAG) != 0);
+               lval = myLongs.get();
+               nval = lval;
+            }
+            else {
+               nval = myDoubles.get();
+            }
+            break;
+         }
+         case KIND_CHAR: {
+            ttype = myChars.get();
+            break;
+         }
+         default: {
+            throw new IOException (
+               "corrupt binary token file " + getResourceName() +
+               ": unknown token kind " + kind);
+         }
+      }
+      return ttype;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void pushBack() {
+      if (ttype != TT_NOTHING) {
+         myPushedBack = true;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int lineno() {
+      return myLine;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void setLineno (int num) {
+      myLine = num;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean tokenIsInteger() {
+      return myIsInteger;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public boolean tokenIsHexInteger() {
+      return myIsInteger && myIsHex;
+   }
+
+   /**
+    * Releases the memory-mapped token data. Subsequent calls to {@link
+    * #nextToken} will return {@link #TT_EOF TT_EOF}.
+    */
+   public void close() {
+      myKinds = null;
+      myLines = null;
+      myDoubles = null;
+      myLongs = null;
+      myChars = null;
+      myStringIdxs = null;
+      myStrings = null;
+   }
+}
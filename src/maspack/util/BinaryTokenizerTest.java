@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.util;
+
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * Tests RecordingTokenizer and BinaryTokenizer by checking that a token
+ * stream recorded from text input is replayed exactly.
+ */
+public class BinaryTokenizerTest extends UnitTest {
+
+   static String testInput =
+      "RootModel\n" +
+      "[ name=\"top model\" # comment\n" +
+      "  position=[ 1.5 -2 3e-4 0x1f ]\n" +
+      "  count=42 big=12345678901234\n" +
+      "  mesh=\n" +
+      "v 1 2 3\n" +
+      "v 4.5 5 6\n" +
+      "f 1 2 3\n" +
+      "end\n" +
+      "  flag=true label='x' dir=a/b.c\n" +
+      "]\n";
+
+   /**
+    * Reads tokens the way a typical scan method would, including a section
+    * with end-of-line tokens enabled and a number of push-backs, and
+    * returns a description of everything that was read.
+    */
+   ArrayList<String> consume (ReaderTokenizer rtok) throws IOException {
+      ArrayList<String> list = new ArrayList<String>();
+      while (rtok.nextToken() != ReaderTokenizer.TT_EOF) {
+         if (rtok.tokenIsWord ("mesh")) {
+            rtok.scanToken ('=');
+            boolean saveEol = rtok.getEolIsSignificant();
+            rtok.eolIsSignificant (true);
+            while (rtok.nextToken() != ReaderTokenizer.TT_WORD ||
+                   !rtok.sval.equals ("end")) {
+               list.add (describe (rtok));
+            }
+            rtok.eolIsSignificant (saveEol);
+         }
+         else if (rtok.tokenIsWord ("count")) {
+            rtok.scanToken ('=');
+            list.add ("count " + rtok.scanInteger());
+            rtok.nextToken();
+            rtok.pushBack();
+            list.add ("peek " + describe (rtok));
+         }
+         else {
+            list.add (describe (rtok));
+            rtok.pushBack();
+            rtok.nextToken();
+         }
+      }
+      list.add (describe (rtok));
+      return list;
+   }
+
+   String describe (ReaderTokenizer rtok) {
+      return (rtok.tokenName() + " type=" + rtok.ttype +
+              " int=" + rtok.tokenIsInteger() +
+              " hex=" + rtok.tokenIsHexInteger() +
+              " line=" + rtok.lineno());
+   }
+
+   public void test() throws IOException {
+      File srcFile = File.createTempFile ("binaryTokenizerTest", ".txt");
+      File binFile = File.createTempFile ("binaryTokenizerTest", ".bin");
+      srcFile.deleteOnExit();
+      binFile.deleteOnExit();
+
+      PrintWriter pw = new PrintWriter (new FileWriter (srcFile));
+      pw.print (testInput);
+      pw.close();
+
+      ReaderTokenizer rtok =
+         new ReaderTokenizer (new BufferedReader (new FileReader (srcFile)));
+      rtok.wordChars ("./");
+      ArrayList<String> check = consume (rtok);
+      rtok.close();
+
+      RecordingTokenizer rec =
+         new RecordingTokenizer (new BufferedReader (new FileReader (srcFile)));
+      rec.wordChars ("./");
+      ArrayList<String> recorded = consume (rec);
+      rec.close();
+      checkEquals ("recorded tokens", recorded, check);
+      rec.writeBinary (binFile, srcFile);
+
+      if (!BinaryTokenizer.isBinaryTokenFile (binFile)) {
+         throw new TestException ("binary file not recognized");
+      }
+      if (BinaryTokenizer.isBinaryTokenFile (srcFile)) {
+         throw new TestException ("text file recognized as binary");
+      }
+      if (!BinaryTokenizer.isCurrent (binFile, srcFile)) {
+         throw new TestException ("binary file not current for source");
+      }
+      BinaryTokenizer btok = new BinaryTokenizer (binFile);
+      checkEquals ("number of tokens", btok.numTokens(),
+                   rec.numRecordedTokens());
+      ArrayList<String> replayed = consume (btok);
+      btok.close();
+      checkEquals ("replayed tokens", replayed, check);
+
+      // changing the source should invalidate the binary file
+      pw = new PrintWriter (new FileWriter (srcFile, /*append=*/true));
+      pw.println ("extra");
+      pw.close();
+      if (BinaryTokenizer.isCurrent (binFile, srcFile)) {
+         throw new TestException ("binary file still current after change");
+      }
+   }
+
+   public static void main (String[] args) {
+      BinaryTokenizerTest tester = new BinaryTokenizerTest();
+      tester.runtest();
+   }
+}
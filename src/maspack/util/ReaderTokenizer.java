@@ -1225,10 +1225,10 @@ public class ReaderTokenizer {
             break;
          }
          case TT_NUMBER: {
-            if (myTokenIsHex) {
+            if (tokenIsHexInteger()) {
                str = "n=0x" + Long.toHexString (lval);
             }
-            else if (myTokenIsInteger) {
+            else if (tokenIsInteger()) {
                str = "n=" + lval;
             }
             else {
@@ -1960,10 +1960,10 @@ public class ReaderTokenizer {
          }
          case TT_NUMBER: {
             String name;
-            if (myTokenIsHex) {
+            if (tokenIsHexInteger()) {
                name = "0x" + Long.toHexString (lval);
             }
-            else if (myTokenIsInteger) {
+            else if (tokenIsInteger()) {
                name = "" + lval;
             }
             else {
@@ -2081,7 +2081,7 @@ public class ReaderTokenizer {
     */
    public int scanInteger() throws IOException {
       nextToken();
-      if (!myTokenIsInteger) {
+      if (!tokenIsInteger()) {
          throw new IOException ("expected an integer, got " + this);
       }
       else {
@@ -2101,7 +2101,7 @@ public class ReaderTokenizer {
     */
    public long scanLong() throws IOException {
       nextToken();
-      if (!myTokenIsInteger) {
+      if (!tokenIsInteger()) {
          throw new IOException ("expected an integer, got " + this);
       }
       else {
@@ -2121,7 +2121,7 @@ public class ReaderTokenizer {
     */
    public short scanShort() throws IOException {
       nextToken();
-      if (!myTokenIsInteger) {
+      if (!tokenIsInteger()) {
          throw new IOException ("expected an integer, got " + this);
       }
       else {
@@ -2297,7 +2297,7 @@ public class ReaderTokenizer {
    public int scanIntegers (int[] vals, int max) throws IOException {
       for (int i = 0; i < max; i++) {
          nextToken();
-         if (myTokenIsInteger) {
+         if (tokenIsInteger()) {
             vals[i] = (int)nval;
          } else {
             return i;
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2014, by the Authors: John E Lloyd (UBC)
+ *
+ * This software is freely available under a 2-clause BSD license. Please see
+ * the LICENSE file in the ArtiSynth distribution directory for details.
+ */
+package maspack.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A ReaderTokenizer that records every token it reads, so that the token
+ * stream can later be saved in binary form using {@link #writeBinary
+ * writeBinary} and replayed using a {@link BinaryTokenizer}.
+ *
+ * <p>Only tokens actually parsed from the input are recorded; tokens
+ * returned again after a {@link #pushBack pushBack} are not.  Because the
+ * recorded tokens are the ones produced under whatever tokenizer settings
+ * were in effect when they were read, the replayed stream will match the
+ * original even if the reading code changes the settings as it goes.
+ */
+public class RecordingTokenizer extends ReaderTokenizer {
+
+   private DynamicIntArray myKinds = new DynamicIntArray();
+   private DynamicIntArray myLines = new DynamicIntArray();
+   private DynamicDoubleArray myDoubles = new DynamicDoubleArray();
+   private long[] myLongs = new long[64];
+   private int myNumLongs = 0;
+   private StringBuilder myChars = new StringBuilder();
+   private DynamicIntArray myStringIdxs = new DynamicIntArray();
+   private ArrayList<String> myStrings = new ArrayList<String>();
+   private HashMap<String,Integer> myStringMap = new HashMap<String,Integer>();
+
+   private boolean myPushedBack = false;
+
+   /**
+    * Creates a new RecordingTokenizer from the specified Reader.
+    *
+    * @param reader
+    * Reader that provides the input stream
+    */
+   public RecordingTokenizer (Reader reader) {
+      super (reader);
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public int nextToken() throws IOException {
+      if (myPushedBack) {
+         myPushedBack = false;
+         return super.nextToken();
+      }
+      int type = super.nextToken();
+      recordToken();
+      return type;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   public void pushBack() {
+      if (ttype != TT_NOTHING) {
+         myPushedBack = true;
+      }
+      super.pushBack();
+   }
+
+   private void addLong (long val) {
+      if (myNumLongs == myLongs.length) {
+         myLongs = Arrays.copyOf (myLongs, 2*myLongs.length);
+      }
+      myLongs[myNumLongs++] = val;
+   }
+
+   private void recordToken() throws IOException {
+      int kind;
+      switch (ttype) {
+         case TT_EOF: {
+            kind = BinaryTokenizer.KIND_EOF;
+            break;
+         }
+         case TT_EOL: {
+            kind = BinaryTokenizer.KIND_EOL;
+            break;
+         }
+         case TT_WORD: {
+            kind = BinaryTokenizer.KIND_WORD;
+            break;
+         }
+         case TT_NUMBER: {
+            kind = BinaryTokenizer.KIND_NUMBER;
+            if (tokenIsInteger()) {
+               kind |= BinaryTokenizer.INTEGER_FLAG;
+               if (tokenIsHexInteger()) {
+                  kind |= BinaryTokenizer.HEX_FLAG;
+               }
+               addLong (lval);
+            }
+            else {
+               myDoubles.add (nval);
+            }
+            break;
+         }
+         default: {
+            if (ttype < 0 || ttype > Character.MAX_VALUE) {
+               throw new IOException (
+                  "cannot record token type " + ttype);
+            }
+            kind = BinaryTokenizer.KIND_CHAR;
+            myChars.append ((char)ttype);
+            break;
+         }
+      }
+      if (sval != null && ttype != TT_EOF && ttype != TT_EOL) {
+         kind |= BinaryTokenizer.STRING_FLAG;
+         Integer idx = myStringMap.get (sval);
+         if (idx == null) {
+            idx = myStrings.size();
+            myStrings.add (sval);
+            myStringMap.put (sval, idx);
+         }
+         myStringIdxs.add (idx);
+      }
+      myKinds.add (kind);
+      myLines.add (lineno());
+   }
+
+   /**
+    * Returns the number of tokens recorded so far.
+    *
+    * @return number of recorded tokens
+    */
+   public int numRecordedTokens() {
+      return myKinds.size();
+   }
+
+   /**
+    * Clears all the tokens recorded so far.
+    */
+   public void clearRecording() {
+      myKinds.clear();
+      myLines.clear();
+      myDoubles.clear();
+      myNumLongs = 0;
+      myChars.setLength (0);
+      myStringIdxs.clear();
+      myStrings.clear();
+      myStringMap.clear();
+   }
+
+   /**
+    * Writes the recorded tokens to a binary file that can be read by a
+    * {@link BinaryTokenizer}. The length and modification time of the source
+    * file are stored in the header so that the binary file can later be
+    * checked against the source using {@link BinaryTokenizer#isCurrent}.
+    *
+    * @param file binary file to write
+    * @param srcFile source file from which the tokens were read,
+    * or <code>null</code> if there is none
+    * @throws IOException if an I/O error occurs
+    */
+   public void writeBinary (File file, File srcFile) throws IOException {
+      DataOutputStream out =
+         new DataOutputStream (
+            new BufferedOutputStream (new FileOutputStream (file)));
+      try {
+         int ntokens = myKinds.size();
+         out.writeInt (BinaryTokenizer.MAGIC);
+         out.writeInt (BinaryTokenizer.VERSION);
+         out.writeLong (srcFile != null ? srcFile.length() : -1);
+         out.writeLong (srcFile != null ? srcFile.lastModified() : -1);
+         out.writeInt (ntokens);
+         out.writeInt (myDoubles.size());
+         out.writeInt (myNumLongs);
+         out.writeInt (myChars.length());
+         out.writeInt (myStringIdxs.size());
+         for (int i=0; i<ntokens; i++) {
+            out.writeByte (myKinds.get(i));
+         }
+         for (int i=0; i<ntokens; i++) {
+            out.writeInt (myLines.get(i));
+         }
+         for (int i=0; i<myDoubles.size(); i++) {
+            out.writeDouble (myDoubles.get(i));
+         }
+         for (int i=0; i<myNumLongs; i++) {
+            out.writeLong (myLongs[i]);
+         }
+         out.writeChars (myChars.toString());
+         for (int i=0; i<myStringIdxs.size(); i++) {
+            out.writeInt (myStringIdxs.get(i));
+         }
+         out.writeInt (myStrings.size());
+         for (String str : myStrings) {
+            byte[] bytes = str.getBytes (StandardCharsets.UTF_8);
+            out.writeInt (bytes.length);
+            out.write (bytes);
+         }
+      }
+      finally {
+         out.close();
+      }
+   }
+}